@@ -1,5 +1,7 @@
 package com.widen.examples;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
@@ -9,6 +11,9 @@ import java.util.List;
 import com.widen.valet.RecordType;
 import com.widen.valet.Route53Driver;
 import com.widen.valet.Zone;
+import com.widen.valet.internal.Route53PilotImpl;
+import com.widen.valet.replay.RecordingRoute53Pilot;
+import com.widen.valet.replay.ReplayingRoute53Pilot;
 import com.widen.valet.util.NameQueryByRoute53APIService;
 import com.widen.valet.util.NameQueryService;
 import org.apache.commons.lang.StringUtils;
@@ -26,18 +31,42 @@ public class ZoneSummary
 
 	/**
 	 * @param args
-	 * 		args[0] = AWS Access Key, args[1] = AWS Secret Key
+	 * 		args[0] = AWS Access Key, args[1] = AWS Secret Key, optional args[2] = file to record Route53 traffic to;
+	 * 		or args[0] = recorded traffic file to replay without AWS credentials
 	 */
-	public static void main(String[] args)
+	public static void main(String[] args) throws IOException
 	{
-		ZoneSummary zoneSummary = new ZoneSummary(args[0], args[1]);
+		if (args.length == 1)
+		{
+			new ZoneSummary(new Route53Driver(new ReplayingRoute53Pilot(new File(args[0]), 1.0))).run();
+		}
+		else if (args.length > 2)
+		{
+			RecordingRoute53Pilot recorder = new RecordingRoute53Pilot(new Route53PilotImpl(args[0], args[1]), new File(args[2]));
 
-		zoneSummary.run();
+			try
+			{
+				new ZoneSummary(new Route53Driver(recorder)).run();
+			}
+			finally
+			{
+				recorder.close();
+			}
+		}
+		else
+		{
+			new ZoneSummary(args[0], args[1]).run();
+		}
 	}
 
 	public ZoneSummary(String awsAccessKey, String awsSecretKey)
 	{
-		driver = new Route53Driver(awsAccessKey, awsSecretKey);
+		this(new Route53Driver(awsAccessKey, awsSecretKey));
+	}
+
+	public ZoneSummary(Route53Driver driver)
+	{
+		this.driver = driver;
 	}
 
 	private void run()
@@ -0,0 +1,83 @@
+package com.widen.valet;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Call counters of one account in a {@link Route53Runtime}.
+ */
+public class AccountMetrics
+{
+	private final String account;
+
+	final AtomicLong calls = new AtomicLong();
+
+	final AtomicLong errors = new AtomicLong();
+
+	final AtomicLong throttled = new AtomicLong();
+
+	final AtomicLong throttleNanos = new AtomicLong();
+
+	final AtomicLong callNanos = new AtomicLong();
+
+	AccountMetrics(String account)
+	{
+		this.account = account;
+	}
+
+	public String getAccount()
+	{
+		return account;
+	}
+
+	/**
+	 * @return
+	 * 		requests sent to Route53
+	 */
+	public long getCallCount()
+	{
+		return calls.get();
+	}
+
+	/**
+	 * @return
+	 * 		requests that failed to complete, e.g. on I/O errors or expired deadlines
+	 */
+	public long getErrorCount()
+	{
+		return errors.get();
+	}
+
+	/**
+	 * @return
+	 * 		requests that had to wait for the account's rate limit
+	 */
+	public long getThrottledCount()
+	{
+		return throttled.get();
+	}
+
+	/**
+	 * @return
+	 * 		total time requests waited for the account's rate limit
+	 */
+	public long getThrottleWait(TimeUnit unit)
+	{
+		return unit.convert(throttleNanos.get(), TimeUnit.NANOSECONDS);
+	}
+
+	/**
+	 * @return
+	 * 		total time spent in requests, excluding rate limit waits
+	 */
+	public long getCallTime(TimeUnit unit)
+	{
+		return unit.convert(callNanos.get(), TimeUnit.NANOSECONDS);
+	}
+
+	@Override
+	public String toString()
+	{
+		return String.format("AccountMetrics{account=%s, calls=%s, errors=%s, throttled=%s, throttleWait=%s ms}", account, getCallCount(), getErrorCount(), getThrottledCount(), getThrottleWait(TimeUnit.MILLISECONDS));
+	}
+}
@@ -0,0 +1,153 @@
+package com.widen.valet;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time budget and cancellation signal for one driver operation.
+ *
+ * <p>The budget covers every request the operation makes, so the page requests of
+ * {@link Route53Driver#listZoneRecords(Zone, Deadline)} or the polls of
+ * {@link Route53Driver#waitForSync(ZoneChangeStatus, Deadline)} share what remains of it. When the time runs out or
+ * {@link #cancel()} is called, the in-flight HTTP request is aborted and its connection released.
+ *
+ * <pre>
+ * Deadline deadline = Deadline.after(30, TimeUnit.SECONDS);
+ * List&lt;ZoneResource&gt; records = driver.listZoneRecords(zone, deadline);
+ * </pre>
+ */
+public final class Deadline
+{
+	/**
+	 * No time limit, and cannot be cancelled.
+	 */
+	public static final Deadline NONE = new Deadline(Long.MAX_VALUE);
+
+	private final long expiresAtNanos;
+
+	private final List<Runnable> cancelListeners = new CopyOnWriteArrayList<Runnable>();
+
+	private volatile boolean cancelled;
+
+	private Deadline(long expiresAtNanos)
+	{
+		this.expiresAtNanos = expiresAtNanos;
+	}
+
+	public static Deadline after(long duration, TimeUnit unit)
+	{
+		return new Deadline(System.nanoTime() + unit.toNanos(duration));
+	}
+
+	/**
+	 * @return
+	 * 		deadline without a time limit that can still be cancelled
+	 */
+	public static Deadline cancellable()
+	{
+		return new Deadline(Long.MAX_VALUE);
+	}
+
+	public boolean hasTimeLimit()
+	{
+		return expiresAtNanos != Long.MAX_VALUE;
+	}
+
+	/**
+	 * @return
+	 * 		time left, never negative; {@link Long#MAX_VALUE} without a time limit
+	 */
+	public long remaining(TimeUnit unit)
+	{
+		if (!hasTimeLimit())
+		{
+			return Long.MAX_VALUE;
+		}
+
+		return unit.convert(Math.max(0, expiresAtNanos - System.nanoTime()), TimeUnit.NANOSECONDS);
+	}
+
+	/**
+	 * @return
+	 * 		true once the time limit has passed or the deadline was cancelled
+	 */
+	public boolean isExpired()
+	{
+		return cancelled || (hasTimeLimit() && expiresAtNanos - System.nanoTime() <= 0);
+	}
+
+	public boolean isCancelled()
+	{
+		return cancelled;
+	}
+
+	/**
+	 * Stop the operation: aborts its in-flight request, and the operation throws {@link DeadlineExceededException}.
+	 */
+	public void cancel()
+	{
+		if (this == NONE)
+		{
+			throw new UnsupportedOperationException("Deadline.NONE cannot be cancelled");
+		}
+
+		cancelled = true;
+
+		for (Runnable listener : cancelListeners)
+		{
+			listener.run();
+		}
+	}
+
+	/**
+	 * Run {@code listener} on {@link #cancel()}; runs it immediately if already cancelled.
+	 */
+	public void addCancelListener(Runnable listener)
+	{
+		if (this == NONE)
+		{
+			return;
+		}
+
+		cancelListeners.add(listener);
+
+		if (cancelled)
+		{
+			listener.run();
+		}
+	}
+
+	public void removeCancelListener(Runnable listener)
+	{
+		cancelListeners.remove(listener);
+	}
+
+	/**
+	 * @throws DeadlineExceededException
+	 * 		if the deadline expired or was cancelled
+	 */
+	public void check()
+	{
+		check(null);
+	}
+
+	/**
+	 * @param cause
+	 * 		failure to attach if the deadline explains it, e.g. the exception from an aborted request
+	 * @throws DeadlineExceededException
+	 * 		if the deadline expired or was cancelled
+	 */
+	public void check(Throwable cause)
+	{
+		if (cancelled)
+		{
+			throw new DeadlineExceededException("Operation cancelled", cause);
+		}
+
+		if (isExpired())
+		{
+			throw new DeadlineExceededException("Deadline exceeded", cause);
+		}
+	}
+}
@@ -0,0 +1,14 @@
+package com.widen.valet;
+
+/**
+ * Thrown when a driver operation runs past its {@link Deadline} or the deadline is cancelled.
+ */
+public class DeadlineExceededException extends ValetException
+{
+
+	public DeadlineExceededException(String message, Throwable cause)
+	{
+		super(message, cause);
+	}
+
+}
@@ -0,0 +1,416 @@
+package com.widen.valet;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Immutable, interned domain name in canonical form: lower case and absolute ("www.example.com.").
+ *
+ * <p>Equal names are the same instance, so a zone's names are stored once however many record types share them, and
+ * equality is a reference check. The hash code is computed once. Names sort in DNS canonical order (RFC 4034 section
+ * 6.1): label by label from the right, so a zone apex comes before everything below it.
+ */
+public final class DnsName implements Comparable<DnsName>
+{
+	public static final DnsName ROOT = new DnsName(".");
+
+	/**
+	 * Interned names, held weakly: a name stays interned only while something references it, so query input and the
+	 * names of deleted record sets are collected. Entries of collected names are purged as new names are interned.
+	 */
+	private static final ConcurrentMap<String, NameReference> INTERNED = new ConcurrentHashMap<String, NameReference>();
+
+	private static final ReferenceQueue<DnsName> COLLECTED = new ReferenceQueue<DnsName>();
+
+	private final String name;
+
+	private final int hash;
+
+	private DnsName(String name)
+	{
+		this.name = name;
+		this.hash = name.hashCode();
+	}
+
+	/**
+	 * @param name
+	 * 		domain name in any case, with or without the trailing dot
+	 */
+	public static DnsName of(String name)
+	{
+		if (name == null)
+		{
+			throw new IllegalArgumentException("name is null");
+		}
+
+		String canonical = canonicalize(name);
+
+		if (canonical.equals("."))
+		{
+			return ROOT;
+		}
+
+		NameReference reference = INTERNED.get(canonical);
+
+		DnsName interned = reference == null ? null : reference.get();
+
+		if (interned != null)
+		{
+			return interned;
+		}
+
+		purgeCollected();
+
+		DnsName created = new DnsName(canonical);
+
+		NameReference fresh = new NameReference(created);
+
+		while (true)
+		{
+			NameReference existing = INTERNED.putIfAbsent(canonical, fresh);
+
+			if (existing == null)
+			{
+				return created;
+			}
+
+			interned = existing.get();
+
+			if (interned != null)
+			{
+				return interned;
+			}
+
+			if (INTERNED.replace(canonical, existing, fresh))
+			{
+				return created;
+			}
+		}
+	}
+
+	private static void purgeCollected()
+	{
+		NameReference collected;
+
+		while ((collected = (NameReference) COLLECTED.poll()) != null)
+		{
+			INTERNED.remove(collected.key, collected);
+		}
+	}
+
+	/**
+	 * @return
+	 * 		null for a null name, otherwise {@link #of(String)}
+	 */
+	static DnsName ofNullable(String name)
+	{
+		return name == null ? null : of(name);
+	}
+
+	/**
+	 * Lower-case ASCII letters, unescape printable characters Route53 writes as octal escapes ("\052" is "*") and
+	 * append the trailing dot, copying only if the name is not canonical already.
+	 *
+	 * <p>Gives the same text as {@code of(name).toString()} without interning the name.
+	 */
+	public static String canonicalize(String name)
+	{
+		int length = name.length();
+
+		boolean absolute = length > 0 && name.charAt(length - 1) == '.';
+
+		int i = 0;
+
+		while (i < length && !isUpper(name.charAt(i)) && printableEscape(name, i) < 0)
+		{
+			i++;
+		}
+
+		if (i == length && absolute)
+		{
+			return name;
+		}
+
+		StringBuilder sb = new StringBuilder(length + 1).append(name, 0, i);
+
+		while (i < length)
+		{
+			char c = name.charAt(i);
+
+			int unescaped = printableEscape(name, i);
+
+			if (unescaped >= 0)
+			{
+				c = (char) unescaped;
+				i += 4;
+			}
+			else
+			{
+				i++;
+			}
+
+			sb.append(isUpper(c) ? (char) (c + ('a' - 'A')) : c);
+		}
+
+		if (!absolute)
+		{
+			sb.append('.');
+		}
+
+		return sb.toString();
+	}
+
+	/**
+	 * @return
+	 * 		the character of an octal escape at {@code i} that can be written plainly, otherwise -1
+	 */
+	private static int printableEscape(String name, int i)
+	{
+		if (name.charAt(i) != '\\' || !isOctalEscape(name, i))
+		{
+			return -1;
+		}
+
+		int c = octal(name, i);
+
+		return c > ' ' && c < 0x7f && c != '.' && c != '\\' ? c : -1;
+	}
+
+	private static boolean isOctalEscape(String name, int i)
+	{
+		if (i + 3 >= name.length())
+		{
+			return false;
+		}
+
+		for (int j = i + 1; j <= i + 3; j++)
+		{
+			if (name.charAt(j) < '0' || name.charAt(j) > '7')
+			{
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	private static int octal(String name, int i)
+	{
+		return (name.charAt(i + 1) - '0') * 64 + (name.charAt(i + 2) - '0') * 8 + (name.charAt(i + 3) - '0');
+	}
+
+	private static boolean isUpper(char c)
+	{
+		return c >= 'A' && c <= 'Z';
+	}
+
+	/**
+	 * @return
+	 * 		number of labels; 0 for the root
+	 */
+	public int getLabelCount()
+	{
+		if (this == ROOT)
+		{
+			return 0;
+		}
+
+		int count = 0;
+
+		for (int i = 0; i < name.length(); i++)
+		{
+			if (name.charAt(i) == '.')
+			{
+				count++;
+			}
+		}
+
+		return count;
+	}
+
+	/**
+	 * @return
+	 * 		labels right to left joined with dots ("com.example.www" for "www.example.com."), the string
+	 * 		ListResourceRecordSets sorts by; empty for the root
+	 */
+	public String getReversedName()
+	{
+		StringBuilder sb = new StringBuilder(name.length());
+
+		int end = name.length() - 1;
+
+		while (end > 0)
+		{
+			int start = name.lastIndexOf('.', end - 1) + 1;
+
+			if (sb.length() > 0)
+			{
+				sb.append('.');
+			}
+
+			sb.append(name, start, end);
+
+			end = start - 1;
+		}
+
+		return sb.toString();
+	}
+
+	/**
+	 * @return
+	 * 		the leftmost label ("www" for "www.example.com."); empty for the root
+	 */
+	public String getFirstLabel()
+	{
+		return this == ROOT ? "" : name.substring(0, name.indexOf('.'));
+	}
+
+	/**
+	 * @return
+	 * 		the name without its leftmost label; null for the root
+	 */
+	public DnsName getParent()
+	{
+		if (this == ROOT)
+		{
+			return null;
+		}
+
+		int dot = name.indexOf('.');
+
+		return dot == name.length() - 1 ? ROOT : of(name.substring(dot + 1));
+	}
+
+	/**
+	 * @return
+	 * 		true if this name equals {@code ancestor} or is below it
+	 */
+	public boolean isSubdomainOf(DnsName ancestor)
+	{
+		if (ancestor == ROOT || ancestor == this)
+		{
+			return true;
+		}
+
+		int offset = name.length() - ancestor.name.length();
+
+		return offset > 0 && name.charAt(offset - 1) == '.' && name.endsWith(ancestor.name);
+	}
+
+	/**
+	 * Canonical DNS order: compare labels right to left, each as lower-case octets, a missing label first.
+	 */
+	public int compareTo(DnsName other)
+	{
+		if (this == other)
+		{
+			return 0;
+		}
+
+		String a = name;
+		String b = other.name;
+
+		// end of the label under comparison, exclusive; skip the shared trailing dot
+		int aEnd = a.length() - 1;
+		int bEnd = b.length() - 1;
+
+		while (aEnd > 0 && bEnd > 0)
+		{
+			int aStart = a.lastIndexOf('.', aEnd - 1) + 1;
+			int bStart = b.lastIndexOf('.', bEnd - 1) + 1;
+
+			int c = compareLabels(a, aStart, aEnd, b, bStart, bEnd);
+
+			if (c != 0)
+			{
+				return c;
+			}
+
+			aEnd = aStart - 1;
+			bEnd = bStart - 1;
+		}
+
+		return aEnd > 0 ? 1 : bEnd > 0 ? -1 : 0;
+	}
+
+	private static int compareLabels(String a, int aIndex, int aEnd, String b, int bIndex, int bEnd)
+	{
+		while (aIndex < aEnd && bIndex < bEnd)
+		{
+			int aOctet = a.charAt(aIndex);
+			int bOctet = b.charAt(bIndex);
+
+			if (aOctet == '\\' && isOctalEscape(a, aIndex))
+			{
+				aOctet = octal(a, aIndex);
+				aIndex += 4;
+			}
+			else
+			{
+				aIndex++;
+			}
+
+			if (bOctet == '\\' && isOctalEscape(b, bIndex))
+			{
+				bOctet = octal(b, bIndex);
+				bIndex += 4;
+			}
+			else
+			{
+				bIndex++;
+			}
+
+			if (aOctet != bOctet)
+			{
+				return aOctet - bOctet;
+			}
+		}
+
+		return aIndex < aEnd ? 1 : bIndex < bEnd ? -1 : 0;
+	}
+
+	@Override
+	public boolean equals(Object obj)
+	{
+		if (this == obj)
+		{
+			return true;
+		}
+
+		// interned, so only a deserialized or otherwise stray copy can get here
+		return obj instanceof DnsName && hash == ((DnsName) obj).hash && name.equals(((DnsName) obj).name);
+	}
+
+	@Override
+	public int hashCode()
+	{
+		return hash;
+	}
+
+	/**
+	 * @return
+	 * 		the canonical name, with trailing dot
+	 */
+	@Override
+	public String toString()
+	{
+		return name;
+	}
+
+	/**
+	 * Weak reference to an interned name that remembers its key, so the entry can be removed once the name is collected.
+	 */
+	private static final class NameReference extends WeakReference<DnsName>
+	{
+		private final String key;
+
+		NameReference(DnsName name)
+		{
+			super(name, COLLECTED);
+
+			this.key = name.name;
+		}
+	}
+}
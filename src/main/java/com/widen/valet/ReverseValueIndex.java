@@ -0,0 +1,399 @@
+package com.widen.valet;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import com.widen.valet.internal.AddressCodec;
+import org.apache.commons.lang.ObjectUtils;
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.lang.builder.ToStringBuilder;
+
+/**
+ * Which record sets, across zones, point at a value: an IP address, a CNAME/MX/SRV/NS/PTR target or an alias target.
+ *
+ * <p>Fill it per zone with {@link Route53Driver#indexZoneValues} and register it with
+ * {@link Route53Driver#addZoneChangeListener} so the driver's own updates keep it current; lookups then need no
+ * Route53 calls. Changes made elsewhere are picked up the next time the zone is indexed.
+ *
+ * <pre>
+ * ReverseValueIndex index = new ReverseValueIndex();
+ *
+ * driver.addZoneChangeListener(index);
+ *
+ * for (Zone zone : driver.listZones())
+ * {
+ *     driver.indexZoneValues(zone, index);
+ * }
+ *
+ * Set&lt;ReverseValueIndex.Reference&gt; impact = index.lookup("10.0.0.1");
+ * </pre>
+ */
+public class ReverseValueIndex implements ZoneChangeListener
+{
+	private static final String DUALSTACK_PREFIX = "dualstack.";
+
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+	private final Map<String, Set<Reference>> byValue = new HashMap<String, Set<Reference>>();
+
+	/**
+	 * Indexed values of each record set, by zone, so that re-indexing can take the old ones out.
+	 */
+	private final Map<String, Map<Reference, String[]>> byZone = new HashMap<String, Map<Reference, String[]>>();
+
+	/**
+	 * @param value
+	 * 		IP address or domain name, in any case, with or without the trailing dot
+	 * @return
+	 * 		record sets pointing at the value; empty if none
+	 */
+	public Set<Reference> lookup(String value)
+	{
+		String key = normalize(value);
+
+		lock.readLock().lock();
+
+		try
+		{
+			Set<Reference> references = byValue.get(key);
+
+			return references == null ? Collections.<Reference>emptySet() : Collections.unmodifiableSet(new HashSet<Reference>(references));
+		}
+		finally
+		{
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * @return
+	 * 		number of indexed record sets
+	 */
+	public int size()
+	{
+		lock.readLock().lock();
+
+		try
+		{
+			int size = 0;
+
+			for (Map<Reference, String[]> zone : byZone.values())
+			{
+				size += zone.size();
+			}
+
+			return size;
+		}
+		finally
+		{
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Index or re-index one record set.
+	 */
+	public void put(String zoneId, ZoneResource resource)
+	{
+		Reference reference = new Reference(zoneId, resource.getDnsName(), resource.getRecordType(), resource.getWrrSetIdentifier());
+
+		String[] values = indexedValues(resource.getRecordType(), resource.getResourceRecords(), resource.getAliasDnsName());
+
+		lock.writeLock().lock();
+
+		try
+		{
+			unindex(reference);
+			index(reference, values);
+		}
+		finally
+		{
+			lock.writeLock().unlock();
+		}
+	}
+
+	public void remove(String zoneId, String name, RecordType type, String setIdentifier)
+	{
+		Reference reference = new Reference(zoneId, DnsName.of(name), type, setIdentifier);
+
+		lock.writeLock().lock();
+
+		try
+		{
+			unindex(reference);
+		}
+		finally
+		{
+			lock.writeLock().unlock();
+		}
+	}
+
+	public void removeZone(String zoneId)
+	{
+		replaceZone(zoneId, Collections.<Reference, String[]>emptyMap());
+	}
+
+	/**
+	 * Swap in a fresh listing of a zone in one step, so lookups never see it half indexed.
+	 *
+	 * @param entries
+	 * 		indexed values by record set, from {@link #indexedValues}
+	 */
+	void replaceZone(String zoneId, Map<Reference, String[]> entries)
+	{
+		lock.writeLock().lock();
+
+		try
+		{
+			Map<Reference, String[]> old = byZone.get(zoneId);
+
+			if (old != null)
+			{
+				for (Reference reference : new ArrayList<Reference>(old.keySet()))
+				{
+					unindex(reference);
+				}
+			}
+
+			for (Map.Entry<Reference, String[]> entry : entries.entrySet())
+			{
+				index(entry.getKey(), entry.getValue());
+			}
+		}
+		finally
+		{
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Applies the accepted batch: DELETEs unindex, CREATEs index.
+	 */
+	public void zoneChanged(Zone zone, List<ZoneUpdateAction> actions, ZoneChangeStatus status)
+	{
+		String zoneId = zone.getExistentZoneId();
+
+		lock.writeLock().lock();
+
+		try
+		{
+			for (ZoneUpdateAction action : actions)
+			{
+				Reference reference = new Reference(zoneId, action.getDnsName(), action.getType(), action.getSetIdentifier());
+
+				unindex(reference);
+
+				if ("CREATE".equals(action.getAction()))
+				{
+					index(reference, indexedValues(action.getType(), action.getResourceRecords(), action.getAliasDnsName()));
+				}
+			}
+		}
+		finally
+		{
+			lock.writeLock().unlock();
+		}
+	}
+
+	private void index(Reference reference, String[] values)
+	{
+		Map<Reference, String[]> zone = byZone.get(reference.zoneId);
+
+		if (zone == null)
+		{
+			zone = new HashMap<Reference, String[]>();
+			byZone.put(reference.zoneId, zone);
+		}
+
+		zone.put(reference, values);
+
+		for (String value : values)
+		{
+			Set<Reference> references = byValue.get(value);
+
+			if (references == null)
+			{
+				references = new HashSet<Reference>(4);
+				byValue.put(value, references);
+			}
+
+			references.add(reference);
+		}
+	}
+
+	private void unindex(Reference reference)
+	{
+		Map<Reference, String[]> zone = byZone.get(reference.zoneId);
+
+		String[] values = zone == null ? null : zone.remove(reference);
+
+		if (values == null)
+		{
+			return;
+		}
+
+		if (zone.isEmpty())
+		{
+			byZone.remove(reference.zoneId);
+		}
+
+		for (String value : values)
+		{
+			Set<Reference> references = byValue.get(value);
+
+			if (references != null && references.remove(reference) && references.isEmpty())
+			{
+				byValue.remove(value);
+			}
+		}
+	}
+
+	/**
+	 * @return
+	 * 		the normalized values a record set points at; none for TXT, SPF and SOA
+	 */
+	static String[] indexedValues(RecordType type, List<String> values, String aliasDnsName)
+	{
+		if (aliasDnsName != null)
+		{
+			String target = DnsName.canonicalize(aliasDnsName);
+
+			// ELB aliases are often written with the dualstack prefix; index the plain name too
+			return target.startsWith(DUALSTACK_PREFIX)
+					? new String[] { target, target.substring(DUALSTACK_PREFIX.length()) }
+					: new String[] { target };
+		}
+
+		switch (type)
+		{
+			case A:
+			case AAAA:
+			case CNAME:
+			case NS:
+			case PTR:
+			case MX:
+			case SRV:
+				break;
+			default:
+				return new String[0];
+		}
+
+		String[] indexed = new String[values.size()];
+
+		for (int i = 0; i < indexed.length; i++)
+		{
+			String value = values.get(i);
+
+			if (type == RecordType.MX || type == RecordType.SRV)
+			{
+				// "10 mail.example.com." and "1 10 5060 sip.example.com.": the target is the last field
+				value = value.substring(value.trim().lastIndexOf(' ') + 1);
+			}
+
+			indexed[i] = normalize(value.trim());
+		}
+
+		return indexed;
+	}
+
+	/**
+	 * IPv4 addresses as written, IPv6 addresses in lower case, names in canonical form.
+	 */
+	static String normalize(String value)
+	{
+		if (AddressCodec.parseIpv4(value) >= 0)
+		{
+			return value;
+		}
+
+		if (value.indexOf(':') >= 0)
+		{
+			return value.toLowerCase();
+		}
+
+		return DnsName.canonicalize(value);
+	}
+
+	/**
+	 * A record set, by zone, name, type and set identifier.
+	 */
+	public static final class Reference
+	{
+		private final String zoneId;
+
+		private final DnsName name;
+
+		private final RecordType recordType;
+
+		private final String setIdentifier;
+
+		Reference(String zoneId, DnsName name, RecordType recordType, String setIdentifier)
+		{
+			this.zoneId = zoneId;
+			this.name = name;
+			this.recordType = recordType;
+			this.setIdentifier = StringUtils.trimToNull(setIdentifier);
+		}
+
+		public String getZoneId()
+		{
+			return zoneId;
+		}
+
+		public String getName()
+		{
+			return name.toString();
+		}
+
+		public RecordType getRecordType()
+		{
+			return recordType;
+		}
+
+		/**
+		 * @return
+		 * 		weighted set identifier, or null
+		 */
+		public String getSetIdentifier()
+		{
+			return setIdentifier;
+		}
+
+		@Override
+		public boolean equals(Object obj)
+		{
+			if (!(obj instanceof Reference))
+			{
+				return false;
+			}
+
+			Reference rhs = (Reference) obj;
+
+			return zoneId.equals(rhs.zoneId) && name.equals(rhs.name) && recordType == rhs.recordType && ObjectUtils.equals(setIdentifier, rhs.setIdentifier);
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return (zoneId.hashCode() * 31 + name.hashCode()) * 31 + recordType.ordinal();
+		}
+
+		@Override
+		public String toString()
+		{
+			return new ToStringBuilder(this)
+					.append("zoneId", zoneId)
+					.append("name", name)
+					.append("recordType", recordType)
+					.append("setIdentifier", setIdentifier)
+					.toString();
+		}
+	}
+}
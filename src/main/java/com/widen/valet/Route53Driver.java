@@ -14,6 +14,7 @@
 
 package com.widen.valet;
 
+import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
@@ -24,14 +25,31 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
 
 import com.mycila.xmltool.XMLDoc;
 import com.mycila.xmltool.XMLDocumentException;
 import com.mycila.xmltool.XMLTag;
 import com.widen.valet.internal.DateUtil;
 import com.widen.valet.internal.Defense;
+import com.widen.valet.internal.PilotOperation;
+import com.widen.valet.internal.ResponseReader;
 import com.widen.valet.internal.Route53Pilot;
 import com.widen.valet.internal.Route53PilotImpl;
+import com.widen.valet.internal.StreamingRoute53Pilot;
+import com.widen.valet.internal.SyncWaitEvent;
+import com.widen.valet.internal.XmlCodecEvent;
+import org.apache.commons.io.input.CountingInputStream;
 import org.apache.commons.lang.StringUtils;
 import org.apache.http.client.HttpClient;
 import org.slf4j.Logger;
@@ -46,8 +64,23 @@ public class Route53Driver
 
 	private static final String ROUTE53_XML_NAMESPACE = "https://route53.amazonaws.com/doc/2011-05-05/";
 
+	/**
+	 * System property that turns on eager-init mode: every new driver starts {@link #warmUpAsync()} immediately.
+	 */
+	public static final String EAGER_INIT_PROPERTY = "widen.valet.eager-init";
+
+	private static final long SYNC_POLL_MILLIS = 2000;
+
+	private static ScheduledExecutorService defaultPoller;
+
 	private final Route53Pilot pilot;
 
+	private final ScheduledExecutorService executor;
+
+	private final AtomicReference<Future<WarmUpReport>> pendingWarmUp = new AtomicReference<Future<WarmUpReport>>();
+
+	private final List<ZoneChangeListener> changeListeners = new CopyOnWriteArrayList<ZoneChangeListener>();
+
 	/**
 	 * Construct driver using AWS user/secret keys.
 	 * @param awsUserKey
@@ -55,7 +88,7 @@ public class Route53Driver
 	 */
 	public Route53Driver(String awsUserKey, String awsSecretKey)
 	{
-		this.pilot = new Route53PilotImpl(awsUserKey, awsSecretKey);
+		this(new Route53PilotImpl(awsUserKey, awsSecretKey));
 	}
 
 	/**
@@ -66,7 +99,7 @@ public class Route53Driver
 	 */
 	public Route53Driver(String awsUserKey, String awsSecretKey, HttpClient httpClient)
 	{
-		this.pilot = new Route53PilotImpl(awsUserKey, awsSecretKey, httpClient);
+		this(new Route53PilotImpl(awsUserKey, awsSecretKey, httpClient));
 	}
 
 	/**
@@ -75,8 +108,207 @@ public class Route53Driver
 	 * @param pilot
 	 */
 	public Route53Driver(Route53Pilot pilot)
+	{
+		this(pilot, null);
+	}
+
+	/**
+	 * @param executor
+	 * 		runs warm-up and asynchronous sync waits; null for a thread of the driver's own
+	 */
+	Route53Driver(Route53Pilot pilot, ScheduledExecutorService executor)
 	{
 		this.pilot = pilot;
+		this.executor = executor;
+
+		if (Boolean.getBoolean(EAGER_INIT_PROPERTY))
+		{
+			warmUpAsync();
+		}
+	}
+
+	/**
+	 * Pay one-time startup costs now instead of on the first real call: XML factory loading, signer key setup, DNS
+	 * resolution and the connect/TLS handshake of the connection later calls reuse.
+	 *
+	 * <p>Costs one ListHostedZones request for a single zone, and warms one connection. See {@link #warmUp(int)} to warm
+	 * a connection pool.
+	 *
+	 * @return
+	 * 		timing of each warm-up step
+	 */
+	public WarmUpReport warmUp()
+	{
+		return warmUp(1);
+	}
+
+	/**
+	 * Like {@link #warmUp()}, but sends {@code connections} ListHostedZones requests at once. Each holds its connection
+	 * until answered, so a pooling client, e.g. {@link Route53Runtime}'s, opens that many connections. The account's
+	 * rate limit applies to these requests too.
+	 */
+	public WarmUpReport warmUp(int connections)
+	{
+		if (connections <= 0)
+		{
+			throw new IllegalArgumentException("Connections must be positive");
+		}
+
+		long start = System.nanoTime();
+
+		XMLDoc.from(XMLDoc.newDocument(false)
+				.addDefaultNamespace(ROUTE53_XML_NAMESPACE)
+				.addRoot("ListHostedZonesRequest")
+				.toString(), true);
+
+		long xml = System.nanoTime();
+
+		if (pilot instanceof Route53PilotImpl)
+		{
+			((Route53PilotImpl) pilot).warmUp();
+		}
+
+		long signer = System.nanoTime();
+
+		final Map<String, String> query = new HashMap<String, String>();
+
+		query.put("maxitems", "1");
+
+		// dedicated threads, since this may itself run on the executor
+		List<FutureTask<XMLTag>> others = new ArrayList<FutureTask<XMLTag>>();
+
+		for (int i = 1; i < connections; i++)
+		{
+			FutureTask<XMLTag> call = new FutureTask<XMLTag>(new Callable<XMLTag>()
+			{
+				public XMLTag call()
+				{
+					return execute(PilotOperation.HOSTED_ZONE_GET, null, "", query, null, Deadline.NONE);
+				}
+			});
+
+			Thread thread = new Thread(call, "valet-warm-up");
+			thread.setDaemon(true);
+			thread.start();
+
+			others.add(call);
+		}
+
+		execute(PilotOperation.HOSTED_ZONE_GET, null, "", query, null, Deadline.NONE);
+
+		for (FutureTask<XMLTag> call : others)
+		{
+			try
+			{
+				call.get();
+			}
+			catch (InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+
+				throw new RuntimeException(e);
+			}
+			catch (ExecutionException e)
+			{
+				if (e.getCause() instanceof RuntimeException)
+				{
+					throw (RuntimeException) e.getCause();
+				}
+
+				throw new RuntimeException(e.getCause());
+			}
+		}
+
+		long end = System.nanoTime();
+
+		WarmUpReport report = new WarmUpReport(connections, xml - start, signer - xml, end - signer, end - start);
+
+		log.info("Route53 driver {}", report);
+
+		return report;
+	}
+
+	/**
+	 * Run {@link #warmUp()} on a background thread. Driver calls made before it finishes wait for it, since they would
+	 * otherwise repeat the same work on the same connection.
+	 */
+	public Future<WarmUpReport> warmUpAsync()
+	{
+		return warmUpAsync(1);
+	}
+
+	/**
+	 * Run {@link #warmUp(int)} on a background thread; driver calls wait for it as with {@link #warmUpAsync()}.
+	 */
+	public Future<WarmUpReport> warmUpAsync(final int connections)
+	{
+		if (connections <= 0)
+		{
+			throw new IllegalArgumentException("Connections must be positive");
+		}
+
+		FutureTask<WarmUpReport> task = new FutureTask<WarmUpReport>(new Callable<WarmUpReport>()
+		{
+			public WarmUpReport call()
+			{
+				return warmUp(connections);
+			}
+		});
+
+		pendingWarmUp.set(task);
+
+		if (executor != null)
+		{
+			executor.execute(task);
+		}
+		else
+		{
+			Thread thread = new Thread(task, "valet-warm-up");
+			thread.setDaemon(true);
+			thread.start();
+		}
+
+		return task;
+	}
+
+	private void awaitWarmUp(Deadline deadline)
+	{
+		Future<WarmUpReport> warmUp = pendingWarmUp.get();
+
+		if (warmUp == null)
+		{
+			return;
+		}
+
+		try
+		{
+			if (deadline.hasTimeLimit())
+			{
+				warmUp.get(deadline.remaining(TimeUnit.NANOSECONDS), TimeUnit.NANOSECONDS);
+			}
+			else
+			{
+				warmUp.get();
+			}
+		}
+		catch (TimeoutException e)
+		{
+			deadline.check(e);
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+		catch (ExecutionException e)
+		{
+			log.warn("Route53 warm-up failed", e.getCause());
+		}
+
+		// a call that gave up waiting leaves the warm-up for later calls, as does one started meanwhile
+		if (warmUp.isDone())
+		{
+			pendingWarmUp.compareAndSet(warmUp, null);
+		}
 	}
 
 	/**
@@ -102,6 +334,17 @@ public class Route53Driver
 	 *      ValetException if Route53 rejects the transaction block
 	 */
 	public ZoneChangeStatus updateZone(final Zone zone, final String comment, final List<ZoneUpdateAction> updateActions)
+	{
+		return updateZone(zone, comment, updateActions, Deadline.NONE);
+	}
+
+	/**
+	 * Submit ordered list of commands to Route53 within a time budget.
+	 *
+	 * @throws DeadlineExceededException
+	 * 		if the deadline passes or is cancelled before Route53 answers; the change may or may not have been applied
+	 */
+	public ZoneChangeStatus updateZone(final Zone zone, final String comment, final List<ZoneUpdateAction> updateActions, final Deadline deadline)
 	{
 		if (updateActions.isEmpty())
 		{
@@ -115,6 +358,10 @@ public class Route53Driver
 
 		String commentXml = StringUtils.defaultIfEmpty(comment, String.format("Modify %s records.", updateActions.size()));
 
+		XmlCodecEvent buildEvent = new XmlCodecEvent();
+
+		buildEvent.begin();
+
 		XMLTag xml = XMLDoc.newDocument(false)
 				.addDefaultNamespace(ROUTE53_XML_NAMESPACE)
 				.addRoot("ChangeResourceRecordSetsRequest")
@@ -132,11 +379,11 @@ public class Route53Driver
 
 		String payload = xml.toString();
 
-		log.trace("Update Zone Post Payload:\n{}", payload);
+		commitBuildEvent(buildEvent, "ResourceRecordSetsPost", zone.getExistentZoneId(), payload);
 
-		String responseText = pilot.executeResourceRecordSetsPost(zone.getExistentZoneId(), payload);
+		log.trace("Update Zone Post Payload:\n{}", payload);
 
-		XMLTag result = XMLDoc.from(responseText, true);
+		XMLTag result = call(PilotOperation.RESOURCE_RECORD_SETS_POST, zone.getExistentZoneId(), zone.getExistentZoneId(), null, payload, deadline);
 
 		log.trace("Update Zone Response:\n{}", result);
 
@@ -145,7 +392,36 @@ public class Route53Driver
 			throw parseErrorResponse(result);
 		}
 
-		return parseChangeResourceRecordSetsResponse(zone.getExistentZoneId(), result);
+		ZoneChangeStatus status = parseChangeResourceRecordSetsResponse(zone.getExistentZoneId(), result);
+
+		for (ZoneChangeListener listener : changeListeners)
+		{
+			try
+			{
+				listener.zoneChanged(zone, updateActions, status);
+			}
+			catch (RuntimeException e)
+			{
+				log.warn("Zone change listener {} failed", listener, e);
+			}
+		}
+
+		return status;
+	}
+
+	/**
+	 * Tell {@code listener} about every change batch this driver gets accepted from now on.
+	 */
+	public void addZoneChangeListener(ZoneChangeListener listener)
+	{
+		Defense.notNull(listener, "listener");
+
+		changeListeners.add(listener);
+	}
+
+	public void removeZoneChangeListener(ZoneChangeListener listener)
+	{
+		changeListeners.remove(listener);
 	}
 
 	/**
@@ -155,9 +431,12 @@ public class Route53Driver
 	 */
 	public ZoneChangeStatus queryChangeStatus(ZoneChangeStatus oldStatus)
 	{
-		String response = pilot.executeChangeInfoGet(oldStatus.getChangeId());
+		return queryChangeStatus(oldStatus, Deadline.NONE);
+	}
 
-		XMLTag xml = XMLDoc.from(response, true);
+	public ZoneChangeStatus queryChangeStatus(ZoneChangeStatus oldStatus, Deadline deadline)
+	{
+		XMLTag xml = call(PilotOperation.CHANGE_INFO_GET, oldStatus.getZoneId(), oldStatus.getChangeId(), null, null, deadline);
 
 		return parseChangeResourceRecordSetsResponse(oldStatus.getZoneId(), xml);
 	}
@@ -185,6 +464,115 @@ public class Route53Driver
 		return new ZoneChangeStatus(zoneId, changeId, status, date);
 	}
 
+	/**
+	 * Execute a pilot operation and parse its response. Streaming pilots hand the body straight to the parser.
+	 *
+	 * @param zoneId
+	 * 		zone the call concerns, for flight recorder events
+	 */
+	private XMLTag call(PilotOperation operation, String zoneId, String target, Map<String, String> query, String payload, Deadline deadline)
+	{
+		awaitWarmUp(deadline);
+
+		return execute(operation, zoneId, target, query, payload, deadline);
+	}
+
+	/**
+	 * Streaming pilots enforce the deadline on the HTTP exchange itself; other pilots are only checked before the call.
+	 */
+	private XMLTag execute(final PilotOperation operation, final String zoneId, String target, Map<String, String> query, String payload, Deadline deadline)
+	{
+		deadline.check();
+
+		if (pilot instanceof StreamingRoute53Pilot)
+		{
+			return ((StreamingRoute53Pilot) pilot).execute(operation, target, query, payload, new ResponseReader<XMLTag>()
+			{
+				public XMLTag read(InputStream body)
+				{
+					return parse(operation, zoneId, body);
+				}
+			}, deadline);
+		}
+
+		return parse(operation, zoneId, operation.execute(pilot, target, query, payload));
+	}
+
+	private XMLTag parse(PilotOperation operation, String zoneId, InputStream body)
+	{
+		XmlCodecEvent event = new XmlCodecEvent();
+
+		event.begin();
+
+		CountingInputStream in = new CountingInputStream(body);
+
+		XMLTag xml = null;
+
+		try
+		{
+			xml = XMLDoc.from(in, true);
+
+			return xml;
+		}
+		finally
+		{
+			commitParseEvent(event, operation, zoneId, in.getCount(), xml);
+		}
+	}
+
+	/**
+	 * Parse a response a pilot has already buffered, without copying it again.
+	 */
+	private XMLTag parse(PilotOperation operation, String zoneId, String text)
+	{
+		XmlCodecEvent event = new XmlCodecEvent();
+
+		event.begin();
+
+		XMLTag xml = null;
+
+		try
+		{
+			xml = XMLDoc.from(text, true);
+
+			return xml;
+		}
+		finally
+		{
+			commitParseEvent(event, operation, zoneId, text.length(), xml);
+		}
+	}
+
+	private void commitParseEvent(XmlCodecEvent event, PilotOperation operation, String zoneId, long payloadSize, XMLTag xml)
+	{
+		event.end();
+
+		if (event.shouldCommit())
+		{
+			event.zoneId = zoneId;
+			event.operation = operation.getLabel();
+			event.direction = XmlCodecEvent.PARSE;
+			event.payloadSize = payloadSize;
+			event.outcome = xml == null ? "malformed" : xml.hasTag("Error") ? "error" : "ok";
+			event.commit();
+		}
+	}
+
+	private void commitBuildEvent(XmlCodecEvent event, String operation, String zoneId, String payload)
+	{
+		event.end();
+
+		if (event.shouldCommit())
+		{
+			event.zoneId = zoneId;
+			event.operation = operation;
+			event.direction = XmlCodecEvent.BUILD;
+			event.payloadSize = payload.length();
+			event.outcome = "ok";
+			event.commit();
+		}
+	}
+
 	private ValetException parseErrorResponse(XMLTag xml)
 	{
 		XMLTag error = xml.gotoChild("Error");
@@ -202,29 +590,167 @@ public class Route53Driver
 	 */
 	public void waitForSync(ZoneChangeStatus oldStatus)
 	{
+		waitForSync(oldStatus, Deadline.NONE);
+	}
+
+	/**
+	 * Block until ZoneChangeStatus returns INSYNC from Route53, or the deadline runs out.
+	 *
+	 * @throws DeadlineExceededException
+	 * 		if the change is still PENDING when the deadline passes or is cancelled
+	 */
+	public void waitForSync(ZoneChangeStatus oldStatus, Deadline deadline)
+	{
+		SyncWaitEvent event = new SyncWaitEvent();
+
+		event.begin();
+
 		boolean inSync = oldStatus.isInSync();
 
-		while (!inSync)
+		int polls = 0;
+
+		try
+		{
+			while (!inSync)
+			{
+				ZoneChangeStatus current = queryChangeStatus(oldStatus, deadline);
+
+				polls++;
+
+				if (current.isInSync())
+				{
+					inSync = true;
+
+					log.debug("Zone ID {} is now INSYNC", current.getZoneId());
+				}
+				else
+				{
+					try
+					{
+						log.debug("Waiting for INSYNC...");
+						Thread.sleep(Math.min(SYNC_POLL_MILLIS, deadline.remaining(TimeUnit.MILLISECONDS)));
+					}
+					catch (InterruptedException e)
+					{
+					}
+
+					deadline.check();
+				}
+			}
+		}
+		finally
+		{
+			event.end();
+
+			if (event.shouldCommit())
+			{
+				event.zoneId = oldStatus.getZoneId();
+				event.changeId = oldStatus.getChangeId();
+				event.polls = polls;
+				event.outcome = inSync ? "INSYNC" : deadline.isExpired() ? "deadline" : "failed";
+				event.commit();
+			}
+		}
+	}
+
+	/**
+	 * Poll for INSYNC in the background instead of blocking a thread between polls. The future fails with the
+	 * exception of a failed poll; cancelling it stops polling.
+	 */
+	public Future<ZoneChangeStatus> waitForSyncAsync(ZoneChangeStatus oldStatus)
+	{
+		ScheduledExecutorService poller = executor != null ? executor : defaultPoller();
+
+		SyncPoll poll = new SyncPoll(oldStatus, poller);
+
+		if (oldStatus.isInSync())
+		{
+			poll.complete(oldStatus);
+		}
+		else
+		{
+			poller.execute(poll);
+		}
+
+		return poll;
+	}
+
+	private static synchronized ScheduledExecutorService defaultPoller()
+	{
+		if (defaultPoller == null)
 		{
-			ZoneChangeStatus current = queryChangeStatus(oldStatus);
+			ScheduledThreadPoolExecutor poller = new ScheduledThreadPoolExecutor(1, new ThreadFactory()
+			{
+				public Thread newThread(Runnable r)
+				{
+					Thread thread = new Thread(r, "valet-poller");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+			poller.setRemoveOnCancelPolicy(true);
+
+			defaultPoller = poller;
+		}
+
+		return defaultPoller;
+	}
 
-			if (current.isInSync())
+	/**
+	 * A pending change polled on a scheduler. Each run queries once and reschedules itself until the change is INSYNC.
+	 */
+	private class SyncPoll extends FutureTask<ZoneChangeStatus>
+	{
+		private final ZoneChangeStatus status;
+
+		private final ScheduledExecutorService poller;
+
+		SyncPoll(ZoneChangeStatus status, ScheduledExecutorService poller)
+		{
+			// the result is set by run(), never by the wrapped task
+			super(new Runnable()
 			{
-				inSync = true;
+				public void run()
+				{
+				}
+			}, null);
+
+			this.status = status;
+			this.poller = poller;
+		}
 
-				log.debug("Zone ID {} is now INSYNC", current.getZoneId());
+		@Override
+		public void run()
+		{
+			if (isDone())
+			{
+				return;
 			}
-			else
+
+			try
 			{
-				try
+				ZoneChangeStatus current = queryChangeStatus(status);
+
+				if (current.isInSync())
 				{
-					log.debug("Waiting for INSYNC...");
-					Thread.sleep(2000);
+					log.debug("Zone ID {} is now INSYNC", current.getZoneId());
+
+					set(current);
 				}
-				catch (InterruptedException e)
+				else
 				{
+					poller.schedule(this, SYNC_POLL_MILLIS, TimeUnit.MILLISECONDS);
 				}
 			}
+			catch (RuntimeException e)
+			{
+				setException(e);
+			}
+		}
+
+		void complete(ZoneChangeStatus current)
+		{
+			set(current);
 		}
 	}
 
@@ -237,17 +763,160 @@ public class Route53Driver
 	 */
 	public List<ZoneResource> listZoneRecords(final Zone zone)
 	{
-		Set<ZoneResource> zoneResources = new HashSet<ZoneResource>();
+		return listZoneRecords(zone, Deadline.NONE);
+	}
+
+	/**
+	 * Query for all Resources in Zone, giving up when the deadline runs out. All page requests share the deadline.
+	 *
+	 * @throws DeadlineExceededException
+	 * 		if the listing is not complete when the deadline passes or is cancelled
+	 */
+	public List<ZoneResource> listZoneRecords(final Zone zone, final Deadline deadline)
+	{
+		final Set<ZoneResource> zoneResources = new HashSet<ZoneResource>();
+
+		listRecordSets(zone, null, deadline, new RecordSetSink()
+		{
+			public void add(String name, RecordType type, int ttl, List<String> values, String setIdentifier, int weight, String aliasZoneId, String aliasDnsName)
+			{
+				zoneResources.add(ZoneResource.create(name, type, ttl, values, setIdentifier, weight, aliasZoneId, aliasDnsName));
+			}
+		});
+
+		List<ZoneResource> list = new ArrayList<ZoneResource>();
+
+		list.addAll(zoneResources);
+
+		return list;
+	}
+
+	/**
+	 * Query for all Resources in Zone into a column store, for zones too large to hold as {@link ZoneResource}s.
+	 */
+	public ZoneTable loadZoneTable(final Zone zone)
+	{
+		return loadZoneTable(zone, Deadline.NONE);
+	}
+
+	/**
+	 * @throws DeadlineExceededException
+	 * 		if the listing is not complete when the deadline passes or is cancelled
+	 */
+	public ZoneTable loadZoneTable(final Zone zone, final Deadline deadline)
+	{
+		final ZoneTable table = new ZoneTable();
+
+		listRecordSets(zone, null, deadline, new RecordSetSink()
+		{
+			public void add(String name, RecordType type, int ttl, List<String> values, String setIdentifier, int weight, String aliasZoneId, String aliasDnsName)
+			{
+				table.add(name, type, ttl, values, setIdentifier, weight, aliasZoneId, aliasDnsName);
+			}
+		});
+
+		return table;
+	}
+
+	/**
+	 * Stream the Zone's Resources into {@code index}, replacing what it held for the Zone once the listing is complete.
+	 */
+	public void indexZoneValues(final Zone zone, final ReverseValueIndex index)
+	{
+		indexZoneValues(zone, index, Deadline.NONE);
+	}
+
+	/**
+	 * @throws DeadlineExceededException
+	 * 		if the listing is not complete when the deadline passes or is cancelled; the index is unchanged
+	 */
+	public void indexZoneValues(final Zone zone, final ReverseValueIndex index, final Deadline deadline)
+	{
+		final String zoneId = zone.getExistentZoneId();
+
+		final Map<ReverseValueIndex.Reference, String[]> entries = new HashMap<ReverseValueIndex.Reference, String[]>();
+
+		listRecordSets(zone, null, deadline, new RecordSetSink()
+		{
+			public void add(String name, RecordType type, int ttl, List<String> values, String setIdentifier, int weight, String aliasZoneId, String aliasDnsName)
+			{
+				entries.put(new ReverseValueIndex.Reference(zoneId, DnsName.of(name), type, setIdentifier), ReverseValueIndex.indexedValues(type, values, aliasDnsName));
+			}
+		});
+
+		index.replaceZone(zoneId, entries);
+	}
+
+	/**
+	 * Receives each record set of a listing; pages may repeat record sets of the name they start at.
+	 */
+	private interface RecordSetSink
+	{
+		void add(String name, RecordType type, int ttl, List<String> values, String setIdentifier, int weight, String aliasZoneId, String aliasDnsName);
+	}
+
+	/**
+	 * Query for the Resources of one subtree of the Zone: {@code name} and every name below it.
+	 *
+	 * <p>Listing starts at {@code name} and stops at the first record set past the subtree, so only the pages that
+	 * hold the subtree are fetched.
+	 */
+	public List<ZoneResource> listSubtreeRecords(final Zone zone, final String name)
+	{
+		return listSubtreeRecords(zone, name, Deadline.NONE);
+	}
+
+	/**
+	 * @throws DeadlineExceededException
+	 * 		if the listing is not complete when the deadline passes or is cancelled
+	 */
+	public List<ZoneResource> listSubtreeRecords(final Zone zone, final String name, final Deadline deadline)
+	{
+		final Set<ZoneResource> zoneResources = new HashSet<ZoneResource>();
+
+		listRecordSets(zone, DnsName.of(name), deadline, new RecordSetSink()
+		{
+			public void add(String name, RecordType type, int ttl, List<String> values, String setIdentifier, int weight, String aliasZoneId, String aliasDnsName)
+			{
+				zoneResources.add(ZoneResource.create(name, type, ttl, values, setIdentifier, weight, aliasZoneId, aliasDnsName));
+			}
+		});
+
+		return new ArrayList<ZoneResource>(zoneResources);
+	}
+
+	/**
+	 * Route53 lists names by their reversed labels compared as strings, so the names below {@code subtree} are the
+	 * contiguous run starting with its reversed name and a dot; siblings like "staging-old" can sort inside the
+	 * subtree's span and only a name past that run ends it.
+	 */
+	static boolean isPastSubtree(DnsName name, DnsName subtree)
+	{
+		String below = subtree.getReversedName() + ".";
 
+		String reversed = name.getReversedName();
+
+		return reversed.compareTo(below) > 0 && !reversed.startsWith(below);
+	}
+
+	/**
+	 * @param subtree
+	 * 		start the listing at this name and end it after the names below it; null for the whole zone
+	 */
+	private void listRecordSets(Zone zone, DnsName subtree, Deadline deadline, RecordSetSink sink)
+	{
 		boolean readMore = true;
 
 		Map<String, String> query = new HashMap<String, String>();
 
-		while (readMore)
+		if (subtree != null)
 		{
-			String result = pilot.executeResourceRecordSetGet(zone.getExistentZoneId(), query);
+			query.put("name", subtree.toString());
+		}
 
-			XMLTag xml = XMLDoc.from(result, true);
+		while (readMore)
+		{
+			XMLTag xml = call(PilotOperation.RESOURCE_RECORD_SET_GET, zone.getExistentZoneId(), zone.getExistentZoneId(), query, null, deadline);
 
 			log.trace("List Zone Records:\n{}", xml);
 
@@ -260,14 +929,38 @@ public class Route53Driver
 			{
 				readMore = false;
 			}
+			else
+			{
+				// resume where Route53 says the next page starts; record sets skipped below still move the listing on
+				query.put("name", xml.getText("//NextRecordName"));
+				query.put("type", xml.getText("//NextRecordType"));
 
-			String lastName = "";
+				if (xml.hasTag("//NextRecordIdentifier"))
+				{
+					query.put("identifier", xml.getText("//NextRecordIdentifier"));
+				}
+				else
+				{
+					query.remove("identifier");
+				}
+			}
 
 			for (XMLTag record : xml.getChilds("//ResourceRecordSet"))
 			{
 				String name = record.getText("Name");
 				String type = record.getText("Type");
 
+				if (subtree != null && !DnsName.of(name).isSubdomainOf(subtree))
+				{
+					if (isPastSubtree(DnsName.of(name), subtree))
+					{
+						readMore = false;
+						break;
+					}
+
+					continue;
+				}
+
 				String weight = null;
 				String setIdentifier = null;
 				if (record.hasTag("SetIdentifier"))
@@ -298,19 +991,9 @@ public class Route53Driver
 					Collections.sort(values);
 				}
 
-				zoneResources.add((new ZoneResource(name, RecordType.valueOf(type), parseIntWithDefault(ttl, 0), values, setIdentifier, parseIntWithDefault(weight, 0), aliasZoneId, aliasDnsName)));
-
-				lastName = name;
+				sink.add(name, RecordType.valueOf(type), parseIntWithDefault(ttl, 0), values, setIdentifier, parseIntWithDefault(weight, 0), aliasZoneId, aliasDnsName);
 			}
-
-            query.put("name", lastName);
 		}
-
-		List<ZoneResource> list = new ArrayList<ZoneResource>();
-
-		list.addAll(zoneResources);
-
-		return list;
 	}
 
 	private int parseIntWithDefault(String s, int defaultValue)
@@ -333,9 +1016,12 @@ public class Route53Driver
 	 */
 	public List<Zone> listZones()
 	{
-		String result = pilot.executeHostedZoneGet("");
+		return listZones(Deadline.NONE);
+	}
 
-		XMLTag xml = XMLDoc.from(result, true);
+	public List<Zone> listZones(Deadline deadline)
+	{
+		XMLTag xml = call(PilotOperation.HOSTED_ZONE_GET, null, "", null, null, deadline);
 
 		if (xml.hasTag("Error"))
 		{
@@ -393,9 +1079,12 @@ public class Route53Driver
 	 */
 	public Zone zoneDetails(final Zone zone)
 	{
-		String result = pilot.executeHostedZoneGet(zone.getExistentZoneId());
+		return zoneDetails(zone, Deadline.NONE);
+	}
 
-		XMLTag xml = XMLDoc.from(result, true);
+	public Zone zoneDetails(final Zone zone, final Deadline deadline)
+	{
+		XMLTag xml = call(PilotOperation.HOSTED_ZONE_GET, zone.getExistentZoneId(), zone.getExistentZoneId(), null, null, deadline);
 
 		if (xml.hasTag("Error"))
 		{
@@ -442,10 +1131,19 @@ public class Route53Driver
 	 *      if domainName is null, blank, starts/ends with period.
 	 */
 	public ZoneChangeStatus createZone(final String domainName, final String comment)
+	{
+		return createZone(domainName, comment, Deadline.NONE);
+	}
+
+	public ZoneChangeStatus createZone(final String domainName, final String comment, final Deadline deadline)
 	{
 		checkDomainName(domainName);
 
-		ensureDomainNameNotAlreadyCreated(domainName);
+		ensureDomainNameNotAlreadyCreated(domainName, deadline);
+
+		XmlCodecEvent buildEvent = new XmlCodecEvent();
+
+		buildEvent.begin();
 
 		String payload = XMLDoc.newDocument(false)
 				.addDefaultNamespace(ROUTE53_XML_NAMESPACE)
@@ -456,11 +1154,11 @@ public class Route53Driver
 				.addTag("Comment").addText(comment)
 				.toString();
 
-		log.debug("Create Zone Post Payload:\n{}", payload);
+		commitBuildEvent(buildEvent, "HostedZonePost", null, payload);
 
-		String result = pilot.executeHostedZonePost(payload);
+		log.debug("Create Zone Post Payload:\n{}", payload);
 
-		XMLTag xml = XMLDoc.from(result, true);
+		XMLTag xml = call(PilotOperation.HOSTED_ZONE_POST, null, null, null, payload, deadline);
 
 		log.debug("Create Zone Response:\n{}", xml);
 
@@ -483,11 +1181,14 @@ public class Route53Driver
 	 */
 	public ZoneChangeStatus deleteZone(final Zone zone, final String comment)
 	{
-		log.trace("Delete ZoneId {} ({})", zone.getZoneId(), comment);
+		return deleteZone(zone, comment, Deadline.NONE);
+	}
 
-		final String result = pilot.executeHostedZoneDelete(zone.getZoneId());
+	public ZoneChangeStatus deleteZone(final Zone zone, final String comment, final Deadline deadline)
+	{
+		log.trace("Delete ZoneId {} ({})", zone.getZoneId(), comment);
 
-		final XMLTag xml = XMLDoc.from(result, true);
+		final XMLTag xml = call(PilotOperation.HOSTED_ZONE_DELETE, zone.getZoneId(), zone.getZoneId(), null, null, deadline);
 
 		log.debug("Delete Zone Response:\n{}", xml);
 
@@ -499,9 +1200,9 @@ public class Route53Driver
 		return parseChangeResourceRecordSetsResponse(zone.getZoneId(), xml);
 	}
 
-	private void ensureDomainNameNotAlreadyCreated(String domainName)
+	private void ensureDomainNameNotAlreadyCreated(String domainName, Deadline deadline)
 	{
-		List<Zone> zones = listZones();
+		List<Zone> zones = listZones(deadline);
 
 		for (Zone zone : zones)
 		{
@@ -0,0 +1,422 @@
+package com.widen.valet;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.widen.valet.internal.Defense;
+import com.widen.valet.internal.PilotOperation;
+import com.widen.valet.internal.RateLimiter;
+import com.widen.valet.internal.ResponseReader;
+import com.widen.valet.internal.Route53Pilot;
+import com.widen.valet.internal.Route53PilotImpl;
+import com.widen.valet.internal.StreamingRoute53Pilot;
+import org.apache.http.client.HttpClient;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+
+/**
+ * Resources shared by the drivers of many AWS accounts: one HTTP connection pool and one executor for warm-up and
+ * background sync polling. Request rate limits and metrics stay per account.
+ *
+ * <pre>
+ * Route53Runtime runtime = new Route53Runtime.Builder().withMaxConnections(32).build();
+ *
+ * Route53Driver prod = runtime.driverFor("prod", prodKey, prodSecret);
+ * Route53Driver test = runtime.driverFor("test", testKey, testSecret);
+ * </pre>
+ *
+ * Rate limits are applied on the calling thread, so accounts add no threads of their own.
+ */
+public class Route53Runtime
+{
+	private final PoolingHttpClientConnectionManager connectionManager;
+
+	private final CloseableHttpClient httpClient;
+
+	private final ScheduledThreadPoolExecutor executor;
+
+	private final String endpoint;
+
+	private final double requestsPerSecond;
+
+	private final Map<String, AccountPilot> accounts = new HashMap<String, AccountPilot>();
+
+	private Route53Runtime(Builder builder)
+	{
+		connectionManager = new PoolingHttpClientConnectionManager();
+		connectionManager.setMaxTotal(builder.maxConnections);
+		// every account talks to the same Route53 host, so one route may use the whole pool
+		connectionManager.setDefaultMaxPerRoute(builder.maxConnections);
+
+		// requests with a deadline replace these timeouts with their own request config
+		httpClient = HttpClientBuilder.create()
+				.setConnectionManager(connectionManager)
+				.setDefaultRequestConfig(RequestConfig.custom()
+						.setConnectTimeout(Route53PilotImpl.DEFAULT_CONNECT_TIMEOUT_MILLIS)
+						.setSocketTimeout(Route53PilotImpl.DEFAULT_SOCKET_TIMEOUT_MILLIS)
+						.build())
+				// Route53PilotImpl decodes gzip and deflate bodies itself
+				.disableContentCompression()
+				.build();
+
+		final AtomicInteger threads = new AtomicInteger();
+
+		executor = new ScheduledThreadPoolExecutor(builder.threads, new ThreadFactory()
+		{
+			public Thread newThread(Runnable r)
+			{
+				Thread thread = new Thread(r, "valet-runtime-" + threads.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		executor.setRemoveOnCancelPolicy(true);
+
+		endpoint = builder.endpoint;
+		requestsPerSecond = builder.requestsPerSecond;
+	}
+
+	/**
+	 * Driver for an account signing with the given keys. The first call for an account registers it; later calls
+	 * return new drivers sharing the account's rate limit and metrics.
+	 *
+	 * @throws IllegalArgumentException
+	 * 		if the account is already registered with other keys or with a pilot
+	 */
+	public Route53Driver driverFor(String account, String awsAccessKey, String awsSecretKey)
+	{
+		Defense.notBlank(account, "account");
+		Defense.notBlank(awsAccessKey, "awsAccessKey");
+		Defense.notBlank(awsSecretKey, "awsSecretKey");
+
+		synchronized (accounts)
+		{
+			AccountPilot existing = accounts.get(account);
+
+			if (existing == null)
+			{
+				existing = new AccountPilot(new Route53PilotImpl(awsAccessKey, awsSecretKey, httpClient, endpoint), new RateLimiter(requestsPerSecond), new AccountMetrics(account), awsAccessKey, awsSecretKey);
+				accounts.put(account, existing);
+			}
+			else if (!awsAccessKey.equals(existing.awsAccessKey) || !awsSecretKey.equals(existing.awsSecretKey))
+			{
+				throw new IllegalArgumentException(String.format("Account %s is already registered with other credentials", account));
+			}
+
+			return new Route53Driver(existing, executor);
+		}
+	}
+
+	/**
+	 * Driver for an account whose requests go through {@code pilot}, e.g. one with a custom signer built on
+	 * {@link #getHttpClient()}.
+	 */
+	public Route53Driver driverFor(String account, Route53Pilot pilot)
+	{
+		Defense.notBlank(account, "account");
+		Defense.notNull(pilot, "pilot");
+
+		synchronized (accounts)
+		{
+			AccountPilot existing = accounts.get(account);
+
+			if (existing == null)
+			{
+				existing = new AccountPilot(pilot, new RateLimiter(requestsPerSecond), new AccountMetrics(account), null, null);
+				accounts.put(account, existing);
+			}
+			else if (existing.delegate != pilot)
+			{
+				throw new IllegalArgumentException(String.format("Account %s is already registered with another pilot", account));
+			}
+
+			return new Route53Driver(existing, executor);
+		}
+	}
+
+	/**
+	 * @return
+	 * 		counters of {@code account}, or null if it is not registered
+	 */
+	public AccountMetrics getMetrics(String account)
+	{
+		synchronized (accounts)
+		{
+			AccountPilot registered = accounts.get(account);
+
+			return registered == null ? null : registered.metrics;
+		}
+	}
+
+	public List<AccountMetrics> getAllMetrics()
+	{
+		synchronized (accounts)
+		{
+			List<AccountMetrics> metrics = new ArrayList<AccountMetrics>();
+
+			for (AccountPilot account : accounts.values())
+			{
+				metrics.add(account.metrics);
+			}
+
+			return metrics;
+		}
+	}
+
+	/**
+	 * @return
+	 * 		the pooled client shared by all accounts
+	 */
+	public HttpClient getHttpClient()
+	{
+		return httpClient;
+	}
+
+	public ScheduledExecutorService getExecutor()
+	{
+		return executor;
+	}
+
+	/**
+	 * Stop the executor and close all pooled connections. Drivers of this runtime cannot be used afterwards.
+	 */
+	public void shutdown()
+	{
+		executor.shutdownNow();
+
+		connectionManager.shutdown();
+	}
+
+	public static class Builder
+	{
+		private int maxConnections = 20;
+
+		private int threads = 2;
+
+		private double requestsPerSecond = 5;
+
+		private String endpoint = Route53PilotImpl.DEFAULT_ENDPOINT;
+
+		/**
+		 * Connections in the shared pool. Default 20.
+		 */
+		public Builder withMaxConnections(int maxConnections)
+		{
+			if (maxConnections <= 0)
+			{
+				throw new IllegalArgumentException("Max connections must be positive");
+			}
+
+			this.maxConnections = maxConnections;
+			return this;
+		}
+
+		/**
+		 * Threads for warm-up and sync polling. Default 2.
+		 */
+		public Builder withThreads(int threads)
+		{
+			if (threads <= 0)
+			{
+				throw new IllegalArgumentException("Threads must be positive");
+			}
+
+			this.threads = threads;
+			return this;
+		}
+
+		/**
+		 * Request budget of each account. Default 5, Route53's per-account limit.
+		 */
+		public Builder withRequestsPerSecond(double requestsPerSecond)
+		{
+			if (requestsPerSecond <= 0)
+			{
+				throw new IllegalArgumentException("Rate must be positive");
+			}
+
+			this.requestsPerSecond = requestsPerSecond;
+			return this;
+		}
+
+		public Builder withEndpoint(String endpoint)
+		{
+			Defense.notBlank(endpoint, "endpoint");
+
+			this.endpoint = endpoint;
+			return this;
+		}
+
+		public Route53Runtime build()
+		{
+			return new Route53Runtime(this);
+		}
+	}
+
+	/**
+	 * Applies the account's rate limit on the calling thread and counts its requests.
+	 */
+	private static class AccountPilot implements StreamingRoute53Pilot
+	{
+		final Route53Pilot delegate;
+
+		final RateLimiter rateLimiter;
+
+		final AccountMetrics metrics;
+
+		/**
+		 * Keys the account was registered with; null when it was registered with a pilot.
+		 */
+		final String awsAccessKey;
+
+		final String awsSecretKey;
+
+		AccountPilot(Route53Pilot delegate, RateLimiter rateLimiter, AccountMetrics metrics, String awsAccessKey, String awsSecretKey)
+		{
+			this.delegate = delegate;
+			this.rateLimiter = rateLimiter;
+			this.metrics = metrics;
+			this.awsAccessKey = awsAccessKey;
+			this.awsSecretKey = awsSecretKey;
+		}
+
+		public <T> T execute(PilotOperation operation, String target, Map<String, String> query, String payload, ResponseReader<T> reader, Deadline deadline)
+		{
+			throttle(deadline);
+
+			long start = System.nanoTime();
+
+			try
+			{
+				if (delegate instanceof StreamingRoute53Pilot)
+				{
+					return ((StreamingRoute53Pilot) delegate).execute(operation, target, query, payload, reader, deadline);
+				}
+
+				return reader.read(new ByteArrayInputStream(operation.execute(delegate, target, query, payload).getBytes("UTF-8")));
+			}
+			catch (IOException e)
+			{
+				metrics.errors.incrementAndGet();
+
+				throw new RuntimeException(e);
+			}
+			catch (RuntimeException e)
+			{
+				metrics.errors.incrementAndGet();
+
+				throw e;
+			}
+			finally
+			{
+				metrics.callNanos.addAndGet(System.nanoTime() - start);
+			}
+		}
+
+		private String call(PilotOperation operation, String target, Map<String, String> query, String payload)
+		{
+			throttle(Deadline.NONE);
+
+			long start = System.nanoTime();
+
+			try
+			{
+				return operation.execute(delegate, target, query, payload);
+			}
+			catch (RuntimeException e)
+			{
+				metrics.errors.incrementAndGet();
+
+				throw e;
+			}
+			finally
+			{
+				metrics.callNanos.addAndGet(System.nanoTime() - start);
+			}
+		}
+
+		private void throttle(Deadline deadline)
+		{
+			metrics.calls.incrementAndGet();
+
+			if (rateLimiter.tryAcquire())
+			{
+				return;
+			}
+
+			metrics.throttled.incrementAndGet();
+
+			long start = System.nanoTime();
+
+			try
+			{
+				if (!deadline.hasTimeLimit())
+				{
+					rateLimiter.acquire();
+				}
+				else if (!rateLimiter.tryAcquire(deadline.remaining(TimeUnit.NANOSECONDS), TimeUnit.NANOSECONDS))
+				{
+					metrics.errors.incrementAndGet();
+
+					deadline.check();
+				}
+			}
+			catch (InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+
+				throw new RuntimeException(e);
+			}
+			finally
+			{
+				metrics.throttleNanos.addAndGet(System.nanoTime() - start);
+			}
+		}
+
+		public String executeResourceRecordSetGet(String zone, Map<String, String> query)
+		{
+			return call(PilotOperation.RESOURCE_RECORD_SET_GET, zone, query, null);
+		}
+
+		public String executeResourceRecordSetsPost(String zone, String payload)
+		{
+			return call(PilotOperation.RESOURCE_RECORD_SETS_POST, zone, null, payload);
+		}
+
+		public String executeHostedZoneGet()
+		{
+			return executeHostedZoneGet(null);
+		}
+
+		public String executeHostedZoneGet(String zone)
+		{
+			return call(PilotOperation.HOSTED_ZONE_GET, zone, null, null);
+		}
+
+		public String executeHostedZonePost(String payload)
+		{
+			return call(PilotOperation.HOSTED_ZONE_POST, null, null, payload);
+		}
+
+		public String executeHostedZoneDelete(String zone)
+		{
+			return call(PilotOperation.HOSTED_ZONE_DELETE, zone, null, null);
+		}
+
+		public String executeChangeInfoGet(String changeId)
+		{
+			return call(PilotOperation.CHANGE_INFO_GET, changeId, null, null);
+		}
+	}
+}
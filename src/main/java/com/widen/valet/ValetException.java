@@ -8,4 +8,9 @@ public class ValetException extends RuntimeException
 		super(message);
 	}
 
+	public ValetException(String message, Throwable cause)
+	{
+		super(message, cause);
+	}
+
 }
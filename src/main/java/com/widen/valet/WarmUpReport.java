@@ -0,0 +1,75 @@
+package com.widen.valet;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Startup timings collected by {@link Route53Driver#warmUp(int)}.
+ */
+public class WarmUpReport
+{
+	private final int connections;
+
+	private final long xmlNanos;
+
+	private final long signerNanos;
+
+	private final long firstCallNanos;
+
+	private final long totalNanos;
+
+	WarmUpReport(int connections, long xmlNanos, long signerNanos, long firstCallNanos, long totalNanos)
+	{
+		this.connections = connections;
+		this.xmlNanos = xmlNanos;
+		this.signerNanos = signerNanos;
+		this.firstCallNanos = firstCallNanos;
+		this.totalNanos = totalNanos;
+	}
+
+	/**
+	 * @return
+	 * 		first requests sent at once, one per connection warmed
+	 */
+	public int getConnections()
+	{
+		return connections;
+	}
+
+	/**
+	 * @return
+	 * 		time spent loading the XML builder, transformer and parser
+	 */
+	public long getXmlMillis()
+	{
+		return TimeUnit.NANOSECONDS.toMillis(xmlNanos);
+	}
+
+	/**
+	 * @return
+	 * 		time spent initializing the request signer's crypto providers and keys; 0 if the pilot does not sign
+	 */
+	public long getSignerMillis()
+	{
+		return TimeUnit.NANOSECONDS.toMillis(signerNanos);
+	}
+
+	/**
+	 * @return
+	 * 		time of the first round trips, including DNS resolution, connect and TLS handshake
+	 */
+	public long getFirstCallMillis()
+	{
+		return TimeUnit.NANOSECONDS.toMillis(firstCallNanos);
+	}
+
+	public long getTotalMillis()
+	{
+		return TimeUnit.NANOSECONDS.toMillis(totalNanos);
+	}
+
+	@Override
+	public String toString()
+	{
+		return String.format("warm-up %s ms (xml %s ms, signer %s ms, first call %s ms, %s connections)", getTotalMillis(), getXmlMillis(), getSignerMillis(), getFirstCallMillis(), connections);
+	}
+}
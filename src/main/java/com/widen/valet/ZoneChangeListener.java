@@ -0,0 +1,19 @@
+package com.widen.valet;
+
+import java.util.List;
+
+/**
+ * Told about each change batch a {@link Route53Driver} submits, once Route53 has accepted it.
+ *
+ * @see Route53Driver#addZoneChangeListener(ZoneChangeListener)
+ */
+public interface ZoneChangeListener
+{
+	/**
+	 * Called on the thread that submitted the batch. Exceptions are logged and do not fail the update.
+	 *
+	 * @param actions
+	 * 		the batch, in submission order
+	 */
+	void zoneChanged(Zone zone, List<ZoneUpdateAction> actions, ZoneChangeStatus status);
+}
@@ -0,0 +1,102 @@
+package com.widen.valet;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Changes between two versions of a zone's record sets, keyed by name, type and set identifier.
+ */
+public class ZoneDiff
+{
+	final List<ZoneResource> removed = new ArrayList<ZoneResource>();
+
+	final List<ZoneResource> added = new ArrayList<ZoneResource>();
+
+	final List<ZoneResource> changedFrom = new ArrayList<ZoneResource>();
+
+	final List<ZoneResource> changedTo = new ArrayList<ZoneResource>();
+
+	ZoneDiff()
+	{
+	}
+
+	/**
+	 * @return
+	 * 		record sets of the source with no counterpart in the target
+	 */
+	public List<ZoneResource> getRemoved()
+	{
+		return Collections.unmodifiableList(removed);
+	}
+
+	/**
+	 * @return
+	 * 		record sets of the target with no counterpart in the source
+	 */
+	public List<ZoneResource> getAdded()
+	{
+		return Collections.unmodifiableList(added);
+	}
+
+	/**
+	 * @return
+	 * 		record sets of the source whose TTL, weight, values or alias target differ in the target
+	 */
+	public List<ZoneResource> getChangedFrom()
+	{
+		return Collections.unmodifiableList(changedFrom);
+	}
+
+	/**
+	 * @return
+	 * 		record sets of the target matching {@link #getChangedFrom()} position by position
+	 */
+	public List<ZoneResource> getChangedTo()
+	{
+		return Collections.unmodifiableList(changedTo);
+	}
+
+	public boolean isEmpty()
+	{
+		return removed.isEmpty() && added.isEmpty() && changedFrom.isEmpty();
+	}
+
+	/**
+	 * @return
+	 * 		DELETE actions for removed and changed record sets followed by CREATE actions for added and changed ones,
+	 * 		ready for {@link Route53Driver#updateZone}
+	 */
+	public List<ZoneUpdateAction> toUpdateActions()
+	{
+		List<ZoneUpdateAction> actions = new ArrayList<ZoneUpdateAction>();
+
+		for (ZoneResource resource : removed)
+		{
+			actions.add(resource.deleteAction());
+		}
+
+		for (ZoneResource resource : changedFrom)
+		{
+			actions.add(resource.deleteAction());
+		}
+
+		for (ZoneResource resource : changedTo)
+		{
+			actions.add(resource.createAction());
+		}
+
+		for (ZoneResource resource : added)
+		{
+			actions.add(resource.createAction());
+		}
+
+		return actions;
+	}
+
+	@Override
+	public String toString()
+	{
+		return String.format("ZoneDiff{removed=%s, added=%s, changed=%s}", removed.size(), added.size(), changedFrom.size());
+	}
+}
@@ -0,0 +1,255 @@
+package com.widen.valet;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Immutable index of a zone's resource record sets in DNS canonical order (RFC 4034 section 6.1), then by type and
+ * set identifier.
+ *
+ * <p>Canonical order compares labels from the right, so a name and everything below it form one contiguous run.
+ * Subtree and range queries are two binary searches and return views of that run, O(log n + k). Route53 lists record
+ * sets in a close but different order (reversed names compared as strings, so "staging-old" falls between
+ * "staging" and "api.staging"); {@link Route53Driver#listSubtreeRecords} accounts for that, so a subtree can still be
+ * refreshed from a targeted listing rather than the whole zone:
+ *
+ * <pre>
+ * ZoneIndex index = ZoneIndex.of(driver.listZoneRecords(zone));
+ *
+ * List&lt;ZoneResource&gt; staging = index.subtree("staging.example.com.");
+ *
+ * index = index.replaceSubtree("staging.example.com.", driver.listSubtreeRecords(zone, "staging.example.com."));
+ * </pre>
+ */
+public final class ZoneIndex
+{
+	/**
+	 * Canonical name order, then type name and set identifier as Route53 lists them; no set identifier first.
+	 */
+	public static final Comparator<ZoneResource> CANONICAL_ORDER = new Comparator<ZoneResource>()
+	{
+		public int compare(ZoneResource a, ZoneResource b)
+		{
+			int c = a.getDnsName().compareTo(b.getDnsName());
+
+			if (c == 0)
+			{
+				c = a.getRecordType().name().compareTo(b.getRecordType().name());
+			}
+
+			if (c == 0)
+			{
+				String aSet = a.getWrrSetIdentifier();
+				String bSet = b.getWrrSetIdentifier();
+
+				c = aSet == null ? (bSet == null ? 0 : -1) : (bSet == null ? 1 : aSet.compareTo(bSet));
+			}
+
+			return c;
+		}
+	};
+
+	private final ZoneResource[] resources;
+
+	private ZoneIndex(ZoneResource[] resources)
+	{
+		this.resources = resources;
+	}
+
+	public static ZoneIndex of(Collection<ZoneResource> resources)
+	{
+		ZoneResource[] sorted = resources.toArray(new ZoneResource[resources.size()]);
+
+		Arrays.sort(sorted, CANONICAL_ORDER);
+
+		return new ZoneIndex(sorted);
+	}
+
+	public int size()
+	{
+		return resources.length;
+	}
+
+	/**
+	 * @return
+	 * 		the record set at {@code position} in canonical order
+	 */
+	public ZoneResource get(int position)
+	{
+		return resources[position];
+	}
+
+	/**
+	 * @return
+	 * 		all record sets, in canonical order
+	 */
+	public List<ZoneResource> toList()
+	{
+		return Collections.unmodifiableList(Arrays.asList(resources));
+	}
+
+	/**
+	 * @return
+	 * 		the record sets of exactly {@code name}, every type
+	 */
+	public List<ZoneResource> getName(String name)
+	{
+		DnsName dnsName = DnsName.of(name);
+
+		int start = lowerBound(dnsName);
+
+		int end = start;
+
+		while (end < resources.length && resources[end].getDnsName().equals(dnsName))
+		{
+			end++;
+		}
+
+		return view(start, end);
+	}
+
+	/**
+	 * @return
+	 * 		record sets of {@code name} and every name below it ("*.staging.example.com." and "staging.example.com."
+	 * 		for "staging.example.com."), in canonical order
+	 */
+	public List<ZoneResource> subtree(String name)
+	{
+		DnsName root = DnsName.of(name);
+
+		int start = lowerBound(root);
+
+		return view(start, subtreeEnd(root, start));
+	}
+
+	/**
+	 * @return
+	 * 		number of record sets {@link #subtree(String)} would return
+	 */
+	public int countSubtree(String name)
+	{
+		DnsName root = DnsName.of(name);
+
+		int start = lowerBound(root);
+
+		return subtreeEnd(root, start) - start;
+	}
+
+	/**
+	 * @param from
+	 * 		first name of the range, inclusive
+	 * @param to
+	 * 		name ending the range, exclusive
+	 * @return
+	 * 		record sets whose names sort in [from, to), in canonical order
+	 */
+	public List<ZoneResource> range(String from, String to)
+	{
+		int start = lowerBound(DnsName.of(from));
+
+		int end = lowerBound(DnsName.of(to));
+
+		return view(start, Math.max(start, end));
+	}
+
+	/**
+	 * Index with the subtree under {@code name} replaced by {@code fresh}, typically from
+	 * {@link Route53Driver#listSubtreeRecords}.
+	 *
+	 * @throws IllegalArgumentException
+	 * 		if a record set of {@code fresh} is outside the subtree
+	 */
+	public ZoneIndex replaceSubtree(String name, Collection<ZoneResource> fresh)
+	{
+		DnsName root = DnsName.of(name);
+
+		for (ZoneResource resource : fresh)
+		{
+			if (!resource.getDnsName().isSubdomainOf(root))
+			{
+				throw new IllegalArgumentException(String.format("%s is not in the subtree of %s", resource.getName(), root));
+			}
+		}
+
+		ZoneResource[] sorted = fresh.toArray(new ZoneResource[fresh.size()]);
+
+		Arrays.sort(sorted, CANONICAL_ORDER);
+
+		int start = lowerBound(root);
+		int end = subtreeEnd(root, start);
+
+		ZoneResource[] merged = new ZoneResource[resources.length - (end - start) + sorted.length];
+
+		System.arraycopy(resources, 0, merged, 0, start);
+		System.arraycopy(sorted, 0, merged, start, sorted.length);
+		System.arraycopy(resources, end, merged, start + sorted.length, resources.length - end);
+
+		return new ZoneIndex(merged);
+	}
+
+	@Override
+	public String toString()
+	{
+		return String.format("ZoneIndex{size=%s}", resources.length);
+	}
+
+	/**
+	 * @return
+	 * 		first position whose name is not before {@code name}
+	 */
+	private int lowerBound(DnsName name)
+	{
+		int low = 0;
+		int high = resources.length;
+
+		while (low < high)
+		{
+			int mid = (low + high) >>> 1;
+
+			if (resources[mid].getDnsName().compareTo(name) < 0)
+			{
+				low = mid + 1;
+			}
+			else
+			{
+				high = mid;
+			}
+		}
+
+		return low;
+	}
+
+	/**
+	 * @return
+	 * 		first position from {@code start} whose name is outside the subtree; the subtree is one run from its root
+	 */
+	private int subtreeEnd(DnsName root, int start)
+	{
+		int low = start;
+		int high = resources.length;
+
+		while (low < high)
+		{
+			int mid = (low + high) >>> 1;
+
+			if (resources[mid].getDnsName().isSubdomainOf(root))
+			{
+				low = mid + 1;
+			}
+			else
+			{
+				high = mid;
+			}
+		}
+
+		return low;
+	}
+
+	private List<ZoneResource> view(int start, int end)
+	{
+		return Collections.unmodifiableList(Arrays.asList(resources).subList(start, end));
+	}
+}
@@ -0,0 +1,714 @@
+package com.widen.valet;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.commons.lang.ObjectUtils;
+
+/**
+ * Immutable snapshot of a zone's resource record sets, keyed by name, type and set identifier.
+ *
+ * <p>A hash array mapped trie: every change returns a new version that copies only the path to the changed record set
+ * and shares the rest with the version it came from. Taking a snapshot before and after a deploy therefore costs what
+ * the deploy changed, and {@link #diff(ZoneMap)} skips every subtree the two versions share, so comparing related
+ * versions takes time proportional to the difference rather than to the zone.
+ *
+ * <pre>
+ * ZoneMap before = ZoneMap.of(driver.listZoneRecords(zone));
+ * ZoneMap after = before.apply(actions);
+ *
+ * driver.updateZone(zone, "rollback", after.diff(before).toUpdateActions());
+ * </pre>
+ */
+public final class ZoneMap implements Iterable<ZoneResource>
+{
+	private static final ZoneMap EMPTY = new ZoneMap(null, 0);
+
+	private static final int BITS = 5;
+
+	private static final int MASK = (1 << BITS) - 1;
+
+	/**
+	 * Null, a {@link ZoneResource}, a {@link Branch} or a {@link Collision}.
+	 */
+	private final Object root;
+
+	private final int size;
+
+	private ZoneMap(Object root, int size)
+	{
+		this.root = root;
+		this.size = size;
+	}
+
+	public static ZoneMap empty()
+	{
+		return EMPTY;
+	}
+
+	/**
+	 * @return
+	 * 		map of {@code resources}; a later record set replaces an earlier one with the same key
+	 */
+	public static ZoneMap of(Collection<ZoneResource> resources)
+	{
+		return EMPTY.withAll(resources);
+	}
+
+	public int size()
+	{
+		return size;
+	}
+
+	public boolean isEmpty()
+	{
+		return size == 0;
+	}
+
+	/**
+	 * @param setIdentifier
+	 * 		weighted set identifier, or null
+	 * @return
+	 * 		the record set, or null if there is none
+	 */
+	public ZoneResource get(String name, RecordType type, String setIdentifier)
+	{
+		DnsName dnsName = DnsName.of(name);
+
+		return find(root, dnsName, type, setIdentifier, hash(dnsName, type, setIdentifier), 0);
+	}
+
+	/**
+	 * @return
+	 * 		version with {@code resource} added, or replacing the record set with its key; this map if it holds an
+	 * 		identical record set already
+	 */
+	public ZoneMap with(ZoneResource resource)
+	{
+		Change change = new Change();
+
+		Object next = put(root, resource, hash(resource), 0, change);
+
+		return next == root ? this : new ZoneMap(next, size + change.sizeDelta);
+	}
+
+	public ZoneMap withAll(Collection<ZoneResource> resources)
+	{
+		Change change = new Change();
+
+		Object next = root;
+
+		for (ZoneResource resource : resources)
+		{
+			next = put(next, resource, hash(resource), 0, change);
+		}
+
+		return next == root ? this : new ZoneMap(next, size + change.sizeDelta);
+	}
+
+	/**
+	 * @return
+	 * 		version without the record set, or this map if there is none
+	 */
+	public ZoneMap without(String name, RecordType type, String setIdentifier)
+	{
+		DnsName dnsName = DnsName.of(name);
+
+		Change change = new Change();
+
+		Object next = remove(root, dnsName, type, setIdentifier, hash(dnsName, type, setIdentifier), 0, change);
+
+		return next == root ? this : new ZoneMap(next, size + change.sizeDelta);
+	}
+
+	/**
+	 * Version holding exactly {@code resources}, as from a fresh listing, that shares every unchanged record set and
+	 * subtree with this map.
+	 */
+	public ZoneMap reload(Collection<ZoneResource> resources)
+	{
+		ZoneMap next = withAll(resources);
+
+		// paginated listings can repeat a record set, so count distinct keys
+		Set<Key> listed = new HashSet<Key>();
+
+		for (ZoneResource resource : resources)
+		{
+			listed.add(new Key(resource));
+		}
+
+		if (next.size == listed.size())
+		{
+			return next;
+		}
+
+		for (ZoneResource resource : this)
+		{
+			if (!listed.contains(new Key(resource)))
+			{
+				next = next.without(resource.getName(), resource.getRecordType(), resource.getWrrSetIdentifier());
+			}
+		}
+
+		return next;
+	}
+
+	/**
+	 * Apply a change batch the way Route53 does: a CREATE must not find its record set and a DELETE must match it
+	 * exactly, and any failure rejects the whole batch.
+	 *
+	 * @return
+	 * 		the version after the batch
+	 * @throws IllegalArgumentException
+	 * 		if the batch would be rejected; this map is unchanged
+	 */
+	public ZoneMap apply(Collection<ZoneUpdateAction> actions)
+	{
+		ZoneMap next = this;
+
+		for (ZoneUpdateAction action : actions)
+		{
+			ZoneResource resource = toResource(action);
+
+			ZoneResource existing = next.get(resource.getName(), resource.getRecordType(), resource.getWrrSetIdentifier());
+
+			if ("CREATE".equals(action.getAction()))
+			{
+				if (existing != null)
+				{
+					throw new IllegalArgumentException(String.format("Tried to create resource record set %s type %s but it already exists", action.getName(), action.getType()));
+				}
+
+				next = next.with(resource);
+			}
+			else if ("DELETE".equals(action.getAction()))
+			{
+				if (existing == null || !sameContent(existing, resource))
+				{
+					throw new IllegalArgumentException(String.format("Tried to delete resource record set %s type %s but it was not found", action.getName(), action.getType()));
+				}
+
+				next = next.without(resource.getName(), resource.getRecordType(), resource.getWrrSetIdentifier());
+			}
+			else
+			{
+				throw new IllegalArgumentException(String.format("Unsupported change action '%s'", action.getAction()));
+			}
+		}
+
+		return next;
+	}
+
+	/**
+	 * Apply an accepted change batch to a copy that may be stale: a CREATE replaces any record set with its key and a
+	 * DELETE removes the record set with its key, whatever its content.
+	 *
+	 * @return
+	 * 		the version after the batch
+	 */
+	public ZoneMap applyLeniently(Collection<ZoneUpdateAction> actions)
+	{
+		ZoneMap next = this;
+
+		for (ZoneUpdateAction action : actions)
+		{
+			if ("CREATE".equals(action.getAction()))
+			{
+				next = next.with(toResource(action));
+			}
+			else
+			{
+				next = next.without(action.getName(), action.getType(), action.getSetIdentifier());
+			}
+		}
+
+		return next;
+	}
+
+	/**
+	 * Compare with {@code target}, descending only into subtrees the two versions do not share.
+	 *
+	 * @return
+	 * 		the record sets to delete from this map and add from {@code target} to make the two equal
+	 */
+	public ZoneDiff diff(ZoneMap target)
+	{
+		ZoneDiff diff = new ZoneDiff();
+
+		diff(root, target.root, 0, diff);
+
+		return diff;
+	}
+
+	public Iterator<ZoneResource> iterator()
+	{
+		return toList().iterator();
+	}
+
+	public List<ZoneResource> toList()
+	{
+		List<ZoneResource> resources = new ArrayList<ZoneResource>(size);
+
+		collect(root, resources);
+
+		return resources;
+	}
+
+	@Override
+	public String toString()
+	{
+		return String.format("ZoneMap{size=%s}", size);
+	}
+
+	private static ZoneResource toResource(ZoneUpdateAction action)
+	{
+		boolean alias = action.getAliasZoneId() != null;
+
+		// Route53 lists alias record sets without a TTL
+		return ZoneResource.create(action.getName(), action.getType(), alias ? 0 : action.getTtl(), action.getResourceRecords(), action.getSetIdentifier(), action.getWeight(), action.getAliasZoneId(), action.getAliasDnsName());
+	}
+
+	/**
+	 * @return
+	 * 		true if the two hold the same TTL, values, weight and alias target
+	 */
+	static boolean sameContent(ZoneResource a, ZoneResource b)
+	{
+		return a == b || (a.equals(b)
+				&& ObjectUtils.equals(a.getWrrSetIdentifier(), b.getWrrSetIdentifier())
+				&& a.getWrrWeight() == b.getWrrWeight()
+				&& ObjectUtils.equals(a.getAliasZoneId(), b.getAliasZoneId())
+				&& ObjectUtils.equals(a.getAliasDnsName(), b.getAliasDnsName()));
+	}
+
+	private static boolean sameKey(ZoneResource resource, DnsName name, RecordType type, String setIdentifier)
+	{
+		return resource.getDnsName().equals(name) && resource.getRecordType() == type && ObjectUtils.equals(resource.getWrrSetIdentifier(), setIdentifier);
+	}
+
+	private static int hash(ZoneResource resource)
+	{
+		return hash(resource.getDnsName(), resource.getRecordType(), resource.getWrrSetIdentifier());
+	}
+
+	private static int hash(DnsName name, RecordType type, String setIdentifier)
+	{
+		int h = (name.hashCode() * 31 + type.ordinal()) * 31 + (setIdentifier == null ? 0 : setIdentifier.hashCode());
+
+		// spread the high bits into the low fragments that pick the first levels
+		h ^= h >>> 16;
+		h *= 0x85ebca6b;
+		return h ^ (h >>> 13);
+	}
+
+	private static int fragment(int hash, int shift)
+	{
+		return (hash >>> shift) & MASK;
+	}
+
+	private static ZoneResource find(Object node, DnsName name, RecordType type, String setIdentifier, int hash, int shift)
+	{
+		while (node != null)
+		{
+			if (node instanceof ZoneResource)
+			{
+				ZoneResource resource = (ZoneResource) node;
+
+				return sameKey(resource, name, type, setIdentifier) ? resource : null;
+			}
+
+			if (node instanceof Collision)
+			{
+				for (ZoneResource resource : ((Collision) node).resources)
+				{
+					if (sameKey(resource, name, type, setIdentifier))
+					{
+						return resource;
+					}
+				}
+
+				return null;
+			}
+
+			node = ((Branch) node).child(fragment(hash, shift));
+			shift += BITS;
+		}
+
+		return null;
+	}
+
+	private static Object put(Object node, ZoneResource resource, int hash, int shift, Change change)
+	{
+		if (node == null)
+		{
+			change.sizeDelta++;
+			return resource;
+		}
+
+		if (node instanceof ZoneResource)
+		{
+			ZoneResource existing = (ZoneResource) node;
+
+			if (sameKey(existing, resource.getDnsName(), resource.getRecordType(), resource.getWrrSetIdentifier()))
+			{
+				return sameContent(existing, resource) ? existing : resource;
+			}
+
+			change.sizeDelta++;
+
+			return split(existing, hash(existing), resource, hash, shift);
+		}
+
+		if (node instanceof Collision)
+		{
+			Collision collision = (Collision) node;
+
+			if (collision.hash != hash)
+			{
+				change.sizeDelta++;
+
+				return split(collision, collision.hash, resource, hash, shift);
+			}
+
+			ZoneResource[] resources = collision.resources;
+
+			for (int i = 0; i < resources.length; i++)
+			{
+				if (sameKey(resources[i], resource.getDnsName(), resource.getRecordType(), resource.getWrrSetIdentifier()))
+				{
+					if (sameContent(resources[i], resource))
+					{
+						return collision;
+					}
+
+					ZoneResource[] copy = resources.clone();
+					copy[i] = resource;
+					return new Collision(hash, copy);
+				}
+			}
+
+			ZoneResource[] copy = new ZoneResource[resources.length + 1];
+			System.arraycopy(resources, 0, copy, 0, resources.length);
+			copy[resources.length] = resource;
+
+			change.sizeDelta++;
+
+			return new Collision(hash, copy);
+		}
+
+		Branch branch = (Branch) node;
+
+		int fragment = fragment(hash, shift);
+
+		Object child = branch.child(fragment);
+
+		Object replaced = put(child, resource, hash, shift + BITS, change);
+
+		return replaced == child ? branch : branch.with(fragment, replaced);
+	}
+
+	/**
+	 * @return
+	 * 		the smallest subtree holding both nodes, whose hashes differ or which are both at {@code shift}
+	 */
+	private static Object split(Object a, int aHash, Object b, int bHash, int shift)
+	{
+		if (shift >= 32 || aHash == bHash)
+		{
+			// only two leaves can share a full hash; a collision never meets another with its own hash here
+			return new Collision(aHash, new ZoneResource[] { (ZoneResource) a, (ZoneResource) b });
+		}
+
+		int aFragment = fragment(aHash, shift);
+		int bFragment = fragment(bHash, shift);
+
+		if (aFragment == bFragment)
+		{
+			return new Branch(1 << aFragment, new Object[] { split(a, aHash, b, bHash, shift + BITS) });
+		}
+
+		return aFragment < bFragment
+				? new Branch(1 << aFragment | 1 << bFragment, new Object[] { a, b })
+				: new Branch(1 << aFragment | 1 << bFragment, new Object[] { b, a });
+	}
+
+	/**
+	 * @return
+	 * 		the node without the record set; a branch left with one leaf collapses into it
+	 */
+	private static Object remove(Object node, DnsName name, RecordType type, String setIdentifier, int hash, int shift, Change change)
+	{
+		if (node == null)
+		{
+			return null;
+		}
+
+		if (node instanceof ZoneResource)
+		{
+			if (sameKey((ZoneResource) node, name, type, setIdentifier))
+			{
+				change.sizeDelta--;
+				return null;
+			}
+
+			return node;
+		}
+
+		if (node instanceof Collision)
+		{
+			Collision collision = (Collision) node;
+
+			ZoneResource[] resources = collision.resources;
+
+			for (int i = 0; i < resources.length; i++)
+			{
+				if (sameKey(resources[i], name, type, setIdentifier))
+				{
+					change.sizeDelta--;
+
+					if (resources.length == 2)
+					{
+						return resources[1 - i];
+					}
+
+					ZoneResource[] copy = new ZoneResource[resources.length - 1];
+					System.arraycopy(resources, 0, copy, 0, i);
+					System.arraycopy(resources, i + 1, copy, i, copy.length - i);
+					return new Collision(hash, copy);
+				}
+			}
+
+			return collision;
+		}
+
+		Branch branch = (Branch) node;
+
+		int fragment = fragment(hash, shift);
+
+		Object child = branch.child(fragment);
+
+		Object replaced = remove(child, name, type, setIdentifier, hash, shift + BITS, change);
+
+		if (replaced == child)
+		{
+			return branch;
+		}
+
+		if (replaced == null)
+		{
+			return branch.without(fragment);
+		}
+
+		if (branch.children.length == 1 && !(replaced instanceof Branch))
+		{
+			return replaced;
+		}
+
+		return branch.with(fragment, replaced);
+	}
+
+	private static void diff(Object a, Object b, int shift, ZoneDiff diff)
+	{
+		if (a == b)
+		{
+			return;
+		}
+
+		if (a instanceof Branch && b instanceof Branch)
+		{
+			Branch left = (Branch) a;
+			Branch right = (Branch) b;
+
+			int bits = left.bitmap | right.bitmap;
+
+			while (bits != 0)
+			{
+				int fragment = Integer.numberOfTrailingZeros(bits);
+
+				diff(left.child(fragment), right.child(fragment), shift + BITS, diff);
+
+				bits &= bits - 1;
+			}
+
+			return;
+		}
+
+		// shapes differ, so compare leaf by leaf; each lookup only walks the other subtree
+		List<ZoneResource> left = new ArrayList<ZoneResource>();
+		collect(a, left);
+
+		for (ZoneResource resource : left)
+		{
+			ZoneResource counterpart = find(b, resource.getDnsName(), resource.getRecordType(), resource.getWrrSetIdentifier(), hash(resource), shift);
+
+			if (counterpart == null)
+			{
+				diff.removed.add(resource);
+			}
+			else if (!sameContent(resource, counterpart))
+			{
+				diff.changedFrom.add(resource);
+				diff.changedTo.add(counterpart);
+			}
+		}
+
+		List<ZoneResource> right = new ArrayList<ZoneResource>();
+		collect(b, right);
+
+		for (ZoneResource resource : right)
+		{
+			if (find(a, resource.getDnsName(), resource.getRecordType(), resource.getWrrSetIdentifier(), hash(resource), shift) == null)
+			{
+				diff.added.add(resource);
+			}
+		}
+	}
+
+	private static void collect(Object node, List<ZoneResource> out)
+	{
+		if (node == null)
+		{
+			return;
+		}
+
+		if (node instanceof ZoneResource)
+		{
+			out.add((ZoneResource) node);
+		}
+		else if (node instanceof Collision)
+		{
+			Collections.addAll(out, ((Collision) node).resources);
+		}
+		else
+		{
+			for (Object child : ((Branch) node).children)
+			{
+				collect(child, out);
+			}
+		}
+	}
+
+	/**
+	 * Trie node with a child for each set bit of {@code bitmap}, in bit order.
+	 */
+	private static final class Branch
+	{
+		final int bitmap;
+
+		final Object[] children;
+
+		Branch(int bitmap, Object[] children)
+		{
+			this.bitmap = bitmap;
+			this.children = children;
+		}
+
+		Object child(int fragment)
+		{
+			int bit = 1 << fragment;
+
+			return (bitmap & bit) == 0 ? null : children[Integer.bitCount(bitmap & (bit - 1))];
+		}
+
+		Branch with(int fragment, Object child)
+		{
+			int bit = 1 << fragment;
+
+			int position = Integer.bitCount(bitmap & (bit - 1));
+
+			if ((bitmap & bit) != 0)
+			{
+				Object[] copy = children.clone();
+				copy[position] = child;
+				return new Branch(bitmap, copy);
+			}
+
+			Object[] copy = new Object[children.length + 1];
+			System.arraycopy(children, 0, copy, 0, position);
+			copy[position] = child;
+			System.arraycopy(children, position, copy, position + 1, children.length - position);
+			return new Branch(bitmap | bit, copy);
+		}
+
+		/**
+		 * @return
+		 * 		the branch without the child; null if it was the only one, the remaining leaf if one leaf is left
+		 */
+		Object without(int fragment)
+		{
+			int bit = 1 << fragment;
+
+			int position = Integer.bitCount(bitmap & (bit - 1));
+
+			if (children.length == 1)
+			{
+				return null;
+			}
+
+			if (children.length == 2 && !(children[1 - position] instanceof Branch))
+			{
+				return children[1 - position];
+			}
+
+			Object[] copy = new Object[children.length - 1];
+			System.arraycopy(children, 0, copy, 0, position);
+			System.arraycopy(children, position + 1, copy, position, copy.length - position);
+			return new Branch(bitmap & ~bit, copy);
+		}
+	}
+
+	/**
+	 * Record sets whose keys have the same full hash.
+	 */
+	private static final class Collision
+	{
+		final int hash;
+
+		final ZoneResource[] resources;
+
+		Collision(int hash, ZoneResource[] resources)
+		{
+			this.hash = hash;
+			this.resources = resources;
+		}
+	}
+
+	private static final class Change
+	{
+		int sizeDelta;
+	}
+
+	private static final class Key
+	{
+		final DnsName name;
+
+		final RecordType type;
+
+		final String setIdentifier;
+
+		Key(ZoneResource resource)
+		{
+			this.name = resource.getDnsName();
+			this.type = resource.getRecordType();
+			this.setIdentifier = resource.getWrrSetIdentifier();
+		}
+
+		@Override
+		public boolean equals(Object obj)
+		{
+			Key rhs = (Key) obj;
+			return name.equals(rhs.name) && type == rhs.type && ObjectUtils.equals(setIdentifier, rhs.setIdentifier);
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return hash(name, type, setIdentifier);
+		}
+	}
+}
@@ -1,88 +1,131 @@
 package com.widen.valet;
 
+import java.util.AbstractList;
 import java.util.Collections;
 import java.util.List;
 
+import com.widen.valet.internal.AddressCodec;
 import org.apache.commons.lang.builder.EqualsBuilder;
 import org.apache.commons.lang.builder.HashCodeBuilder;
 import org.apache.commons.lang.builder.ToStringBuilder;
 
-public class ZoneResource
+/**
+ * A resource record set as listed by Route53.
+ *
+ * <p>Instances use the smallest of several layouts: plain record sets carry no weighted or alias fields, single values
+ * are not wrapped in a list, and A/AAAA values are kept as primitive addresses. The accessors hide the difference.
+ */
+public abstract class ZoneResource
 {
-	private final String name;
+	private final DnsName name;
 
 	private final RecordType recordType;
 
 	private final int ttl;
 
-	private final String wrrSetIdentifier;
-
-	private final int wrrWeight;
-
-	private final String aliasZoneId;
-
-	private final String aliasDnsName;
-
-	private final List<String> resourceRecords;
+	private ZoneResource(String name, RecordType recordType, int ttl)
+	{
+		this.name = DnsName.of(name);
+		this.recordType = recordType;
+		this.ttl = ttl;
+	}
 
 	/**
 	 * Internal usage for 'normal' resources
 	 */
-	ZoneResource(String name, RecordType recordType, int ttl, List<String> resourceRecords)
+	static ZoneResource create(String name, RecordType recordType, int ttl, List<String> resourceRecords)
 	{
-		this(name, recordType, ttl, resourceRecords, null, 0, null, null);
+		return create(name, recordType, ttl, resourceRecords, null, 0, null, null);
 	}
 
 	/**
 	 * Internal usage for 'weighted round-robin' and 'alias' resources
 	 */
-	ZoneResource(String name, RecordType recordType, int ttl, List<String> resourceRecords, String wrrSetIdentifier, int wrrWeight, String aliasZoneId, String aliasDnsName)
+	static ZoneResource create(String name, RecordType recordType, int ttl, List<String> resourceRecords, String wrrSetIdentifier, int wrrWeight, String aliasZoneId, String aliasDnsName)
 	{
-		this.name = name;
-		this.recordType = recordType;
-		this.ttl = ttl;
-		this.resourceRecords = Collections.unmodifiableList(resourceRecords);
-		this.wrrSetIdentifier = wrrSetIdentifier;
-		this.wrrWeight = wrrWeight;
-		this.aliasZoneId = aliasZoneId;
-		this.aliasDnsName = aliasDnsName;
+		if (aliasZoneId != null)
+		{
+			return new Alias(name, recordType, ttl, wrrSetIdentifier, wrrWeight, aliasZoneId, aliasDnsName);
+		}
+
+		String[] values = resourceRecords.toArray(new String[resourceRecords.size()]);
+
+		if (wrrSetIdentifier != null)
+		{
+			return new Weighted(name, recordType, ttl, values, wrrSetIdentifier, wrrWeight);
+		}
+
+		if (recordType == RecordType.A)
+		{
+			int[] addresses = Ipv4.parse(values);
+
+			if (addresses != null)
+			{
+				return addresses.length == 1 ? new SingleIpv4(name, ttl, addresses[0]) : new Ipv4(name, ttl, addresses);
+			}
+		}
+		else if (recordType == RecordType.AAAA)
+		{
+			long[] addresses = Ipv6.parse(values);
+
+			if (addresses != null)
+			{
+				return new Ipv6(name, ttl, addresses);
+			}
+		}
+
+		return values.length == 1 ? new SingleValue(name, recordType, ttl, values[0]) : new MultiValue(name, recordType, ttl, values);
 	}
 
 	public String getFirstResource()
 	{
-		return resourceRecords.iterator().next();
+		return getResourceRecords().iterator().next();
 	}
 
 	public final ZoneUpdateAction createAction()
 	{
-		return new ZoneUpdateAction.Builder().withData(name, recordType, resourceRecords).withTtl(ttl).addRoundRobinData(wrrSetIdentifier, wrrWeight).addAliasData(aliasZoneId, aliasDnsName).buildCreateAction();
+		return new ZoneUpdateAction.Builder().withData(name, recordType, getResourceRecords()).withTtl(ttl).addRoundRobinData(getWrrSetIdentifier(), getWrrWeight()).addAliasData(getAliasZoneId(), getAliasDnsName()).buildCreateAction();
 	}
 
 	public final ZoneUpdateAction deleteAction()
 	{
-		return new ZoneUpdateAction.Builder().withData(name, recordType, resourceRecords).withTtl(ttl).addRoundRobinData(wrrSetIdentifier, wrrWeight).addAliasData(aliasZoneId, aliasDnsName).buildDeleteAction();
+		return new ZoneUpdateAction.Builder().withData(name, recordType, getResourceRecords()).withTtl(ttl).addRoundRobinData(getWrrSetIdentifier(), getWrrWeight()).addAliasData(getAliasZoneId(), getAliasDnsName()).buildDeleteAction();
 	}
 
 	@Override
 	public String toString()
 	{
-		return ToStringBuilder.reflectionToString(this);
+		return new ToStringBuilder(this)
+				.append("name", name)
+				.append("recordType", recordType)
+				.append("ttl", ttl)
+				.append("wrrSetIdentifier", getWrrSetIdentifier())
+				.append("wrrWeight", getWrrWeight())
+				.append("aliasZoneId", getAliasZoneId())
+				.append("aliasDnsName", getAliasDnsName())
+				.append("resourceRecords", getResourceRecords())
+				.toString();
 	}
 
 	@Override
 	public boolean equals(Object obj)
 	{
 		ZoneResource rhs = (ZoneResource) obj;
-		return new EqualsBuilder().append(name, rhs.name).append(recordType, rhs.recordType).append(ttl, rhs.ttl).append(resourceRecords, rhs.resourceRecords).isEquals();
+		return new EqualsBuilder().append(name, rhs.name).append(recordType, rhs.recordType).append(ttl, rhs.ttl).append(getResourceRecords(), rhs.getResourceRecords()).isEquals();
 	}
 
 	@Override
 	public int hashCode()
 	{
-		return new HashCodeBuilder().append(name).append(recordType).append(ttl).append(resourceRecords).toHashCode();
+		return new HashCodeBuilder().append(name).append(recordType).append(ttl).append(getResourceRecords()).toHashCode();
 	}
 
 	public String getName()
+	{
+		return name.toString();
+	}
+
+	public DnsName getDnsName()
 	{
 		return name;
 	}
@@ -97,28 +140,304 @@ public class ZoneResource
 		return ttl;
 	}
 
-	public List<String> getResourceRecords()
-	{
-		return resourceRecords;
-	}
+	/**
+	 * @return
+	 * 		unmodifiable, sorted values; empty for alias resources
+	 */
+	public abstract List<String> getResourceRecords();
 
 	public String getWrrSetIdentifier()
 	{
-		return wrrSetIdentifier;
+		return null;
 	}
 
 	public int getWrrWeight()
 	{
-		return wrrWeight;
+		return 0;
 	}
 
 	public String getAliasZoneId()
 	{
-		return aliasZoneId;
+		return null;
 	}
 
 	public String getAliasDnsName()
 	{
-		return aliasDnsName;
+		return null;
+	}
+
+	private static final class SingleValue extends ZoneResource
+	{
+		private final String value;
+
+		SingleValue(String name, RecordType recordType, int ttl, String value)
+		{
+			super(name, recordType, ttl);
+			this.value = value;
+		}
+
+		@Override
+		public List<String> getResourceRecords()
+		{
+			return Collections.singletonList(value);
+		}
+
+		@Override
+		public String getFirstResource()
+		{
+			return value;
+		}
+	}
+
+	private static final class MultiValue extends ZoneResource
+	{
+		private final String[] values;
+
+		MultiValue(String name, RecordType recordType, int ttl, String[] values)
+		{
+			super(name, recordType, ttl);
+			this.values = values;
+		}
+
+		@Override
+		public List<String> getResourceRecords()
+		{
+			return new StringArrayList(values);
+		}
+	}
+
+	private static final class SingleIpv4 extends ZoneResource
+	{
+		private final int address;
+
+		SingleIpv4(String name, int ttl, int address)
+		{
+			super(name, RecordType.A, ttl);
+			this.address = address;
+		}
+
+		@Override
+		public List<String> getResourceRecords()
+		{
+			return Collections.singletonList(AddressCodec.formatIpv4(address));
+		}
+	}
+
+	private static final class Ipv4 extends ZoneResource
+	{
+		private final int[] addresses;
+
+		Ipv4(String name, int ttl, int[] addresses)
+		{
+			super(name, RecordType.A, ttl);
+			this.addresses = addresses;
+		}
+
+		/**
+		 * @return
+		 * 		null unless every value is a plain dotted quad
+		 */
+		static int[] parse(String[] values)
+		{
+			int[] addresses = new int[values.length];
+
+			for (int i = 0; i < values.length; i++)
+			{
+				long address = AddressCodec.parseIpv4(values[i]);
+
+				if (address < 0)
+				{
+					return null;
+				}
+
+				addresses[i] = (int) address;
+			}
+
+			return addresses;
+		}
+
+		@Override
+		public List<String> getResourceRecords()
+		{
+			return new AbstractList<String>()
+			{
+				@Override
+				public String get(int index)
+				{
+					return AddressCodec.formatIpv4(addresses[index]);
+				}
+
+				@Override
+				public int size()
+				{
+					return addresses.length;
+				}
+			};
+		}
+	}
+
+	private static final class Ipv6 extends ZoneResource
+	{
+		/**
+		 * High and low 64 bits of each address.
+		 */
+		private final long[] addresses;
+
+		Ipv6(String name, int ttl, long[] addresses)
+		{
+			super(name, RecordType.AAAA, ttl);
+			this.addresses = addresses;
+		}
+
+		/**
+		 * @return
+		 * 		null unless every value is in RFC 5952 form
+		 */
+		static long[] parse(String[] values)
+		{
+			long[] addresses = new long[values.length * 2];
+
+			for (int i = 0; i < values.length; i++)
+			{
+				if (!AddressCodec.parseIpv6(values[i], addresses, i * 2))
+				{
+					return null;
+				}
+			}
+
+			return addresses;
+		}
+
+		@Override
+		public List<String> getResourceRecords()
+		{
+			return new AbstractList<String>()
+			{
+				@Override
+				public String get(int index)
+				{
+					return AddressCodec.formatIpv6(addresses[index * 2], addresses[index * 2 + 1]);
+				}
+
+				@Override
+				public int size()
+				{
+					return addresses.length / 2;
+				}
+			};
+		}
+	}
+
+	private static final class Weighted extends ZoneResource
+	{
+		private final String[] values;
+
+		private final String wrrSetIdentifier;
+
+		private final int wrrWeight;
+
+		Weighted(String name, RecordType recordType, int ttl, String[] values, String wrrSetIdentifier, int wrrWeight)
+		{
+			super(name, recordType, ttl);
+			this.values = values;
+			this.wrrSetIdentifier = wrrSetIdentifier;
+			this.wrrWeight = wrrWeight;
+		}
+
+		@Override
+		public List<String> getResourceRecords()
+		{
+			return new StringArrayList(values);
+		}
+
+		@Override
+		public String getWrrSetIdentifier()
+		{
+			return wrrSetIdentifier;
+		}
+
+		@Override
+		public int getWrrWeight()
+		{
+			return wrrWeight;
+		}
+	}
+
+	/**
+	 * Alias resource, weighted if it has a set identifier.
+	 */
+	private static final class Alias extends ZoneResource
+	{
+		private final String aliasZoneId;
+
+		private final DnsName aliasDnsName;
+
+		private final String wrrSetIdentifier;
+
+		private final int wrrWeight;
+
+		Alias(String name, RecordType recordType, int ttl, String wrrSetIdentifier, int wrrWeight, String aliasZoneId, String aliasDnsName)
+		{
+			super(name, recordType, ttl);
+			this.wrrSetIdentifier = wrrSetIdentifier;
+			this.wrrWeight = wrrWeight;
+			this.aliasZoneId = aliasZoneId;
+			this.aliasDnsName = DnsName.ofNullable(aliasDnsName);
+		}
+
+		@Override
+		public List<String> getResourceRecords()
+		{
+			return Collections.emptyList();
+		}
+
+		@Override
+		public String getWrrSetIdentifier()
+		{
+			return wrrSetIdentifier;
+		}
+
+		@Override
+		public int getWrrWeight()
+		{
+			return wrrWeight;
+		}
+
+		@Override
+		public String getAliasZoneId()
+		{
+			return aliasZoneId;
+		}
+
+		@Override
+		public String getAliasDnsName()
+		{
+			return aliasDnsName == null ? null : aliasDnsName.toString();
+		}
+	}
+
+	/**
+	 * Read-only view of a value array.
+	 */
+	private static final class StringArrayList extends AbstractList<String>
+	{
+		private final String[] values;
+
+		StringArrayList(String[] values)
+		{
+			this.values = values;
+		}
+
+		@Override
+		public String get(int index)
+		{
+			return values[index];
+		}
+
+		@Override
+		public int size()
+		{
+			return values.length;
+		}
 	}
 }
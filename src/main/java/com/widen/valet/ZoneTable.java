@@ -0,0 +1,652 @@
+package com.widen.valet;
+
+import java.nio.charset.Charset;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.widen.valet.internal.StringPool;
+
+/**
+ * Column store of a zone's resource record sets, for zones too large to hold as a list of {@link ZoneResource}.
+ *
+ * <p>Each record set is a row. Names and values are dictionary encoded in {@link StringPool}s and every column is a
+ * primitive array, so a million record sets cost a few dozen arrays rather than millions of objects. Scans run over
+ * the columns and return row numbers; {@link #getResource(int)} materializes a row when an object is needed.
+ *
+ * <pre>
+ * ZoneTable table = driver.loadZoneTable(zone);
+ *
+ * int[] rows = table.selectSubdomainsOf("cdn.example.com.");
+ * </pre>
+ */
+public class ZoneTable
+{
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	private static final RecordType[] TYPES = RecordType.values();
+
+	private final StringPool names = new StringPool();
+
+	/**
+	 * Values, set identifiers and alias zone ids.
+	 */
+	private final StringPool values = new StringPool();
+
+	private int size;
+
+	private int[] nameIds = new int[256];
+
+	private byte[] types = new byte[256];
+
+	private int[] ttls = new int[256];
+
+	/**
+	 * Row {@code r}'s values are {@code valueIds[valueStarts[r]]} up to {@code valueStarts[r + 1]}.
+	 */
+	private int[] valueStarts = new int[257];
+
+	private int[] valueIds = new int[256];
+
+	private int valueCount;
+
+	/**
+	 * Weighted and alias columns; null until the first such row.
+	 */
+	private int[] setIds;
+
+	private int[] weights;
+
+	private int[] aliasZoneIds;
+
+	private int[] aliasNameIds;
+
+	/**
+	 * Rows of each name as a linked list: first row by name id, then next row by row.
+	 */
+	private int[] firstRowOfName = new int[256];
+
+	private int[] nextRowOfName = new int[256];
+
+	public ZoneTable()
+	{
+		Arrays.fill(firstRowOfName, -1);
+	}
+
+	public int size()
+	{
+		return size;
+	}
+
+	/**
+	 * Append a row. Record sets are keyed by name, type and set identifier; a row whose key is already present is
+	 * ignored, as happens when listing pages overlap.
+	 *
+	 * @return
+	 * 		false if the row was ignored
+	 */
+	public boolean add(String name, RecordType type, int ttl, List<String> resourceRecords, String wrrSetIdentifier, int wrrWeight, String aliasZoneId, String aliasDnsName)
+	{
+		int nameId = names.add(DnsName.canonicalize(name));
+
+		int setId = wrrSetIdentifier == null ? -1 : values.add(wrrSetIdentifier);
+
+		if (findRow(nameId, type, setId) >= 0)
+		{
+			return false;
+		}
+
+		ensureCapacity(size + 1, valueCount + resourceRecords.size());
+
+		int row = size++;
+
+		nameIds[row] = nameId;
+		types[row] = (byte) type.ordinal();
+		ttls[row] = ttl;
+
+		for (String value : resourceRecords)
+		{
+			valueIds[valueCount++] = values.add(value);
+		}
+
+		valueStarts[row + 1] = valueCount;
+
+		if (setId >= 0 || aliasZoneId != null || setIds != null)
+		{
+			ensureExtraColumns();
+
+			setIds[row] = setId;
+			weights[row] = wrrWeight;
+			aliasZoneIds[row] = aliasZoneId == null ? -1 : values.add(aliasZoneId);
+			aliasNameIds[row] = aliasDnsName == null ? -1 : names.add(DnsName.canonicalize(aliasDnsName));
+		}
+
+		if (nameId >= firstRowOfName.length)
+		{
+			int length = firstRowOfName.length;
+
+			firstRowOfName = Arrays.copyOf(firstRowOfName, Math.max(length * 2, nameId + 1));
+			Arrays.fill(firstRowOfName, length, firstRowOfName.length, -1);
+		}
+
+		nextRowOfName[row] = firstRowOfName[nameId];
+		firstRowOfName[nameId] = row;
+
+		return true;
+	}
+
+	public boolean add(ZoneResource resource)
+	{
+		return add(resource.getName(), resource.getRecordType(), resource.getTtl(), resource.getResourceRecords(), resource.getWrrSetIdentifier(), resource.getWrrWeight(), resource.getAliasZoneId(), resource.getAliasDnsName());
+	}
+
+	public String getName(int row)
+	{
+		return names.get(nameIds[row]);
+	}
+
+	public RecordType getRecordType(int row)
+	{
+		return TYPES[types[row]];
+	}
+
+	public int getTtl(int row)
+	{
+		return ttls[row];
+	}
+
+	public List<String> getResourceRecords(final int row)
+	{
+		return new AbstractList<String>()
+		{
+			@Override
+			public String get(int index)
+			{
+				return values.get(valueIds[valueStarts[row] + index]);
+			}
+
+			@Override
+			public int size()
+			{
+				return valueStarts[row + 1] - valueStarts[row];
+			}
+		};
+	}
+
+	public String getWrrSetIdentifier(int row)
+	{
+		return setIds == null || setIds[row] < 0 ? null : values.get(setIds[row]);
+	}
+
+	public int getWrrWeight(int row)
+	{
+		return weights == null ? 0 : weights[row];
+	}
+
+	public String getAliasZoneId(int row)
+	{
+		return aliasZoneIds == null || aliasZoneIds[row] < 0 ? null : values.get(aliasZoneIds[row]);
+	}
+
+	public String getAliasDnsName(int row)
+	{
+		return aliasNameIds == null || aliasNameIds[row] < 0 ? null : names.get(aliasNameIds[row]);
+	}
+
+	public ZoneResource getResource(int row)
+	{
+		return ZoneResource.create(getName(row), getRecordType(row), getTtl(row), getResourceRecords(row), getWrrSetIdentifier(row), getWrrWeight(row), getAliasZoneId(row), getAliasDnsName(row));
+	}
+
+	public List<ZoneResource> getResources(int[] rows)
+	{
+		List<ZoneResource> resources = new ArrayList<ZoneResource>(rows.length);
+
+		for (int row : rows)
+		{
+			resources.add(getResource(row));
+		}
+
+		return resources;
+	}
+
+	/**
+	 * @return
+	 * 		row of the record set with this key, or -1
+	 */
+	public int findRow(String name, RecordType type, String wrrSetIdentifier)
+	{
+		int nameId = names.idOf(DnsName.canonicalize(name));
+
+		int setId = wrrSetIdentifier == null ? -1 : values.idOf(wrrSetIdentifier);
+
+		if (nameId < 0 || (wrrSetIdentifier != null && setId < 0))
+		{
+			return -1;
+		}
+
+		return findRow(nameId, type, setId);
+	}
+
+	private int findRow(int nameId, RecordType type, int setId)
+	{
+		if (nameId >= firstRowOfName.length)
+		{
+			return -1;
+		}
+
+		for (int row = firstRowOfName[nameId]; row >= 0; row = nextRowOfName[row])
+		{
+			if (types[row] == type.ordinal() && setId(row) == setId)
+			{
+				return row;
+			}
+		}
+
+		return -1;
+	}
+
+	/**
+	 * Row test for {@link #select(RowFilter)}.
+	 */
+	public interface RowFilter
+	{
+		boolean accept(ZoneTable table, int row);
+	}
+
+	public int[] select(RowFilter filter)
+	{
+		Rows rows = new Rows();
+
+		for (int row = 0; row < size; row++)
+		{
+			if (filter.accept(this, row))
+			{
+				rows.add(row);
+			}
+		}
+
+		return rows.toArray();
+	}
+
+	public int[] selectType(RecordType type)
+	{
+		Rows rows = new Rows();
+
+		byte code = (byte) type.ordinal();
+
+		for (int row = 0; row < size; row++)
+		{
+			if (types[row] == code)
+			{
+				rows.add(row);
+			}
+		}
+
+		return rows.toArray();
+	}
+
+	/**
+	 * @return
+	 * 		rows named {@code domain} or below it. Each distinct name is tested once.
+	 */
+	public int[] selectSubdomainsOf(String domain)
+	{
+		String canonical = DnsName.canonicalize(domain);
+
+		byte[] suffix = ("." + canonical).getBytes(UTF_8);
+
+		int apex = names.idOf(canonical);
+
+		boolean[] matches = new boolean[names.size()];
+
+		for (int id = 0; id < matches.length; id++)
+		{
+			matches[id] = id == apex || canonical.equals(".") || names.endsWith(id, suffix);
+		}
+
+		Rows rows = new Rows();
+
+		for (int row = 0; row < size; row++)
+		{
+			if (matches[nameIds[row]])
+			{
+				rows.add(row);
+			}
+		}
+
+		return rows.toArray();
+	}
+
+	/**
+	 * @return
+	 * 		rows with {@code value} among their resource records
+	 */
+	public int[] selectValue(String value)
+	{
+		Rows rows = new Rows();
+
+		int valueId = values.idOf(value);
+
+		if (valueId < 0)
+		{
+			return rows.toArray();
+		}
+
+		for (int row = 0; row < size; row++)
+		{
+			for (int i = valueStarts[row]; i < valueStarts[row + 1]; i++)
+			{
+				if (valueIds[i] == valueId)
+				{
+					rows.add(row);
+					break;
+				}
+			}
+		}
+
+		return rows.toArray();
+	}
+
+	/**
+	 * Compare with {@code target}, keyed by name, type and set identifier.
+	 *
+	 * @return
+	 * 		the rows to delete from this table and add from {@code target} to make the two equal
+	 */
+	public Diff diff(ZoneTable target)
+	{
+		// translate the target's dictionary ids into this table's once per distinct string
+		int[] nameMap = translate(target.names, names);
+		int[] valueMap = translate(target.values, values);
+
+		boolean[] matched = new boolean[size];
+
+		Rows added = new Rows();
+		Rows changedFrom = new Rows();
+		Rows changedTo = new Rows();
+
+		for (int row = 0; row < target.size; row++)
+		{
+			int nameId = nameMap[target.nameIds[row]];
+
+			int targetSetId = target.setId(row);
+			int setId = targetSetId < 0 ? -1 : valueMap[targetSetId];
+
+			int own = nameId < 0 || (targetSetId >= 0 && setId < 0) ? -1 : findRow(nameId, target.getRecordType(row), setId);
+
+			if (own < 0)
+			{
+				added.add(row);
+				continue;
+			}
+
+			matched[own] = true;
+
+			if (!sameContent(own, target, row, nameMap, valueMap))
+			{
+				changedFrom.add(own);
+				changedTo.add(row);
+			}
+		}
+
+		Rows removed = new Rows();
+
+		for (int row = 0; row < size; row++)
+		{
+			if (!matched[row])
+			{
+				removed.add(row);
+			}
+		}
+
+		return new Diff(this, target, removed.toArray(), added.toArray(), changedFrom.toArray(), changedTo.toArray());
+	}
+
+	private boolean sameContent(int own, ZoneTable target, int row, int[] nameMap, int[] valueMap)
+	{
+		if (ttls[own] != target.ttls[row] || getWrrWeight(own) != target.getWrrWeight(row))
+		{
+			return false;
+		}
+
+		int count = valueStarts[own + 1] - valueStarts[own];
+
+		if (count != target.valueStarts[row + 1] - target.valueStarts[row])
+		{
+			return false;
+		}
+
+		for (int i = 0; i < count; i++)
+		{
+			if (valueIds[valueStarts[own] + i] != valueMap[target.valueIds[target.valueStarts[row] + i]])
+			{
+				return false;
+			}
+		}
+
+		int aliasZone = target.aliasZoneIds == null || target.aliasZoneIds[row] < 0 ? -1 : valueMap[target.aliasZoneIds[row]];
+		int aliasName = target.aliasNameIds == null || target.aliasNameIds[row] < 0 ? -1 : nameMap[target.aliasNameIds[row]];
+
+		boolean targetHasAlias = target.aliasZoneIds != null && target.aliasZoneIds[row] >= 0;
+		boolean ownHasAlias = aliasZoneIds != null && aliasZoneIds[own] >= 0;
+
+		if (targetHasAlias != ownHasAlias)
+		{
+			return false;
+		}
+
+		return !ownHasAlias || (aliasZoneIds[own] == aliasZone && aliasNameIds[own] == aliasName && aliasName >= 0);
+	}
+
+	/**
+	 * @return
+	 * 		approximate bytes held by the columns and dictionaries
+	 */
+	public long getMemoryUsage()
+	{
+		long columns = 4L * (nameIds.length + ttls.length + valueStarts.length + valueIds.length + firstRowOfName.length + nextRowOfName.length) + types.length;
+
+		if (setIds != null)
+		{
+			columns += 16L * setIds.length;
+		}
+
+		return columns + names.getMemoryUsage() + values.getMemoryUsage();
+	}
+
+	private int setId(int row)
+	{
+		return setIds == null ? -1 : setIds[row];
+	}
+
+	private static int[] translate(StringPool from, StringPool to)
+	{
+		int[] map = new int[from.size()];
+
+		for (int id = 0; id < map.length; id++)
+		{
+			map[id] = to.idOf(from, id);
+		}
+
+		return map;
+	}
+
+	private void ensureCapacity(int rows, int valueTotal)
+	{
+		if (rows > nameIds.length)
+		{
+			int capacity = nameIds.length * 2;
+
+			nameIds = Arrays.copyOf(nameIds, capacity);
+			types = Arrays.copyOf(types, capacity);
+			ttls = Arrays.copyOf(ttls, capacity);
+			valueStarts = Arrays.copyOf(valueStarts, capacity + 1);
+			nextRowOfName = Arrays.copyOf(nextRowOfName, capacity);
+
+			if (setIds != null)
+			{
+				setIds = Arrays.copyOf(setIds, capacity);
+				weights = Arrays.copyOf(weights, capacity);
+				aliasZoneIds = Arrays.copyOf(aliasZoneIds, capacity);
+				aliasNameIds = Arrays.copyOf(aliasNameIds, capacity);
+			}
+		}
+
+		if (valueTotal > valueIds.length)
+		{
+			valueIds = Arrays.copyOf(valueIds, Math.max(valueIds.length * 2, valueTotal));
+		}
+	}
+
+	private void ensureExtraColumns()
+	{
+		if (setIds == null)
+		{
+			setIds = new int[nameIds.length];
+			weights = new int[nameIds.length];
+			aliasZoneIds = new int[nameIds.length];
+			aliasNameIds = new int[nameIds.length];
+
+			Arrays.fill(setIds, -1);
+			Arrays.fill(aliasZoneIds, -1);
+			Arrays.fill(aliasNameIds, -1);
+		}
+	}
+
+	/**
+	 * Changes between two tables, as row numbers of each.
+	 */
+	public static class Diff
+	{
+		private final ZoneTable source;
+
+		private final ZoneTable target;
+
+		private final int[] removed;
+
+		private final int[] added;
+
+		private final int[] changedFrom;
+
+		private final int[] changedTo;
+
+		Diff(ZoneTable source, ZoneTable target, int[] removed, int[] added, int[] changedFrom, int[] changedTo)
+		{
+			this.source = source;
+			this.target = target;
+			this.removed = removed;
+			this.added = added;
+			this.changedFrom = changedFrom;
+			this.changedTo = changedTo;
+		}
+
+		/**
+		 * @return
+		 * 		rows of the source table with no counterpart in the target
+		 */
+		public int[] getRemoved()
+		{
+			return removed;
+		}
+
+		/**
+		 * @return
+		 * 		rows of the target table with no counterpart in the source
+		 */
+		public int[] getAdded()
+		{
+			return added;
+		}
+
+		/**
+		 * @return
+		 * 		rows of the source table whose TTL, weight, values or alias target differ in the target
+		 */
+		public int[] getChangedFrom()
+		{
+			return changedFrom;
+		}
+
+		/**
+		 * @return
+		 * 		rows of the target table matching {@link #getChangedFrom()} position by position
+		 */
+		public int[] getChangedTo()
+		{
+			return changedTo;
+		}
+
+		public boolean isEmpty()
+		{
+			return removed.length == 0 && added.length == 0 && changedFrom.length == 0;
+		}
+
+		/**
+		 * @return
+		 * 		the same changes as record sets
+		 */
+		public ZoneDiff toZoneDiff()
+		{
+			ZoneDiff diff = new ZoneDiff();
+
+			for (int row : removed)
+			{
+				diff.removed.add(source.getResource(row));
+			}
+
+			for (int row : added)
+			{
+				diff.added.add(target.getResource(row));
+			}
+
+			for (int i = 0; i < changedFrom.length; i++)
+			{
+				diff.changedFrom.add(source.getResource(changedFrom[i]));
+				diff.changedTo.add(target.getResource(changedTo[i]));
+			}
+
+			return diff;
+		}
+
+		/**
+		 * @see ZoneDiff#toUpdateActions()
+		 */
+		public List<ZoneUpdateAction> toUpdateActions()
+		{
+			return toZoneDiff().toUpdateActions();
+		}
+
+		@Override
+		public String toString()
+		{
+			return String.format("ZoneTable.Diff{removed=%s, added=%s, changed=%s}", removed.length, added.length, changedFrom.length);
+		}
+	}
+
+	/**
+	 * Growable list of row numbers.
+	 */
+	private static class Rows
+	{
+		private int[] rows = new int[16];
+
+		private int count;
+
+		void add(int row)
+		{
+			if (count == rows.length)
+			{
+				rows = Arrays.copyOf(rows, count * 2);
+			}
+
+			rows[count++] = row;
+		}
+
+		int[] toArray()
+		{
+			return Arrays.copyOf(rows, count);
+		}
+	}
+}
@@ -20,7 +20,7 @@ public class ZoneUpdateAction implements Comparable<ZoneUpdateAction>
 {
 	private final String action;
 
-	private final String name;
+	private final DnsName name;
 
 	private final RecordType type;
 
@@ -34,9 +34,9 @@ public class ZoneUpdateAction implements Comparable<ZoneUpdateAction>
 
 	private final String aliasZoneId;
 
-	private final String aliasDnsName;
+	private final DnsName aliasDnsName;
 
-	private ZoneUpdateAction(String action, String name, RecordType type, int ttl, String setIdentifier, int weight, List<String> resourceRecords, String aliasZoneId, String aliasDnsName)
+	private ZoneUpdateAction(String action, DnsName name, RecordType type, int ttl, String setIdentifier, int weight, List<String> resourceRecords, String aliasZoneId, DnsName aliasDnsName)
 	{
 		this.action = action;
 		this.name = name;
@@ -53,14 +53,14 @@ public class ZoneUpdateAction implements Comparable<ZoneUpdateAction>
 
 	public static class Builder
 	{
-		private String name;
+		private DnsName name;
 		private RecordType type;
 		private int ttl = 600;
 		private List<String> resourceRecords = new ArrayList<String>();
 		private String setIdentifier = null;
 		private int weight = 0;
 		private String aliasZoneId;
-		private String aliasDnsName;
+		private DnsName aliasDnsName;
 
 		public ZoneUpdateAction buildCreateAction()
 		{
@@ -99,6 +99,11 @@ public class ZoneUpdateAction implements Comparable<ZoneUpdateAction>
         }
 
 		public Builder withData(String name, RecordType type, Collection<String> resourceValues)
+		{
+			return withData(DnsName.of(name), type, resourceValues);
+		}
+
+		public Builder withData(DnsName name, RecordType type, Collection<String> resourceValues)
 		{
 			this.type = type;
 			this.name = name;
@@ -108,7 +113,7 @@ public class ZoneUpdateAction implements Comparable<ZoneUpdateAction>
 
 		public Builder withData(String name, RecordType type)
 		{
-			this.name = name;
+			this.name = DnsName.of(name);
 			this.type = type;
 			return this;
 		}
@@ -149,20 +154,20 @@ public class ZoneUpdateAction implements Comparable<ZoneUpdateAction>
 		public Builder addAliasData(String zoneId, String dnsName)
 		{
 			this.aliasZoneId = zoneId;
-			this.aliasDnsName = dnsName;
+			this.aliasDnsName = DnsName.ofNullable(dnsName);
 			return this;
 		}
 
 		public Builder fromZoneResource(ZoneResource resource)
 		{
-			name = resource.getName();
+			name = resource.getDnsName();
 			type = resource.getRecordType();
 			ttl = resource.getTtl();
 			resourceRecords.addAll(resource.getResourceRecords());
 			setIdentifier = resource.getWrrSetIdentifier();
 			weight = resource.getWrrWeight();
 			aliasZoneId = resource.getAliasZoneId();
-			aliasDnsName = resource.getAliasDnsName();
+			aliasDnsName = DnsName.ofNullable(resource.getAliasDnsName());
 			return this;
 		}
 	}
@@ -187,7 +192,7 @@ public class ZoneUpdateAction implements Comparable<ZoneUpdateAction>
 		xml.addTag("Change")
 				.addTag("Action").addText(action)
 				.addTag("ResourceRecordSet")
-				.addTag("Name").addText(name)
+				.addTag("Name").addText(name.toString())
 				.addTag("Type").addText(type.name());
 
 		if (StringUtils.isNotBlank(setIdentifier))
@@ -200,7 +205,7 @@ public class ZoneUpdateAction implements Comparable<ZoneUpdateAction>
 		{
 			xml.addTag("AliasTarget");
 			xml.addTag("HostedZoneId").addText(aliasZoneId);
-			xml.addTag("DNSName").addText(aliasDnsName);
+			xml.addTag("DNSName").addText(aliasDnsName.toString());
 		}
 		else
 		{
@@ -256,6 +261,11 @@ public class ZoneUpdateAction implements Comparable<ZoneUpdateAction>
 	}
 
 	public String getName()
+	{
+		return name == null ? null : name.toString();
+	}
+
+	public DnsName getDnsName()
 	{
 		return name;
 	}
@@ -284,4 +294,14 @@ public class ZoneUpdateAction implements Comparable<ZoneUpdateAction>
 	{
 		return resourceRecords;
 	}
+
+	public String getAliasZoneId()
+	{
+		return aliasZoneId;
+	}
+
+	public String getAliasDnsName()
+	{
+		return aliasDnsName == null ? null : aliasDnsName.toString();
+	}
 }
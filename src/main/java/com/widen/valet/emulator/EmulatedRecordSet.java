@@ -0,0 +1,66 @@
+package com.widen.valet.emulator;
+
+import java.util.List;
+
+import org.apache.commons.lang.ObjectUtils;
+
+/**
+ * Resource record set held by {@link Route53Emulator}.
+ *
+ * <p>Type and alias zone strings repeat across millions of sets in a large zone and are interned.
+ */
+class EmulatedRecordSet
+{
+	final String name;
+
+	final String type;
+
+	final String setIdentifier;
+
+	final int weight;
+
+	final int ttl;
+
+	final List<String> values;
+
+	final String aliasZoneId;
+
+	final String aliasDnsName;
+
+	EmulatedRecordSet(String name, String type, String setIdentifier, int weight, int ttl, List<String> values, String aliasZoneId, String aliasDnsName)
+	{
+		this.name = name;
+		this.type = type.intern();
+		this.setIdentifier = setIdentifier;
+		this.weight = weight;
+		this.ttl = ttl;
+		this.values = values;
+		this.aliasZoneId = aliasZoneId == null ? null : aliasZoneId.intern();
+		this.aliasDnsName = aliasDnsName;
+	}
+
+	boolean isAlias()
+	{
+		return aliasZoneId != null;
+	}
+
+	/**
+	 * Route53 only deletes a record set when every attribute matches the stored set.
+	 */
+	boolean sameAs(EmulatedRecordSet rhs)
+	{
+		return name.equals(rhs.name)
+				&& type.equals(rhs.type)
+				&& ObjectUtils.equals(setIdentifier, rhs.setIdentifier)
+				&& weight == rhs.weight
+				&& ttl == rhs.ttl
+				&& values.equals(rhs.values)
+				&& ObjectUtils.equals(aliasZoneId, rhs.aliasZoneId)
+				&& ObjectUtils.equals(aliasDnsName, rhs.aliasDnsName);
+	}
+
+	RecordSetKey key()
+	{
+		return new RecordSetKey(name, type, setIdentifier);
+	}
+}
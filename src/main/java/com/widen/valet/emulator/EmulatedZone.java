@@ -0,0 +1,27 @@
+package com.widen.valet.emulator;
+
+import java.util.TreeMap;
+
+/**
+ * Hosted zone held by {@link Route53Emulator}; record sets are kept in ListResourceRecordSets order.
+ */
+class EmulatedZone
+{
+	final String id;
+
+	final String name;
+
+	final String callerReference;
+
+	final String comment;
+
+	final TreeMap<RecordSetKey, EmulatedRecordSet> records = new TreeMap<RecordSetKey, EmulatedRecordSet>();
+
+	EmulatedZone(String id, String name, String callerReference, String comment)
+	{
+		this.id = id;
+		this.name = name;
+		this.callerReference = callerReference;
+		this.comment = comment;
+	}
+}
@@ -0,0 +1,84 @@
+package com.widen.valet.emulator;
+
+import java.util.Collections;
+import java.util.Map;
+
+import com.widen.valet.internal.Route53Pilot;
+import org.apache.commons.lang.StringUtils;
+
+/**
+ * Stateful pilot that executes requests against an in-process {@link Route53Emulator} instead of the network.
+ *
+ * <p>Unlike the canned-response mock, changes submitted through updateZone are visible to later listings,
+ * listings are paged like the real API and changes turn INSYNC after the emulator's configured delay.
+ * Use {@link Route53Emulator#loadRecordSets} to seed very large zones quickly.
+ */
+public class InMemoryRoute53Pilot implements Route53Pilot
+{
+	private final Route53Emulator emulator;
+
+	public InMemoryRoute53Pilot()
+	{
+		this(new Route53Emulator.Builder().build());
+	}
+
+	public InMemoryRoute53Pilot(Route53Emulator emulator)
+	{
+		this.emulator = emulator;
+	}
+
+	public Route53Emulator getEmulator()
+	{
+		return emulator;
+	}
+
+	public String executeResourceRecordSetGet(String zone, Map<String, String> query)
+	{
+		return execute("GET", "hostedzone/" + zone + "/rrset", query, null);
+	}
+
+	public String executeResourceRecordSetsPost(String zone, String payload)
+	{
+		return execute("POST", "hostedzone/" + zone + "/rrset", null, payload);
+	}
+
+	public String executeHostedZoneGet()
+	{
+		return executeHostedZoneGet(null);
+	}
+
+	public String executeHostedZoneGet(String zone)
+	{
+		if (StringUtils.isBlank(zone))
+		{
+			return execute("GET", "hostedzone", null, null);
+		}
+
+		return execute("GET", "hostedzone/" + zone, null, null);
+	}
+
+	public String executeHostedZonePost(String payload)
+	{
+		return execute("POST", "hostedzone", null, payload);
+	}
+
+	public String executeHostedZoneDelete(String zone)
+	{
+		return execute("DELETE", "hostedzone/" + zone, null, null);
+	}
+
+	public String executeChangeInfoGet(String changeId)
+	{
+		return execute("GET", "change/" + changeId, null, null);
+	}
+
+	private String execute(String method, String path, Map<String, String> query, String body)
+	{
+		if (query == null)
+		{
+			query = Collections.emptyMap();
+		}
+
+		return emulator.handle(method, path, query, body).body;
+	}
+}
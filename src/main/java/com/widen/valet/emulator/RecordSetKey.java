@@ -0,0 +1,84 @@
+package com.widen.valet.emulator;
+
+import org.apache.commons.lang.StringUtils;
+
+/**
+ * Orders record sets the way ListResourceRecordSets does: by name with labels reversed, then type, then set identifier.
+ */
+final class RecordSetKey implements Comparable<RecordSetKey>
+{
+	private static final char LABEL_SEPARATOR = '.';
+
+	final String sortName;
+
+	final String type;
+
+	final String setIdentifier;
+
+	RecordSetKey(String name, String type, String setIdentifier)
+	{
+		this.sortName = sortName(name);
+		this.type = type.intern();
+		this.setIdentifier = StringUtils.defaultString(setIdentifier);
+	}
+
+	/**
+	 * Reverses the labels of an absolute name ("www.example.com." to "com.example.www").
+	 *
+	 * <p>Route53 compares these as plain strings, so characters below '.' ("-", "*") sort a sibling such as
+	 * "staging-old" between "staging" and the names below it; that is not DNS canonical order.
+	 */
+	static String sortName(String name)
+	{
+		String[] labels = StringUtils.split(name, '.');
+
+		StringBuilder sb = new StringBuilder(name.length());
+
+		for (int i = labels.length - 1; i >= 0; i--)
+		{
+			sb.append(labels[i]);
+
+			if (i > 0)
+			{
+				sb.append(LABEL_SEPARATOR);
+			}
+		}
+
+		return sb.toString();
+	}
+
+	@Override
+	public int compareTo(RecordSetKey rhs)
+	{
+		int c = sortName.compareTo(rhs.sortName);
+
+		if (c == 0)
+		{
+			c = type.compareTo(rhs.type);
+		}
+
+		if (c == 0)
+		{
+			c = setIdentifier.compareTo(rhs.setIdentifier);
+		}
+
+		return c;
+	}
+
+	@Override
+	public boolean equals(Object obj)
+	{
+		if (!(obj instanceof RecordSetKey))
+		{
+			return false;
+		}
+
+		return compareTo((RecordSetKey) obj) == 0;
+	}
+
+	@Override
+	public int hashCode()
+	{
+		return (sortName.hashCode() * 31 + type.hashCode()) * 31 + setIdentifier.hashCode();
+	}
+}
@@ -0,0 +1,626 @@
+package com.widen.valet.emulator;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.widen.valet.Route53Driver;
+import com.widen.valet.Zone;
+import com.widen.valet.ZoneChangeListener;
+import com.widen.valet.ZoneChangeStatus;
+import com.widen.valet.ZoneMap;
+import com.widen.valet.ZoneResource;
+import com.widen.valet.ZoneUpdateAction;
+import com.widen.valet.util.OfflineResolver;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xbill.DNS.CNAMERecord;
+import org.xbill.DNS.DClass;
+import org.xbill.DNS.Flags;
+import org.xbill.DNS.Header;
+import org.xbill.DNS.Message;
+import org.xbill.DNS.Name;
+import org.xbill.DNS.OPTRecord;
+import org.xbill.DNS.Opcode;
+import org.xbill.DNS.RRset;
+import org.xbill.DNS.Rcode;
+import org.xbill.DNS.Record;
+import org.xbill.DNS.Section;
+import org.xbill.DNS.SetResponse;
+import org.xbill.DNS.Type;
+
+/**
+ * Authoritative DNS server on the loopback interface, answering UDP and TCP queries from mirrored zones the way
+ * Route53's name servers answer them.
+ *
+ * <p>Point a {@link com.widen.valet.util.NameQueryServiceImpl} at it to check record sets without waiting on
+ * propagation or public resolvers:
+ *
+ * <pre>
+ * Route53DnsServer server = new Route53DnsServer(0);
+ * server.mirror(driver, zone);
+ * server.start();
+ * NameQueryService dns = new NameQueryServiceImpl("127.0.0.1", server.getPort());
+ * </pre>
+ *
+ * <p>Every change rebuilds the served zones and swaps them in at once, so a query sees either the old or the new
+ * state of all zones, never a mix. Alias record sets answer with the records of their target when the target zone is
+ * mirrored, and are left out otherwise. Registered with {@link Route53Driver#addZoneChangeListener}, the server also
+ * serves the driver's own changes as soon as Route53 accepts them.
+ */
+public class Route53DnsServer implements ZoneChangeListener
+{
+	/**
+	 * CNAME steps followed within the mirrored zones before answering with the chain so far.
+	 */
+	private static final int MAX_CNAME_CHAIN = 8;
+
+	private static final int UDP_PAYLOAD = 512;
+
+	private static final int EDNS_PAYLOAD = 4096;
+
+	private final Logger log = LoggerFactory.getLogger(Route53DnsServer.class);
+
+	private final DatagramSocket udp;
+
+	private final ServerSocket tcp;
+
+	private final ExecutorService executor;
+
+	private final int udpWorkers;
+
+	/**
+	 * Record sets of each mirrored zone by id, and their apex; guarded by {@code this}.
+	 */
+	private final Map<String, List<ZoneResource>> sources = new HashMap<String, List<ZoneResource>>();
+
+	private final Map<String, String> apexes = new HashMap<String, String>();
+
+	/**
+	 * Zones being served, by origin; replaced whole on every change.
+	 */
+	private volatile Map<Name, org.xbill.DNS.Zone> zones = Collections.emptyMap();
+
+	private final AtomicLong queries = new AtomicLong();
+
+	/**
+	 * @param port
+	 * 		UDP and TCP port to listen on; 0 picks a port free for both
+	 */
+	public Route53DnsServer(int port)
+	{
+		InetAddress loopback;
+
+		try
+		{
+			loopback = InetAddress.getByName("127.0.0.1");
+		}
+		catch (IOException e)
+		{
+			throw new RuntimeException(e);
+		}
+
+		ServerSocket tcpSocket = null;
+		DatagramSocket udpSocket = null;
+
+		for (int attempt = 0; udpSocket == null; attempt++)
+		{
+			try
+			{
+				tcpSocket = new ServerSocket();
+				tcpSocket.setReuseAddress(true);
+				tcpSocket.bind(new InetSocketAddress(loopback, port));
+
+				udpSocket = new DatagramSocket(new InetSocketAddress(loopback, tcpSocket.getLocalPort()));
+			}
+			catch (IOException e)
+			{
+				closeQuietly(tcpSocket);
+
+				// a free TCP port may be taken for UDP; try another one unless the port was asked for
+				if (port != 0 || attempt >= 10)
+				{
+					throw new RuntimeException(e);
+				}
+			}
+		}
+
+		tcp = tcpSocket;
+		udp = udpSocket;
+
+		udpWorkers = Math.max(2, Runtime.getRuntime().availableProcessors());
+
+		executor = Executors.newCachedThreadPool();
+	}
+
+	public void start()
+	{
+		for (int i = 0; i < udpWorkers; i++)
+		{
+			executor.execute(new UdpWorker());
+		}
+
+		executor.execute(new TcpAcceptor());
+
+		log.debug("Route53 DNS server started on port {}", getPort());
+	}
+
+	public void stop()
+	{
+		udp.close();
+
+		closeQuietly(tcp);
+
+		executor.shutdownNow();
+	}
+
+	public int getPort()
+	{
+		return tcp.getLocalPort();
+	}
+
+	/**
+	 * @return
+	 * 		queries answered since start, over UDP and TCP
+	 */
+	public long getQueryCount()
+	{
+		return queries.get();
+	}
+
+	/**
+	 * Mirror, or refresh the mirror of, a zone from a full listing.
+	 */
+	public void mirror(Route53Driver driver, Zone zone)
+	{
+		addZone(zone.getExistentZoneId(), zone.getName(), driver.listZoneRecords(zone));
+	}
+
+	/**
+	 * Serve a zone's record sets, replacing an earlier mirror with the same id.
+	 *
+	 * @param resources
+	 * 		record sets of the zone, including the SOA and NS record sets at the apex
+	 */
+	public synchronized void addZone(String zoneId, String apex, Collection<ZoneResource> resources)
+	{
+		sources.put(zoneId, new ArrayList<ZoneResource>(resources));
+		apexes.put(zoneId, apex);
+
+		rebuild();
+	}
+
+	public synchronized void removeZone(String zoneId)
+	{
+		if (sources.remove(zoneId) != null)
+		{
+			apexes.remove(zoneId);
+
+			rebuild();
+		}
+	}
+
+	/**
+	 * Applies the accepted batch to a mirrored zone; batches for other zones are ignored. A stale mirror takes the batch
+	 * leniently, as Route53 already accepted it.
+	 */
+	public synchronized void zoneChanged(Zone zone, List<ZoneUpdateAction> actions, ZoneChangeStatus status)
+	{
+		List<ZoneResource> resources = sources.get(zone.getExistentZoneId());
+
+		if (resources == null)
+		{
+			return;
+		}
+
+		sources.put(zone.getExistentZoneId(), ZoneMap.of(resources).applyLeniently(actions).toList());
+
+		rebuild();
+	}
+
+	/**
+	 * Converts every mirrored zone to dnsjava records, expanding aliases, and swaps the result in.
+	 */
+	private void rebuild()
+	{
+		OfflineResolver aliases = new OfflineResolver();
+
+		for (Map.Entry<String, List<ZoneResource>> entry : sources.entrySet())
+		{
+			aliases.addZone(entry.getKey(), apexes.get(entry.getKey()), entry.getValue());
+		}
+
+		Map<Name, org.xbill.DNS.Zone> built = new HashMap<Name, org.xbill.DNS.Zone>();
+
+		for (Map.Entry<String, List<ZoneResource>> entry : sources.entrySet())
+		{
+			String zoneId = entry.getKey();
+
+			try
+			{
+				Name origin = Name.fromString(apexes.get(zoneId), Name.root);
+
+				List<Record> records = new ArrayList<Record>();
+
+				for (ZoneResource resource : entry.getValue())
+				{
+					toRecords(resource, aliases, records);
+				}
+
+				built.put(origin, new org.xbill.DNS.Zone(origin, records.toArray(new Record[records.size()])));
+			}
+			catch (IOException e)
+			{
+				log.warn("Not serving zone {}: {}", zoneId, e.getMessage());
+			}
+		}
+
+		zones = Collections.unmodifiableMap(built);
+	}
+
+	private void toRecords(ZoneResource resource, OfflineResolver aliases, List<Record> records)
+	{
+		List<String> values = resource.getResourceRecords();
+
+		long ttl = resource.getTtl();
+
+		if (resource.getAliasDnsName() != null)
+		{
+			OfflineResolver.Resolution target = aliases.resolve(resource.getAliasDnsName(), resource.getRecordType());
+
+			if (target.getStatus() != OfflineResolver.Status.ANSWER)
+			{
+				log.debug("Alias {} {} not served: target {}", new Object[] { resource.getName(), resource.getRecordType(), target.getStatus() });
+				return;
+			}
+
+			values = target.getValues();
+			ttl = target.getTtl();
+		}
+
+		try
+		{
+			Name owner = Name.fromString(resource.getDnsName().toString(), Name.root);
+
+			int type = Type.value(resource.getRecordType().name());
+
+			for (String value : values)
+			{
+				records.add(Record.fromString(owner, type, DClass.IN, ttl, value, Name.root));
+			}
+		}
+		catch (IOException e)
+		{
+			log.warn("Not serving {} {}: {}", new Object[] { resource.getName(), resource.getRecordType(), e.getMessage() });
+		}
+	}
+
+	/**
+	 * @param maxLength
+	 * 		largest response the transport takes; longer answers are truncated with TC set
+	 * @return
+	 * 		wire format response, or null if the message should be dropped
+	 */
+	byte[] respond(byte[] request, int maxLength)
+	{
+		Message query;
+
+		try
+		{
+			query = new Message(request);
+		}
+		catch (IOException e)
+		{
+			return null;
+		}
+
+		Header header = query.getHeader();
+
+		if (header.getFlag(Flags.QR))
+		{
+			return null;
+		}
+
+		queries.incrementAndGet();
+
+		Message response = new Message(header.getID());
+
+		response.getHeader().setFlag(Flags.QR);
+
+		if (header.getFlag(Flags.RD))
+		{
+			response.getHeader().setFlag(Flags.RD);
+		}
+
+		Record question = query.getQuestion();
+
+		if (header.getOpcode() != Opcode.QUERY || question == null)
+		{
+			response.getHeader().setRcode(question == null ? Rcode.FORMERR : Rcode.NOTIMP);
+
+			return response.toWire(maxLength);
+		}
+
+		response.getHeader().setOpcode(Opcode.QUERY);
+		response.addRecord(question, Section.QUESTION);
+
+		OPTRecord opt = query.getOPT();
+
+		if (opt != null)
+		{
+			response.addRecord(new OPTRecord(EDNS_PAYLOAD, 0, 0), Section.ADDITIONAL);
+
+			maxLength = Math.min(maxLength, Math.max(UDP_PAYLOAD, opt.getPayloadSize()));
+		}
+
+		response.getHeader().setRcode(answer(zones, response, question.getName(), question.getType(), 0));
+
+		return response.toWire(maxLength);
+	}
+
+	/**
+	 * Adds the answer for {@code name} to the response, following CNAMEs that stay within the served zones.
+	 *
+	 * @return
+	 * 		response code
+	 */
+	private int answer(Map<Name, org.xbill.DNS.Zone> zones, Message response, Name name, int type, int chain)
+	{
+		org.xbill.DNS.Zone zone = zoneOf(zones, name);
+
+		if (zone == null)
+		{
+			// not ours: refuse outright, or end a CNAME chain that leaves the served zones
+			return chain == 0 ? Rcode.REFUSED : Rcode.NOERROR;
+		}
+
+		if (chain == 0)
+		{
+			response.getHeader().setFlag(Flags.AA);
+		}
+
+		SetResponse found = zone.findRecords(name, type);
+
+		if (found.isDelegation())
+		{
+			addRRset(response, name, found.getNS(), Section.AUTHORITY);
+
+			if (chain == 0)
+			{
+				response.getHeader().unsetFlag(Flags.AA);
+			}
+
+			return Rcode.NOERROR;
+		}
+
+		if (found.isNXDOMAIN() || found.isNXRRSET())
+		{
+			response.addRecord(zone.getSOA(), Section.AUTHORITY);
+
+			return found.isNXDOMAIN() ? Rcode.NXDOMAIN : Rcode.NOERROR;
+		}
+
+		if (found.isCNAME())
+		{
+			CNAMERecord cname = found.getCNAME();
+
+			addRRset(response, name, new RRset(cname), Section.ANSWER);
+
+			return chain < MAX_CNAME_CHAIN ? answer(zones, response, cname.getTarget(), type, chain + 1) : Rcode.NOERROR;
+		}
+
+		if (found.isSuccessful())
+		{
+			for (RRset rrset : found.answers())
+			{
+				addRRset(response, name, rrset, Section.ANSWER);
+			}
+
+			return Rcode.NOERROR;
+		}
+
+		return Rcode.SERVFAIL;
+	}
+
+	/**
+	 * Adds an RRset, giving records of a wildcard owner the query name (RFC 4592 section 4.1).
+	 */
+	private static void addRRset(Message response, Name name, RRset rrset, int section)
+	{
+		Iterator<?> records = rrset.rrs();
+
+		while (records.hasNext())
+		{
+			Record record = (Record) records.next();
+
+			if (record.getName().isWild() && !name.isWild())
+			{
+				record = record.withName(name);
+			}
+
+			if (!response.findRecord(record))
+			{
+				response.addRecord(record, section);
+			}
+		}
+	}
+
+	/**
+	 * @return
+	 * 		the served zone with the longest origin containing {@code name}, or null
+	 */
+	private static org.xbill.DNS.Zone zoneOf(Map<Name, org.xbill.DNS.Zone> zones, Name name)
+	{
+		for (int strip = 0; strip < name.labels(); strip++)
+		{
+			org.xbill.DNS.Zone zone = zones.get(new Name(name, strip));
+
+			if (zone != null)
+			{
+				return zone;
+			}
+		}
+
+		return null;
+	}
+
+	private static void closeQuietly(ServerSocket socket)
+	{
+		try
+		{
+			if (socket != null)
+			{
+				socket.close();
+			}
+		}
+		catch (IOException e)
+		{
+			// closing anyway
+		}
+	}
+
+	private class UdpWorker implements Runnable
+	{
+		@Override
+		public void run()
+		{
+			byte[] buffer = new byte[EDNS_PAYLOAD];
+
+			while (!udp.isClosed())
+			{
+				try
+				{
+					DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
+
+					udp.receive(packet);
+
+					byte[] request = new byte[packet.getLength()];
+
+					System.arraycopy(buffer, 0, request, 0, request.length);
+
+					byte[] response = respond(request, UDP_PAYLOAD);
+
+					if (response != null)
+					{
+						udp.send(new DatagramPacket(response, response.length, packet.getSocketAddress()));
+					}
+				}
+				catch (SocketException e)
+				{
+					// socket closed by stop()
+				}
+				catch (IOException e)
+				{
+					log.debug("UDP query failed", e);
+				}
+				catch (RuntimeException e)
+				{
+					log.error("Failed answering UDP query", e);
+				}
+			}
+		}
+	}
+
+	private class TcpAcceptor implements Runnable
+	{
+		@Override
+		public void run()
+		{
+			while (!tcp.isClosed())
+			{
+				try
+				{
+					executor.execute(new TcpConnection(tcp.accept()));
+				}
+				catch (IOException e)
+				{
+					// socket closed by stop()
+				}
+			}
+		}
+	}
+
+	/**
+	 * Answers length-prefixed queries (RFC 1035 section 4.2.2) until the client closes the connection.
+	 */
+	private class TcpConnection implements Runnable
+	{
+		private final Socket socket;
+
+		TcpConnection(Socket socket)
+		{
+			this.socket = socket;
+		}
+
+		@Override
+		public void run()
+		{
+			try
+			{
+				socket.setSoTimeout(10000);
+
+				DataInputStream in = new DataInputStream(socket.getInputStream());
+				DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+
+				while (true)
+				{
+					byte[] request = new byte[in.readUnsignedShort()];
+
+					in.readFully(request);
+
+					byte[] response = respond(request, 65535);
+
+					if (response == null)
+					{
+						break;
+					}
+
+					out.writeShort(response.length);
+					out.write(response);
+					out.flush();
+				}
+			}
+			catch (EOFException e)
+			{
+				// client done
+			}
+			catch (IOException e)
+			{
+				log.debug("TCP connection failed", e);
+			}
+			catch (RuntimeException e)
+			{
+				log.error("Failed answering TCP query", e);
+			}
+			finally
+			{
+				try
+				{
+					socket.close();
+				}
+				catch (IOException e)
+				{
+					// closing anyway
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,780 @@
+package com.widen.valet.emulator;
+
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TimeZone;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import com.mycila.xmltool.XMLDoc;
+import com.mycila.xmltool.XMLDocumentException;
+import com.mycila.xmltool.XMLTag;
+import com.widen.valet.ZoneUpdateAction;
+import com.widen.valet.internal.Defense;
+import com.widen.valet.internal.RateLimiter;
+import org.apache.commons.lang.StringEscapeUtils;
+import org.apache.commons.lang.StringUtils;
+
+/**
+ * Stateful stand-in for the Route53 REST API (version 2011-05-05).
+ *
+ * <p>Implements the hostedzone, rrset and change resources with real state: zones are created with NS and SOA records,
+ * change batches are validated and applied atomically, record sets are listed in Route53 order with pagination,
+ * and changes report PENDING until the configured INSYNC delay has passed.
+ *
+ * <p>Requests are dispatched through {@link #handle}, which takes the path relative to the API version
+ * (e.g. "hostedzone/Z123/rrset"). {@link Route53EmulatorServer} exposes the emulator over HTTP.
+ *
+ * <p>Request signatures are not checked.
+ */
+public class Route53Emulator
+{
+	public static final String XML_NAMESPACE = "https://route53.amazonaws.com/doc/2011-05-05/";
+
+	public static final int MAX_CHANGES_PER_BATCH = 100;
+
+	public static final int MAX_ITEMS = 100;
+
+	private final long insyncDelayMillis;
+
+	private final RateLimiter throttle;
+
+	private final Map<String, EmulatedZone> zones = new TreeMap<String, EmulatedZone>();
+
+	private final Map<String, Long> changes = new HashMap<String, Long>();
+
+	private long zoneSequence = 0;
+
+	private long changeSequence = 0;
+
+	private Route53Emulator(long insyncDelayMillis, double requestsPerSecond)
+	{
+		this.insyncDelayMillis = insyncDelayMillis;
+		this.throttle = requestsPerSecond > 0 ? new RateLimiter(requestsPerSecond) : null;
+	}
+
+	public static class Builder
+	{
+		private long insyncDelayMillis = 0;
+
+		private double requestsPerSecond = 0;
+
+		/**
+		 * Time between a change being submitted and Route53 reporting it INSYNC. Defaults to zero.
+		 */
+		public Builder withInsyncDelay(long delay, TimeUnit unit)
+		{
+			this.insyncDelayMillis = unit.toMillis(delay);
+			return this;
+		}
+
+		/**
+		 * Requests above this rate receive a Throttling error. Defaults to zero, meaning unlimited.
+		 * The real Route53 limit is 5 requests per second per account.
+		 */
+		public Builder withRequestsPerSecond(double requestsPerSecond)
+		{
+			this.requestsPerSecond = requestsPerSecond;
+			return this;
+		}
+
+		public Route53Emulator build()
+		{
+			return new Route53Emulator(insyncDelayMillis, requestsPerSecond);
+		}
+	}
+
+	/**
+	 * HTTP status and XML body returned by the emulator.
+	 */
+	public static class Response
+	{
+		public final int status;
+
+		public final String body;
+
+		Response(int status, String body)
+		{
+			this.status = status;
+			this.body = body;
+		}
+	}
+
+	/**
+	 * Execute a Route53 API request.
+	 *
+	 * @param method
+	 * 		HTTP method
+	 * @param path
+	 * 		path relative to the API version, e.g. "hostedzone/Z123/rrset"
+	 * @param query
+	 * 		decoded query parameters; may be empty
+	 * @param body
+	 * 		request body; null for GET and DELETE
+	 */
+	public synchronized Response handle(String method, String path, Map<String, String> query, String body)
+	{
+		if (throttle != null && !throttle.tryAcquire())
+		{
+			return error(400, "Throttling", "Rate exceeded");
+		}
+
+		String[] segments = StringUtils.split(path, '/');
+
+		try
+		{
+			if (segments.length == 1 && "hostedzone".equals(segments[0]))
+			{
+				if ("GET".equals(method))
+				{
+					return listHostedZones(query);
+				}
+				if ("POST".equals(method))
+				{
+					return createHostedZone(body);
+				}
+			}
+			else if (segments.length == 2 && "hostedzone".equals(segments[0]))
+			{
+				if ("GET".equals(method))
+				{
+					return getHostedZone(segments[1]);
+				}
+				if ("DELETE".equals(method))
+				{
+					return deleteHostedZone(segments[1]);
+				}
+			}
+			else if (segments.length == 3 && "hostedzone".equals(segments[0]) && "rrset".equals(segments[2]))
+			{
+				if ("GET".equals(method))
+				{
+					return listResourceRecordSets(segments[1], query);
+				}
+				if ("POST".equals(method))
+				{
+					return changeResourceRecordSets(segments[1], body);
+				}
+			}
+			else if (segments.length == 2 && "change".equals(segments[0]) && "GET".equals(method))
+			{
+				return getChange(segments[1]);
+			}
+		}
+		catch (XMLDocumentException e)
+		{
+			return error(400, "InvalidInput", "Malformed request body: " + e.getMessage());
+		}
+		catch (NumberFormatException e)
+		{
+			return error(400, "InvalidInput", "Invalid number: " + e.getMessage());
+		}
+
+		return error(404, "UnknownOperation", String.format("No operation for %s %s", method, path));
+	}
+
+	private Response listHostedZones(Map<String, String> query)
+	{
+		int maxItems = maxItems(query);
+
+		String marker = query.get("marker");
+
+		List<EmulatedZone> page = new ArrayList<EmulatedZone>();
+
+		EmulatedZone next = null;
+
+		for (EmulatedZone zone : zones.values())
+		{
+			if (marker != null && zone.id.compareTo(marker) < 0)
+			{
+				continue;
+			}
+
+			if (page.size() == maxItems)
+			{
+				next = zone;
+				break;
+			}
+
+			page.add(zone);
+		}
+
+		StringBuilder sb = document("ListHostedZonesResponse");
+
+		sb.append("<HostedZones>");
+
+		for (EmulatedZone zone : page)
+		{
+			appendHostedZone(sb, zone);
+		}
+
+		sb.append("</HostedZones>");
+
+		if (marker != null)
+		{
+			element(sb, "Marker", marker);
+		}
+
+		element(sb, "IsTruncated", String.valueOf(next != null));
+
+		if (next != null)
+		{
+			element(sb, "NextMarker", next.id);
+		}
+
+		element(sb, "MaxItems", String.valueOf(maxItems));
+
+		return ok(200, sb, "ListHostedZonesResponse");
+	}
+
+	private Response createHostedZone(String body)
+	{
+		XMLTag request = XMLDoc.from(body, true);
+
+		String name = absolute(request.getText("Name"));
+		String callerReference = request.getText("CallerReference");
+		String comment = request.hasTag("HostedZoneConfig/Comment") ? request.getText("HostedZoneConfig/Comment") : "";
+
+		for (EmulatedZone zone : zones.values())
+		{
+			if (zone.callerReference.equals(callerReference))
+			{
+				return error(409, "HostedZoneAlreadyExists", "A hosted zone has already been created with the specified caller reference.");
+			}
+		}
+
+		EmulatedZone zone = addZone(name, callerReference, comment);
+
+		StringBuilder sb = document("CreateHostedZoneResponse");
+
+		appendHostedZone(sb, zone);
+		appendChangeInfo(sb, submitChange());
+		appendDelegationSet(sb, zone);
+
+		return ok(201, sb, "CreateHostedZoneResponse");
+	}
+
+	private EmulatedZone addZone(String name, String callerReference, String comment)
+	{
+		EmulatedZone zone = new EmulatedZone(nextId("Z", ++zoneSequence), name, callerReference, comment);
+
+		List<String> nameServers = nameServers(zone);
+
+		List<String> nsValues = new ArrayList<String>();
+
+		for (String ns : nameServers)
+		{
+			nsValues.add(ns + ".");
+		}
+
+		String soa = String.format("%s. hostmaster.emulator.invalid. 1 7200 900 1209600 86400", nameServers.get(0));
+
+		putRecordSet(zone, new EmulatedRecordSet(name, "NS", null, 0, 172800, nsValues, null, null));
+		putRecordSet(zone, new EmulatedRecordSet(name, "SOA", null, 0, 900, Collections.singletonList(soa), null, null));
+
+		zones.put(zone.id, zone);
+
+		return zone;
+	}
+
+	/**
+	 * Create a hosted zone directly, without a change request.
+	 *
+	 * @return
+	 * 		new zone ID
+	 */
+	public synchronized String createHostedZone(String name, String comment)
+	{
+		return addZone(absolute(name), UUID.randomUUID().toString(), comment).id;
+	}
+
+	/**
+	 * Bulk load record sets into a zone without going through change batches, e.g. to seed a zone with millions of
+	 * records for a test or benchmark. The action type is ignored; every action is stored as a record set.
+	 * Existing record sets with the same name, type and set identifier are replaced.
+	 */
+	public synchronized void loadRecordSets(String zoneId, Collection<ZoneUpdateAction> actions)
+	{
+		EmulatedZone zone = zones.get(zoneId);
+
+		Defense.notNull(zone, "zone " + zoneId);
+
+		for (ZoneUpdateAction action : actions)
+		{
+			String name = absolute(action.getName());
+
+			String type = action.getType().name();
+
+			if (StringUtils.isNotBlank(action.getAliasZoneId()))
+			{
+				putRecordSet(zone, new EmulatedRecordSet(name, type, action.getSetIdentifier(), action.getWeight(), 0, Collections.<String>emptyList(), action.getAliasZoneId(), action.getAliasDnsName()));
+			}
+			else
+			{
+				putRecordSet(zone, new EmulatedRecordSet(name, type, action.getSetIdentifier(), action.getWeight(), action.getTtl(), action.getResourceRecords(), null, null));
+			}
+		}
+	}
+
+	/**
+	 * @return
+	 * 		number of record sets in the zone, including NS and SOA
+	 */
+	public synchronized int recordSetCount(String zoneId)
+	{
+		EmulatedZone zone = zones.get(zoneId);
+
+		Defense.notNull(zone, "zone " + zoneId);
+
+		return zone.records.size();
+	}
+
+	private Response getHostedZone(String zoneId)
+	{
+		EmulatedZone zone = zones.get(zoneId);
+
+		if (zone == null)
+		{
+			return noSuchHostedZone(zoneId);
+		}
+
+		StringBuilder sb = document("GetHostedZoneResponse");
+
+		appendHostedZone(sb, zone);
+		appendDelegationSet(sb, zone);
+
+		return ok(200, sb, "GetHostedZoneResponse");
+	}
+
+	private Response deleteHostedZone(String zoneId)
+	{
+		EmulatedZone zone = zones.get(zoneId);
+
+		if (zone == null)
+		{
+			return noSuchHostedZone(zoneId);
+		}
+
+		for (EmulatedRecordSet set : zone.records.values())
+		{
+			if (!set.name.equals(zone.name) || !("NS".equals(set.type) || "SOA".equals(set.type)))
+			{
+				return error(400, "HostedZoneNotEmpty", "The specified hosted zone contains non-required resource record sets and so cannot be deleted.");
+			}
+		}
+
+		zones.remove(zoneId);
+
+		StringBuilder sb = document("DeleteHostedZoneResponse");
+
+		appendChangeInfo(sb, submitChange());
+
+		return ok(200, sb, "DeleteHostedZoneResponse");
+	}
+
+	private Response listResourceRecordSets(String zoneId, Map<String, String> query)
+	{
+		EmulatedZone zone = zones.get(zoneId);
+
+		if (zone == null)
+		{
+			return noSuchHostedZone(zoneId);
+		}
+
+		int maxItems = maxItems(query);
+
+		SortedMap<RecordSetKey, EmulatedRecordSet> tail = zone.records;
+
+		if (StringUtils.isNotEmpty(query.get("name")))
+		{
+			RecordSetKey start = new RecordSetKey(absolute(query.get("name")), StringUtils.defaultString(query.get("type")), query.get("identifier"));
+
+			tail = zone.records.tailMap(start);
+		}
+
+		StringBuilder sb = document("ListResourceRecordSetsResponse");
+
+		sb.append("<ResourceRecordSets>");
+
+		Iterator<EmulatedRecordSet> iterator = tail.values().iterator();
+
+		for (int i = 0; i < maxItems && iterator.hasNext(); i++)
+		{
+			appendRecordSet(sb, iterator.next());
+		}
+
+		sb.append("</ResourceRecordSets>");
+
+		element(sb, "IsTruncated", String.valueOf(iterator.hasNext()));
+
+		if (iterator.hasNext())
+		{
+			EmulatedRecordSet next = iterator.next();
+
+			element(sb, "NextRecordName", next.name);
+			element(sb, "NextRecordType", next.type);
+
+			if (next.setIdentifier != null)
+			{
+				element(sb, "NextRecordIdentifier", next.setIdentifier);
+			}
+		}
+
+		element(sb, "MaxItems", String.valueOf(maxItems));
+
+		return ok(200, sb, "ListResourceRecordSetsResponse");
+	}
+
+	private Response changeResourceRecordSets(String zoneId, String body)
+	{
+		EmulatedZone zone = zones.get(zoneId);
+
+		if (zone == null)
+		{
+			return noSuchHostedZone(zoneId);
+		}
+
+		XMLTag request = XMLDoc.from(body, true);
+
+		List<String> actions = new ArrayList<String>();
+
+		List<EmulatedRecordSet> sets = new ArrayList<EmulatedRecordSet>();
+
+		for (XMLTag change : request.getChilds("//Change"))
+		{
+			actions.add(change.getText("Action"));
+			sets.add(parseRecordSet(change.gotoChild("ResourceRecordSet")));
+		}
+
+		if (actions.isEmpty())
+		{
+			return error(400, "InvalidChangeBatch", "Change batch must contain at least one change.");
+		}
+
+		if (actions.size() > MAX_CHANGES_PER_BATCH)
+		{
+			return error(400, "InvalidChangeBatch", String.format("Number of changes %s exceeds the limit of %s.", actions.size(), MAX_CHANGES_PER_BATCH));
+		}
+
+		String failure = applyChanges(zone, actions, sets);
+
+		if (failure != null)
+		{
+			return error(400, "InvalidChangeBatch", failure);
+		}
+
+		StringBuilder sb = document("ChangeResourceRecordSetsResponse");
+
+		appendChangeInfo(sb, submitChange());
+
+		return ok(200, sb, "ChangeResourceRecordSetsResponse");
+	}
+
+	/**
+	 * Apply all changes or none of them.
+	 *
+	 * @return
+	 * 		null if the batch was applied, otherwise the reason it was rejected
+	 */
+	String applyChanges(EmulatedZone zone, List<String> actions, List<EmulatedRecordSet> sets)
+	{
+		List<EmulatedRecordSet> created = new ArrayList<EmulatedRecordSet>();
+
+		List<EmulatedRecordSet> deleted = new ArrayList<EmulatedRecordSet>();
+
+		String failure = null;
+
+		for (int i = 0; i < actions.size() && failure == null; i++)
+		{
+			String action = actions.get(i);
+
+			EmulatedRecordSet set = sets.get(i);
+
+			RecordSetKey key = set.key();
+
+			EmulatedRecordSet existing = zone.records.get(key);
+
+			if (!set.name.equals(zone.name) && !set.name.endsWith("." + zone.name))
+			{
+				failure = String.format("RRSet with DNS name %s is not permitted in zone %s", set.name, zone.name);
+			}
+			else if ("CREATE".equals(action))
+			{
+				if (existing != null)
+				{
+					failure = String.format("Tried to create resource record set %s type %s but it already exists", set.name, set.type);
+				}
+				else
+				{
+					zone.records.put(key, set);
+					created.add(set);
+				}
+			}
+			else if ("DELETE".equals(action))
+			{
+				if (existing == null || !existing.sameAs(set))
+				{
+					failure = String.format("Tried to delete resource record set %s type %s but it was not found", set.name, set.type);
+				}
+				else
+				{
+					zone.records.remove(key);
+					deleted.add(existing);
+				}
+			}
+			else
+			{
+				failure = String.format("Unsupported change action '%s'", action);
+			}
+		}
+
+		if (failure != null)
+		{
+			for (EmulatedRecordSet set : created)
+			{
+				zone.records.remove(set.key());
+			}
+
+			for (EmulatedRecordSet set : deleted)
+			{
+				zone.records.put(set.key(), set);
+			}
+		}
+
+		return failure;
+	}
+
+	private EmulatedRecordSet parseRecordSet(XMLTag tag)
+	{
+		String name = absolute(tag.getText("Name"));
+		String type = tag.getText("Type");
+
+		String setIdentifier = null;
+		int weight = 0;
+
+		if (tag.hasTag("SetIdentifier"))
+		{
+			setIdentifier = tag.getText("SetIdentifier");
+			weight = Integer.parseInt(tag.getText("Weight"));
+		}
+
+		if (tag.hasTag("AliasTarget"))
+		{
+			return new EmulatedRecordSet(name, type, setIdentifier, weight, 0, Collections.<String>emptyList(), tag.getText("AliasTarget/HostedZoneId"), tag.getText("AliasTarget/DNSName"));
+		}
+
+		List<String> values = new ArrayList<String>();
+
+		for (XMLTag value : tag.getChilds("ResourceRecords/ResourceRecord"))
+		{
+			values.add(value.getText("Value"));
+		}
+
+		Collections.sort(values);
+
+		return new EmulatedRecordSet(name, type, setIdentifier, weight, Integer.parseInt(tag.getText("TTL")), values, null, null);
+	}
+
+	private Response getChange(String changeId)
+	{
+		Long submitted = changes.get(changeId);
+
+		if (submitted == null)
+		{
+			return error(404, "NoSuchChange", "Could not find resource with ID: " + changeId);
+		}
+
+		StringBuilder sb = document("GetChangeResponse");
+
+		appendChangeInfo(sb, changeId);
+
+		return ok(200, sb, "GetChangeResponse");
+	}
+
+	private String submitChange()
+	{
+		String changeId = nextId("C", ++changeSequence);
+
+		changes.put(changeId, System.currentTimeMillis());
+
+		return changeId;
+	}
+
+	void putRecordSet(EmulatedZone zone, EmulatedRecordSet set)
+	{
+		zone.records.put(set.key(), set);
+	}
+
+	private void appendHostedZone(StringBuilder sb, EmulatedZone zone)
+	{
+		sb.append("<HostedZone>");
+		element(sb, "Id", "/hostedzone/" + zone.id);
+		element(sb, "Name", zone.name);
+		element(sb, "CallerReference", zone.callerReference);
+		sb.append("<Config>");
+		element(sb, "Comment", zone.comment);
+		sb.append("</Config>");
+		element(sb, "ResourceRecordSetCount", String.valueOf(zone.records.size()));
+		sb.append("</HostedZone>");
+	}
+
+	private void appendDelegationSet(StringBuilder sb, EmulatedZone zone)
+	{
+		sb.append("<DelegationSet><NameServers>");
+
+		for (String ns : nameServers(zone))
+		{
+			element(sb, "NameServer", ns);
+		}
+
+		sb.append("</NameServers></DelegationSet>");
+	}
+
+	private void appendChangeInfo(StringBuilder sb, String changeId)
+	{
+		long submitted = changes.get(changeId);
+
+		boolean inSync = System.currentTimeMillis() - submitted >= insyncDelayMillis;
+
+		sb.append("<ChangeInfo>");
+		element(sb, "Id", "/change/" + changeId);
+		element(sb, "Status", inSync ? "INSYNC" : "PENDING");
+		element(sb, "SubmittedAt", zulu(submitted));
+		sb.append("</ChangeInfo>");
+	}
+
+	private void appendRecordSet(StringBuilder sb, EmulatedRecordSet set)
+	{
+		sb.append("<ResourceRecordSet>");
+		element(sb, "Name", set.name);
+		element(sb, "Type", set.type);
+
+		if (set.setIdentifier != null)
+		{
+			element(sb, "SetIdentifier", set.setIdentifier);
+			element(sb, "Weight", String.valueOf(set.weight));
+		}
+
+		if (set.isAlias())
+		{
+			sb.append("<AliasTarget>");
+			element(sb, "HostedZoneId", set.aliasZoneId);
+			element(sb, "DNSName", set.aliasDnsName);
+			sb.append("</AliasTarget>");
+		}
+		else
+		{
+			element(sb, "TTL", String.valueOf(set.ttl));
+
+			sb.append("<ResourceRecords>");
+
+			for (String value : set.values)
+			{
+				sb.append("<ResourceRecord>");
+				element(sb, "Value", value);
+				sb.append("</ResourceRecord>");
+			}
+
+			sb.append("</ResourceRecords>");
+		}
+
+		sb.append("</ResourceRecordSet>");
+	}
+
+	private List<String> nameServers(EmulatedZone zone)
+	{
+		int seed = Math.abs(zone.id.hashCode());
+
+		List<String> nameServers = new ArrayList<String>();
+
+		String[] tlds = { "com", "net", "org", "co.uk" };
+
+		for (int i = 0; i < tlds.length; i++)
+		{
+			nameServers.add(String.format("ns-%d.awsdns-%02d.%s", (seed + i * 509) % 2048, (seed + i) % 64, tlds[i]));
+		}
+
+		return nameServers;
+	}
+
+	private int maxItems(Map<String, String> query)
+	{
+		String maxItems = query.get("maxitems");
+
+		if (StringUtils.isEmpty(maxItems))
+		{
+			return MAX_ITEMS;
+		}
+
+		return Math.max(1, Math.min(MAX_ITEMS, Integer.parseInt(maxItems)));
+	}
+
+	private Response noSuchHostedZone(String zoneId)
+	{
+		return error(404, "NoSuchHostedZone", "No hosted zone found with ID: " + zoneId);
+	}
+
+	private Response error(int status, String code, String message)
+	{
+		StringBuilder sb = document("ErrorResponse");
+
+		sb.append("<Error>");
+		element(sb, "Type", status >= 500 ? "Receiver" : "Sender");
+		element(sb, "Code", code);
+		element(sb, "Message", message);
+		sb.append("</Error>");
+		element(sb, "RequestId", UUID.randomUUID().toString());
+
+		return ok(status, sb, "ErrorResponse");
+	}
+
+	private static StringBuilder document(String root)
+	{
+		StringBuilder sb = new StringBuilder(512);
+
+		sb.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+		sb.append('<').append(root).append(" xmlns=\"").append(XML_NAMESPACE).append("\">");
+
+		return sb;
+	}
+
+	private static Response ok(int status, StringBuilder sb, String root)
+	{
+		sb.append("</").append(root).append('>');
+
+		return new Response(status, sb.toString());
+	}
+
+	private static void element(StringBuilder sb, String name, String text)
+	{
+		sb.append('<').append(name).append('>').append(StringEscapeUtils.escapeXml(text)).append("</").append(name).append('>');
+	}
+
+	private static String nextId(String prefix, long sequence)
+	{
+		return prefix + StringUtils.leftPad(Long.toString(sequence, 36).toUpperCase(), 12, '0');
+	}
+
+	static String absolute(String name)
+	{
+		String lower = name.toLowerCase();
+
+		return lower.endsWith(".") ? lower : lower + ".";
+	}
+
+	private static String zulu(long millis)
+	{
+		SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'");
+		sdf.setTimeZone(TimeZone.getTimeZone("Zulu"));
+		return sdf.format(new Date(millis));
+	}
+}
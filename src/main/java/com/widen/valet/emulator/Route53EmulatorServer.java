@@ -0,0 +1,253 @@
+package com.widen.valet.emulator;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Serves a {@link Route53Emulator} over HTTP on the loopback interface.
+ *
+ * <p>Point a {@link com.widen.valet.internal.Route53PilotImpl} at {@link #getEndpoint()} to run the driver, importers
+ * or load tests against local state instead of AWS:
+ *
+ * <pre>
+ * Route53EmulatorServer server = new Route53EmulatorServer(new Route53Emulator.Builder().build(), 0);
+ * server.start();
+ * Route53Driver driver = new Route53Driver(new Route53PilotImpl("key", "secret", new DefaultHttpClient(), server.getEndpoint()));
+ * </pre>
+ */
+public class Route53EmulatorServer
+{
+	private static final String CONTEXT = "/2011-05-05/";
+
+	private final Logger log = LoggerFactory.getLogger(Route53EmulatorServer.class);
+
+	private final Route53Emulator emulator;
+
+	private final HttpServer server;
+
+	private final ExecutorService executor;
+
+	private final boolean compression;
+
+	private final AtomicLong bytesSent = new AtomicLong();
+
+	/**
+	 * @param port
+	 * 		TCP port to listen on; 0 picks a free port
+	 */
+	public Route53EmulatorServer(Route53Emulator emulator, int port)
+	{
+		this(emulator, port, true);
+	}
+
+	/**
+	 * @param port
+	 * 		TCP port to listen on; 0 picks a free port
+	 * @param compression
+	 * 		honor gzip/deflate in the request's Accept-Encoding header
+	 */
+	public Route53EmulatorServer(Route53Emulator emulator, int port, boolean compression)
+	{
+		this.emulator = emulator;
+		this.compression = compression;
+
+		try
+		{
+			server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 0);
+		}
+		catch (IOException e)
+		{
+			throw new RuntimeException(e);
+		}
+
+		executor = Executors.newFixedThreadPool(Math.max(4, Runtime.getRuntime().availableProcessors()));
+
+		server.setExecutor(executor);
+
+		server.createContext(CONTEXT, new EmulatorHandler());
+	}
+
+	/**
+	 * Start the emulator from the command line.
+	 *
+	 * @param args
+	 * 		args[0] = port (default 8053), args[1] = INSYNC delay in milliseconds (default 0), args[2] = requests per second (default unlimited)
+	 */
+	public static void main(String[] args)
+	{
+		int port = args.length > 0 ? Integer.parseInt(args[0]) : 8053;
+		long insyncDelay = args.length > 1 ? Long.parseLong(args[1]) : 0;
+		double requestsPerSecond = args.length > 2 ? Double.parseDouble(args[2]) : 0;
+
+		Route53Emulator emulator = new Route53Emulator.Builder().withInsyncDelay(insyncDelay, TimeUnit.MILLISECONDS).withRequestsPerSecond(requestsPerSecond).build();
+
+		Route53EmulatorServer server = new Route53EmulatorServer(emulator, port);
+
+		server.start();
+
+		System.out.println("Route53 emulator listening on " + server.getEndpoint());
+	}
+
+	public void start()
+	{
+		server.start();
+
+		log.debug("Route53 emulator started on {}", getEndpoint());
+	}
+
+	public void stop()
+	{
+		server.stop(0);
+
+		executor.shutdownNow();
+	}
+
+	/**
+	 * @return
+	 * 		endpoint URL suitable for {@link com.widen.valet.internal.Route53PilotImpl}
+	 */
+	public String getEndpoint()
+	{
+		return String.format("http://127.0.0.1:%s%s", server.getAddress().getPort(), CONTEXT);
+	}
+
+	public Route53Emulator getEmulator()
+	{
+		return emulator;
+	}
+
+	/**
+	 * @return
+	 * 		response body bytes written to the wire since start, after any compression
+	 */
+	public long getBytesSent()
+	{
+		return bytesSent.get();
+	}
+
+	private class EmulatorHandler implements HttpHandler
+	{
+		@Override
+		public void handle(HttpExchange exchange) throws IOException
+		{
+			try
+			{
+				String path = StringUtils.substringAfter(exchange.getRequestURI().getRawPath(), CONTEXT);
+
+				Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+
+				String body = null;
+
+				InputStream in = exchange.getRequestBody();
+
+				if (!"GET".equals(exchange.getRequestMethod()))
+				{
+					body = IOUtils.toString(in, "UTF-8");
+				}
+
+				Route53Emulator.Response response = emulator.handle(exchange.getRequestMethod(), path, query, body);
+
+				byte[] bytes = response.body.getBytes("UTF-8");
+
+				exchange.getResponseHeaders().set("Content-Type", "text/xml");
+
+				String encoding = compression ? contentEncoding(exchange.getRequestHeaders().getFirst("Accept-Encoding")) : null;
+
+				if (encoding != null)
+				{
+					bytes = compress(bytes, encoding);
+
+					exchange.getResponseHeaders().set("Content-Encoding", encoding);
+				}
+
+				bytesSent.addAndGet(bytes.length);
+
+				exchange.sendResponseHeaders(response.status, bytes.length);
+
+				OutputStream out = exchange.getResponseBody();
+				out.write(bytes);
+				out.close();
+			}
+			catch (RuntimeException e)
+			{
+				log.error("Emulator failed handling " + exchange.getRequestURI(), e);
+
+				exchange.sendResponseHeaders(500, -1);
+			}
+			finally
+			{
+				exchange.close();
+			}
+		}
+	}
+
+	static String contentEncoding(String acceptEncoding)
+	{
+		String accepted = StringUtils.lowerCase(acceptEncoding);
+
+		if (StringUtils.contains(accepted, "gzip"))
+		{
+			return "gzip";
+		}
+
+		if (StringUtils.contains(accepted, "deflate"))
+		{
+			return "deflate";
+		}
+
+		return null;
+	}
+
+	private static byte[] compress(byte[] bytes, String encoding) throws IOException
+	{
+		ByteArrayOutputStream buffer = new ByteArrayOutputStream(bytes.length / 4 + 64);
+
+		OutputStream out = "gzip".equals(encoding) ? new GZIPOutputStream(buffer) : new DeflaterOutputStream(buffer);
+
+		out.write(bytes);
+		out.close();
+
+		return buffer.toByteArray();
+	}
+
+	static Map<String, String> parseQuery(String rawQuery) throws UnsupportedEncodingException
+	{
+		Map<String, String> query = new HashMap<String, String>();
+
+		if (StringUtils.isEmpty(rawQuery))
+		{
+			return query;
+		}
+
+		for (String pair : StringUtils.split(rawQuery, '&'))
+		{
+			String key = StringUtils.substringBefore(pair, "=");
+			String value = StringUtils.substringAfter(pair, "=");
+
+			query.put(URLDecoder.decode(key, "UTF-8"), URLDecoder.decode(value, "UTF-8"));
+		}
+
+		return query;
+	}
+}
@@ -0,0 +1,190 @@
+package com.widen.valet.fault;
+
+import java.net.SocketException;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.widen.valet.internal.PilotOperation;
+import com.widen.valet.internal.Route53Pilot;
+
+/**
+ * Pilot decorator that injects latency and Route53 failure modes, for resilience testing and benchmarking.
+ *
+ * <p>Each call first sleeps for a delay drawn from the profile's latency distribution, then fails with at most one
+ * fault: a Throttling or PriorRequestNotComplete error body, a connection reset (thrown the same way
+ * {@link com.widen.valet.internal.Route53PilotImpl} reports I/O failures), or a response truncated part way through.
+ *
+ * <p>A default profile applies to every operation; {@link #forOperation} overrides it per operation.
+ * Configure the pilot before sharing it between threads.
+ */
+public class FaultInjectingRoute53Pilot implements Route53Pilot
+{
+	public enum Fault
+	{
+		THROTTLING,
+		PRIOR_REQUEST_NOT_COMPLETE,
+		CONNECTION_RESET,
+		TRUNCATED_RESPONSE
+	}
+
+	private static final String XML_NAMESPACE = "https://route53.amazonaws.com/doc/2011-05-05/";
+
+	private final Route53Pilot delegate;
+
+	private final FaultProfile defaultProfile;
+
+	private final Map<PilotOperation, FaultProfile> profiles = new EnumMap<PilotOperation, FaultProfile>(PilotOperation.class);
+
+	private final Map<Fault, AtomicLong> injected = new EnumMap<Fault, AtomicLong>(Fault.class);
+
+	private final Random random;
+
+	public FaultInjectingRoute53Pilot(Route53Pilot delegate, FaultProfile defaultProfile)
+	{
+		this(delegate, defaultProfile, new Random());
+	}
+
+	/**
+	 * @param random
+	 * 		seeded random for repeatable fault sequences
+	 */
+	public FaultInjectingRoute53Pilot(Route53Pilot delegate, FaultProfile defaultProfile, Random random)
+	{
+		this.delegate = delegate;
+		this.defaultProfile = defaultProfile;
+		this.random = random;
+
+		for (Fault fault : Fault.values())
+		{
+			injected.put(fault, new AtomicLong());
+		}
+	}
+
+	public FaultInjectingRoute53Pilot forOperation(PilotOperation operation, FaultProfile profile)
+	{
+		profiles.put(operation, profile);
+		return this;
+	}
+
+	/**
+	 * @return
+	 * 		number of times the fault has been injected
+	 */
+	public long getInjectedCount(Fault fault)
+	{
+		return injected.get(fault).get();
+	}
+
+	public String executeResourceRecordSetGet(String zone, Map<String, String> query)
+	{
+		return call(PilotOperation.RESOURCE_RECORD_SET_GET, zone, query, null);
+	}
+
+	public String executeResourceRecordSetsPost(String zone, String payload)
+	{
+		return call(PilotOperation.RESOURCE_RECORD_SETS_POST, zone, null, payload);
+	}
+
+	public String executeHostedZoneGet()
+	{
+		return executeHostedZoneGet(null);
+	}
+
+	public String executeHostedZoneGet(String zone)
+	{
+		return call(PilotOperation.HOSTED_ZONE_GET, zone, null, null);
+	}
+
+	public String executeHostedZonePost(String payload)
+	{
+		return call(PilotOperation.HOSTED_ZONE_POST, null, null, payload);
+	}
+
+	public String executeHostedZoneDelete(String zone)
+	{
+		return call(PilotOperation.HOSTED_ZONE_DELETE, zone, null, null);
+	}
+
+	public String executeChangeInfoGet(String changeId)
+	{
+		return call(PilotOperation.CHANGE_INFO_GET, changeId, null, null);
+	}
+
+	private String call(PilotOperation operation, String target, Map<String, String> query, String payload)
+	{
+		FaultProfile profile = profiles.containsKey(operation) ? profiles.get(operation) : defaultProfile;
+
+		long delay;
+		double roll;
+
+		synchronized (random)
+		{
+			delay = profile.latency.nextNanos(random);
+			roll = random.nextDouble();
+		}
+
+		sleep(delay);
+
+		if ((roll -= profile.throttlingRate) < 0)
+		{
+			injected.get(Fault.THROTTLING).incrementAndGet();
+
+			return errorResponse("Throttling", "Rate exceeded");
+		}
+
+		if ((roll -= profile.priorRequestNotCompleteRate) < 0)
+		{
+			injected.get(Fault.PRIOR_REQUEST_NOT_COMPLETE).incrementAndGet();
+
+			return errorResponse("PriorRequestNotComplete", "The request was rejected because Route 53 was still processing a prior request.");
+		}
+
+		if ((roll -= profile.connectionResetRate) < 0)
+		{
+			injected.get(Fault.CONNECTION_RESET).incrementAndGet();
+
+			throw new RuntimeException(new SocketException("Connection reset"));
+		}
+
+		String response = operation.execute(delegate, target, query, payload);
+
+		if ((roll -= profile.truncatedResponseRate) < 0)
+		{
+			injected.get(Fault.TRUNCATED_RESPONSE).incrementAndGet();
+
+			return response.substring(0, response.length() / 2);
+		}
+
+		return response;
+	}
+
+	private void sleep(long nanos)
+	{
+		if (nanos <= 0)
+		{
+			return;
+		}
+
+		try
+		{
+			TimeUnit.NANOSECONDS.sleep(nanos);
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private String errorResponse(String code, String message)
+	{
+		return "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+				+ "<ErrorResponse xmlns=\"" + XML_NAMESPACE + "\">"
+				+ "<Error><Type>Sender</Type><Code>" + code + "</Code><Message>" + message + "</Message></Error>"
+				+ "<RequestId>" + UUID.randomUUID() + "</RequestId>"
+				+ "</ErrorResponse>";
+	}
+}
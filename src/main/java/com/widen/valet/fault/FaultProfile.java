@@ -0,0 +1,111 @@
+package com.widen.valet.fault;
+
+import org.apache.commons.lang.builder.ToStringBuilder;
+
+/**
+ * Latency and fault rates applied by {@link FaultInjectingRoute53Pilot}. Rates are probabilities per call.
+ */
+public class FaultProfile
+{
+	public static final FaultProfile NONE = new Builder().build();
+
+	final LatencyDistribution latency;
+
+	final double throttlingRate;
+
+	final double priorRequestNotCompleteRate;
+
+	final double connectionResetRate;
+
+	final double truncatedResponseRate;
+
+	private FaultProfile(LatencyDistribution latency, double throttlingRate, double priorRequestNotCompleteRate, double connectionResetRate, double truncatedResponseRate)
+	{
+		this.latency = latency;
+		this.throttlingRate = throttlingRate;
+		this.priorRequestNotCompleteRate = priorRequestNotCompleteRate;
+		this.connectionResetRate = connectionResetRate;
+		this.truncatedResponseRate = truncatedResponseRate;
+	}
+
+	public static class Builder
+	{
+		private LatencyDistribution latency = LatencyDistribution.NONE;
+
+		private double throttlingRate;
+
+		private double priorRequestNotCompleteRate;
+
+		private double connectionResetRate;
+
+		private double truncatedResponseRate;
+
+		public Builder withLatency(LatencyDistribution latency)
+		{
+			this.latency = latency;
+			return this;
+		}
+
+		/**
+		 * Calls answered with a Throttling error body instead of reaching the wrapped pilot.
+		 */
+		public Builder withThrottlingRate(double rate)
+		{
+			this.throttlingRate = checkRate(rate);
+			return this;
+		}
+
+		/**
+		 * Calls answered with a PriorRequestNotComplete error body instead of reaching the wrapped pilot.
+		 */
+		public Builder withPriorRequestNotCompleteRate(double rate)
+		{
+			this.priorRequestNotCompleteRate = checkRate(rate);
+			return this;
+		}
+
+		/**
+		 * Calls that fail with a connection reset before reaching the wrapped pilot.
+		 */
+		public Builder withConnectionResetRate(double rate)
+		{
+			this.connectionResetRate = checkRate(rate);
+			return this;
+		}
+
+		/**
+		 * Calls that reach the wrapped pilot but return only part of the response body.
+		 */
+		public Builder withTruncatedResponseRate(double rate)
+		{
+			this.truncatedResponseRate = checkRate(rate);
+			return this;
+		}
+
+		public FaultProfile build()
+		{
+			if (throttlingRate + priorRequestNotCompleteRate + connectionResetRate + truncatedResponseRate > 1)
+			{
+				throw new IllegalArgumentException("Fault rates cannot add up to more than 1");
+			}
+
+			return new FaultProfile(latency, throttlingRate, priorRequestNotCompleteRate, connectionResetRate, truncatedResponseRate);
+		}
+
+		private double checkRate(double rate)
+		{
+			if (rate < 0 || rate > 1)
+			{
+				throw new IllegalArgumentException("Rate must be between 0 and 1");
+			}
+
+			return rate;
+		}
+	}
+
+	@Override
+	public String toString()
+	{
+		return ToStringBuilder.reflectionToString(this);
+	}
+}
@@ -0,0 +1,96 @@
+package com.widen.valet.fault;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Source of injected per-call latency for {@link FaultInjectingRoute53Pilot}.
+ */
+public abstract class LatencyDistribution
+{
+	public static final LatencyDistribution NONE = fixed(0, TimeUnit.MILLISECONDS);
+
+	/**
+	 * @return
+	 * 		next delay in nanoseconds; never negative
+	 */
+	public abstract long nextNanos(Random random);
+
+	public static LatencyDistribution fixed(long delay, TimeUnit unit)
+	{
+		final long nanos = unit.toNanos(delay);
+
+		return new LatencyDistribution()
+		{
+			@Override
+			public long nextNanos(Random random)
+			{
+				return nanos;
+			}
+		};
+	}
+
+	public static LatencyDistribution uniform(long min, long max, TimeUnit unit)
+	{
+		final long minNanos = unit.toNanos(min);
+		final long spread = unit.toNanos(max) - minNanos;
+
+		return new LatencyDistribution()
+		{
+			@Override
+			public long nextNanos(Random random)
+			{
+				return minNanos + (long) (random.nextDouble() * spread);
+			}
+		};
+	}
+
+	public static LatencyDistribution exponential(long mean, TimeUnit unit)
+	{
+		final long meanNanos = unit.toNanos(mean);
+
+		return new LatencyDistribution()
+		{
+			@Override
+			public long nextNanos(Random random)
+			{
+				return (long) (-Math.log(1 - random.nextDouble()) * meanNanos);
+			}
+		};
+	}
+
+	/**
+	 * Heavy-tailed latency typical of remote APIs: most calls near the median, a few far slower.
+	 *
+	 * @param sigma
+	 * 		standard deviation of the underlying normal; 0.5 gives a p99 of roughly 3x the median
+	 */
+	public static LatencyDistribution logNormal(long median, TimeUnit unit, final double sigma)
+	{
+		final double mu = Math.log(unit.toNanos(median));
+
+		return new LatencyDistribution()
+		{
+			@Override
+			public long nextNanos(Random random)
+			{
+				return (long) Math.exp(mu + sigma * random.nextGaussian());
+			}
+		};
+	}
+
+	/**
+	 * Mostly {@code base}, but with the given probability a delay from {@code outlier} instead; models a latency tail.
+	 */
+	public static LatencyDistribution withOutliers(final LatencyDistribution base, final double probability, final LatencyDistribution outlier)
+	{
+		return new LatencyDistribution()
+		{
+			@Override
+			public long nextNanos(Random random)
+			{
+				return random.nextDouble() < probability ? outlier.nextNanos(random) : base.nextNanos(random);
+			}
+		};
+	}
+}
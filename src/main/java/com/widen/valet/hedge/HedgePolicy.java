@@ -0,0 +1,143 @@
+package com.widen.valet.hedge;
+
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import com.widen.valet.internal.PilotOperation;
+import com.widen.valet.internal.RateLimiter;
+import org.apache.commons.lang.builder.ToStringBuilder;
+
+/**
+ * When {@link HedgingRoute53Pilot} sends a second copy of a slow read, and how many it may send.
+ */
+public class HedgePolicy
+{
+	final Set<PilotOperation> operations;
+
+	final double percentile;
+
+	final long minDelayNanos;
+
+	final long initialDelayNanos;
+
+	final int minSamples;
+
+	final double maxHedgeRatio;
+
+	final RateLimiter rateLimiter;
+
+	private HedgePolicy(Set<PilotOperation> operations, double percentile, long minDelayNanos, long initialDelayNanos, int minSamples, double maxHedgeRatio, RateLimiter rateLimiter)
+	{
+		this.operations = operations;
+		this.percentile = percentile;
+		this.minDelayNanos = minDelayNanos;
+		this.initialDelayNanos = initialDelayNanos;
+		this.minSamples = minSamples;
+		this.maxHedgeRatio = maxHedgeRatio;
+		this.rateLimiter = rateLimiter;
+	}
+
+	public static class Builder
+	{
+		private Set<PilotOperation> operations = EnumSet.of(PilotOperation.HOSTED_ZONE_GET, PilotOperation.RESOURCE_RECORD_SET_GET, PilotOperation.CHANGE_INFO_GET);
+
+		private double percentile = 0.95;
+
+		private long minDelayNanos = TimeUnit.MILLISECONDS.toNanos(10);
+
+		private long initialDelayNanos = TimeUnit.MILLISECONDS.toNanos(500);
+
+		private int minSamples = 20;
+
+		private double maxHedgeRatio = 0.1;
+
+		private RateLimiter rateLimiter;
+
+		/**
+		 * Operations to hedge; only reads are accepted. Defaults to zone details, rrset pages and change info.
+		 */
+		public Builder withOperations(PilotOperation... operations)
+		{
+			for (PilotOperation operation : operations)
+			{
+				if (!operation.isRead())
+				{
+					throw new IllegalArgumentException(operation + " is not idempotent and cannot be hedged");
+				}
+			}
+
+			this.operations = EnumSet.copyOf(Arrays.asList(operations));
+			return this;
+		}
+
+		/**
+		 * Hedge once the first attempt has been outstanding longer than this percentile of recent latencies. Default 0.95.
+		 */
+		public Builder withPercentile(double percentile)
+		{
+			if (percentile <= 0 || percentile >= 1)
+			{
+				throw new IllegalArgumentException("Percentile must be between 0 and 1");
+			}
+
+			this.percentile = percentile;
+			return this;
+		}
+
+		/**
+		 * Never hedge sooner than this, however fast recent calls were. Default 10 ms.
+		 */
+		public Builder withMinDelay(long delay, TimeUnit unit)
+		{
+			this.minDelayNanos = unit.toNanos(delay);
+			return this;
+		}
+
+		/**
+		 * Hedge delay used until an operation has {@code minSamples} latencies recorded. Defaults 500 ms and 20.
+		 */
+		public Builder withInitialDelay(long delay, TimeUnit unit, int minSamples)
+		{
+			this.initialDelayNanos = unit.toNanos(delay);
+			this.minSamples = minSamples;
+			return this;
+		}
+
+		/**
+		 * Cap hedges at this fraction of hedgeable calls. Default 0.1.
+		 */
+		public Builder withMaxHedgeRatio(double ratio)
+		{
+			if (ratio < 0 || ratio > 1)
+			{
+				throw new IllegalArgumentException("Ratio must be between 0 and 1");
+			}
+
+			this.maxHedgeRatio = ratio;
+			return this;
+		}
+
+		/**
+		 * Share the account's request budget: every call waits for a token, and a hedge is only sent if a token is
+		 * available right away.
+		 */
+		public Builder withRateLimiter(RateLimiter rateLimiter)
+		{
+			this.rateLimiter = rateLimiter;
+			return this;
+		}
+
+		public HedgePolicy build()
+		{
+			return new HedgePolicy(operations, percentile, minDelayNanos, initialDelayNanos, minSamples, maxHedgeRatio, rateLimiter);
+		}
+	}
+
+	@Override
+	public String toString()
+	{
+		return ToStringBuilder.reflectionToString(this);
+	}
+}
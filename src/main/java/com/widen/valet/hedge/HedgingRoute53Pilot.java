@@ -0,0 +1,375 @@
+package com.widen.valet.hedge;
+
+import java.io.ByteArrayInputStream;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.widen.valet.Deadline;
+import com.widen.valet.internal.PilotOperation;
+import com.widen.valet.internal.ResponseReader;
+import com.widen.valet.internal.Route53Pilot;
+import com.widen.valet.internal.StreamingRoute53Pilot;
+
+/**
+ * Pilot decorator that hedges slow idempotent reads: if the first attempt is still outstanding after the observed
+ * percentile latency, a second identical request is sent and whichever answers first wins.
+ *
+ * <p>Hedges are capped at a fraction of calls and, with a {@link com.widen.valet.internal.RateLimiter}, only use
+ * spare request budget. The losing attempt is left to finish in the background and its answer discarded.
+ *
+ * <p>The wrapped pilot must allow concurrent calls, e.g. a {@link com.widen.valet.internal.Route53PilotImpl} built on
+ * a pooling connection manager. A streaming pilot gets every attempt's {@link Deadline}; waits here are bounded by it
+ * too.
+ */
+public class HedgingRoute53Pilot implements StreamingRoute53Pilot
+{
+	private final Route53Pilot delegate;
+
+	private final HedgePolicy policy;
+
+	private final ExecutorService executor;
+
+	private final Map<PilotOperation, LatencyTracker> latencies = new EnumMap<PilotOperation, LatencyTracker>(PilotOperation.class);
+
+	private final AtomicLong hedgeableCalls = new AtomicLong();
+
+	private final AtomicLong hedges = new AtomicLong();
+
+	private final AtomicLong hedgeWins = new AtomicLong();
+
+	/**
+	 * Runs attempts on a private pool of daemon threads.
+	 */
+	public HedgingRoute53Pilot(Route53Pilot delegate, HedgePolicy policy)
+	{
+		this(delegate, policy, Executors.newCachedThreadPool(new ThreadFactory()
+		{
+			public Thread newThread(Runnable r)
+			{
+				Thread thread = new Thread(r, "valet-hedge");
+				thread.setDaemon(true);
+				return thread;
+			}
+		}));
+	}
+
+	public HedgingRoute53Pilot(Route53Pilot delegate, HedgePolicy policy, ExecutorService executor)
+	{
+		this.delegate = delegate;
+		this.policy = policy;
+		this.executor = executor;
+
+		for (PilotOperation operation : policy.operations)
+		{
+			latencies.put(operation, new LatencyTracker(policy.percentile));
+		}
+	}
+
+	public <T> T execute(final PilotOperation operation, final String target, final Map<String, String> query, final String payload, final ResponseReader<T> reader, final Deadline deadline)
+	{
+		return call(operation, new Callable<T>()
+		{
+			public T call() throws Exception
+			{
+				if (delegate instanceof StreamingRoute53Pilot)
+				{
+					return ((StreamingRoute53Pilot) delegate).execute(operation, target, query, payload, reader, deadline);
+				}
+
+				return reader.read(new ByteArrayInputStream(operation.execute(delegate, target, query, payload).getBytes("UTF-8")));
+			}
+		}, deadline);
+	}
+
+	private String call(final PilotOperation operation, final String target, final Map<String, String> query, final String payload)
+	{
+		return call(operation, new Callable<String>()
+		{
+			public String call()
+			{
+				return operation.execute(delegate, target, query, payload);
+			}
+		}, Deadline.NONE);
+	}
+
+	public String executeResourceRecordSetGet(String zone, Map<String, String> query)
+	{
+		return call(PilotOperation.RESOURCE_RECORD_SET_GET, zone, query, null);
+	}
+
+	public String executeResourceRecordSetsPost(String zone, String payload)
+	{
+		return call(PilotOperation.RESOURCE_RECORD_SETS_POST, zone, null, payload);
+	}
+
+	public String executeHostedZoneGet()
+	{
+		return executeHostedZoneGet(null);
+	}
+
+	public String executeHostedZoneGet(String zone)
+	{
+		return call(PilotOperation.HOSTED_ZONE_GET, zone, null, null);
+	}
+
+	public String executeHostedZonePost(String payload)
+	{
+		return call(PilotOperation.HOSTED_ZONE_POST, null, null, payload);
+	}
+
+	public String executeHostedZoneDelete(String zone)
+	{
+		return call(PilotOperation.HOSTED_ZONE_DELETE, zone, null, null);
+	}
+
+	public String executeChangeInfoGet(String changeId)
+	{
+		return call(PilotOperation.CHANGE_INFO_GET, changeId, null, null);
+	}
+
+	/**
+	 * @return
+	 * 		calls eligible for hedging
+	 */
+	public long getHedgeableCount()
+	{
+		return hedgeableCalls.get();
+	}
+
+	/**
+	 * @return
+	 * 		second requests sent
+	 */
+	public long getHedgeCount()
+	{
+		return hedges.get();
+	}
+
+	/**
+	 * @return
+	 * 		calls answered by the second request
+	 */
+	public long getHedgeWinCount()
+	{
+		return hedgeWins.get();
+	}
+
+	/**
+	 * Send {@code request}, and a second copy if it is hedgeable and the first is slow.
+	 */
+	private <T> T call(PilotOperation operation, final Callable<T> request, Deadline deadline)
+	{
+		acquire(deadline);
+
+		final LatencyTracker tracker = latencies.get(operation);
+
+		if (tracker == null)
+		{
+			return run(request);
+		}
+
+		hedgeableCalls.incrementAndGet();
+
+		Callable<T> attempt = new Callable<T>()
+		{
+			public T call() throws Exception
+			{
+				long start = System.nanoTime();
+
+				try
+				{
+					return request.call();
+				}
+				finally
+				{
+					tracker.record(System.nanoTime() - start);
+				}
+			}
+		};
+
+		CompletionService<T> attempts = new ExecutorCompletionService<T>(executor);
+
+		Future<T> primary = attempts.submit(attempt);
+
+		Future<T> hedge = null;
+
+		try
+		{
+			Future<T> first = attempts.poll(Math.min(hedgeDelayNanos(tracker), deadline.remaining(TimeUnit.NANOSECONDS)), TimeUnit.NANOSECONDS);
+
+			if (first == null)
+			{
+				deadline.check();
+
+				if (mayHedge())
+				{
+					hedges.incrementAndGet();
+
+					hedge = attempts.submit(attempt);
+				}
+
+				first = next(attempts, deadline);
+			}
+
+			try
+			{
+				T result = first.get();
+
+				if (first == hedge)
+				{
+					hedgeWins.incrementAndGet();
+				}
+
+				return result;
+			}
+			catch (ExecutionException e)
+			{
+				if (hedge == null)
+				{
+					throw unwrap(e);
+				}
+
+				// one attempt failed; the other may still succeed
+				Future<T> second = next(attempts, deadline);
+
+				try
+				{
+					T result = second.get();
+
+					if (second == hedge)
+					{
+						hedgeWins.incrementAndGet();
+					}
+
+					return result;
+				}
+				catch (ExecutionException ignored)
+				{
+					throw unwrap(e);
+				}
+			}
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+
+			throw new RuntimeException(e);
+		}
+		finally
+		{
+			primary.cancel(false);
+
+			if (hedge != null)
+			{
+				hedge.cancel(false);
+			}
+		}
+	}
+
+	/**
+	 * @return
+	 * 		the next attempt to finish
+	 * @throws com.widen.valet.DeadlineExceededException
+	 * 		if none finishes before the deadline
+	 */
+	private static <T> Future<T> next(CompletionService<T> attempts, Deadline deadline) throws InterruptedException
+	{
+		if (!deadline.hasTimeLimit())
+		{
+			return attempts.take();
+		}
+
+		Future<T> next;
+
+		while ((next = attempts.poll(deadline.remaining(TimeUnit.NANOSECONDS), TimeUnit.NANOSECONDS)) == null)
+		{
+			deadline.check();
+		}
+
+		return next;
+	}
+
+	private static <T> T run(Callable<T> request)
+	{
+		try
+		{
+			return request.call();
+		}
+		catch (RuntimeException e)
+		{
+			throw e;
+		}
+		catch (Exception e)
+		{
+			throw new RuntimeException(e);
+		}
+	}
+
+	private long hedgeDelayNanos(LatencyTracker tracker)
+	{
+		long observed = tracker.percentileNanos();
+
+		if (observed < 0 || tracker.count() < policy.minSamples)
+		{
+			return policy.initialDelayNanos;
+		}
+
+		return Math.max(policy.minDelayNanos, observed);
+	}
+
+	private boolean mayHedge()
+	{
+		if (hedges.get() + 1 > policy.maxHedgeRatio * hedgeableCalls.get())
+		{
+			return false;
+		}
+
+		return policy.rateLimiter == null || policy.rateLimiter.tryAcquire();
+	}
+
+	private void acquire(Deadline deadline)
+	{
+		if (policy.rateLimiter == null)
+		{
+			return;
+		}
+
+		try
+		{
+			if (!deadline.hasTimeLimit())
+			{
+				policy.rateLimiter.acquire();
+			}
+			else if (!policy.rateLimiter.tryAcquire(deadline.remaining(TimeUnit.NANOSECONDS), TimeUnit.NANOSECONDS))
+			{
+				deadline.check();
+			}
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+
+			throw new RuntimeException(e);
+		}
+	}
+
+	private static RuntimeException unwrap(ExecutionException e)
+	{
+		if (e.getCause() instanceof RuntimeException)
+		{
+			return (RuntimeException) e.getCause();
+		}
+
+		return new RuntimeException(e.getCause());
+	}
+}
@@ -0,0 +1,58 @@
+package com.widen.valet.hedge;
+
+import java.util.Arrays;
+
+/**
+ * Recent latencies of one operation, with a percentile that is recomputed every few samples rather than per call.
+ */
+class LatencyTracker
+{
+	private static final int WINDOW = 512;
+
+	private static final int RECOMPUTE_EVERY = 16;
+
+	private final long[] samples = new long[WINDOW];
+
+	private final double percentile;
+
+	private long count;
+
+	private volatile long cachedPercentile = -1;
+
+	LatencyTracker(double percentile)
+	{
+		this.percentile = percentile;
+	}
+
+	synchronized void record(long nanos)
+	{
+		samples[(int) (count % WINDOW)] = nanos;
+
+		count++;
+
+		if (count % RECOMPUTE_EVERY == 0)
+		{
+			int size = (int) Math.min(count, WINDOW);
+
+			long[] sorted = Arrays.copyOf(samples, size);
+
+			Arrays.sort(sorted);
+
+			cachedPercentile = sorted[(int) Math.min(size - 1, Math.ceil(percentile * size) - 1)];
+		}
+	}
+
+	synchronized long count()
+	{
+		return count;
+	}
+
+	/**
+	 * @return
+	 * 		latency at the tracked percentile in nanoseconds, or -1 before enough samples were recorded
+	 */
+	long percentileNanos()
+	{
+		return cachedPercentile;
+	}
+}
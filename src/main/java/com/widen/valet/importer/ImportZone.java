@@ -14,6 +14,7 @@
 
 package com.widen.valet.importer;
 
+import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
@@ -21,18 +22,25 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 
+import com.widen.valet.DnsName;
 import com.widen.valet.RecordType;
 import com.widen.valet.Route53Driver;
 import com.widen.valet.Zone;
 import com.widen.valet.ZoneChangeStatus;
 import com.widen.valet.ZoneResource;
 import com.widen.valet.ZoneUpdateAction;
+import com.widen.valet.internal.Route53Pilot;
+import com.widen.valet.internal.Route53PilotImpl;
+import com.widen.valet.replay.RecordingRoute53Pilot;
+import com.widen.valet.replay.ReplayingRoute53Pilot;
 import com.widen.valet.util.ListUtil;
 import com.widen.valet.util.NameQueryByRoute53APIService;
 import com.widen.valet.util.NameQueryService;
 import com.widen.valet.util.NameQueryServiceImpl;
+import com.widen.valet.util.OfflineResolver;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang.StringUtils;
 import org.slf4j.Logger;
@@ -70,6 +78,12 @@ public class ImportZone
 
 	private final String nameServer;
 
+	private final String route53Endpoint;
+
+	private final String recordTrafficFile;
+
+	private final String replayTrafficFile;
+
 	private NameQueryService queryService;
 
 	public static void main(String[] args) throws IOException
@@ -98,6 +112,9 @@ public class ImportZone
 		dryRun = Boolean.parseBoolean(getAndVerifyProperty("widen.valet.dry-run", properties));
 		nameServer = getAndVerifyProperty("widen.valet.aws-name-server", properties);
 		cleanZone = Boolean.parseBoolean(getAndVerifyProperty("widen.valet.clean-zone-by-deleteing-all-records", properties));
+		route53Endpoint = properties.getProperty("widen.valet.aws-route53-endpoint", Route53PilotImpl.DEFAULT_ENDPOINT);
+		recordTrafficFile = properties.getProperty("widen.valet.record-traffic-file");
+		replayTrafficFile = properties.getProperty("widen.valet.replay-traffic-file");
 	}
 
 	private String getAndVerifyProperty(String key, Properties properties)
@@ -114,8 +131,38 @@ public class ImportZone
 
 	public void run() throws IOException
 	{
-		Route53Driver driver = new Route53Driver(awsAccessKey, awsPrivateKey);
+		Route53Pilot pilot;
 
+		if (StringUtils.isNotBlank(replayTrafficFile))
+		{
+			pilot = new ReplayingRoute53Pilot(new File(replayTrafficFile), 1.0);
+		}
+		else
+		{
+			pilot = new Route53PilotImpl(awsAccessKey, awsPrivateKey, Route53PilotImpl.newDefaultHttpClient(), route53Endpoint);
+		}
+
+		if (StringUtils.isNotBlank(recordTrafficFile))
+		{
+			RecordingRoute53Pilot recorder = new RecordingRoute53Pilot(pilot, new File(recordTrafficFile));
+
+			try
+			{
+				run(new Route53Driver(recorder));
+			}
+			finally
+			{
+				recorder.close();
+			}
+		}
+		else
+		{
+			run(new Route53Driver(pilot));
+		}
+	}
+
+	private void run(Route53Driver driver) throws IOException
+	{
 		Zone zone = driver.zoneDetails(route53ZoneId);
 
 		if (cleanZone)
@@ -143,6 +190,14 @@ public class ImportZone
 		{
 			queryService = new NameQueryByRoute53APIService(driver, zone);
 		}
+		else if ("mirror".equals(nameServer))
+		{
+			OfflineResolver resolver = new OfflineResolver();
+
+			resolver.mirror(driver, zone);
+
+			queryService = resolver;
+		}
 		else
 		{
 			queryService = new NameQueryServiceImpl(nameServer);
@@ -180,7 +235,7 @@ public class ImportZone
 
 		boolean foundZoneRecords = false;
 
-		List<ZoneUpdateAction> actions = new ArrayList<ZoneUpdateAction>();
+		List<ZoneFileRecord> records = new ArrayList<ZoneFileRecord>();
 
 		for (String l : lines)
 		{
@@ -198,37 +253,59 @@ public class ImportZone
 			{
 				log.debug("processing line: {}", l);
 
-				List<ZoneUpdateAction> actionForRecord = parseRecord(l, zone.getName(), actions);
-
-				actions.addAll(actionForRecord);
+				records.add(parseRecord(l, zone.getName()));
 			}
 		}
 
+		List<NameQueryService.Query> queries = new ArrayList<NameQueryService.Query>();
+
+		for (ZoneFileRecord record : records)
+		{
+			queries.add(record.query);
+		}
+
+		// one batch, so a network query service can keep many lookups in flight
+		Map<NameQueryService.Query, NameQueryService.LookupRecord> current = queryService.lookupAll(queries);
+
+		List<ZoneUpdateAction> actions = new ArrayList<ZoneUpdateAction>();
+
+		for (ZoneFileRecord record : records)
+		{
+			actions.addAll(actionsFor(record, current.get(record.query), actions));
+		}
+
 		return actions;
 	}
 
-	private List<ZoneUpdateAction> parseRecord(String record, String zone, List<ZoneUpdateAction> existing)
+	private ZoneFileRecord parseRecord(String record, String zone)
 	{
 		final List<String> split = ZoneFileLineSplitter.splitLine(record);
 
 		final String rawName = split.get(0);
 
-		final String name;
+		final DnsName name;
 
 		if ("@".equals(rawName))
 		{
-			name = zone.toLowerCase();
+			name = DnsName.of(zone);
 		}
 		else
 		{
-			name = String.format("%s.%s", rawName, zone).toLowerCase();
+			name = DnsName.of(String.format("%s.%s", rawName, zone));
 		}
 
 		final RecordType type = RecordType.valueOf(split.get(1));
 
-		final String value = split.get(2).toLowerCase();
+		return new ZoneFileRecord(name, type, split.get(2).toLowerCase());
+	}
+
+	private List<ZoneUpdateAction> actionsFor(ZoneFileRecord record, NameQueryService.LookupRecord lookupRecord, List<ZoneUpdateAction> existing)
+	{
+		final DnsName name = record.name;
+
+		final RecordType type = record.query.type;
 
-		NameQueryService.LookupRecord lookupRecord = queryService.lookup(name, type);
+		final String value = record.value;
 
 		if (!lookupRecord.exists)
 		{
@@ -270,4 +347,22 @@ public class ImportZone
 		}
 	}
 
+	/**
+	 * A parsed zone file line and the query for its current state.
+	 */
+	private static final class ZoneFileRecord
+	{
+		final DnsName name;
+
+		final NameQueryService.Query query;
+
+		final String value;
+
+		ZoneFileRecord(DnsName name, RecordType type, String value)
+		{
+			this.name = name;
+			this.query = new NameQueryService.Query(name.toString(), type);
+			this.value = value;
+		}
+	}
 }
@@ -0,0 +1,263 @@
+package com.widen.valet.internal;
+
+/**
+ * Converts A and AAAA record values between text and primitive form.
+ *
+ * <p>Parsing is strict: a value is only accepted if formatting the result gives back exactly the same text, so callers
+ * can store the primitive and drop the String without changing what they later return.
+ */
+public final class AddressCodec
+{
+	private AddressCodec()
+	{
+	}
+
+	/**
+	 * @return
+	 * 		the address as an unsigned 32 bit value, or -1 if {@code value} is not a dotted quad without leading zeros
+	 */
+	public static long parseIpv4(String value)
+	{
+		int length = value.length();
+
+		if (length < 7 || length > 15)
+		{
+			return -1;
+		}
+
+		long address = 0;
+
+		int octets = 0;
+
+		int i = 0;
+
+		while (i < length)
+		{
+			int start = i;
+			int octet = 0;
+
+			while (i < length && value.charAt(i) >= '0' && value.charAt(i) <= '9')
+			{
+				octet = octet * 10 + value.charAt(i) - '0';
+				i++;
+			}
+
+			int digits = i - start;
+
+			if (digits == 0 || digits > 3 || octet > 255 || (digits > 1 && value.charAt(start) == '0'))
+			{
+				return -1;
+			}
+
+			address = address << 8 | octet;
+			octets++;
+
+			if (i < length)
+			{
+				if (value.charAt(i) != '.' || octets == 4)
+				{
+					return -1;
+				}
+
+				i++;
+
+				if (i == length)
+				{
+					return -1;
+				}
+			}
+		}
+
+		return octets == 4 ? address : -1;
+	}
+
+	public static String formatIpv4(int address)
+	{
+		return new StringBuilder(15)
+				.append(address >>> 24).append('.')
+				.append(address >>> 16 & 0xff).append('.')
+				.append(address >>> 8 & 0xff).append('.')
+				.append(address & 0xff)
+				.toString();
+	}
+
+	/**
+	 * Parse an IPv6 address written the way {@link #formatIpv6} writes it (RFC 5952).
+	 *
+	 * @param out
+	 * 		receives the high and low 64 bits at {@code offset} and {@code offset + 1}
+	 * @return
+	 * 		false, leaving {@code out} undefined, if {@code value} is not in that form
+	 */
+	public static boolean parseIpv6(String value, long[] out, int offset)
+	{
+		int length = value.length();
+
+		if (length < 2 || length > 39)
+		{
+			return false;
+		}
+
+		int[] groups = new int[8];
+
+		int count = 0;
+
+		int gap = -1;
+
+		int i = 0;
+
+		if (value.startsWith("::"))
+		{
+			gap = 0;
+			i = 2;
+		}
+
+		while (i < length)
+		{
+			int start = i;
+			int group = 0;
+
+			while (i < length && i - start < 5 && hexDigit(value.charAt(i)) >= 0)
+			{
+				group = group << 4 | hexDigit(value.charAt(i));
+				i++;
+			}
+
+			if (i == start || i - start > 4 || count == 8)
+			{
+				return false;
+			}
+
+			groups[count++] = group;
+
+			if (i < length)
+			{
+				if (value.charAt(i) != ':')
+				{
+					return false;
+				}
+
+				i++;
+
+				if (i < length && value.charAt(i) == ':')
+				{
+					if (gap >= 0)
+					{
+						return false;
+					}
+
+					gap = count;
+					i++;
+				}
+				else if (i == length)
+				{
+					return false;
+				}
+			}
+		}
+
+		if (gap < 0 ? count != 8 : count > 7)
+		{
+			return false;
+		}
+
+		long high = 0;
+		long low = 0;
+
+		int shift = gap < 0 ? 0 : 8 - count;
+
+		for (int g = 0; g < count; g++)
+		{
+			int position = gap >= 0 && g >= gap ? g + shift : g;
+
+			if (position < 4)
+			{
+				high |= (long) groups[g] << (48 - 16 * position);
+			}
+			else
+			{
+				low |= (long) groups[g] << (48 - 16 * (position - 4));
+			}
+		}
+
+		out[offset] = high;
+		out[offset + 1] = low;
+
+		return formatIpv6(high, low).equals(value);
+	}
+
+	/**
+	 * RFC 5952 text form: lower case, no leading zeros, the longest run of two or more zero groups as "::".
+	 */
+	public static String formatIpv6(long high, long low)
+	{
+		int[] groups = new int[8];
+
+		for (int g = 0; g < 4; g++)
+		{
+			groups[g] = (int) (high >>> (48 - 16 * g)) & 0xffff;
+			groups[g + 4] = (int) (low >>> (48 - 16 * g)) & 0xffff;
+		}
+
+		int bestStart = -1;
+		int bestLength = 1;
+
+		for (int g = 0; g < 8; )
+		{
+			if (groups[g] != 0)
+			{
+				g++;
+				continue;
+			}
+
+			int start = g;
+
+			while (g < 8 && groups[g] == 0)
+			{
+				g++;
+			}
+
+			if (g - start > bestLength)
+			{
+				bestStart = start;
+				bestLength = g - start;
+			}
+		}
+
+		StringBuilder sb = new StringBuilder(39);
+
+		for (int g = 0; g < 8; g++)
+		{
+			if (g == bestStart)
+			{
+				sb.append("::");
+				g += bestLength - 1;
+				continue;
+			}
+
+			if (sb.length() > 0 && sb.charAt(sb.length() - 1) != ':')
+			{
+				sb.append(':');
+			}
+
+			sb.append(Integer.toHexString(groups[g]));
+		}
+
+		return sb.toString();
+	}
+
+	private static int hexDigit(char c)
+	{
+		if (c >= '0' && c <= '9')
+		{
+			return c - '0';
+		}
+
+		if (c >= 'a' && c <= 'f')
+		{
+			return c - 'a' + 10;
+		}
+
+		return -1;
+	}
+}
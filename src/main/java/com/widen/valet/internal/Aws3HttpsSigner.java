@@ -0,0 +1,94 @@
+package com.widen.valet.internal;
+
+import java.security.GeneralSecurityException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.apache.http.client.methods.HttpRequestBase;
+
+/**
+ * Legacy AWS3-HTTPS signer: HMAC-SHA1 of the Date header.
+ *
+ * <p>Kept for endpoints that still expect it; {@link SignatureV4Signer} is the default.
+ */
+public class Aws3HttpsSigner implements RequestSigner
+{
+	private final String accessKey;
+
+	private final byte[] secretKey;
+
+	private volatile String[] date = { "", "" };
+
+	private final ThreadLocal<Mac> macs = new ThreadLocal<Mac>()
+	{
+		@Override
+		protected Mac initialValue()
+		{
+			try
+			{
+				Mac mac = Mac.getInstance("HmacSHA1");
+				mac.init(new SecretKeySpec(secretKey, "HmacSHA1"));
+				return mac;
+			}
+			catch (GeneralSecurityException e)
+			{
+				throw new RuntimeException(e);
+			}
+		}
+	};
+
+	public Aws3HttpsSigner(String accessKey, String secretKey)
+	{
+		Defense.notBlank(accessKey, "accessKey");
+		Defense.notBlank(secretKey, "secretKey");
+
+		this.accessKey = accessKey;
+		this.secretKey = secretKey.getBytes();
+	}
+
+	@Override
+	public void sign(HttpRequestBase request, byte[] payload, int length)
+	{
+		String[] current = currentDate();
+
+		String signature;
+
+		try
+		{
+			signature = Base64.encodeBytes(macs.get().doFinal(current[1].getBytes("UTF-8")));
+		}
+		catch (Exception e)
+		{
+			throw new RuntimeException("Failed to generate signature: " + e.getMessage(), e);
+		}
+
+		request.setHeader("Date", current[1]);
+
+		request.setHeader("X-Amzn-Authorization", String.format("AWS3-HTTPS AWSAccessKeyId=%s,Algorithm=HmacSHA1,Signature=%s", accessKey, signature));
+	}
+
+	/**
+	 * @return
+	 * 		{ epoch second, formatted Date header }; formatted at most once per second
+	 */
+	private String[] currentDate()
+	{
+		long now = System.currentTimeMillis();
+
+		String second = Long.toString(now / 1000);
+
+		String[] current = date;
+
+		if (!current[0].equals(second))
+		{
+			current = new String[] { second, new SimpleDateFormat("EEEE, dd-MMM-yy HH:mm:ss zzz", Locale.US).format(new Date(now)) };
+
+			date = current;
+		}
+
+		return current;
+	}
+}
@@ -0,0 +1,251 @@
+package com.widen.valet.internal;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Thread-local pool of growable heap byte buffers for request and response bodies.
+ *
+ * <p>Each thread keeps a few buffers, so a request payload and its response can be held at the same time.
+ * Buffers that grew past the retention limit are dropped on release rather than pinned to the thread.
+ */
+public class BufferPool
+{
+	/**
+	 * Large enough for a 100 change batch or a full ListResourceRecordSets page.
+	 */
+	public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+	public static final int DEFAULT_MAX_RETAINED_SIZE = 1024 * 1024;
+
+	private static final int SLOTS_PER_THREAD = 4;
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	private static final BufferPool DEFAULT = new BufferPool(DEFAULT_BUFFER_SIZE, DEFAULT_MAX_RETAINED_SIZE);
+
+	private final int bufferSize;
+
+	private final int maxRetainedSize;
+
+	private final AtomicLong acquired = new AtomicLong();
+
+	private final AtomicLong hits = new AtomicLong();
+
+	private final AtomicLong grown = new AtomicLong();
+
+	private final ThreadLocal<Buffer[]> slots = new ThreadLocal<Buffer[]>()
+	{
+		@Override
+		protected Buffer[] initialValue()
+		{
+			return new Buffer[SLOTS_PER_THREAD];
+		}
+	};
+
+	public BufferPool(int bufferSize, int maxRetainedSize)
+	{
+		if (bufferSize <= 0 || maxRetainedSize < bufferSize)
+		{
+			throw new IllegalArgumentException(String.format("Invalid buffer sizes %s / %s", bufferSize, maxRetainedSize));
+		}
+
+		this.bufferSize = bufferSize;
+		this.maxRetainedSize = maxRetainedSize;
+	}
+
+	/**
+	 * Pool shared by all {@link Route53PilotImpl} instances.
+	 */
+	public static BufferPool getDefault()
+	{
+		return DEFAULT;
+	}
+
+	/**
+	 * Take an empty buffer for the calling thread. Call {@link Buffer#release()} when done with it, on the same thread.
+	 */
+	public Buffer acquire()
+	{
+		acquired.incrementAndGet();
+
+		Buffer[] cached = slots.get();
+
+		for (int i = 0; i < cached.length; i++)
+		{
+			Buffer buffer = cached[i];
+
+			if (buffer != null)
+			{
+				cached[i] = null;
+				hits.incrementAndGet();
+				buffer.length = 0;
+				return buffer;
+			}
+		}
+
+		return new Buffer(new byte[bufferSize]);
+	}
+
+	private void release(Buffer buffer)
+	{
+		if (buffer.array.length > maxRetainedSize)
+		{
+			return;
+		}
+
+		Buffer[] cached = slots.get();
+
+		for (int i = 0; i < cached.length; i++)
+		{
+			if (cached[i] == null)
+			{
+				cached[i] = buffer;
+				return;
+			}
+		}
+	}
+
+	public long getAcquireCount()
+	{
+		return acquired.get();
+	}
+
+	public long getHitCount()
+	{
+		return hits.get();
+	}
+
+	/**
+	 * @return
+	 * 		number of times a buffer had to be enlarged to fit its contents
+	 */
+	public long getGrowCount()
+	{
+		return grown.get();
+	}
+
+	/**
+	 * @return
+	 * 		fraction of acquisitions served from the pool, 0 when nothing was acquired yet
+	 */
+	public double getHitRate()
+	{
+		long total = acquired.get();
+
+		return total == 0 ? 0 : (double) hits.get() / total;
+	}
+
+	@Override
+	public String toString()
+	{
+		return String.format("BufferPool{acquired=%s, hitRate=%.3f, grown=%s}", acquired.get(), getHitRate(), grown.get());
+	}
+
+	/**
+	 * A pooled byte array and the number of bytes in use.
+	 */
+	public final class Buffer
+	{
+		private byte[] array;
+
+		private int length;
+
+		private CharsetEncoder encoder;
+
+		private Buffer(byte[] array)
+		{
+			this.array = array;
+		}
+
+		public byte[] array()
+		{
+			return array;
+		}
+
+		public int length()
+		{
+			return length;
+		}
+
+		/**
+		 * Replace the contents with the UTF-8 encoding of {@code s}.
+		 */
+		public Buffer encodeUtf8(String s)
+		{
+			if (encoder == null)
+			{
+				encoder = UTF_8.newEncoder().onMalformedInput(CodingErrorAction.REPLACE).onUnmappableCharacter(CodingErrorAction.REPLACE);
+			}
+
+			ensureCapacity((int) Math.ceil(s.length() * encoder.maxBytesPerChar()));
+
+			ByteBuffer out = ByteBuffer.wrap(array);
+
+			encoder.reset();
+			encoder.encode(CharBuffer.wrap(s), out, true);
+			encoder.flush(out);
+
+			length = out.position();
+
+			return this;
+		}
+
+		/**
+		 * Replace the contents with everything remaining in {@code in}.
+		 */
+		public Buffer readFully(InputStream in) throws IOException
+		{
+			length = 0;
+
+			int read;
+
+			while (true)
+			{
+				if (length == array.length)
+				{
+					ensureCapacity(array.length * 2);
+				}
+
+				read = in.read(array, length, array.length - length);
+
+				if (read == -1)
+				{
+					return this;
+				}
+
+				length += read;
+			}
+		}
+
+		public String toUtf8String()
+		{
+			return new String(array, 0, length, UTF_8);
+		}
+
+		/**
+		 * Return this buffer to its pool. The buffer must not be used afterwards.
+		 */
+		public void release()
+		{
+			BufferPool.this.release(this);
+		}
+
+		private void ensureCapacity(int capacity)
+		{
+			if (array.length < capacity)
+			{
+				grown.incrementAndGet();
+
+				array = Arrays.copyOf(array, Math.max(capacity, array.length * 2));
+			}
+		}
+	}
+}
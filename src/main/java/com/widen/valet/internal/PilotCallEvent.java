@@ -0,0 +1,43 @@
+package com.widen.valet.internal;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight Recorder event emitted for every HTTP round trip made by {@link Route53PilotImpl}.
+ *
+ * <p>Events are only populated when {@link #shouldCommit()} is true, so the cost with recording off is a timestamp.
+ */
+@Name("com.widen.valet.PilotCall")
+@Label("Route53 Pilot Call")
+@Category({ "Valet", "Route53" })
+@Description("HTTP request to the Route53 endpoint")
+public class PilotCallEvent extends Event
+{
+	@Label("Zone Id")
+	public String zoneId;
+
+	@Label("Operation")
+	public String operation;
+
+	@Label("Request Size")
+	@DataAmount
+	public long requestSize;
+
+	@Label("Response Size")
+	@DataAmount
+	public long responseSize;
+
+	@Label("Wire Size")
+	@Description("Response bytes received before decompression")
+	@DataAmount
+	public long wireSize;
+
+	@Label("Outcome")
+	@Description("HTTP status code, or exception class name if the request failed")
+	public String outcome;
+}
@@ -0,0 +1,74 @@
+package com.widen.valet.internal;
+
+import java.util.Map;
+
+/**
+ * The operations a {@link Route53Pilot} performs.
+ *
+ * <p>Lets pilot decorators funnel every method through one code path and call the wrapped pilot generically.
+ */
+public enum PilotOperation
+{
+	RESOURCE_RECORD_SET_GET("ResourceRecordSetGet"),
+	RESOURCE_RECORD_SETS_POST("ResourceRecordSetsPost"),
+	HOSTED_ZONE_GET("HostedZoneGet"),
+	HOSTED_ZONE_POST("HostedZonePost"),
+	HOSTED_ZONE_DELETE("HostedZoneDelete"),
+	CHANGE_INFO_GET("ChangeInfoGet");
+
+	private final String label;
+
+	PilotOperation(String label)
+	{
+		this.label = label;
+	}
+
+	/**
+	 * @return
+	 * 		operation name as reported in flight recorder events, e.g. "ResourceRecordSetGet"
+	 */
+	public String getLabel()
+	{
+		return label;
+	}
+
+	/**
+	 * Invoke the pilot method for this operation.
+	 *
+	 * @param target
+	 * 		zone ID, or change ID for {@link #CHANGE_INFO_GET}; null when the operation has no target
+	 * @param query
+	 * 		query parameters for {@link #RESOURCE_RECORD_SET_GET}, otherwise ignored
+	 * @param payload
+	 * 		request body for POST operations, otherwise ignored
+	 */
+	public String execute(Route53Pilot pilot, String target, Map<String, String> query, String payload)
+	{
+		switch (this)
+		{
+			case RESOURCE_RECORD_SET_GET:
+				return pilot.executeResourceRecordSetGet(target, query);
+			case RESOURCE_RECORD_SETS_POST:
+				return pilot.executeResourceRecordSetsPost(target, payload);
+			case HOSTED_ZONE_GET:
+				return pilot.executeHostedZoneGet(target);
+			case HOSTED_ZONE_POST:
+				return pilot.executeHostedZonePost(payload);
+			case HOSTED_ZONE_DELETE:
+				return pilot.executeHostedZoneDelete(target);
+			case CHANGE_INFO_GET:
+				return pilot.executeChangeInfoGet(target);
+			default:
+				throw new IllegalStateException("Unknown operation " + this);
+		}
+	}
+
+	/**
+	 * @return
+	 * 		true for GET operations, which do not change Route53 state and may be retried or repeated
+	 */
+	public boolean isRead()
+	{
+		return this == RESOURCE_RECORD_SET_GET || this == HOSTED_ZONE_GET || this == CHANGE_INFO_GET;
+	}
+}
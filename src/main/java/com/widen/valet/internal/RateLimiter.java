@@ -0,0 +1,129 @@
+package com.widen.valet.internal;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token bucket holding up to one second of requests. Route53 allows five requests per second per account.
+ */
+public class RateLimiter
+{
+	private final double perNano;
+
+	private final double capacity;
+
+	private double tokens;
+
+	private long last = System.nanoTime();
+
+	public RateLimiter(double perSecond)
+	{
+		if (perSecond <= 0)
+		{
+			throw new IllegalArgumentException("Rate must be positive");
+		}
+
+		this.perNano = perSecond / TimeUnit.SECONDS.toNanos(1);
+		this.capacity = Math.max(1, perSecond);
+		this.tokens = capacity;
+	}
+
+	/**
+	 * @return
+	 * 		true if a token was taken; false, without waiting, if the bucket is empty
+	 */
+	public synchronized boolean tryAcquire()
+	{
+		refill();
+
+		if (tokens < 1)
+		{
+			return false;
+		}
+
+		tokens -= 1;
+
+		return true;
+	}
+
+	/**
+	 * Take a token, waiting for one if necessary.
+	 */
+	public void acquire() throws InterruptedException
+	{
+		long wait;
+
+		while ((wait = reserveOrWait()) > 0)
+		{
+			TimeUnit.NANOSECONDS.sleep(wait);
+		}
+	}
+
+	/**
+	 * Take a token, waiting at most {@code timeout} for one.
+	 *
+	 * @return
+	 * 		false if no token became available in time
+	 */
+	public boolean tryAcquire(long timeout, TimeUnit unit) throws InterruptedException
+	{
+		long end = System.nanoTime() + unit.toNanos(timeout);
+
+		long wait;
+
+		while ((wait = reserveOrWait()) > 0)
+		{
+			long remaining = end - System.nanoTime();
+
+			if (remaining <= 0)
+			{
+				return false;
+			}
+
+			TimeUnit.NANOSECONDS.sleep(Math.min(wait, remaining));
+		}
+
+		return true;
+	}
+
+	/**
+	 * @return
+	 * 		0 if a token was taken, otherwise nanoseconds until the next token is due
+	 */
+	private synchronized long reserveOrWait()
+	{
+		refill();
+
+		if (tokens >= 1)
+		{
+			tokens -= 1;
+
+			return 0;
+		}
+
+		return Math.max(1, (long) Math.ceil((1 - tokens) / perNano));
+	}
+
+	/**
+	 * Return a token taken for a request that was not sent.
+	 */
+	public synchronized void release()
+	{
+		refill();
+
+		tokens = Math.min(capacity, tokens + 1);
+	}
+
+	public double getRate()
+	{
+		return perNano * TimeUnit.SECONDS.toNanos(1);
+	}
+
+	private void refill()
+	{
+		long now = System.nanoTime();
+
+		tokens = Math.min(capacity, tokens + (now - last) * perNano);
+
+		last = now;
+	}
+}
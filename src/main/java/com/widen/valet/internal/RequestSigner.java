@@ -0,0 +1,19 @@
+package com.widen.valet.internal;
+
+import org.apache.http.client.methods.HttpRequestBase;
+
+/**
+ * Adds authentication headers to a Route53 request before {@link Route53PilotImpl} sends it.
+ *
+ * <p>Implementations are called concurrently and must be thread-safe.
+ */
+public interface RequestSigner
+{
+	/**
+	 * @param payload
+	 * 		array holding the exact request body bytes, or null for requests without a body
+	 * @param length
+	 * 		number of body bytes at the start of {@code payload}
+	 */
+	void sign(HttpRequestBase request, byte[] payload, int length);
+}
@@ -0,0 +1,18 @@
+package com.widen.valet.internal;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Consumes a Route53 response body as it arrives off the connection.
+ *
+ * @see StreamingRoute53Pilot
+ */
+public interface ResponseReader<T>
+{
+	/**
+	 * @param body
+	 * 		response body; closed by the pilot once this method returns
+	 */
+	T read(InputStream body) throws IOException;
+}
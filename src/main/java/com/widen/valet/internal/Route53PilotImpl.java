@@ -1,27 +1,37 @@
 package com.widen.valet.internal;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.UnsupportedEncodingException;
 import java.net.URLEncoder;
-import java.security.SignatureException;
-import java.text.SimpleDateFormat;
 import java.util.Collections;
-import java.util.Date;
+import java.util.Locale;
 import java.util.Map;
-import javax.crypto.Mac;
-import javax.crypto.spec.SecretKeySpec;
-
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+import com.widen.valet.Deadline;
+import org.apache.commons.io.input.CountingInputStream;
 import org.apache.commons.lang.StringUtils;
+import org.apache.http.Header;
 import org.apache.http.HttpEntity;
+import org.apache.http.HttpEntityEnclosingRequest;
 import org.apache.http.HttpResponse;
 import org.apache.http.client.HttpClient;
+import org.apache.http.client.config.RequestConfig;
 import org.apache.http.client.methods.HttpDelete;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpPost;
 import org.apache.http.client.methods.HttpRequestBase;
-import org.apache.http.entity.StringEntity;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.conn.params.ConnManagerParams;
 import org.apache.http.impl.client.DefaultHttpClient;
-import org.apache.http.util.EntityUtils;
+import org.apache.http.params.HttpConnectionParams;
 
 /**
  * Route53 Pilot is responsible for communicating with the AWS Route53 REST endpoint.
@@ -30,67 +40,138 @@ import org.apache.http.util.EntityUtils;
  *
  * <p>You may use an alternate constructor to inject the {@link HttpClient} instance to use.
  * This is useful if your environment requires proxy configuration to access the Route53 endpoint.
+ *
+ * <p>The endpoint may also be replaced, e.g. to point at a local {@link com.widen.valet.emulator.Route53EmulatorServer}.
+ *
+ * <p>Requests are signed with {@link SignatureV4Signer} unless another {@link RequestSigner} is supplied.
  */
-public class Route53PilotImpl implements Route53Pilot
+public class Route53PilotImpl implements StreamingRoute53Pilot
 {
-	private static final String ROUTE_53_ENDPOINT = "https://route53.amazonaws.com/2011-05-05/";
+	private static final byte[] EMPTY_RESPONSE = "<root><nonset/></root>".getBytes();
+
+	private static final ResponseReader<String> STRING_READER = new ResponseReader<String>()
+	{
+		public String read(InputStream body) throws IOException
+		{
+			BufferPool.Buffer buffer = BufferPool.getDefault().acquire();
+
+			try
+			{
+				return buffer.readFully(body).toUtf8String();
+			}
+			finally
+			{
+				buffer.release();
+			}
+		}
+	};
+
+	public static final String DEFAULT_ENDPOINT = "https://route53.amazonaws.com/2011-05-05/";
+
+	public static final int DEFAULT_CONNECT_TIMEOUT_MILLIS = 10000;
+
+	public static final int DEFAULT_SOCKET_TIMEOUT_MILLIS = 60000;
+
+	private static final ScheduledThreadPoolExecutor DEADLINE_TIMER = new ScheduledThreadPoolExecutor(1, new ThreadFactory()
+	{
+		public Thread newThread(Runnable r)
+		{
+			Thread thread = new Thread(r, "valet-deadline-timer");
+			thread.setDaemon(true);
+			return thread;
+		}
+	});
 
-	private static final String HOSTED_ZONE_ENDPOINT = ROUTE_53_ENDPOINT + "hostedzone";
+	static
+	{
+		DEADLINE_TIMER.setRemoveOnCancelPolicy(true);
+	}
 
-	private final String awsAccessKey;
+	private final String endpoint;
 
-	private final String awsSecret;
+	private final String hostedZoneEndpoint;
+
+	private final RequestSigner signer;
 
 	private final HttpClient httpClient;
 
-	public Route53PilotImpl(String awsAccessKey, String awsSecret, HttpClient httpClient)
+	private volatile boolean compression = true;
+
+	/**
+	 * @param endpoint
+	 * 		Route53 API base URL including the API version path, e.g. {@link #DEFAULT_ENDPOINT}
+	 */
+	public Route53PilotImpl(RequestSigner signer, HttpClient httpClient, String endpoint)
 	{
-		Defense.notBlank(awsAccessKey, "awsAccessKey");
-		Defense.notBlank(awsSecret, "awsSecret");
+		Defense.notNull(signer, "signer");
+		Defense.notBlank(endpoint, "endpoint");
 
-		this.awsAccessKey = awsAccessKey;
-		this.awsSecret = awsSecret;
+		this.signer = signer;
 		this.httpClient = httpClient;
+		this.endpoint = endpoint.endsWith("/") ? endpoint : endpoint + "/";
+		this.hostedZoneEndpoint = this.endpoint + "hostedzone";
 	}
 
-	public Route53PilotImpl(String awsAccessKey, String awsSecret)
+	public Route53PilotImpl(String awsAccessKey, String awsSecret, HttpClient httpClient, String endpoint)
 	{
-		this(awsAccessKey, awsSecret, new DefaultHttpClient());
+		this(new SignatureV4Signer(awsAccessKey, awsSecret), httpClient, endpoint);
 	}
 
-	public String executeHostedZoneGet()
+	public Route53PilotImpl(String awsAccessKey, String awsSecret, HttpClient httpClient)
 	{
-		return executeHostedZoneGet(null);
+		this(awsAccessKey, awsSecret, httpClient, DEFAULT_ENDPOINT);
 	}
 
-	public String executeHostedZoneGet(String zone)
+	public Route53PilotImpl(String awsAccessKey, String awsSecret)
 	{
-		String uri = HOSTED_ZONE_ENDPOINT;
+		this(awsAccessKey, awsSecret, newDefaultHttpClient());
+	}
 
-		if (StringUtils.isNotBlank(zone))
-		{
-			uri = String.format("%s/%s", uri, zone);
-		}
+	/**
+	 * @return
+	 * 		client with {@link #DEFAULT_CONNECT_TIMEOUT_MILLIS} and {@link #DEFAULT_SOCKET_TIMEOUT_MILLIS}, so a stuck
+	 * 		connection cannot hang a call forever
+	 */
+	public static HttpClient newDefaultHttpClient()
+	{
+		DefaultHttpClient client = new DefaultHttpClient();
 
-		HttpGet httpget = new HttpGet(uri);
+		HttpConnectionParams.setConnectionTimeout(client.getParams(), DEFAULT_CONNECT_TIMEOUT_MILLIS);
+		HttpConnectionParams.setSoTimeout(client.getParams(), DEFAULT_SOCKET_TIMEOUT_MILLIS);
 
-		return execute(httpget);
+		return client;
 	}
 
-	public String executeHostedZonePost(String payload)
+	/**
+	 * Ask Route53 for gzip or deflate compressed responses; on by default. Responses are decompressed while they are
+	 * parsed, so large listings cost a fraction of the bandwidth.
+	 */
+	public void setCompression(boolean compression)
 	{
-		HttpPost post = new HttpPost(HOSTED_ZONE_ENDPOINT);
+		this.compression = compression;
+	}
 
-		try
-		{
-			post.setEntity(new StringEntity(payload));
-		}
-		catch (UnsupportedEncodingException e)
-		{
-			throw new RuntimeException(e);
-		}
+	/**
+	 * Load the signer's crypto providers and derive today's signing key by signing a throwaway request.
+	 */
+	public void warmUp()
+	{
+		signer.sign(new HttpGet(hostedZoneEndpoint), null, 0);
+	}
+
+	public String executeHostedZoneGet()
+	{
+		return executeHostedZoneGet(null);
+	}
 
-		return execute(post);
+	public String executeHostedZoneGet(String zone)
+	{
+		return execute(PilotOperation.HOSTED_ZONE_GET, zone, null, null, STRING_READER);
+	}
+
+	public String executeHostedZonePost(String payload)
+	{
+		return execute(PilotOperation.HOSTED_ZONE_POST, null, null, payload, STRING_READER);
 	}
 
 	@Override
@@ -98,58 +179,64 @@ public class Route53PilotImpl implements Route53Pilot
 	{
 		Defense.notBlank(zone, "zone");
 
-		String uri = String.format("%s/%s", HOSTED_ZONE_ENDPOINT, zone);
-
-		HttpDelete delete = new HttpDelete(uri);
-
-		return execute(delete);
+		return execute(PilotOperation.HOSTED_ZONE_DELETE, zone, null, null, STRING_READER);
 	}
 
 	public String executeChangeInfoGet(String changeId)
 	{
-		HttpGet get = new HttpGet(ROUTE_53_ENDPOINT + "change/" + changeId);
-
-		return execute(get);
+		return execute(PilotOperation.CHANGE_INFO_GET, changeId, null, null, STRING_READER);
 	}
 
 	public String executeResourceRecordSetGet(String zone, Map<String, String> query)
 	{
-		HttpGet get = new HttpGet(recordSetUri(zone, query));
-
-		return execute(get);
+		return execute(PilotOperation.RESOURCE_RECORD_SET_GET, zone, query, null, STRING_READER);
 	}
 
 	public String executeResourceRecordSetsPost(String zone, String payload)
 	{
-		HttpPost post = new HttpPost(recordSetUri(zone, Collections.EMPTY_MAP));
+		return execute(PilotOperation.RESOURCE_RECORD_SETS_POST, zone, null, payload, STRING_READER);
+	}
 
-		try
-		{
-			post.setEntity(new StringEntity(payload));
-		}
-		catch (UnsupportedEncodingException e)
+	private HttpRequestBase request(PilotOperation operation, String target, Map<String, String> query)
+	{
+		switch (operation)
 		{
-			throw new RuntimeException(e);
+			case HOSTED_ZONE_GET:
+				return new HttpGet(StringUtils.isNotBlank(target) ? String.format("%s/%s", hostedZoneEndpoint, target) : hostedZoneEndpoint + queryString(query));
+			case HOSTED_ZONE_POST:
+				return new HttpPost(hostedZoneEndpoint);
+			case HOSTED_ZONE_DELETE:
+				return new HttpDelete(String.format("%s/%s", hostedZoneEndpoint, target));
+			case CHANGE_INFO_GET:
+				return new HttpGet(endpoint + "change/" + target);
+			case RESOURCE_RECORD_SET_GET:
+				return new HttpGet(recordSetUri(target, query));
+			case RESOURCE_RECORD_SETS_POST:
+				return new HttpPost(recordSetUri(target, Collections.<String, String>emptyMap()));
+			default:
+				throw new IllegalStateException("Unknown operation " + operation);
 		}
-
-		return execute(post);
 	}
 
 	private String recordSetUri(String zone, Map<String, String> query)
+	{
+		return String.format("%s/%s/rrset%s", hostedZoneEndpoint, zone, queryString(query));
+	}
+
+	private String queryString(Map<String, String> query)
 	{
 		StringBuilder q = new StringBuilder();
 
 		if (query != null && !query.isEmpty())
         {
-            q.append("?");
-
             for (Map.Entry<String, String> entry : query.entrySet())
             {
+                q.append(q.length() == 0 ? "?" : "&");
                 q.append(String.format("%s=%s", encodeQueryParam(entry.getKey()), encodeQueryParam(entry.getValue())));
             }
         }
 
-		return String.format("%s/%s/rrset%s", HOSTED_ZONE_ENDPOINT, zone, q);
+		return q.toString();
 	}
 
     private String encodeQueryParam(String in)
@@ -164,54 +251,180 @@ public class Route53PilotImpl implements Route53Pilot
         }
     }
 
-	private String execute(HttpRequestBase request)
+	private <T> T execute(PilotOperation operation, String target, Map<String, String> query, String payload, ResponseReader<T> reader)
+	{
+		return execute(operation, target, query, payload, reader, Deadline.NONE);
+	}
+
+	public <T> T execute(PilotOperation operation, String target, Map<String, String> query, String payload, ResponseReader<T> reader, Deadline deadline)
 	{
-		String date = new SimpleDateFormat("EEEE, dd-MMM-yy HH:mm:ss zzz", java.util.Locale.US).format(new Date());
+		deadline.check();
+
+		final HttpRequestBase request = request(operation, target, query);
+
+		Runnable abort = new Runnable()
+		{
+			public void run()
+			{
+				request.abort();
+			}
+		};
+
+		ScheduledFuture<?> timer = null;
+
+		if (deadline.hasTimeLimit())
+		{
+			long remaining = deadline.remaining(TimeUnit.NANOSECONDS);
+
+			// round up so a socket timeout never fires before the deadline has actually passed
+			applyTimeouts(request, TimeUnit.NANOSECONDS.toMillis(remaining) + 1);
 
-		String signature = sign(date, awsSecret);
+			timer = DEADLINE_TIMER.schedule(abort, remaining, TimeUnit.NANOSECONDS);
+		}
+
+		deadline.addCancelListener(abort);
 
-		request.addHeader("Date", date);
+		BufferPool.Buffer body = null;
 
-		request.addHeader("X-Amzn-Authorization", String.format("AWS3-HTTPS AWSAccessKeyId=%s,Algorithm=HmacSHA1,Signature=%s", awsAccessKey, signature));
+		if (payload != null && request instanceof HttpEntityEnclosingRequest)
+		{
+			body = BufferPool.getDefault().acquire().encodeUtf8(payload);
+
+			((HttpEntityEnclosingRequest) request).setEntity(new ByteArrayEntity(body.array(), 0, body.length()));
+		}
+
+		PilotCallEvent event = new PilotCallEvent();
+
+		event.begin();
+
+		signer.sign(request, body == null ? null : body.array(), body == null ? 0 : body.length());
 
 		request.addHeader("Content-Type", "text/plain");
 
-		String content = "<root><nonset/></root>";
+		if (compression)
+		{
+			request.addHeader("Accept-Encoding", "gzip, deflate");
+		}
+
+		String outcome = null;
+
+		CountingInputStream wire = null;
+
+		CountingInputStream in = null;
+
+		boolean consumed = false;
 
 		try
 		{
 			HttpResponse response = httpClient.execute(request);
 
+			outcome = String.valueOf(response.getStatusLine().getStatusCode());
+
 			HttpEntity entity = response.getEntity();
 
-			if (entity != null)
-			{
-				content = EntityUtils.toString(entity);
-			}
+			wire = new CountingInputStream(entity != null ? entity.getContent() : new ByteArrayInputStream(EMPTY_RESPONSE));
+
+			in = new CountingInputStream(decode(entity, wire));
+
+			T result = reader.read(in);
+
+			// closing drains anything the reader left so the connection goes back to the pool
+			in.close();
+
+			consumed = true;
+
+			return result;
 		}
 		catch (IOException e)
 		{
+			outcome = e.getClass().getSimpleName();
+
+			deadline.check(e);
+
 			throw new RuntimeException(e);
 		}
+		catch (RuntimeException e)
+		{
+			outcome = e.getClass().getSimpleName();
+
+			// an abort mid-body surfaces from the XML parser rather than as an IOException
+			deadline.check(e);
+
+			throw e;
+		}
+		finally
+		{
+			deadline.removeCancelListener(abort);
+
+			if (timer != null)
+			{
+				timer.cancel(false);
+			}
+
+			if (!consumed)
+			{
+				request.abort();
+			}
+
+			event.end();
+
+			if (event.shouldCommit())
+			{
+				event.zoneId = operation == PilotOperation.CHANGE_INFO_GET ? null : target;
+				event.operation = operation.getLabel();
+				event.requestSize = body == null ? 0 : body.length();
+				event.responseSize = in == null ? 0 : in.getCount();
+				event.wireSize = wire == null ? 0 : wire.getCount();
+				event.outcome = outcome;
+				event.commit();
+			}
+
+			if (body != null)
+			{
+				body.release();
+			}
+		}
+	}
+
+	/**
+	 * Cap connect, connection lease and socket read timeouts at what is left of the deadline. Parameters cover
+	 * {@link DefaultHttpClient}; the request config covers clients built with HttpClientBuilder.
+	 */
+	private static void applyTimeouts(HttpRequestBase request, long remainingMillis)
+	{
+		int timeout = (int) Math.max(1, Math.min(Integer.MAX_VALUE, remainingMillis));
 
-		return content;
+		HttpConnectionParams.setConnectionTimeout(request.getParams(), timeout);
+		HttpConnectionParams.setSoTimeout(request.getParams(), timeout);
+		ConnManagerParams.setTimeout(request.getParams(), timeout);
+
+		request.setConfig(RequestConfig.custom()
+				.setConnectTimeout(timeout)
+				.setSocketTimeout(timeout)
+				.setConnectionRequestTimeout(timeout)
+				.build());
 	}
 
 	/**
-	 * Computes RFC 2104-compliant HMAC signature.
+	 * Decompress the body according to its Content-Encoding. "deflate" is the zlib format, per RFC 2616.
 	 */
-	private static String sign(String data, String key)
+	private static InputStream decode(HttpEntity entity, InputStream body) throws IOException
 	{
-		try
+		Header header = entity == null ? null : entity.getContentEncoding();
+
+		String encoding = header == null ? "" : header.getValue().trim().toLowerCase(Locale.US);
+
+		if (encoding.equals("gzip") || encoding.equals("x-gzip"))
 		{
-			Mac mac = Mac.getInstance("HmacSHA1");
-			mac.init(new SecretKeySpec(key.getBytes(), "HmacSHA1"));
-			return Base64.encodeBytes(mac.doFinal(data.getBytes("UTF-8")));
+			return new GZIPInputStream(body, 8192);
 		}
-		catch (Exception e)
+
+		if (encoding.equals("deflate"))
 		{
-			throw new RuntimeException(new SignatureException("Failed to generate signature: " + e.getMessage(), e));
+			return new InflaterInputStream(body);
 		}
+
+		return body;
 	}
 
 }
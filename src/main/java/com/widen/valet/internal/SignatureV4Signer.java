@@ -0,0 +1,424 @@
+package com.widen.valet.internal;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.http.client.methods.HttpRequestBase;
+
+/**
+ * AWS Signature Version 4 signer.
+ *
+ * <p>Signing is kept cheap for high request rates: the derived signing key is cached for the current day, HMAC and
+ * SHA-256 instances are kept per thread and keyed once, and the X-Amz-Date value is formatted once per second.
+ */
+public class SignatureV4Signer implements RequestSigner
+{
+	public static final String ALGORITHM = "AWS4-HMAC-SHA256";
+
+	public static final String ROUTE53_REGION = "us-east-1";
+
+	public static final String ROUTE53_SERVICE = "route53";
+
+	private static final String SIGNED_HEADERS = "host;x-amz-date";
+
+	private static final String EMPTY_PAYLOAD_HASH = "e3b0c44298fc1c149afbf4c8996fb92427ae41e4649b934ca495991b7852b855";
+
+	private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+	private final String accessKey;
+
+	private final String secretKey;
+
+	private final String region;
+
+	private final String service;
+
+	private volatile SigningKey signingKey;
+
+	private volatile Timestamp timestamp;
+
+	private final ThreadLocal<KeyedMac> macs = new ThreadLocal<KeyedMac>()
+	{
+		@Override
+		protected KeyedMac initialValue()
+		{
+			return new KeyedMac(newMac());
+		}
+	};
+
+	private final ThreadLocal<MessageDigest> digests = new ThreadLocal<MessageDigest>()
+	{
+		@Override
+		protected MessageDigest initialValue()
+		{
+			try
+			{
+				return MessageDigest.getInstance("SHA-256");
+			}
+			catch (GeneralSecurityException e)
+			{
+				throw new RuntimeException(e);
+			}
+		}
+	};
+
+	public SignatureV4Signer(String accessKey, String secretKey)
+	{
+		this(accessKey, secretKey, ROUTE53_REGION, ROUTE53_SERVICE);
+	}
+
+	public SignatureV4Signer(String accessKey, String secretKey, String region, String service)
+	{
+		Defense.notBlank(accessKey, "accessKey");
+		Defense.notBlank(secretKey, "secretKey");
+
+		this.accessKey = accessKey;
+		this.secretKey = secretKey;
+		this.region = region;
+		this.service = service;
+	}
+
+	@Override
+	public void sign(HttpRequestBase request, byte[] payload, int length)
+	{
+		sign(request, payload, length, System.currentTimeMillis());
+	}
+
+	void sign(HttpRequestBase request, byte[] payload, int length, long now)
+	{
+		Timestamp ts = timestamp(now / 1000);
+
+		SigningKey key = signingKey(ts.dateStamp);
+
+		URI uri = request.getURI();
+
+		String host = host(uri);
+
+		String payloadHash = payload == null || length == 0 ? EMPTY_PAYLOAD_HASH : hex(sha256(payload, length));
+
+		StringBuilder canonical = new StringBuilder(256);
+
+		canonical.append(request.getMethod()).append('\n');
+		canonical.append(StringUtils.defaultIfEmpty(uri.getRawPath(), "/")).append('\n');
+		canonical.append(canonicalQuery(uri.getRawQuery())).append('\n');
+		canonical.append("host:").append(host).append('\n');
+		canonical.append("x-amz-date:").append(ts.amzDate).append('\n');
+		canonical.append('\n');
+		canonical.append(SIGNED_HEADERS).append('\n');
+		canonical.append(payloadHash);
+
+		StringBuilder stringToSign = new StringBuilder(128);
+
+		stringToSign.append(ALGORITHM).append('\n');
+		stringToSign.append(ts.amzDate).append('\n');
+		stringToSign.append(key.scope).append('\n');
+		byte[] canonicalBytes = utf8(canonical);
+
+		stringToSign.append(hex(sha256(canonicalBytes, canonicalBytes.length)));
+
+		Mac mac = macs.get().keyedWith(key.key);
+
+		String signature = hex(mac.doFinal(utf8(stringToSign)));
+
+		request.setHeader("Host", host);
+		request.setHeader("X-Amz-Date", ts.amzDate);
+		request.setHeader("Authorization", key.credentialPrefix + signature);
+	}
+
+	/**
+	 * Derive the signing key and credential strings once per day.
+	 */
+	private SigningKey signingKey(String dateStamp)
+	{
+		SigningKey current = signingKey;
+
+		if (current != null && current.dateStamp.equals(dateStamp))
+		{
+			return current;
+		}
+
+		byte[] kDate = hmac(utf8("AWS4" + secretKey), dateStamp);
+		byte[] kRegion = hmac(kDate, region);
+		byte[] kService = hmac(kRegion, service);
+		byte[] kSigning = hmac(kService, "aws4_request");
+
+		String scope = String.format("%s/%s/%s/aws4_request", dateStamp, region, service);
+
+		String credentialPrefix = String.format("%s Credential=%s/%s, SignedHeaders=%s, Signature=", ALGORITHM, accessKey, scope, SIGNED_HEADERS);
+
+		current = new SigningKey(dateStamp, kSigning, scope, credentialPrefix);
+
+		signingKey = current;
+
+		return current;
+	}
+
+	private Timestamp timestamp(long epochSecond)
+	{
+		Timestamp current = timestamp;
+
+		if (current != null && current.epochSecond == epochSecond)
+		{
+			return current;
+		}
+
+		current = new Timestamp(epochSecond);
+
+		timestamp = current;
+
+		return current;
+	}
+
+	/**
+	 * Warm up the per-thread crypto instances and the signing key for today.
+	 */
+	public void initialize()
+	{
+		signingKey(timestamp(System.currentTimeMillis() / 1000).dateStamp);
+		macs.get();
+		digests.get();
+	}
+
+	private byte[] sha256(byte[] data, int length)
+	{
+		MessageDigest digest = digests.get();
+
+		digest.reset();
+
+		digest.update(data, 0, length);
+
+		return digest.digest();
+	}
+
+	private static byte[] hmac(byte[] key, String data)
+	{
+		try
+		{
+			Mac mac = newMac();
+			mac.init(new SecretKeySpec(key, "HmacSHA256"));
+			return mac.doFinal(utf8(data));
+		}
+		catch (GeneralSecurityException e)
+		{
+			throw new RuntimeException(e);
+		}
+	}
+
+	private static Mac newMac()
+	{
+		try
+		{
+			return Mac.getInstance("HmacSHA256");
+		}
+		catch (GeneralSecurityException e)
+		{
+			throw new RuntimeException(e);
+		}
+	}
+
+	private static String host(URI uri)
+	{
+		int port = uri.getPort();
+
+		if (port == -1 || ("https".equals(uri.getScheme()) && port == 443) || ("http".equals(uri.getScheme()) && port == 80))
+		{
+			return uri.getHost();
+		}
+
+		return uri.getHost() + ":" + port;
+	}
+
+	static String canonicalQuery(String rawQuery)
+	{
+		if (StringUtils.isEmpty(rawQuery))
+		{
+			return "";
+		}
+
+		List<String> params = new ArrayList<String>();
+
+		for (String pair : StringUtils.split(rawQuery, '&'))
+		{
+			params.add(encode(decode(StringUtils.substringBefore(pair, "="))) + "=" + encode(decode(StringUtils.substringAfter(pair, "="))));
+		}
+
+		Collections.sort(params);
+
+		return StringUtils.join(params, '&');
+	}
+
+	/**
+	 * RFC 3986 encoding as required by Signature V4.
+	 */
+	static String encode(String s)
+	{
+		try
+		{
+			return URLEncoder.encode(s, "UTF-8").replace("+", "%20").replace("*", "%2A").replace("%7E", "~");
+		}
+		catch (UnsupportedEncodingException e)
+		{
+			throw new RuntimeException(e);
+		}
+	}
+
+	private static String decode(String s)
+	{
+		try
+		{
+			return URLDecoder.decode(s, "UTF-8");
+		}
+		catch (UnsupportedEncodingException e)
+		{
+			throw new RuntimeException(e);
+		}
+	}
+
+	private static byte[] utf8(CharSequence s)
+	{
+		try
+		{
+			return s.toString().getBytes("UTF-8");
+		}
+		catch (UnsupportedEncodingException e)
+		{
+			throw new RuntimeException(e);
+		}
+	}
+
+	static String hex(byte[] bytes)
+	{
+		char[] out = new char[bytes.length * 2];
+
+		for (int i = 0; i < bytes.length; i++)
+		{
+			out[i * 2] = HEX[(bytes[i] >> 4) & 0xf];
+			out[i * 2 + 1] = HEX[bytes[i] & 0xf];
+		}
+
+		return new String(out);
+	}
+
+	private static final class SigningKey
+	{
+		final String dateStamp;
+
+		final byte[] key;
+
+		final String scope;
+
+		final String credentialPrefix;
+
+		SigningKey(String dateStamp, byte[] key, String scope, String credentialPrefix)
+		{
+			this.dateStamp = dateStamp;
+			this.key = key;
+			this.scope = scope;
+			this.credentialPrefix = credentialPrefix;
+		}
+	}
+
+	/**
+	 * A thread's HMAC instance, re-keyed only when the signing key changes.
+	 */
+	private static final class KeyedMac
+	{
+		private final Mac mac;
+
+		private byte[] key;
+
+		KeyedMac(Mac mac)
+		{
+			this.mac = mac;
+		}
+
+		Mac keyedWith(byte[] signingKey)
+		{
+			if (key != signingKey)
+			{
+				try
+				{
+					mac.init(new SecretKeySpec(signingKey, "HmacSHA256"));
+				}
+				catch (GeneralSecurityException e)
+				{
+					throw new RuntimeException(e);
+				}
+
+				key = signingKey;
+			}
+
+			return mac;
+		}
+	}
+
+	/**
+	 * ISO 8601 basic format timestamp ("20110223T143542Z") and date stamp for one second, computed without calendars.
+	 */
+	static final class Timestamp
+	{
+		final long epochSecond;
+
+		final String amzDate;
+
+		final String dateStamp;
+
+		Timestamp(long epochSecond)
+		{
+			this.epochSecond = epochSecond;
+
+			long days = epochSecond / 86400;
+			int secondOfDay = (int) (epochSecond % 86400);
+
+			if (secondOfDay < 0)
+			{
+				days--;
+				secondOfDay += 86400;
+			}
+
+			// civil date from day count, valid for the proleptic Gregorian calendar
+			long z = days + 719468;
+			long era = (z >= 0 ? z : z - 146096) / 146097;
+			long dayOfEra = z - era * 146097;
+			long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+			long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+			long mp = (5 * dayOfYear + 2) / 153;
+			int day = (int) (dayOfYear - (153 * mp + 2) / 5 + 1);
+			int month = (int) (mp < 10 ? mp + 3 : mp - 9);
+			int year = (int) (yearOfEra + era * 400 + (month <= 2 ? 1 : 0));
+
+			char[] c = new char[16];
+
+			digits(c, 0, year, 4);
+			digits(c, 4, month, 2);
+			digits(c, 6, day, 2);
+			c[8] = 'T';
+			digits(c, 9, secondOfDay / 3600, 2);
+			digits(c, 11, secondOfDay / 60 % 60, 2);
+			digits(c, 13, secondOfDay % 60, 2);
+			c[15] = 'Z';
+
+			this.amzDate = new String(c);
+			this.dateStamp = amzDate.substring(0, 8);
+		}
+
+		private static void digits(char[] c, int offset, int value, int width)
+		{
+			for (int i = offset + width - 1; i >= offset; i--)
+			{
+				c[i] = (char) ('0' + value % 10);
+				value /= 10;
+			}
+		}
+	}
+}
@@ -0,0 +1,28 @@
+package com.widen.valet.internal;
+
+import java.util.Map;
+
+import com.widen.valet.Deadline;
+
+/**
+ * A pilot that can hand the response body directly to a {@link ResponseReader} instead of buffering it to a String.
+ *
+ * <p>{@link com.widen.valet.Route53Driver} uses this contract when available so large listings are parsed straight
+ * off the connection. The connection is released as soon as the reader returns.
+ */
+public interface StreamingRoute53Pilot extends Route53Pilot
+{
+	/**
+	 * @param target
+	 * 		zone ID, or change ID for {@link PilotOperation#CHANGE_INFO_GET}; null when the operation has no target
+	 * @param query
+	 * 		query parameters for {@link PilotOperation#RESOURCE_RECORD_SET_GET}, otherwise ignored
+	 * @param payload
+	 * 		request body for POST operations, otherwise ignored
+	 * @param deadline
+	 * 		bounds connect, read and the whole exchange; expiry or cancellation aborts the request
+	 * @throws com.widen.valet.DeadlineExceededException
+	 * 		if the deadline expires or is cancelled before the response is read
+	 */
+	<T> T execute(PilotOperation operation, String target, Map<String, String> query, String payload, ResponseReader<T> reader, Deadline deadline);
+}
@@ -0,0 +1,225 @@
+package com.widen.valet.internal;
+
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * Append-only dictionary of strings stored as UTF-8 in one byte array. Each distinct string gets a dense id.
+ *
+ * <p>Meant for columnar tables: a million names cost one byte array, one offset array and one hash table instead of a
+ * million String objects.
+ */
+public final class StringPool
+{
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	private byte[] data = new byte[4096];
+
+	private int dataLength;
+
+	/**
+	 * Start of string {@code id} in {@link #data}; the end is the start of the next id.
+	 */
+	private int[] offsets = new int[257];
+
+	private int[] hashes = new int[256];
+
+	private int size;
+
+	/**
+	 * Open addressing table of id + 1; 0 is an empty slot.
+	 */
+	private int[] table = new int[512];
+
+	public int size()
+	{
+		return size;
+	}
+
+	/**
+	 * @return
+	 * 		id of {@code s}, adding it if new
+	 */
+	public int add(String s)
+	{
+		byte[] bytes = s.getBytes(UTF_8);
+
+		int hash = hash(bytes, 0, bytes.length);
+
+		int slot = find(bytes, 0, bytes.length, hash);
+
+		if (table[slot] != 0)
+		{
+			return table[slot] - 1;
+		}
+
+		if (size == hashes.length)
+		{
+			hashes = Arrays.copyOf(hashes, size * 2);
+			offsets = Arrays.copyOf(offsets, size * 2 + 1);
+		}
+
+		if (dataLength + bytes.length > data.length)
+		{
+			data = Arrays.copyOf(data, Math.max(data.length * 2, dataLength + bytes.length));
+		}
+
+		System.arraycopy(bytes, 0, data, dataLength, bytes.length);
+		dataLength += bytes.length;
+
+		int id = size++;
+
+		hashes[id] = hash;
+		offsets[id + 1] = dataLength;
+		table[slot] = id + 1;
+
+		if (size * 2 > table.length)
+		{
+			rehash();
+		}
+
+		return id;
+	}
+
+	/**
+	 * @return
+	 * 		id of {@code s}, or -1 if it is not in the pool
+	 */
+	public int idOf(String s)
+	{
+		byte[] bytes = s.getBytes(UTF_8);
+
+		return table[find(bytes, 0, bytes.length, hash(bytes, 0, bytes.length))] - 1;
+	}
+
+	/**
+	 * @return
+	 * 		id in this pool of string {@code id} of {@code other}, or -1 if it is not in this pool
+	 */
+	public int idOf(StringPool other, int id)
+	{
+		int start = other.offsets[id];
+
+		return table[find(other.data, start, other.offsets[id + 1] - start, other.hashes[id])] - 1;
+	}
+
+	public String get(int id)
+	{
+		return new String(data, offsets[id], offsets[id + 1] - offsets[id], UTF_8);
+	}
+
+	/**
+	 * @return
+	 * 		true if string {@code id} ends with {@code suffix}, compared as UTF-8 bytes
+	 */
+	public boolean endsWith(int id, byte[] suffix)
+	{
+		int start = offsets[id + 1] - suffix.length;
+
+		if (start < offsets[id])
+		{
+			return false;
+		}
+
+		for (int i = 0; i < suffix.length; i++)
+		{
+			if (data[start + i] != suffix[i])
+			{
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * @return
+	 * 		bytes held, including the id and hash arrays
+	 */
+	public long getMemoryUsage()
+	{
+		return data.length + 4L * (offsets.length + hashes.length + table.length);
+	}
+
+	/**
+	 * @return
+	 * 		slot holding the string, or the empty slot where it belongs
+	 */
+	private int find(byte[] bytes, int start, int length, int hash)
+	{
+		int mask = table.length - 1;
+
+		int slot = hash & mask;
+
+		while (true)
+		{
+			int entry = table[slot];
+
+			if (entry == 0)
+			{
+				return slot;
+			}
+
+			int id = entry - 1;
+
+			if (hashes[id] == hash && equalBytes(id, bytes, start, length))
+			{
+				return slot;
+			}
+
+			slot = (slot + 1) & mask;
+		}
+	}
+
+	private boolean equalBytes(int id, byte[] bytes, int start, int length)
+	{
+		int offset = offsets[id];
+
+		if (offsets[id + 1] - offset != length)
+		{
+			return false;
+		}
+
+		for (int i = 0; i < length; i++)
+		{
+			if (data[offset + i] != bytes[start + i])
+			{
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	private void rehash()
+	{
+		table = new int[table.length * 2];
+
+		int mask = table.length - 1;
+
+		for (int id = 0; id < size; id++)
+		{
+			int slot = hashes[id] & mask;
+
+			while (table[slot] != 0)
+			{
+				slot = (slot + 1) & mask;
+			}
+
+			table[slot] = id + 1;
+		}
+	}
+
+	private static int hash(byte[] bytes, int start, int length)
+	{
+		int h = 0;
+
+		for (int i = start; i < start + length; i++)
+		{
+			h = 31 * h + bytes[i];
+		}
+
+		// spread the low bits, which pick the slot
+		return h ^ (h >>> 16);
+	}
+}
@@ -0,0 +1,30 @@
+package com.widen.valet.internal;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight Recorder event spanning one call to {@link com.widen.valet.Route53Driver#waitForSync}.
+ */
+@Name("com.widen.valet.SyncWait")
+@Label("Route53 INSYNC Wait")
+@Category({ "Valet", "Route53" })
+@Description("Time spent polling a change until Route53 reports INSYNC")
+public class SyncWaitEvent extends Event
+{
+	@Label("Zone Id")
+	public String zoneId;
+
+	@Label("Change Id")
+	public String changeId;
+
+	@Label("Polls")
+	@Description("Number of change status requests made")
+	public int polls;
+
+	@Label("Outcome")
+	public String outcome;
+}
@@ -0,0 +1,40 @@
+package com.widen.valet.internal;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight Recorder event emitted when the driver parses a Route53 response or builds a request payload.
+ */
+@Name("com.widen.valet.XmlCodec")
+@Label("Route53 XML Codec")
+@Category({ "Valet", "Route53" })
+@Description("Parse or build of a Route53 XML document")
+public class XmlCodecEvent extends Event
+{
+	public static final String PARSE = "parse";
+
+	public static final String BUILD = "build";
+
+	@Label("Zone Id")
+	public String zoneId;
+
+	@Label("Operation")
+	public String operation;
+
+	@Label("Direction")
+	@Description("'parse' for responses, 'build' for request payloads")
+	public String direction;
+
+	@Label("Payload Size")
+	@Description("Length of the XML document in characters")
+	@DataAmount
+	public long payloadSize;
+
+	@Label("Outcome")
+	public String outcome;
+}
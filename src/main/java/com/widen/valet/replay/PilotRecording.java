@@ -0,0 +1,261 @@
+package com.widen.valet.replay;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import com.widen.valet.internal.PilotOperation;
+import org.apache.commons.io.IOUtils;
+
+/**
+ * Compact, append-only log of pilot calls with their responses and timing.
+ *
+ * <p>A file holds one gzip member per recording session; gzip readers treat the concatenated members as one stream.
+ * Each session starts with a header followed by call entries. Entries are sync-flushed as they are written,
+ * so an interrupted run still leaves a readable file.
+ */
+public class PilotRecording
+{
+	private static final int MAGIC = 0x56414c54;
+
+	/**
+	 * 2: operations stored by name rather than ordinal.
+	 */
+	private static final byte VERSION = 2;
+
+	private static final byte SESSION = 'S';
+
+	private static final byte CALL = 'C';
+
+	/**
+	 * One recorded pilot call.
+	 */
+	public static class Entry
+	{
+		public final PilotOperation operation;
+
+		public final String target;
+
+		public final Map<String, String> query;
+
+		public final String payload;
+
+		/**
+		 * Response body, or null if the call failed.
+		 */
+		public final String response;
+
+		/**
+		 * Exception description if the call failed, otherwise null.
+		 */
+		public final String error;
+
+		/**
+		 * Start of the call relative to the start of its recording session.
+		 */
+		public final long startNanos;
+
+		public final long durationNanos;
+
+		public Entry(PilotOperation operation, String target, Map<String, String> query, String payload, String response, String error, long startNanos, long durationNanos)
+		{
+			this.operation = operation;
+			this.target = target;
+			this.query = query == null ? Collections.<String, String>emptyMap() : Collections.unmodifiableMap(new TreeMap<String, String>(query));
+			this.payload = payload;
+			this.response = response;
+			this.error = error;
+			this.startNanos = startNanos;
+			this.durationNanos = durationNanos;
+		}
+	}
+
+	/**
+	 * Appends a new recording session to a file.
+	 */
+	public static class Writer implements Closeable
+	{
+		private final DataOutputStream out;
+
+		private final long sessionStart = System.nanoTime();
+
+		public Writer(File file) throws IOException
+		{
+			out = new DataOutputStream(new GZIPOutputStream(new BufferedOutputStream(new FileOutputStream(file, true)), 8192, true));
+
+			out.writeByte(SESSION);
+			out.writeInt(MAGIC);
+			out.writeByte(VERSION);
+			out.writeLong(System.currentTimeMillis());
+			out.flush();
+		}
+
+		/**
+		 * @return
+		 * 		nanoseconds since this session started, for {@link Entry#startNanos}
+		 */
+		public long elapsed(long nanoTime)
+		{
+			return nanoTime - sessionStart;
+		}
+
+		public synchronized void write(Entry entry) throws IOException
+		{
+			out.writeByte(CALL);
+			writeString(entry.operation.name());
+			writeString(entry.target);
+			out.writeShort(entry.query.size());
+
+			for (Map.Entry<String, String> param : entry.query.entrySet())
+			{
+				writeString(param.getKey());
+				writeString(param.getValue());
+			}
+
+			writeString(entry.payload);
+			writeString(entry.response);
+			writeString(entry.error);
+			out.writeLong(entry.startNanos);
+			out.writeLong(entry.durationNanos);
+			out.flush();
+		}
+
+		private void writeString(String s) throws IOException
+		{
+			if (s == null)
+			{
+				out.writeInt(-1);
+				return;
+			}
+
+			byte[] bytes = s.getBytes("UTF-8");
+
+			out.writeInt(bytes.length);
+			out.write(bytes);
+		}
+
+		@Override
+		public synchronized void close() throws IOException
+		{
+			out.close();
+		}
+	}
+
+	/**
+	 * Read every entry of every session in the file, in recorded order.
+	 */
+	public static List<Entry> read(File file) throws IOException
+	{
+		List<Entry> entries = new ArrayList<Entry>();
+
+		DataInputStream in = new DataInputStream(new GZIPInputStream(new BufferedInputStream(new FileInputStream(file))));
+
+		try
+		{
+			while (true)
+			{
+				int tag = in.read();
+
+				if (tag == -1)
+				{
+					break;
+				}
+
+				if (tag == SESSION)
+				{
+					if (in.readInt() != MAGIC)
+					{
+						throw new IOException(file + " is not a pilot recording");
+					}
+
+					byte version = in.readByte();
+
+					if (version != VERSION)
+					{
+						throw new IOException(String.format("%s holds a version %s recording; only version %s can be read", file, version, VERSION));
+					}
+
+					in.readLong();
+				}
+				else if (tag == CALL)
+				{
+					PilotOperation operation = readOperation(in, file);
+					String target = readString(in);
+
+					Map<String, String> query = new TreeMap<String, String>();
+
+					for (int i = in.readShort(); i > 0; i--)
+					{
+						query.put(readString(in), readString(in));
+					}
+
+					String payload = readString(in);
+					String response = readString(in);
+					String error = readString(in);
+					long start = in.readLong();
+					long duration = in.readLong();
+
+					entries.add(new Entry(operation, target, query, payload, response, error, start, duration));
+				}
+				else
+				{
+					throw new IOException("Corrupt pilot recording " + file);
+				}
+			}
+		}
+		catch (EOFException e)
+		{
+			// recording was cut off mid-entry; keep what was complete
+		}
+		finally
+		{
+			IOUtils.closeQuietly(in);
+		}
+
+		return entries;
+	}
+
+	private static PilotOperation readOperation(DataInputStream in, File file) throws IOException
+	{
+		String name = readString(in);
+
+		try
+		{
+			return PilotOperation.valueOf(name);
+		}
+		catch (RuntimeException e)
+		{
+			throw new IOException(String.format("Unknown operation %s in pilot recording %s", name, file));
+		}
+	}
+
+	private static String readString(DataInputStream in) throws IOException
+	{
+		int length = in.readInt();
+
+		if (length < 0)
+		{
+			return null;
+		}
+
+		byte[] bytes = new byte[length];
+
+		in.readFully(bytes);
+
+		return new String(bytes, "UTF-8");
+	}
+}
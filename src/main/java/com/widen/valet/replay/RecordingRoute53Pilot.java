@@ -0,0 +1,108 @@
+package com.widen.valet.replay;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+
+import com.widen.valet.internal.PilotOperation;
+import com.widen.valet.internal.Route53Pilot;
+
+/**
+ * Pilot decorator that appends every call, with its response and timing, to a {@link PilotRecording} file.
+ *
+ * <p>Replay the file later with {@link ReplayingRoute53Pilot}.
+ */
+public class RecordingRoute53Pilot implements Route53Pilot, Closeable
+{
+	private final Route53Pilot delegate;
+
+	private final PilotRecording.Writer writer;
+
+	public RecordingRoute53Pilot(Route53Pilot delegate, File recording)
+	{
+		this.delegate = delegate;
+
+		try
+		{
+			this.writer = new PilotRecording.Writer(recording);
+		}
+		catch (IOException e)
+		{
+			throw new RuntimeException(e);
+		}
+	}
+
+	public String executeResourceRecordSetGet(String zone, Map<String, String> query)
+	{
+		return call(PilotOperation.RESOURCE_RECORD_SET_GET, zone, query, null);
+	}
+
+	public String executeResourceRecordSetsPost(String zone, String payload)
+	{
+		return call(PilotOperation.RESOURCE_RECORD_SETS_POST, zone, null, payload);
+	}
+
+	public String executeHostedZoneGet()
+	{
+		return executeHostedZoneGet(null);
+	}
+
+	public String executeHostedZoneGet(String zone)
+	{
+		return call(PilotOperation.HOSTED_ZONE_GET, zone, null, null);
+	}
+
+	public String executeHostedZonePost(String payload)
+	{
+		return call(PilotOperation.HOSTED_ZONE_POST, null, null, payload);
+	}
+
+	public String executeHostedZoneDelete(String zone)
+	{
+		return call(PilotOperation.HOSTED_ZONE_DELETE, zone, null, null);
+	}
+
+	public String executeChangeInfoGet(String changeId)
+	{
+		return call(PilotOperation.CHANGE_INFO_GET, changeId, null, null);
+	}
+
+	private String call(PilotOperation operation, String target, Map<String, String> query, String payload)
+	{
+		long start = System.nanoTime();
+
+		try
+		{
+			String response = operation.execute(delegate, target, query, payload);
+
+			record(new PilotRecording.Entry(operation, target, query, payload, response, null, writer.elapsed(start), System.nanoTime() - start));
+
+			return response;
+		}
+		catch (RuntimeException e)
+		{
+			record(new PilotRecording.Entry(operation, target, query, payload, null, e.toString(), writer.elapsed(start), System.nanoTime() - start));
+
+			throw e;
+		}
+	}
+
+	private void record(PilotRecording.Entry entry)
+	{
+		try
+		{
+			writer.write(entry);
+		}
+		catch (IOException e)
+		{
+			throw new RuntimeException(e);
+		}
+	}
+
+	@Override
+	public void close() throws IOException
+	{
+		writer.close();
+	}
+}
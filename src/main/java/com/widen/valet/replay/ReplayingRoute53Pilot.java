@@ -0,0 +1,155 @@
+package com.widen.valet.replay;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+import com.widen.valet.internal.PilotOperation;
+import com.widen.valet.internal.Route53Pilot;
+import org.apache.commons.lang.StringUtils;
+
+/**
+ * Serves responses from a {@link PilotRecording} without contacting Route53.
+ *
+ * <p>Calls are matched on operation, target and query parameters; request payloads are not compared because they
+ * contain generated values such as caller references. Matching calls receive recorded responses in order, and the
+ * last one repeats once they run out (e.g. extra INSYNC polls).
+ *
+ * <p>Each response is delayed by its recorded duration multiplied by the latency scale: 1.0 reproduces the original
+ * latency profile, 0 replays as fast as possible.
+ */
+public class ReplayingRoute53Pilot implements Route53Pilot
+{
+	private final double latencyScale;
+
+	private final Map<String, LinkedList<PilotRecording.Entry>> pending = new HashMap<String, LinkedList<PilotRecording.Entry>>();
+
+	private final Map<String, PilotRecording.Entry> last = new HashMap<String, PilotRecording.Entry>();
+
+	public ReplayingRoute53Pilot(File recording, double latencyScale) throws IOException
+	{
+		this(PilotRecording.read(recording), latencyScale);
+	}
+
+	public ReplayingRoute53Pilot(List<PilotRecording.Entry> entries, double latencyScale)
+	{
+		if (latencyScale < 0)
+		{
+			throw new IllegalArgumentException("latencyScale cannot be negative");
+		}
+
+		this.latencyScale = latencyScale;
+
+		for (PilotRecording.Entry entry : entries)
+		{
+			String key = key(entry.operation, entry.target, entry.query);
+
+			LinkedList<PilotRecording.Entry> queue = pending.get(key);
+
+			if (queue == null)
+			{
+				queue = new LinkedList<PilotRecording.Entry>();
+				pending.put(key, queue);
+			}
+
+			queue.add(entry);
+		}
+	}
+
+	public String executeResourceRecordSetGet(String zone, Map<String, String> query)
+	{
+		return replay(PilotOperation.RESOURCE_RECORD_SET_GET, zone, query);
+	}
+
+	public String executeResourceRecordSetsPost(String zone, String payload)
+	{
+		return replay(PilotOperation.RESOURCE_RECORD_SETS_POST, zone, null);
+	}
+
+	public String executeHostedZoneGet()
+	{
+		return executeHostedZoneGet(null);
+	}
+
+	public String executeHostedZoneGet(String zone)
+	{
+		return replay(PilotOperation.HOSTED_ZONE_GET, zone, null);
+	}
+
+	public String executeHostedZonePost(String payload)
+	{
+		return replay(PilotOperation.HOSTED_ZONE_POST, null, null);
+	}
+
+	public String executeHostedZoneDelete(String zone)
+	{
+		return replay(PilotOperation.HOSTED_ZONE_DELETE, zone, null);
+	}
+
+	public String executeChangeInfoGet(String changeId)
+	{
+		return replay(PilotOperation.CHANGE_INFO_GET, changeId, null);
+	}
+
+	private String replay(PilotOperation operation, String target, Map<String, String> query)
+	{
+		PilotRecording.Entry entry = next(key(operation, target, query));
+
+		if (entry == null)
+		{
+			throw new IllegalStateException(String.format("No recorded response for %s %s %s", operation, StringUtils.defaultString(target), query));
+		}
+
+		long delay = (long) (entry.durationNanos * latencyScale);
+
+		if (delay > 0)
+		{
+			try
+			{
+				TimeUnit.NANOSECONDS.sleep(delay);
+			}
+			catch (InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+			}
+		}
+
+		if (entry.error != null)
+		{
+			throw new RuntimeException("Replayed failure: " + entry.error);
+		}
+
+		return entry.response;
+	}
+
+	private synchronized PilotRecording.Entry next(String key)
+	{
+		LinkedList<PilotRecording.Entry> queue = pending.get(key);
+
+		if (queue != null && !queue.isEmpty())
+		{
+			last.put(key, queue.getFirst());
+
+			return queue.removeFirst();
+		}
+
+		return last.get(key);
+	}
+
+	private static String key(PilotOperation operation, String target, Map<String, String> query)
+	{
+		Map<String, String> sorted = new TreeMap<String, String>();
+
+		if (query != null)
+		{
+			sorted.putAll(query);
+		}
+
+		return operation + "|" + StringUtils.defaultString(target) + "|" + sorted;
+	}
+}
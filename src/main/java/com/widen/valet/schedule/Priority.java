@@ -0,0 +1,19 @@
+package com.widen.valet.schedule;
+
+/**
+ * Scheduling class of a caller. A waiting call of a higher class is always dispatched before any call of a lower one.
+ */
+public enum Priority
+{
+	/**
+	 * Someone is waiting on the answer, e.g. a deploy's single updateZone or waitForSync.
+	 */
+	INTERACTIVE,
+
+	NORMAL,
+
+	/**
+	 * Imports and other background work; runs on whatever rate budget the other classes leave.
+	 */
+	BULK
+}
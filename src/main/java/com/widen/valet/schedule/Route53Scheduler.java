@@ -0,0 +1,463 @@
+package com.widen.valet.schedule;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.widen.valet.Deadline;
+import com.widen.valet.internal.Defense;
+import com.widen.valet.internal.PilotOperation;
+import com.widen.valet.internal.RateLimiter;
+import com.widen.valet.internal.ResponseReader;
+import com.widen.valet.internal.Route53Pilot;
+import com.widen.valet.internal.StreamingRoute53Pilot;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Admits calls from many callers to one Route53 account at the account's request rate, in priority and fair-share
+ * order.
+ *
+ * <p>Each caller gets its own pilot from {@link #pilotFor(String, Priority)} and builds its driver on it. When a
+ * request token is available the scheduler dispatches the waiting call of the highest {@link Priority}; within a
+ * priority, tenants share the rate in proportion to their weights (self-clocked weighted fair queueing). A deploy's
+ * interactive calls therefore go ahead of a running bulk import, and the import uses the budget that is left.
+ *
+ * <pre>
+ * Route53Scheduler scheduler = new Route53Scheduler(new Route53PilotImpl(key, secret), 5);
+ * Route53Driver deploy = new Route53Driver(scheduler.pilotFor("deploy", Priority.INTERACTIVE));
+ * Route53Driver importer = new Route53Driver(scheduler.pilotFor("import", Priority.BULK));
+ * </pre>
+ */
+public class Route53Scheduler
+{
+	private final Logger log = LoggerFactory.getLogger(Route53Scheduler.class);
+
+	private final Route53Pilot delegate;
+
+	private final RateLimiter rateLimiter;
+
+	private final PriorityBlockingQueue<Ticket> queue = new PriorityBlockingQueue<Ticket>();
+
+	private final Map<String, Tenant> tenants = new HashMap<String, Tenant>();
+
+	private final Map<Priority, Double> virtualTime = new EnumMap<Priority, Double>(Priority.class);
+
+	private final AtomicLong sequence = new AtomicLong();
+
+	private final Thread dispatcher;
+
+	private volatile boolean running = true;
+
+	/**
+	 * @param requestsPerSecond
+	 * 		request budget of the account behind {@code delegate}; Route53 allows 5
+	 */
+	public Route53Scheduler(Route53Pilot delegate, double requestsPerSecond)
+	{
+		this(delegate, new RateLimiter(requestsPerSecond));
+	}
+
+	public Route53Scheduler(Route53Pilot delegate, RateLimiter rateLimiter)
+	{
+		Defense.notNull(delegate, "delegate");
+		Defense.notNull(rateLimiter, "rateLimiter");
+
+		this.delegate = delegate;
+		this.rateLimiter = rateLimiter;
+
+		for (Priority priority : Priority.values())
+		{
+			virtualTime.put(priority, 0.0);
+		}
+
+		dispatcher = new Thread(new Runnable()
+		{
+			public void run()
+			{
+				dispatch();
+			}
+		}, "valet-scheduler");
+		dispatcher.setDaemon(true);
+		dispatcher.start();
+	}
+
+	/**
+	 * @return
+	 * 		pilot whose calls are scheduled as {@code tenant} at {@code priority}; streams if the wrapped pilot does
+	 */
+	public StreamingRoute53Pilot pilotFor(String tenant, Priority priority)
+	{
+		Defense.notBlank(tenant, "tenant");
+		Defense.notNull(priority, "priority");
+
+		return new ScheduledPilot(tenant(tenant), priority);
+	}
+
+	/**
+	 * Share of the rate a tenant gets relative to other tenants of the same priority. Default 1.
+	 */
+	public void setWeight(String tenant, double weight)
+	{
+		if (weight <= 0)
+		{
+			throw new IllegalArgumentException("Weight must be positive");
+		}
+
+		tenant(tenant).weight = weight;
+	}
+
+	/**
+	 * @return
+	 * 		calls dispatched for {@code tenant}
+	 */
+	public long getDispatchedCount(String tenant)
+	{
+		return tenant(tenant).dispatched.get();
+	}
+
+	/**
+	 * @return
+	 * 		total time {@code tenant}'s calls spent waiting for dispatch
+	 */
+	public long getQueueWait(String tenant, TimeUnit unit)
+	{
+		return unit.convert(tenant(tenant).waitNanos.get(), TimeUnit.NANOSECONDS);
+	}
+
+	public int getQueuedCount()
+	{
+		return queue.size();
+	}
+
+	public RateLimiter getRateLimiter()
+	{
+		return rateLimiter;
+	}
+
+	/**
+	 * Stop dispatching. Calls still waiting fail.
+	 */
+	public void shutdown()
+	{
+		running = false;
+
+		dispatcher.interrupt();
+	}
+
+	private Tenant tenant(String name)
+	{
+		synchronized (tenants)
+		{
+			Tenant tenant = tenants.get(name);
+
+			if (tenant == null)
+			{
+				tenant = new Tenant();
+				tenants.put(name, tenant);
+			}
+
+			return tenant;
+		}
+	}
+
+	private void dispatch()
+	{
+		while (running)
+		{
+			try
+			{
+				// take the token first, so the choice of call is made when it can actually run
+				rateLimiter.acquire();
+
+				Ticket ticket = queue.take();
+
+				// the caller gave up after we took its ticket; keep the token for the next one
+				while (!ticket.claimed.compareAndSet(false, true))
+				{
+					ticket = queue.take();
+				}
+
+				synchronized (virtualTime)
+				{
+					virtualTime.put(ticket.priority, Math.max(virtualTime.get(ticket.priority), ticket.finishTag));
+				}
+
+				ticket.tenant.dispatched.incrementAndGet();
+				ticket.tenant.waitNanos.addAndGet(System.nanoTime() - ticket.enqueuedNanos);
+
+				ticket.granted.countDown();
+			}
+			catch (InterruptedException e)
+			{
+				if (running)
+				{
+					log.warn("Route53 scheduler interrupted while running");
+				}
+			}
+		}
+
+		for (Ticket ticket : queue)
+		{
+			ticket.granted.countDown();
+		}
+	}
+
+	/**
+	 * Block until the call may run.
+	 */
+	private void admit(Tenant tenant, Priority priority, Deadline deadline)
+	{
+		if (!running)
+		{
+			throw new IllegalStateException("Route53 scheduler has been shut down");
+		}
+
+		final Ticket ticket;
+
+		synchronized (virtualTime)
+		{
+			double start = Math.max(virtualTime.get(priority), tenant.lastFinish.get(priority));
+			double cost = 1 / tenant.weight;
+
+			tenant.lastFinish.put(priority, start + cost);
+
+			ticket = new Ticket(tenant, priority, start + cost, cost, sequence.incrementAndGet());
+		}
+
+		queue.add(ticket);
+
+		if (!running)
+		{
+			// shut down while enqueueing; the dispatcher may already have released the queue
+			queue.remove(ticket);
+			throw new IllegalStateException("Route53 scheduler has been shut down");
+		}
+
+		// a cancelled deadline releases the wait; the ticket is then abandoned below
+		Runnable release = new Runnable()
+		{
+			public void run()
+			{
+				ticket.granted.countDown();
+			}
+		};
+
+		deadline.addCancelListener(release);
+
+		try
+		{
+			boolean granted = true;
+
+			if (deadline.hasTimeLimit())
+			{
+				granted = ticket.granted.await(deadline.remaining(TimeUnit.NANOSECONDS), TimeUnit.NANOSECONDS);
+			}
+			else
+			{
+				ticket.granted.await();
+			}
+
+			if (!granted || deadline.isCancelled())
+			{
+				abandon(ticket);
+				deadline.check();
+			}
+		}
+		catch (InterruptedException e)
+		{
+			abandon(ticket);
+
+			Thread.currentThread().interrupt();
+
+			throw new RuntimeException(e);
+		}
+		finally
+		{
+			deadline.removeCancelListener(release);
+		}
+
+		if (!running)
+		{
+			throw new IllegalStateException("Route53 scheduler has been shut down");
+		}
+	}
+
+	/**
+	 * Withdraw a ticket whose call will not run: give back the tenant's share it reserved and, if the dispatcher
+	 * already granted it, return its token for the next ticket.
+	 */
+	private void abandon(Ticket ticket)
+	{
+		synchronized (virtualTime)
+		{
+			ticket.tenant.lastFinish.put(ticket.priority, ticket.tenant.lastFinish.get(ticket.priority) - ticket.cost);
+		}
+
+		queue.remove(ticket);
+
+		if (!ticket.claimed.compareAndSet(false, true))
+		{
+			rateLimiter.release();
+		}
+	}
+
+	private static class Tenant
+	{
+		volatile double weight = 1;
+
+		final Map<Priority, Double> lastFinish = new EnumMap<Priority, Double>(Priority.class);
+
+		final AtomicLong dispatched = new AtomicLong();
+
+		final AtomicLong waitNanos = new AtomicLong();
+
+		Tenant()
+		{
+			for (Priority priority : Priority.values())
+			{
+				lastFinish.put(priority, 0.0);
+			}
+		}
+	}
+
+	/**
+	 * A waiting call. Ordered by priority, then virtual finish time, then arrival.
+	 */
+	private static class Ticket implements Comparable<Ticket>
+	{
+		final Tenant tenant;
+
+		final Priority priority;
+
+		final double finishTag;
+
+		/**
+		 * Virtual time the call reserved, 1 / weight.
+		 */
+		final double cost;
+
+		final long sequence;
+
+		final long enqueuedNanos = System.nanoTime();
+
+		final CountDownLatch granted = new CountDownLatch(1);
+
+		/**
+		 * Set by whichever comes first: the dispatcher granting the ticket or the caller abandoning it.
+		 */
+		final AtomicBoolean claimed = new AtomicBoolean();
+
+		Ticket(Tenant tenant, Priority priority, double finishTag, double cost, long sequence)
+		{
+			this.tenant = tenant;
+			this.priority = priority;
+			this.finishTag = finishTag;
+			this.cost = cost;
+			this.sequence = sequence;
+		}
+
+		public int compareTo(Ticket other)
+		{
+			if (priority != other.priority)
+			{
+				return priority.compareTo(other.priority);
+			}
+
+			if (finishTag != other.finishTag)
+			{
+				return finishTag < other.finishTag ? -1 : 1;
+			}
+
+			return sequence < other.sequence ? -1 : sequence == other.sequence ? 0 : 1;
+		}
+	}
+
+	private class ScheduledPilot implements StreamingRoute53Pilot
+	{
+		private final Tenant tenant;
+
+		private final Priority priority;
+
+		ScheduledPilot(Tenant tenant, Priority priority)
+		{
+			this.tenant = tenant;
+			this.priority = priority;
+		}
+
+		public <T> T execute(PilotOperation operation, String target, Map<String, String> query, String payload, ResponseReader<T> reader, Deadline deadline)
+		{
+			admit(tenant, priority, deadline);
+
+			if (delegate instanceof StreamingRoute53Pilot)
+			{
+				return ((StreamingRoute53Pilot) delegate).execute(operation, target, query, payload, reader, deadline);
+			}
+
+			String response = operation.execute(delegate, target, query, payload);
+
+			try
+			{
+				return reader.read(new ByteArrayInputStream(response.getBytes("UTF-8")));
+			}
+			catch (UnsupportedEncodingException e)
+			{
+				throw new RuntimeException(e);
+			}
+			catch (IOException e)
+			{
+				throw new RuntimeException(e);
+			}
+		}
+
+		private String call(PilotOperation operation, String target, Map<String, String> query, String payload)
+		{
+			admit(tenant, priority, Deadline.NONE);
+
+			return operation.execute(delegate, target, query, payload);
+		}
+
+		public String executeResourceRecordSetGet(String zone, Map<String, String> query)
+		{
+			return call(PilotOperation.RESOURCE_RECORD_SET_GET, zone, query, null);
+		}
+
+		public String executeResourceRecordSetsPost(String zone, String payload)
+		{
+			return call(PilotOperation.RESOURCE_RECORD_SETS_POST, zone, null, payload);
+		}
+
+		public String executeHostedZoneGet()
+		{
+			return executeHostedZoneGet(null);
+		}
+
+		public String executeHostedZoneGet(String zone)
+		{
+			return call(PilotOperation.HOSTED_ZONE_GET, zone, null, null);
+		}
+
+		public String executeHostedZonePost(String payload)
+		{
+			return call(PilotOperation.HOSTED_ZONE_POST, null, null, payload);
+		}
+
+		public String executeHostedZoneDelete(String zone)
+		{
+			return call(PilotOperation.HOSTED_ZONE_DELETE, zone, null, null);
+		}
+
+		public String executeChangeInfoGet(String changeId)
+		{
+			return call(PilotOperation.CHANGE_INFO_GET, changeId, null, null);
+		}
+	}
+}
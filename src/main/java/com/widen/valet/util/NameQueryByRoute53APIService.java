@@ -4,12 +4,12 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import com.widen.valet.DnsName;
 import com.widen.valet.RecordType;
 import com.widen.valet.Route53Driver;
 import com.widen.valet.Zone;
 import com.widen.valet.ZoneResource;
-import org.apache.commons.lang.builder.EqualsBuilder;
-import org.apache.commons.lang.builder.HashCodeBuilder;
+import com.widen.valet.ZoneTable;
 
 public class NameQueryByRoute53APIService implements NameQueryService
 {
@@ -17,27 +17,63 @@ public class NameQueryByRoute53APIService implements NameQueryService
 
 	private final Map<RecordKey, ZoneResource> zoneMap = new HashMap<RecordKey, ZoneResource>();
 
+	private final OffHeapRecordStore store;
+
 	public NameQueryByRoute53APIService(Route53Driver driver, Zone zone)
+	{
+		this(driver, zone, null);
+	}
+
+	/**
+	 * Mirror the zone into {@code store} instead of the heap. One store can back the services of many zones; record
+	 * sets with the same name and type in two of them replace each other.
+	 *
+	 * @param store
+	 * 		off-heap store to fill and query, or null to keep the zone on the heap
+	 */
+	public NameQueryByRoute53APIService(Route53Driver driver, Zone zone, OffHeapRecordStore store)
 	{
 		this.driver = driver;
+		this.store = store;
 
 		loadZone(zone);
 	}
 
 	private void loadZone(Zone zone)
 	{
+		if (store != null)
+		{
+			// the columnar table does not intern names, so nothing of the zone stays on the heap once it is copied
+			ZoneTable table = driver.loadZoneTable(zone);
+
+			for (int row = 0; row < table.size(); row++)
+			{
+				// keyed without the set identifier, like the heap map: the last weighted record set listed answers
+				store.put(table.getName(row), table.getRecordType(row), null, table.getTtl(row), table.getResourceRecords(row));
+			}
+
+			return;
+		}
+
 		List<ZoneResource> resources = driver.listZoneRecords(zone);
 
 		for (ZoneResource resource : resources)
 		{
-			zoneMap.put(new RecordKey(resource.getName(), resource.getRecordType()), resource);
+			zoneMap.put(new RecordKey(resource.getDnsName(), resource.getRecordType()), resource);
 		}
 	}
 
 	@Override
 	public LookupRecord lookup(String name, RecordType type)
 	{
-		ZoneResource resource = zoneMap.get(new RecordKey(name, type));
+		if (store != null)
+		{
+			LookupRecord record = store.get(name, type, null);
+
+			return record == null ? LookupRecord.NON_EXISTENT_RECORD : record;
+		}
+
+		ZoneResource resource = zoneMap.get(new RecordKey(DnsName.of(name), type));
 
 		if (resource == null)
 		{
@@ -47,12 +83,12 @@ public class NameQueryByRoute53APIService implements NameQueryService
 		return new LookupRecord(name, resource.getResourceRecords(), resource.getTtl(), true);
 	}
 
-	private final class RecordKey
+	private static final class RecordKey
 	{
-		final String name;
+		final DnsName name;
 		final RecordType type;
 
-		public RecordKey(String name, RecordType type)
+		public RecordKey(DnsName name, RecordType type)
 		{
 			this.name = name;
 			this.type = type;
@@ -62,13 +98,13 @@ public class NameQueryByRoute53APIService implements NameQueryService
 		public boolean equals(Object o)
 		{
 			RecordKey rhs = (RecordKey) o;
-			return new EqualsBuilder().append(name, rhs.name).append(type, rhs.type).isEquals();
+			return name.equals(rhs.name) && type == rhs.type;
 		}
 
 		@Override
 		public int hashCode()
 		{
-			return new HashCodeBuilder().append(name).append(type).toHashCode();
+			return name.hashCode() * 31 + type.ordinal();
 		}
 	}
 }
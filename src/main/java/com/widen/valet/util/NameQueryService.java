@@ -4,8 +4,11 @@ import com.widen.valet.RecordType;
 import org.apache.commons.lang.builder.ToStringBuilder;
 
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 public interface NameQueryService
 {
@@ -19,6 +22,67 @@ public interface NameQueryService
 	 */
 	public LookupRecord lookup(String name, RecordType type);
 
+	/**
+	 * Perform many DNS lookups, one after another; implementations that query over the network keep several in flight
+	 * at once.
+	 *
+	 * @return
+	 *      a record for every distinct query, in the order of {@code queries}; {@link LookupRecord#NON_EXISTENT_RECORD}
+	 *      if name not found
+	 */
+	public default Map<Query, LookupRecord> lookupAll(Collection<Query> queries)
+	{
+		Map<Query, LookupRecord> records = new LinkedHashMap<Query, LookupRecord>();
+
+		for (Query query : queries)
+		{
+			if (!records.containsKey(query))
+			{
+				records.put(query, lookup(query.name, query.type));
+			}
+		}
+
+		return records;
+	}
+
+	public class Query
+	{
+		public final String name;
+
+		public final RecordType type;
+
+		public Query(String name, RecordType type)
+		{
+			this.name = name;
+			this.type = type;
+		}
+
+		@Override
+		public boolean equals(Object obj)
+		{
+			if (!(obj instanceof Query))
+			{
+				return false;
+			}
+
+			Query rhs = (Query) obj;
+
+			return name.equals(rhs.name) && type == rhs.type;
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return name.hashCode() * 31 + type.ordinal();
+		}
+
+		@Override
+		public String toString()
+		{
+			return new ToStringBuilder(this).append("name", name).append("type", type).toString();
+		}
+	}
+
 	public class LookupRecord
 	{
 		public static final LookupRecord NON_EXISTENT_RECORD = new LookupRecord("", Collections.<String>emptyList(), 0, false);
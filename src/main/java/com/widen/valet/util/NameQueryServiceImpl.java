@@ -2,23 +2,61 @@ package com.widen.valet.util;
 
 import com.widen.valet.RecordType;
 import org.xbill.DNS.*;
+import org.xbill.DNS.Record;
 
 import java.net.UnknownHostException;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
 
 /**
  * Query service that uses org.xbill.DNS to directly query a nameserver -- bypassing the local OS resolver.
  */
 public class NameQueryServiceImpl implements NameQueryService
 {
+	private static final int DEFAULT_MAX_IN_FLIGHT = 32;
+
 	private Resolver resolver;
 
+	private final int maxInFlight;
+
 	public NameQueryServiceImpl(String nameserver)
 	{
+		this(nameserver, SimpleResolver.DEFAULT_PORT);
+	}
+
+	/**
+	 * @param port
+	 * 		nameserver port, for a local server such as {@link com.widen.valet.emulator.Route53DnsServer}
+	 */
+	public NameQueryServiceImpl(String nameserver, int port)
+	{
+		this(nameserver, port, DEFAULT_MAX_IN_FLIGHT);
+	}
+
+	/**
+	 * @param maxInFlight
+	 * 		queries {@link #lookupAll} keeps outstanding at once; dnsjava runs each on its own thread
+	 */
+	public NameQueryServiceImpl(String nameserver, int port, int maxInFlight)
+	{
+		if (maxInFlight < 1)
+		{
+			throw new IllegalArgumentException("maxInFlight must be at least 1: " + maxInFlight);
+		}
+
+		this.maxInFlight = maxInFlight;
+
 		try
 		{
 			resolver = new SimpleResolver(nameserver);
+			resolver.setPort(port);
 			resolver.setTimeout(1);
 			resolver.setTCP(true);
 		}
@@ -44,6 +82,9 @@ public class NameQueryServiceImpl implements NameQueryService
 
 		lookup.setResolver(resolver);
 
+		// answers should reflect the nameserver's current state, not dnsjava's process-wide cache
+		lookup.setCache(null);
+
 		Record[] records = lookup.run();
 
 		if (records == null || !(records.length > 0))
@@ -64,4 +105,123 @@ public class NameQueryServiceImpl implements NameQueryService
 
 		return new LookupRecord(name, values, ttl, true);
 	}
+
+	/**
+	 * Sends the queries asynchronously, at most {@code maxInFlight} at a time. Answers that need more than the one
+	 * response (a CNAME to follow) and queries that fail are retried with {@link #lookup}, so the results match it.
+	 */
+	@Override
+	public Map<Query, LookupRecord> lookupAll(Collection<Query> queries)
+	{
+		Set<Query> distinct = new LinkedHashSet<Query>(queries);
+
+		final Map<Query, LookupRecord> answered = new ConcurrentHashMap<Query, LookupRecord>();
+
+		final Semaphore inFlight = new Semaphore(maxInFlight);
+
+		for (final Query query : distinct)
+		{
+			Message request;
+
+			try
+			{
+				request = Message.newQuery(Record.newRecord(Name.fromString(query.name, Name.root), Type.value(query.type.name()), DClass.IN));
+			}
+			catch (TextParseException e)
+			{
+				throw new RuntimeException(e);
+			}
+
+			inFlight.acquireUninterruptibly();
+
+			resolver.sendAsync(request, new ResolverListener()
+			{
+				@Override
+				public void receiveMessage(Object id, Message response)
+				{
+					try
+					{
+						LookupRecord record = toLookupRecord(query, response);
+
+						if (record != null)
+						{
+							answered.put(query, record);
+						}
+					}
+					finally
+					{
+						inFlight.release();
+					}
+				}
+
+				@Override
+				public void handleException(Object id, Exception e)
+				{
+					inFlight.release();
+				}
+			});
+		}
+
+		// every permit back means every query has completed
+		inFlight.acquireUninterruptibly(maxInFlight);
+
+		Map<Query, LookupRecord> records = new LinkedHashMap<Query, LookupRecord>();
+
+		for (Query query : distinct)
+		{
+			LookupRecord record = answered.get(query);
+
+			records.put(query, record != null ? record : lookup(query.name, query.type));
+		}
+
+		return records;
+	}
+
+	/**
+	 * @return
+	 * 		the record answered by {@code response}, or null if it takes {@link #lookup} to answer
+	 */
+	private static LookupRecord toLookupRecord(Query query, Message response)
+	{
+		int rcode = response.getRcode();
+
+		if (rcode == Rcode.NXDOMAIN)
+		{
+			return LookupRecord.NON_EXISTENT_RECORD;
+		}
+
+		if (rcode != Rcode.NOERROR)
+		{
+			return null;
+		}
+
+		int type = Type.value(query.type.name());
+
+		int ttl = 0;
+
+		boolean cname = false;
+
+		List<String> values = new ArrayList<String>();
+
+		for (Record r : response.getSectionArray(Section.ANSWER))
+		{
+			if (r.getType() == type)
+			{
+				values.add(r.rdataToString());
+
+				ttl = (int) r.getTTL();
+			}
+			else if (r.getType() == Type.CNAME)
+			{
+				cname = true;
+			}
+		}
+
+		if (values.isEmpty())
+		{
+			return cname ? null : LookupRecord.NON_EXISTENT_RECORD;
+		}
+
+		return new LookupRecord(query.name, values, ttl, true);
+	}
 }
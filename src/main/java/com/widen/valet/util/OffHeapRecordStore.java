@@ -0,0 +1,660 @@
+package com.widen.valet.util;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import com.widen.valet.DnsName;
+import com.widen.valet.RecordType;
+
+/**
+ * Record sets keyed by (name, type, set identifier), held in direct buffers outside the Java heap.
+ *
+ * <p>Entries are appended to 1 MB direct chunks and found through an open addressing index that is itself a direct
+ * buffer, so the heap cost of a store does not grow with the number of records and the garbage collector never scans
+ * them. Replaced and removed entries leave garbage in their chunk until the store compacts, which it does once garbage
+ * outweighs live data. Direct memory is returned when the dropped buffers are collected.
+ *
+ * <p>Names are compared in canonical form, so "WWW.example.com" and "www.example.com." are the same key. Safe for
+ * concurrent lookups while another thread writes.
+ */
+public class OffHeapRecordStore
+{
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	private static final int CHUNK_SIZE = 1 << 20;
+
+	/**
+	 * Index slot: entry address + 1 (0 is an empty slot), then the key hash.
+	 */
+	private static final int SLOT_SIZE = 16;
+
+	private static final RecordType[] TYPES = RecordType.values();
+
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+	private List<ByteBuffer> chunks = new ArrayList<ByteBuffer>();
+
+	/**
+	 * Write position in the last chunk.
+	 */
+	private int chunkPosition;
+
+	private ByteBuffer index;
+
+	private int slots;
+
+	private int size;
+
+	private long liveBytes;
+
+	private long garbageBytes;
+
+	public OffHeapRecordStore()
+	{
+		this(1024);
+	}
+
+	/**
+	 * @param expectedRecords
+	 * 		records to size the index for; it grows past that as needed
+	 */
+	public OffHeapRecordStore(int expectedRecords)
+	{
+		if (expectedRecords < 0)
+		{
+			throw new IllegalArgumentException("expectedRecords must not be negative: " + expectedRecords);
+		}
+
+		slots = Integer.highestOneBit(Math.max(16, expectedRecords) * 2 - 1) * 2;
+		index = ByteBuffer.allocateDirect(slots * SLOT_SIZE);
+	}
+
+	/**
+	 * Add or replace a record set.
+	 *
+	 * @param setIdentifier
+	 * 		weighted set identifier, or null
+	 */
+	public void put(String name, RecordType type, String setIdentifier, int ttl, List<String> values)
+	{
+		Key key = new Key(name, type, setIdentifier);
+
+		byte[][] encoded = new byte[values.size()][];
+
+		int length = key.encodedLength() + 4 + 2;
+
+		for (int i = 0; i < encoded.length; i++)
+		{
+			encoded[i] = values.get(i).getBytes(UTF_8);
+
+			if (encoded[i].length > 0xffff)
+			{
+				throw new IllegalArgumentException("Value longer than 65535 bytes for " + name);
+			}
+
+			length += 2 + encoded[i].length;
+		}
+
+		if (encoded.length > 0xffff)
+		{
+			throw new IllegalArgumentException("More than 65535 values for " + name);
+		}
+
+		lock.writeLock().lock();
+
+		try
+		{
+			long address = allocate(length);
+
+			ByteBuffer chunk = chunks.get(chunkOf(address));
+
+			int offset = key.write(chunk, offsetOf(address));
+
+			chunk.putInt(offset, ttl);
+			chunk.putShort(offset + 4, (short) encoded.length);
+			offset += 6;
+
+			for (byte[] value : encoded)
+			{
+				chunk.putShort(offset, (short) value.length);
+				offset = write(chunk, offset + 2, value);
+			}
+
+			int slot = find(key);
+
+			if (slotAddress(slot) >= 0)
+			{
+				garbageBytes += entryLength(slotAddress(slot));
+				liveBytes -= entryLength(slotAddress(slot));
+			}
+			else
+			{
+				size++;
+			}
+
+			index.putLong(slot * SLOT_SIZE, address + 1);
+			index.putLong(slot * SLOT_SIZE + 8, key.hash);
+			liveBytes += length;
+
+			if (size * 2 > slots)
+			{
+				resize();
+			}
+
+			if (garbageBytes > liveBytes && garbageBytes > CHUNK_SIZE)
+			{
+				compact();
+			}
+		}
+		finally
+		{
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * @return
+	 * 		the record set under {@code name} as given, or null if there is none
+	 */
+	public NameQueryService.LookupRecord get(String name, RecordType type, String setIdentifier)
+	{
+		Key key = new Key(name, type, setIdentifier);
+
+		lock.readLock().lock();
+
+		try
+		{
+			long address = slotAddress(find(key));
+
+			if (address < 0)
+			{
+				return null;
+			}
+
+			ByteBuffer chunk = chunks.get(chunkOf(address));
+
+			int offset = offsetOf(address) + key.encodedLength();
+
+			int ttl = chunk.getInt(offset);
+			int count = chunk.getShort(offset + 4) & 0xffff;
+			offset += 6;
+
+			List<String> values = new ArrayList<String>(count);
+
+			for (int i = 0; i < count; i++)
+			{
+				int length = chunk.getShort(offset) & 0xffff;
+				values.add(read(chunk, offset + 2, length));
+				offset += 2 + length;
+			}
+
+			return new NameQueryService.LookupRecord(name, Collections.unmodifiableList(values), ttl, true);
+		}
+		finally
+		{
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * @return
+	 * 		true if the record set was present
+	 */
+	public boolean remove(String name, RecordType type, String setIdentifier)
+	{
+		Key key = new Key(name, type, setIdentifier);
+
+		lock.writeLock().lock();
+
+		try
+		{
+			int slot = find(key);
+
+			long address = slotAddress(slot);
+
+			if (address < 0)
+			{
+				return false;
+			}
+
+			int length = entryLength(address);
+
+			garbageBytes += length;
+			liveBytes -= length;
+			size--;
+
+			deleteSlot(slot);
+
+			return true;
+		}
+		finally
+		{
+			lock.writeLock().unlock();
+		}
+	}
+
+	public int size()
+	{
+		lock.readLock().lock();
+
+		try
+		{
+			return size;
+		}
+		finally
+		{
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * @return
+	 * 		direct memory held by the chunks and the index
+	 */
+	public long getOffHeapBytes()
+	{
+		lock.readLock().lock();
+
+		try
+		{
+			long bytes = (long) slots * SLOT_SIZE;
+
+			for (ByteBuffer chunk : chunks)
+			{
+				bytes += chunk.capacity();
+			}
+
+			return bytes;
+		}
+		finally
+		{
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * @return
+	 * 		bytes of replaced and removed entries not yet reclaimed by compaction
+	 */
+	public long getGarbageBytes()
+	{
+		lock.readLock().lock();
+
+		try
+		{
+			return garbageBytes;
+		}
+		finally
+		{
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Copy the live entries into fresh chunks, dropping the garbage.
+	 */
+	public void compact()
+	{
+		lock.writeLock().lock();
+
+		try
+		{
+			List<ByteBuffer> old = chunks;
+
+			chunks = new ArrayList<ByteBuffer>();
+			chunkPosition = 0;
+
+			for (int slot = 0; slot < slots; slot++)
+			{
+				long address = slotAddress(slot);
+
+				if (address < 0)
+				{
+					continue;
+				}
+
+				ByteBuffer from = old.get(chunkOf(address));
+
+				int length = entryLength(from, offsetOf(address));
+
+				long moved = allocate(length);
+
+				ByteBuffer to = chunks.get(chunkOf(moved));
+
+				int source = offsetOf(address);
+				int target = offsetOf(moved);
+
+				for (int i = 0; i < length; i++)
+				{
+					to.put(target + i, from.get(source + i));
+				}
+
+				index.putLong(slot * SLOT_SIZE, moved + 1);
+			}
+
+			garbageBytes = 0;
+		}
+		finally
+		{
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Drop every record set.
+	 */
+	public void clear()
+	{
+		lock.writeLock().lock();
+
+		try
+		{
+			chunks = new ArrayList<ByteBuffer>();
+			chunkPosition = 0;
+
+			for (int i = 0; i < slots * SLOT_SIZE; i += 8)
+			{
+				index.putLong(i, 0);
+			}
+
+			size = 0;
+			liveBytes = 0;
+			garbageBytes = 0;
+		}
+		finally
+		{
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * @return
+	 * 		address of {@code length} free bytes, starting a new chunk if the last one is full
+	 */
+	private long allocate(int length)
+	{
+		if (chunks.isEmpty() || chunkPosition + length > chunks.get(chunks.size() - 1).capacity())
+		{
+			chunks.add(ByteBuffer.allocateDirect(Math.max(CHUNK_SIZE, length)));
+			chunkPosition = 0;
+		}
+
+		long address = (long) (chunks.size() - 1) << 32 | chunkPosition;
+
+		chunkPosition += length;
+
+		return address;
+	}
+
+	private static int chunkOf(long address)
+	{
+		return (int) (address >>> 32);
+	}
+
+	private static int offsetOf(long address)
+	{
+		return (int) address;
+	}
+
+	/**
+	 * @return
+	 * 		entry address in {@code slot}, or -1 if it is empty
+	 */
+	private long slotAddress(int slot)
+	{
+		return index.getLong(slot * SLOT_SIZE) - 1;
+	}
+
+	private int slotHash(int slot)
+	{
+		return (int) index.getLong(slot * SLOT_SIZE + 8);
+	}
+
+	/**
+	 * @return
+	 * 		slot holding the key, or the empty slot where it belongs
+	 */
+	private int find(Key key)
+	{
+		int mask = slots - 1;
+
+		int slot = key.hash & mask;
+
+		while (true)
+		{
+			long address = slotAddress(slot);
+
+			if (address < 0 || (slotHash(slot) == key.hash && key.matches(chunks.get(chunkOf(address)), offsetOf(address))))
+			{
+				return slot;
+			}
+
+			slot = (slot + 1) & mask;
+		}
+	}
+
+	/**
+	 * Empty {@code slot}, shifting later entries of the probe run back so that lookups still reach them.
+	 */
+	private void deleteSlot(int slot)
+	{
+		int mask = slots - 1;
+
+		int hole = slot;
+
+		int next = (hole + 1) & mask;
+
+		while (slotAddress(next) >= 0)
+		{
+			int home = slotHash(next) & mask;
+
+			// move the entry into the hole unless its home lies cyclically in (hole, next]
+			boolean reachable = hole <= next ? (home > hole && home <= next) : (home > hole || home <= next);
+
+			if (!reachable)
+			{
+				index.putLong(hole * SLOT_SIZE, index.getLong(next * SLOT_SIZE));
+				index.putLong(hole * SLOT_SIZE + 8, index.getLong(next * SLOT_SIZE + 8));
+				hole = next;
+			}
+
+			next = (next + 1) & mask;
+		}
+
+		index.putLong(hole * SLOT_SIZE, 0);
+		index.putLong(hole * SLOT_SIZE + 8, 0);
+	}
+
+	private void resize()
+	{
+		ByteBuffer old = index;
+
+		int oldSlots = slots;
+
+		slots = oldSlots * 2;
+		index = ByteBuffer.allocateDirect(slots * SLOT_SIZE);
+
+		int mask = slots - 1;
+
+		for (int i = 0; i < oldSlots; i++)
+		{
+			long entry = old.getLong(i * SLOT_SIZE);
+
+			if (entry == 0)
+			{
+				continue;
+			}
+
+			long hash = old.getLong(i * SLOT_SIZE + 8);
+
+			int slot = (int) hash & mask;
+
+			while (index.getLong(slot * SLOT_SIZE) != 0)
+			{
+				slot = (slot + 1) & mask;
+			}
+
+			index.putLong(slot * SLOT_SIZE, entry);
+			index.putLong(slot * SLOT_SIZE + 8, hash);
+		}
+	}
+
+	private int entryLength(long address)
+	{
+		return entryLength(chunks.get(chunkOf(address)), offsetOf(address));
+	}
+
+	private static int entryLength(ByteBuffer chunk, int start)
+	{
+		int offset = start + 1;
+
+		offset += 2 + chunk.getShort(offset);
+
+		int setLength = chunk.getShort(offset);
+
+		offset += 2 + Math.max(setLength, 0) + 4;
+
+		int count = chunk.getShort(offset) & 0xffff;
+
+		offset += 2;
+
+		for (int i = 0; i < count; i++)
+		{
+			offset += 2 + (chunk.getShort(offset) & 0xffff);
+		}
+
+		return offset - start;
+	}
+
+	private static int write(ByteBuffer chunk, int offset, byte[] bytes)
+	{
+		for (int i = 0; i < bytes.length; i++)
+		{
+			chunk.put(offset + i, bytes[i]);
+		}
+
+		return offset + bytes.length;
+	}
+
+	private static String read(ByteBuffer chunk, int offset, int length)
+	{
+		byte[] bytes = new byte[length];
+
+		for (int i = 0; i < length; i++)
+		{
+			bytes[i] = chunk.get(offset + i);
+		}
+
+		return new String(bytes, UTF_8);
+	}
+
+	/**
+	 * Encoded key, laid out at the start of an entry as: type ordinal byte, name length short, name, set identifier
+	 * length short (-1 for none), set identifier. The TTL int, value count short and length-prefixed values follow.
+	 */
+	private static final class Key
+	{
+		final byte type;
+
+		final byte[] name;
+
+		final byte[] setIdentifier;
+
+		final int hash;
+
+		Key(String name, RecordType type, String setIdentifier)
+		{
+			if (name == null || type == null)
+			{
+				throw new IllegalArgumentException("name and type are required");
+			}
+
+			this.type = (byte) type.ordinal();
+			this.name = DnsName.canonicalize(name).getBytes(UTF_8);
+			this.setIdentifier = setIdentifier == null ? null : setIdentifier.getBytes(UTF_8);
+
+			if (this.name.length > Short.MAX_VALUE || (this.setIdentifier != null && this.setIdentifier.length > Short.MAX_VALUE))
+			{
+				throw new IllegalArgumentException("Name or set identifier too long: " + name);
+			}
+
+			int h = this.type;
+
+			h = hash(h, this.name);
+
+			if (this.setIdentifier != null)
+			{
+				h = hash(h * 31 + 1, this.setIdentifier);
+			}
+
+			this.hash = h ^ (h >>> 16);
+		}
+
+		private static int hash(int h, byte[] bytes)
+		{
+			for (byte b : bytes)
+			{
+				h = 31 * h + b;
+			}
+
+			return h;
+		}
+
+		int encodedLength()
+		{
+			return 1 + 2 + name.length + 2 + (setIdentifier == null ? 0 : setIdentifier.length);
+		}
+
+		/**
+		 * @return
+		 * 		offset just past the key
+		 */
+		int write(ByteBuffer chunk, int offset)
+		{
+			chunk.put(offset, type);
+			chunk.putShort(offset + 1, (short) name.length);
+			offset = OffHeapRecordStore.write(chunk, offset + 3, name);
+
+			chunk.putShort(offset, (short) (setIdentifier == null ? -1 : setIdentifier.length));
+
+			return setIdentifier == null ? offset + 2 : OffHeapRecordStore.write(chunk, offset + 2, setIdentifier);
+		}
+
+		boolean matches(ByteBuffer chunk, int offset)
+		{
+			if (chunk.get(offset) != type || chunk.getShort(offset + 1) != name.length || !equalBytes(chunk, offset + 3, name))
+			{
+				return false;
+			}
+
+			offset += 3 + name.length;
+
+			int setLength = chunk.getShort(offset);
+
+			if (setIdentifier == null)
+			{
+				return setLength < 0;
+			}
+
+			return setLength == setIdentifier.length && equalBytes(chunk, offset + 2, setIdentifier);
+		}
+
+		private static boolean equalBytes(ByteBuffer chunk, int offset, byte[] bytes)
+		{
+			for (int i = 0; i < bytes.length; i++)
+			{
+				if (chunk.get(offset + i) != bytes[i])
+				{
+					return false;
+				}
+			}
+
+			return true;
+		}
+	}
+}
@@ -0,0 +1,600 @@
+package com.widen.valet.util;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import com.widen.valet.DnsName;
+import com.widen.valet.RecordType;
+import com.widen.valet.Route53Driver;
+import com.widen.valet.Zone;
+import com.widen.valet.ZoneChangeListener;
+import com.widen.valet.ZoneChangeStatus;
+import com.widen.valet.ZoneResource;
+import com.widen.valet.ZoneUpdateAction;
+import org.apache.commons.lang.ObjectUtils;
+import org.apache.commons.lang.builder.ToStringBuilder;
+
+/**
+ * Answers queries from mirrored zones in memory, the way Route53's name servers would answer them: exact matches,
+ * wildcard synthesis (RFC 4592), CNAME chains and alias record sets, across every mirrored zone.
+ *
+ * <p>Registered with {@link Route53Driver#addZoneChangeListener}, it also sees changes the driver submitted before
+ * they have propagated, so a sync plan can be checked against the state it will produce. Weighted record sets answer
+ * with the values of every set. Names outside the mirrored zones, and names below a delegation, are not resolved.
+ *
+ * <pre>
+ * OfflineResolver resolver = new OfflineResolver();
+ *
+ * resolver.mirror(driver, zone);
+ *
+ * NameQueryService.LookupRecord www = resolver.lookup("www.example.com", RecordType.A);
+ * </pre>
+ */
+public class OfflineResolver implements NameQueryService, ZoneChangeListener
+{
+	/**
+	 * CNAME and alias steps followed before giving up, as recursive resolvers do.
+	 */
+	private static final int MAX_CHAIN = 10;
+
+	public enum Status
+	{
+		/**
+		 * Values found for the name and type.
+		 */
+		ANSWER,
+
+		/**
+		 * The name exists but has no record set of the type.
+		 */
+		NO_DATA,
+
+		NXDOMAIN,
+
+		/**
+		 * The answer depends on a zone that is not mirrored or on a delegation to other name servers.
+		 */
+		NOT_MIRRORED,
+
+		/**
+		 * The CNAME or alias chain loops or takes more than ten steps.
+		 */
+		CHAIN_TOO_LONG
+	}
+
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+	private final Map<DnsName, MirroredZone> zonesByApex = new HashMap<DnsName, MirroredZone>();
+
+	private final Map<String, MirroredZone> zonesById = new HashMap<String, MirroredZone>();
+
+	/**
+	 * List {@code zone} through {@code driver} and mirror it, replacing an earlier mirror of the same zone.
+	 */
+	public void mirror(Route53Driver driver, Zone zone)
+	{
+		addZone(zone.getExistentZoneId(), zone.getName(), driver.listZoneRecords(zone));
+	}
+
+	/**
+	 * Mirror a zone's record sets, replacing an earlier mirror with the same id. A zone with the same apex as another
+	 * one (private and public versions of a domain) takes over that apex.
+	 */
+	public void addZone(String zoneId, String apex, Collection<ZoneResource> resources)
+	{
+		MirroredZone zone = new MirroredZone(DnsName.of(apex));
+
+		for (ZoneResource resource : resources)
+		{
+			zone.put(new RecordSet(resource));
+		}
+
+		lock.writeLock().lock();
+
+		try
+		{
+			removeZoneLocked(zoneId);
+
+			zonesById.put(zoneId, zone);
+			zonesByApex.put(zone.apex, zone);
+		}
+		finally
+		{
+			lock.writeLock().unlock();
+		}
+	}
+
+	public void removeZone(String zoneId)
+	{
+		lock.writeLock().lock();
+
+		try
+		{
+			removeZoneLocked(zoneId);
+		}
+		finally
+		{
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Apply an accepted change batch to the mirror, if the zone is mirrored; batches for other zones are ignored.
+	 */
+	public void zoneChanged(Zone zone, List<ZoneUpdateAction> actions, ZoneChangeStatus status)
+	{
+		lock.writeLock().lock();
+
+		try
+		{
+			MirroredZone mirrored = zonesById.get(zone.getExistentZoneId());
+
+			if (mirrored != null)
+			{
+				applyLocked(mirrored, actions);
+			}
+		}
+		finally
+		{
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Apply a change batch to a mirrored zone, for example to see the result of a plan before submitting it. DELETEs
+	 * remove the record set with the action's key whatever its values.
+	 *
+	 * @throws IllegalArgumentException
+	 * 		if the zone is not mirrored
+	 */
+	public void apply(String zoneId, List<ZoneUpdateAction> actions)
+	{
+		lock.writeLock().lock();
+
+		try
+		{
+			MirroredZone zone = zonesById.get(zoneId);
+
+			if (zone == null)
+			{
+				throw new IllegalArgumentException("Zone is not mirrored: " + zoneId);
+			}
+
+			applyLocked(zone, actions);
+		}
+		finally
+		{
+			lock.writeLock().unlock();
+		}
+	}
+
+	private static void applyLocked(MirroredZone zone, List<ZoneUpdateAction> actions)
+	{
+		for (ZoneUpdateAction action : actions)
+		{
+			if ("CREATE".equals(action.getAction()))
+			{
+				zone.put(new RecordSet(action));
+			}
+			else
+			{
+				zone.remove(action.getDnsName(), action.getType(), action.getSetIdentifier());
+			}
+		}
+	}
+
+	/**
+	 * @return
+	 * 		the answer's values and TTL under {@code name} as given, or {@link LookupRecord#NON_EXISTENT_RECORD} unless
+	 * 		{@link #resolve} gives {@link Status#ANSWER}
+	 */
+	@Override
+	public LookupRecord lookup(String name, RecordType type)
+	{
+		Resolution resolution = resolve(name, type);
+
+		if (resolution.getStatus() != Status.ANSWER)
+		{
+			return LookupRecord.NON_EXISTENT_RECORD;
+		}
+
+		return new LookupRecord(name, resolution.getValues(), resolution.getTtl(), true);
+	}
+
+	public Resolution resolve(String name, RecordType type)
+	{
+		lock.readLock().lock();
+
+		try
+		{
+			return resolveLocked(DnsName.of(name), type);
+		}
+		finally
+		{
+			lock.readLock().unlock();
+		}
+	}
+
+	private void removeZoneLocked(String zoneId)
+	{
+		MirroredZone old = zonesById.remove(zoneId);
+
+		if (old != null && zonesByApex.get(old.apex) == old)
+		{
+			zonesByApex.remove(old.apex);
+		}
+	}
+
+	private Resolution resolveLocked(DnsName name, RecordType type)
+	{
+		List<String> chain = new ArrayList<String>();
+
+		Set<DnsName> seen = new HashSet<DnsName>();
+
+		DnsName target = name;
+
+		// an alias answers with the TTL of what it points at; a CNAME chain with the smallest TTL along it
+		int ttl = Integer.MAX_VALUE;
+
+		while (true)
+		{
+			if (!seen.add(target) || chain.size() > MAX_CHAIN)
+			{
+				return new Resolution(Status.CHAIN_TOO_LONG, chain, Collections.<String>emptyList(), 0);
+			}
+
+			chain.add(target.toString());
+
+			MirroredZone zone = zoneOf(target);
+
+			if (zone == null || zone.isDelegated(target))
+			{
+				return new Resolution(Status.NOT_MIRRORED, chain, Collections.<String>emptyList(), 0);
+			}
+
+			List<RecordSet> sets = zone.find(target);
+
+			if (sets == null)
+			{
+				return new Resolution(Status.NXDOMAIN, chain, Collections.<String>emptyList(), 0);
+			}
+
+			List<RecordSet> matching = new ArrayList<RecordSet>();
+
+			RecordSet cname = null;
+
+			for (RecordSet set : sets)
+			{
+				if (set.type == type)
+				{
+					matching.add(set);
+				}
+				else if (set.type == RecordType.CNAME && set.aliasName == null)
+				{
+					cname = set;
+				}
+			}
+
+			if (!matching.isEmpty() && matching.get(0).aliasName != null)
+			{
+				RecordSet alias = matching.get(0);
+
+				MirroredZone aliasZone = zonesById.get(alias.aliasZoneId);
+
+				if (aliasZone == null || !alias.aliasName.isSubdomainOf(aliasZone.apex))
+				{
+					return new Resolution(Status.NOT_MIRRORED, chain, Collections.<String>emptyList(), 0);
+				}
+
+				target = alias.aliasName;
+				continue;
+			}
+
+			if (!matching.isEmpty())
+			{
+				Set<String> values = new TreeSet<String>();
+
+				for (RecordSet set : matching)
+				{
+					values.addAll(set.values);
+					ttl = Math.min(ttl, set.ttl);
+				}
+
+				return new Resolution(Status.ANSWER, chain, new ArrayList<String>(values), ttl);
+			}
+
+			if (cname != null && type != RecordType.CNAME)
+			{
+				ttl = Math.min(ttl, cname.ttl);
+				target = DnsName.of(cname.values.get(0));
+				continue;
+			}
+
+			return new Resolution(Status.NO_DATA, chain, Collections.<String>emptyList(), 0);
+		}
+	}
+
+	/**
+	 * @return
+	 * 		the mirrored zone with the longest apex containing {@code name}, or null
+	 */
+	private MirroredZone zoneOf(DnsName name)
+	{
+		for (DnsName candidate = name; candidate != null; candidate = candidate.getParent())
+		{
+			MirroredZone zone = zonesByApex.get(candidate);
+
+			if (zone != null)
+			{
+				return zone;
+			}
+		}
+
+		return null;
+	}
+
+	/**
+	 * Outcome of a resolution and the names it went through.
+	 */
+	public static final class Resolution
+	{
+		private final Status status;
+
+		private final List<String> chain;
+
+		private final List<String> values;
+
+		private final int ttl;
+
+		Resolution(Status status, List<String> chain, List<String> values, int ttl)
+		{
+			this.status = status;
+			this.chain = Collections.unmodifiableList(chain);
+			this.values = Collections.unmodifiableList(values);
+			this.ttl = ttl;
+		}
+
+		public Status getStatus()
+		{
+			return status;
+		}
+
+		/**
+		 * @return
+		 * 		the queried name followed by each CNAME or alias target resolved
+		 */
+		public List<String> getChain()
+		{
+			return chain;
+		}
+
+		/**
+		 * @return
+		 * 		sorted values of the answer; empty unless {@link Status#ANSWER}
+		 */
+		public List<String> getValues()
+		{
+			return values;
+		}
+
+		public int getTtl()
+		{
+			return ttl;
+		}
+
+		@Override
+		public String toString()
+		{
+			return new ToStringBuilder(this).append("status", status).append("chain", chain).append("values", values).append("ttl", ttl).toString();
+		}
+	}
+
+	/**
+	 * One record set of a mirrored zone.
+	 */
+	private static final class RecordSet
+	{
+		final DnsName name;
+
+		final RecordType type;
+
+		final String setIdentifier;
+
+		final int ttl;
+
+		final List<String> values;
+
+		final String aliasZoneId;
+
+		final DnsName aliasName;
+
+		RecordSet(ZoneResource resource)
+		{
+			this(resource.getDnsName(), resource.getRecordType(), resource.getWrrSetIdentifier(), resource.getTtl(), resource.getResourceRecords(), resource.getAliasZoneId(), resource.getAliasDnsName());
+		}
+
+		RecordSet(ZoneUpdateAction action)
+		{
+			this(action.getDnsName(), action.getType(), action.getSetIdentifier(), action.getTtl(), action.getResourceRecords(), action.getAliasZoneId(), action.getAliasDnsName());
+		}
+
+		private RecordSet(DnsName name, RecordType type, String setIdentifier, int ttl, List<String> values, String aliasZoneId, String aliasName)
+		{
+			this.name = name;
+			this.type = type;
+			this.setIdentifier = setIdentifier;
+			this.ttl = ttl;
+			this.values = values;
+			this.aliasZoneId = aliasZoneId;
+			this.aliasName = aliasName == null ? null : DnsName.of(aliasName);
+		}
+
+		boolean sameKey(RecordType type, String setIdentifier)
+		{
+			return this.type == type && ObjectUtils.equals(this.setIdentifier, setIdentifier);
+		}
+	}
+
+	/**
+	 * A zone's record sets by name, with the number of names at or below every name that has any, so that empty
+	 * non-terminals exist for wildcard matching.
+	 */
+	private static final class MirroredZone
+	{
+		final DnsName apex;
+
+		final Map<DnsName, List<RecordSet>> byName = new HashMap<DnsName, List<RecordSet>>();
+
+		final Map<DnsName, Integer> namesBelow = new HashMap<DnsName, Integer>();
+
+		/**
+		 * Names below the apex with NS record sets.
+		 */
+		final Set<DnsName> delegations = new HashSet<DnsName>();
+
+		MirroredZone(DnsName apex)
+		{
+			this.apex = apex;
+		}
+
+		void put(RecordSet set)
+		{
+			if (!set.name.isSubdomainOf(apex))
+			{
+				return;
+			}
+
+			remove(set.name, set.type, set.setIdentifier);
+
+			List<RecordSet> sets = byName.get(set.name);
+
+			if (sets == null)
+			{
+				sets = new ArrayList<RecordSet>(2);
+				byName.put(set.name, sets);
+				countName(set.name, 1);
+			}
+
+			sets.add(set);
+
+			if (set.type == RecordType.NS && set.name != apex)
+			{
+				delegations.add(set.name);
+			}
+		}
+
+		void remove(DnsName name, RecordType type, String setIdentifier)
+		{
+			List<RecordSet> sets = byName.get(name);
+
+			if (sets == null)
+			{
+				return;
+			}
+
+			for (int i = 0; i < sets.size(); i++)
+			{
+				if (sets.get(i).sameKey(type, setIdentifier))
+				{
+					sets.remove(i);
+					break;
+				}
+			}
+
+			if (type == RecordType.NS)
+			{
+				delegations.remove(name);
+			}
+
+			if (sets.isEmpty())
+			{
+				byName.remove(name);
+				countName(name, -1);
+			}
+		}
+
+		private void countName(DnsName name, int delta)
+		{
+			for (DnsName n = name; n != null && n.isSubdomainOf(apex); n = n.getParent())
+			{
+				Integer count = namesBelow.get(n);
+
+				int updated = (count == null ? 0 : count) + delta;
+
+				if (updated == 0)
+				{
+					namesBelow.remove(n);
+				}
+				else
+				{
+					namesBelow.put(n, updated);
+				}
+			}
+		}
+
+		/**
+		 * @return
+		 * 		true if a name between the apex and {@code name} delegates to other name servers
+		 */
+		boolean isDelegated(DnsName name)
+		{
+			if (delegations.isEmpty())
+			{
+				return false;
+			}
+
+			for (DnsName n = name; n != apex && n != null; n = n.getParent())
+			{
+				if (delegations.contains(n))
+				{
+					return true;
+				}
+			}
+
+			return false;
+		}
+
+		/**
+		 * @return
+		 * 		record sets of {@code name}, synthesized from the closest wildcard if it has none and does not exist;
+		 * 		empty for an empty non-terminal; null if the name does not exist
+		 */
+		List<RecordSet> find(DnsName name)
+		{
+			List<RecordSet> sets = byName.get(name);
+
+			if (sets != null)
+			{
+				return sets;
+			}
+
+			if (namesBelow.containsKey(name))
+			{
+				return Collections.emptyList();
+			}
+
+			DnsName encloser = name.getParent();
+
+			while (encloser != null && encloser.isSubdomainOf(apex) && !namesBelow.containsKey(encloser))
+			{
+				encloser = encloser.getParent();
+			}
+
+			if (encloser == null || !encloser.isSubdomainOf(apex))
+			{
+				return null;
+			}
+
+			return byName.get(DnsName.of("*." + encloser));
+		}
+	}
+}
@@ -0,0 +1,225 @@
+package com.widen.valet;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import com.widen.valet.emulator.Route53Emulator;
+import com.widen.valet.emulator.Route53EmulatorServer;
+import com.widen.valet.internal.Route53PilotImpl;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class DeadlineTest
+{
+	private ServerSocket stalled;
+
+	private final List<Socket> accepted = new CopyOnWriteArrayList<Socket>();
+
+	private Thread acceptor;
+
+	private Route53Driver driver;
+
+	@Before
+	public void startStalledServer() throws IOException
+	{
+		stalled = new ServerSocket(0, 10, InetAddress.getByName("127.0.0.1"));
+
+		acceptor = new Thread(new Runnable()
+		{
+			public void run()
+			{
+				try
+				{
+					while (true)
+					{
+						accepted.add(stalled.accept());
+					}
+				}
+				catch (IOException e)
+				{
+				}
+			}
+		});
+		acceptor.setDaemon(true);
+		acceptor.start();
+
+		String endpoint = String.format("http://127.0.0.1:%s/2011-05-05/", stalled.getLocalPort());
+
+		driver = new Route53Driver(new Route53PilotImpl("access", "secret", Route53PilotImpl.newDefaultHttpClient(), endpoint));
+	}
+
+	@After
+	public void stop() throws IOException, InterruptedException
+	{
+		stalled.close();
+
+		// closing the server socket ends the acceptor, so no socket is added after this
+		acceptor.join();
+
+		for (Socket socket : accepted)
+		{
+			socket.close();
+		}
+	}
+
+	@Test
+	public void expiredDeadlineAbortsStalledRequest()
+	{
+		Zone zone = new Zone("ZSTALLED", "example.com.", "", "", new ArrayList<String>());
+
+		long start = System.nanoTime();
+
+		try
+		{
+			driver.listZoneRecords(zone, Deadline.after(300, TimeUnit.MILLISECONDS));
+			fail("stalled listing returned");
+		}
+		catch (DeadlineExceededException e)
+		{
+			assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 5000);
+		}
+	}
+
+	@Test
+	public void cancelAbortsStalledRequestAndFreesConnection() throws Exception
+	{
+		final Deadline deadline = Deadline.cancellable();
+
+		Thread canceller = new Thread(new Runnable()
+		{
+			public void run()
+			{
+				try
+				{
+					Thread.sleep(200);
+				}
+				catch (InterruptedException e)
+				{
+				}
+
+				deadline.cancel();
+			}
+		});
+		canceller.start();
+
+		try
+		{
+			driver.listZones(deadline);
+			fail("stalled call returned");
+		}
+		catch (DeadlineExceededException e)
+		{
+			assertTrue(deadline.isCancelled());
+		}
+
+		// the single connection of the default client must be usable again
+		try
+		{
+			driver.listZones(Deadline.after(200, TimeUnit.MILLISECONDS));
+			fail("stalled call returned");
+		}
+		catch (DeadlineExceededException e)
+		{
+		}
+	}
+
+	@Test
+	public void expiredDeadlineAbortsStalledBody() throws Exception
+	{
+		final ServerSocket halfBody = new ServerSocket(0, 10, InetAddress.getByName("127.0.0.1"));
+
+		Thread responder = new Thread(new Runnable()
+		{
+			public void run()
+			{
+				try
+				{
+					Socket socket = halfBody.accept();
+
+					accepted.add(socket);
+
+					BufferedReader request = new BufferedReader(new InputStreamReader(socket.getInputStream(), "US-ASCII"));
+
+					while (!request.readLine().isEmpty())
+					{
+						// skip the request head
+					}
+
+					OutputStream out = socket.getOutputStream();
+
+					out.write(("HTTP/1.1 200 OK\r\nContent-Type: text/xml\r\nContent-Length: 4096\r\n\r\n"
+							+ "<?xml version=\"1.0\"?><ListHostedZonesResponse xmlns=\"https://route53.amazonaws.com/doc/2011-05-05/\">"
+							+ "<HostedZones><HostedZone><Id>/hostedzone/Z1</Id>").getBytes("US-ASCII"));
+					out.flush();
+
+					// stall with the rest of the body unsent
+				}
+				catch (IOException e)
+				{
+				}
+			}
+		});
+		responder.setDaemon(true);
+		responder.start();
+
+		String endpoint = String.format("http://127.0.0.1:%s/2011-05-05/", halfBody.getLocalPort());
+
+		Route53Driver stalledBody = new Route53Driver(new Route53PilotImpl("access", "secret", Route53PilotImpl.newDefaultHttpClient(), endpoint));
+
+		try
+		{
+			stalledBody.listZones(Deadline.after(300, TimeUnit.MILLISECONDS));
+			fail("half sent listing returned");
+		}
+		catch (DeadlineExceededException e)
+		{
+		}
+		finally
+		{
+			halfBody.close();
+		}
+	}
+
+	@Test
+	public void waitForSyncGivesUpAtDeadline()
+	{
+		Route53EmulatorServer server = new Route53EmulatorServer(new Route53Emulator.Builder().withInsyncDelay(1, TimeUnit.HOURS).build(), 0);
+		server.start();
+
+		try
+		{
+			Route53Driver emulated = new Route53Driver(new Route53PilotImpl("access", "secret", Route53PilotImpl.newDefaultHttpClient(), server.getEndpoint()));
+
+			ZoneChangeStatus created = emulated.createZone("example.com.", "");
+
+			long start = System.nanoTime();
+
+			try
+			{
+				emulated.waitForSync(created, Deadline.after(500, TimeUnit.MILLISECONDS));
+				fail("pending change reported INSYNC");
+			}
+			catch (DeadlineExceededException e)
+			{
+				assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 2000);
+			}
+		}
+		finally
+		{
+			server.stop();
+		}
+	}
+}
@@ -0,0 +1,96 @@
+package com.widen.valet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+public class DnsNameTest
+{
+	@Test
+	public void testNamesAreCanonicalAndInterned()
+	{
+		DnsName name = DnsName.of("WWW.Example.com");
+
+		assertEquals("www.example.com.", name.toString());
+		assertSame(name, DnsName.of("www.example.com."));
+		assertSame(name, DnsName.of(new String("www.EXAMPLE.com.")));
+		assertSame(DnsName.ROOT, DnsName.of("."));
+	}
+
+	@Test
+	public void testUnreferencedNamesAreNotRetained() throws InterruptedException
+	{
+		WeakReference<DnsName> queried = new WeakReference<DnsName>(DnsName.of("never-stored-" + System.nanoTime() + ".example.com."));
+
+		for (int i = 0; i < 50 && queried.get() != null; i++)
+		{
+			System.gc();
+			Thread.sleep(10);
+		}
+
+		assertNull(queried.get());
+	}
+
+	@Test
+	public void testRoute53EscapesOfPrintableCharactersAreDecoded()
+	{
+		assertSame(DnsName.of("*.example.com."), DnsName.of("\\052.example.com."));
+		assertEquals("\\001.example.com.", DnsName.of("\\001.example.com.").toString());
+	}
+
+	@Test
+	public void testLabels()
+	{
+		DnsName name = DnsName.of("www.example.com.");
+
+		assertEquals(3, name.getLabelCount());
+		assertEquals("www", name.getFirstLabel());
+		assertSame(DnsName.of("example.com."), name.getParent());
+		assertSame(DnsName.ROOT, DnsName.of("com.").getParent());
+		assertNull(DnsName.ROOT.getParent());
+		assertEquals(0, DnsName.ROOT.getLabelCount());
+		assertEquals("com.example.www", name.getReversedName());
+		assertEquals("", DnsName.ROOT.getReversedName());
+
+		assertTrue(name.isSubdomainOf(DnsName.of("example.com.")));
+		assertTrue(name.isSubdomainOf(name));
+		assertTrue(name.isSubdomainOf(DnsName.ROOT));
+		assertFalse(name.isSubdomainOf(DnsName.of("ample.com.")));
+		assertFalse(DnsName.of("example.com.").isSubdomainOf(name));
+	}
+
+	/**
+	 * The example ordering of RFC 4034 section 6.1.
+	 */
+	@Test
+	public void testCanonicalOrder()
+	{
+		List<DnsName> expected = Arrays.asList(
+				DnsName.of("example."),
+				DnsName.of("a.example."),
+				DnsName.of("yljkjljk.a.example."),
+				DnsName.of("Z.a.example."),
+				DnsName.of("zABC.a.EXAMPLE."),
+				DnsName.of("z.example."),
+				DnsName.of("\\001.z.example."),
+				DnsName.of("*.z.example."),
+				DnsName.of("\\200.z.example."));
+
+		List<DnsName> sorted = new ArrayList<DnsName>(expected);
+
+		Collections.reverse(sorted);
+		Collections.sort(sorted);
+
+		assertEquals(expected, sorted);
+	}
+}
@@ -0,0 +1,80 @@
+package com.widen.valet;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import com.widen.valet.internal.Route53PilotMock;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class FlightRecorderEventTest
+{
+	@Test
+	public void testCodecAndSyncEvents() throws IOException
+	{
+		Route53Driver driver = new Route53Driver(new Route53PilotMock());
+
+		Zone zone = new Zone("Z1234", "uriahcarpenter.com.", "", "", Collections.<String>emptyList());
+
+		Recording recording = new Recording();
+		recording.enable("com.widen.valet.XmlCodec").withoutThreshold();
+		recording.enable("com.widen.valet.SyncWait").withoutThreshold();
+		recording.start();
+
+		driver.listZoneRecords(zone);
+
+		driver.waitForSync(new ZoneChangeStatus("Z1234", "C34NBUXNVUM7LE", ZoneChangeStatus.Status.PENDING, new Date()));
+
+		recording.stop();
+
+		File dump = File.createTempFile("valet", ".jfr");
+
+		List<RecordedEvent> codecEvents = new ArrayList<RecordedEvent>();
+		List<RecordedEvent> syncEvents = new ArrayList<RecordedEvent>();
+
+		try
+		{
+			recording.dump(dump.toPath());
+
+			for (RecordedEvent event : RecordingFile.readAllEvents(dump.toPath()))
+			{
+				if (event.getEventType().getName().equals("com.widen.valet.XmlCodec"))
+				{
+					codecEvents.add(event);
+				}
+				else if (event.getEventType().getName().equals("com.widen.valet.SyncWait"))
+				{
+					syncEvents.add(event);
+				}
+			}
+		}
+		finally
+		{
+			recording.close();
+			dump.delete();
+		}
+
+		assertTrue(codecEvents.size() >= 2);
+
+		RecordedEvent listing = codecEvents.get(0);
+		assertEquals("Z1234", listing.getString("zoneId"));
+		assertEquals("ResourceRecordSetGet", listing.getString("operation"));
+		assertEquals("parse", listing.getString("direction"));
+		assertEquals("ok", listing.getString("outcome"));
+		assertTrue(listing.getLong("payloadSize") > 0);
+
+		assertEquals(1, syncEvents.size());
+		assertEquals("C34NBUXNVUM7LE", syncEvents.get(0).getString("changeId"));
+		assertEquals(1, syncEvents.get(0).getInt("polls"));
+		assertEquals("INSYNC", syncEvents.get(0).getString("outcome"));
+	}
+}
@@ -0,0 +1,89 @@
+package com.widen.valet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import com.widen.valet.emulator.InMemoryRoute53Pilot;
+import org.junit.Test;
+
+public class ReverseValueIndexTest
+{
+	private static Set<String> names(Set<ReverseValueIndex.Reference> references)
+	{
+		Set<String> names = new HashSet<String>();
+
+		for (ReverseValueIndex.Reference reference : references)
+		{
+			names.add(reference.getName() + " " + reference.getRecordType());
+		}
+
+		return names;
+	}
+
+	@Test
+	public void testIndexAndFollowUpdates()
+	{
+		Route53Driver driver = new Route53Driver(new InMemoryRoute53Pilot());
+
+		Zone first = driver.zoneDetails(driver.createZone("example.com.", "").getZoneId());
+		Zone second = driver.zoneDetails(driver.createZone("example.org.", "").getZoneId());
+
+		driver.updateZone(first, "", Arrays.asList(
+				new ZoneUpdateAction.Builder().withData("www", first, RecordType.A, "10.0.0.1", "10.0.0.2").buildCreateAction(),
+				new ZoneUpdateAction.Builder().withData("web", first, RecordType.CNAME, "LB.example.net").buildCreateAction(),
+				new ZoneUpdateAction.Builder().withData("", first, RecordType.MX, "10 lb.example.net.").buildCreateAction(),
+				new ZoneUpdateAction.Builder().withData("txt", first, RecordType.TXT, "\"10.0.0.1\"").buildCreateAction()));
+
+		driver.updateZone(second, "", Arrays.asList(
+				new ZoneUpdateAction.Builder().withData("www", second, RecordType.A, "10.0.0.1").addRoundRobinData("east", 1).buildCreateAction(),
+				new ZoneUpdateAction.Builder().withData("elb", second, RecordType.A).addAliasData("Z35SXDOTRQ7X7K", "dualstack.my-elb-1.us-east-1.elb.amazonaws.com.").buildCreateAction()));
+
+		ReverseValueIndex index = new ReverseValueIndex();
+
+		driver.indexZoneValues(first, index);
+		driver.indexZoneValues(second, index);
+
+		Set<ReverseValueIndex.Reference> byIp = index.lookup("10.0.0.1");
+
+		assertEquals(new HashSet<String>(Arrays.asList("www.example.com. A", "www.example.org. A")), names(byIp));
+
+		for (ReverseValueIndex.Reference reference : byIp)
+		{
+			assertEquals(reference.getName().endsWith("org.") ? second.getExistentZoneId() : first.getExistentZoneId(), reference.getZoneId());
+			assertEquals(reference.getName().endsWith("org.") ? "east" : null, reference.getSetIdentifier());
+		}
+
+		assertEquals(new HashSet<String>(Arrays.asList("web.example.com. CNAME", "example.com. MX")), names(index.lookup("lb.example.net")));
+		assertEquals(new HashSet<String>(Arrays.asList("elb.example.org. A")), names(index.lookup("my-elb-1.us-east-1.elb.amazonaws.com")));
+		assertEquals(names(index.lookup("my-elb-1.us-east-1.elb.amazonaws.com")), names(index.lookup("dualstack.my-elb-1.us-east-1.elb.amazonaws.com.")));
+
+		driver.addZoneChangeListener(index);
+
+		ZoneResource www = driver.listSubtreeRecords(first, "www.example.com.").get(0);
+
+		driver.updateZone(first, "", Arrays.asList(
+				www.deleteAction(),
+				new ZoneUpdateAction.Builder().withData("www", first, RecordType.A, "10.0.0.9").buildCreateAction(),
+				new ZoneUpdateAction.Builder().withData("new", first, RecordType.A, "10.0.0.2").buildCreateAction()));
+
+		assertEquals(new HashSet<String>(Arrays.asList("www.example.org. A")), names(index.lookup("10.0.0.1")));
+		assertEquals(new HashSet<String>(Arrays.asList("new.example.com. A")), names(index.lookup("10.0.0.2")));
+		assertEquals(new HashSet<String>(Arrays.asList("www.example.com. A")), names(index.lookup("10.0.0.9")));
+
+		int size = index.size();
+
+		driver.indexZoneValues(first, index);
+
+		assertEquals(size, index.size());
+		assertEquals(names(index.lookup("10.0.0.9")), new HashSet<String>(Arrays.asList("www.example.com. A")));
+
+		index.removeZone(first.getExistentZoneId());
+
+		assertTrue(index.lookup("10.0.0.9").isEmpty());
+		assertEquals(1, index.lookup("10.0.0.1").size());
+	}
+}
@@ -0,0 +1,132 @@
+package com.widen.valet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import com.widen.valet.emulator.InMemoryRoute53Pilot;
+import com.widen.valet.emulator.Route53Emulator;
+import org.junit.After;
+import org.junit.Test;
+
+public class Route53RuntimeTest
+{
+	private final Route53Runtime runtime = new Route53Runtime.Builder().withRequestsPerSecond(10).build();
+
+	@After
+	public void stop()
+	{
+		runtime.shutdown();
+	}
+
+	@Test
+	public void testRateLimitsAndMetricsArePerAccount()
+	{
+		InMemoryRoute53Pilot prodBackend = new InMemoryRoute53Pilot();
+		InMemoryRoute53Pilot testBackend = new InMemoryRoute53Pilot();
+
+		String prodZone = prodBackend.getEmulator().createHostedZone("prod.com.", "");
+		String testZone = testBackend.getEmulator().createHostedZone("test.com.", "");
+
+		Route53Driver prod = runtime.driverFor("prod", prodBackend);
+		Route53Driver test = runtime.driverFor("test", testBackend);
+
+		long start = System.nanoTime();
+
+		// 10 calls fit the one second burst, the next 5 wait for tokens
+		for (int i = 0; i < 15; i++)
+		{
+			prod.zoneDetails(prodZone);
+		}
+
+		assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(400));
+
+		assertEquals("test.com.", test.zoneDetails(testZone).getName());
+
+		AccountMetrics prodMetrics = runtime.getMetrics("prod");
+
+		assertEquals(15, prodMetrics.getCallCount());
+		assertTrue(prodMetrics.getThrottledCount() >= 4);
+		assertEquals(1, runtime.getMetrics("test").getCallCount());
+		assertEquals(0, runtime.getMetrics("test").getThrottledCount());
+		assertEquals(0, runtime.getMetrics("test").getThrottleWait(TimeUnit.NANOSECONDS));
+		assertEquals(2, runtime.getAllMetrics().size());
+	}
+
+	@Test
+	public void testDriversOfOneAccountShareItsBudget()
+	{
+		InMemoryRoute53Pilot backend = new InMemoryRoute53Pilot();
+
+		String zoneId = backend.getEmulator().createHostedZone("example.com.", "");
+
+		runtime.driverFor("prod", backend).zoneDetails(zoneId);
+		runtime.driverFor("prod", backend).zoneDetails(zoneId);
+
+		assertEquals(2, runtime.getMetrics("prod").getCallCount());
+
+		try
+		{
+			runtime.driverFor("prod", new InMemoryRoute53Pilot());
+			fail("account registered twice");
+		}
+		catch (IllegalArgumentException e)
+		{
+		}
+	}
+
+	@Test
+	public void testAccountsKeepTheKeysTheyWereRegisteredWith()
+	{
+		runtime.driverFor("keyed", "AKIAFIRST", "secret");
+		runtime.driverFor("keyed", "AKIAFIRST", "secret");
+
+		assertEquals(1, runtime.getAllMetrics().size());
+
+		try
+		{
+			runtime.driverFor("keyed", "AKIASECOND", "other");
+			fail("account signed with the first keys for the second ones");
+		}
+		catch (IllegalArgumentException e)
+		{
+		}
+
+		runtime.driverFor("piloted", new InMemoryRoute53Pilot());
+
+		try
+		{
+			runtime.driverFor("piloted", "AKIAFIRST", "secret");
+			fail("account registered with a pilot took keys");
+		}
+		catch (IllegalArgumentException e)
+		{
+		}
+	}
+
+	@Test
+	public void testWaitForSyncAsyncPollsOnSharedExecutor() throws InterruptedException, ExecutionException, TimeoutException
+	{
+		InMemoryRoute53Pilot backend = new InMemoryRoute53Pilot(new Route53Emulator.Builder().withInsyncDelay(1, TimeUnit.SECONDS).build());
+
+		Route53Driver driver = runtime.driverFor("prod", backend);
+
+		Zone zone = driver.zoneDetails(backend.getEmulator().createHostedZone("example.com.", ""));
+
+		ZoneChangeStatus change = driver.updateZone(zone, "add www", new ZoneUpdateAction.Builder().withData("www", zone, RecordType.A, "10.0.0.1").buildCreateAction());
+
+		assertTrue(change.isPending());
+
+		Future<ZoneChangeStatus> sync = driver.waitForSyncAsync(change);
+
+		assertTrue(sync.get(10, TimeUnit.SECONDS).isInSync());
+		assertSame(sync.get(), sync.get());
+		assertTrue(runtime.getMetrics("prod").getCallCount() >= 4);
+	}
+}
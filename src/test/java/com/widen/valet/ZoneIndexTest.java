@@ -0,0 +1,222 @@
+package com.widen.valet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.widen.valet.emulator.InMemoryRoute53Pilot;
+import com.widen.valet.emulator.Route53Emulator;
+import com.widen.valet.util.ListUtil;
+import org.junit.Test;
+
+public class ZoneIndexTest
+{
+	private static ZoneResource a(String name)
+	{
+		return ZoneResource.create(name, RecordType.A, 300, Arrays.asList("10.0.0.1"));
+	}
+
+	private static List<String> names(List<ZoneResource> resources)
+	{
+		List<String> names = new ArrayList<String>();
+
+		for (ZoneResource resource : resources)
+		{
+			names.add(resource.getName() + " " + resource.getRecordType());
+		}
+
+		return names;
+	}
+
+	@Test
+	public void testCanonicalQueries()
+	{
+		List<ZoneResource> resources = new ArrayList<ZoneResource>(Arrays.asList(
+				a("z.example.com."),
+				a("staging.example.com."),
+				ZoneResource.create("staging.example.com.", RecordType.MX, 300, Arrays.asList("10 mx.example.com.")),
+				a("api.staging.example.com."),
+				a("\\052.staging.example.com."),
+				a("db.internal.staging.example.com."),
+				a("stagingx.example.com."),
+				a("a.example.com."),
+				a("example.com.")));
+
+		Collections.shuffle(resources);
+
+		ZoneIndex index = ZoneIndex.of(resources);
+
+		assertEquals(Arrays.asList(
+				"example.com. A",
+				"a.example.com. A",
+				"staging.example.com. A",
+				"staging.example.com. MX",
+				"*.staging.example.com. A",
+				"api.staging.example.com. A",
+				"db.internal.staging.example.com. A",
+				"stagingx.example.com. A",
+				"z.example.com. A"), names(index.toList()));
+
+		assertEquals(Arrays.asList(
+				"staging.example.com. A",
+				"staging.example.com. MX",
+				"*.staging.example.com. A",
+				"api.staging.example.com. A",
+				"db.internal.staging.example.com. A"), names(index.subtree("Staging.Example.com")));
+
+		assertEquals(1, index.countSubtree("internal.staging.example.com."));
+		assertEquals(0, index.countSubtree("missing.example.com."));
+		assertEquals(9, index.countSubtree("example.com."));
+		assertEquals(2, index.getName("staging.example.com.").size());
+
+		assertEquals(Arrays.asList("a.example.com. A", "staging.example.com. A", "staging.example.com. MX"), names(index.range("a.example.com.", "*.staging.example.com.")));
+		assertEquals(0, index.range("z.example.com.", "a.example.com.").size());
+
+		ZoneIndex replaced = index.replaceSubtree("staging.example.com.", Arrays.asList(a("new.staging.example.com.")));
+
+		assertEquals(Arrays.asList("new.staging.example.com. A"), names(replaced.subtree("staging.example.com.")));
+		assertEquals(5, replaced.size());
+
+		try
+		{
+			index.replaceSubtree("staging.example.com.", Arrays.asList(a("stagingx.example.com.")));
+			fail("replaced a subtree with a name outside it");
+		}
+		catch (IllegalArgumentException e)
+		{
+			assertTrue(e.getMessage().contains("stagingx"));
+		}
+	}
+
+	@Test
+	public void testSubtreeListingFetchesOnlyItsPages()
+	{
+		final AtomicInteger pages = new AtomicInteger();
+
+		Route53Driver driver = new Route53Driver(new InMemoryRoute53Pilot()
+		{
+			@Override
+			public String executeResourceRecordSetGet(String zone, Map<String, String> query)
+			{
+				pages.incrementAndGet();
+				return super.executeResourceRecordSetGet(zone, query);
+			}
+		});
+
+		Zone zone = driver.zoneDetails(driver.createZone("example.com.", "").getZoneId());
+
+		List<ZoneUpdateAction> actions = new ArrayList<ZoneUpdateAction>();
+
+		for (int i = 0; i < 250; i++)
+		{
+			actions.add(new ZoneUpdateAction.Builder().withData("host-" + i + ".a", zone, RecordType.A, "10.0.0.1").buildCreateAction());
+			actions.add(new ZoneUpdateAction.Builder().withData("host-" + i + ".z", zone, RecordType.A, "10.0.0.1").buildCreateAction());
+		}
+
+		for (int i = 0; i < 5; i++)
+		{
+			actions.add(new ZoneUpdateAction.Builder().withData("host-" + i + ".staging", zone, RecordType.A, "10.0.0.2").buildCreateAction());
+		}
+
+		for (List<ZoneUpdateAction> batch : ListUtil.split(actions, 100))
+		{
+			driver.updateZone(zone, "", batch);
+		}
+
+		ZoneIndex index = ZoneIndex.of(driver.listZoneRecords(zone));
+
+		int fullPages = pages.getAndSet(0);
+
+		List<ZoneResource> staging = driver.listSubtreeRecords(zone, "staging.example.com");
+
+		assertEquals(1, pages.get());
+		assertTrue(fullPages > 1);
+		assertEquals(new HashSet<ZoneResource>(index.subtree("staging.example.com.")), new HashSet<ZoneResource>(staging));
+		assertEquals(5, staging.size());
+
+		assertEquals(index.toList(), index.replaceSubtree("staging.example.com.", staging).toList());
+	}
+
+	@Test
+	public void testSubtreeListingSkipsSiblingsRoute53SortsInside()
+	{
+		final StringBuilder listing = new StringBuilder();
+
+		Route53Driver driver = new Route53Driver(new InMemoryRoute53Pilot()
+		{
+			@Override
+			public String executeResourceRecordSetGet(String zone, Map<String, String> query)
+			{
+				String xml = super.executeResourceRecordSetGet(zone, query);
+				listing.append(xml);
+				return xml;
+			}
+		});
+
+		Zone zone = driver.zoneDetails(driver.createZone("example.com.", "").getZoneId());
+
+		driver.updateZone(zone, "", Arrays.asList(
+				new ZoneUpdateAction.Builder().withData("staging", zone, RecordType.A, "10.0.0.1").buildCreateAction(),
+				new ZoneUpdateAction.Builder().withData("staging-old", zone, RecordType.A, "10.0.0.2").buildCreateAction(),
+				new ZoneUpdateAction.Builder().withData("api.staging", zone, RecordType.A, "10.0.0.3").buildCreateAction(),
+				new ZoneUpdateAction.Builder().withData("stagingx", zone, RecordType.A, "10.0.0.4").buildCreateAction()));
+
+		List<ZoneResource> staging = driver.listSubtreeRecords(zone, "staging.example.com.");
+
+		// reversed names compared as strings: "com.example.staging-old" sorts before "com.example.staging.api"
+		assertTrue(listing.indexOf("staging-old.example.com.") < listing.indexOf("api.staging.example.com."));
+
+		assertEquals(new HashSet<String>(Arrays.asList("staging.example.com. A", "api.staging.example.com. A")), new HashSet<String>(names(staging)));
+	}
+
+	@Test
+	public void testSubtreeListingPagesPastSiblings()
+	{
+		final AtomicInteger pages = new AtomicInteger();
+
+		Route53Driver driver = new Route53Driver(new InMemoryRoute53Pilot()
+		{
+			@Override
+			public String executeResourceRecordSetGet(String zone, Map<String, String> query)
+			{
+				if (pages.incrementAndGet() > 10)
+				{
+					fail("listing does not advance past " + query);
+				}
+
+				return super.executeResourceRecordSetGet(zone, query);
+			}
+		});
+
+		Zone zone = driver.zoneDetails(driver.createZone("example.com.", "").getZoneId());
+
+		List<ZoneUpdateAction> actions = new ArrayList<ZoneUpdateAction>();
+
+		actions.add(new ZoneUpdateAction.Builder().withData("staging", zone, RecordType.A, "10.0.0.1").buildCreateAction());
+		actions.add(new ZoneUpdateAction.Builder().withData("api.staging", zone, RecordType.A, "10.0.0.2").buildCreateAction());
+
+		// more siblings than fit on a page, all sorted between "staging" and "api.staging"
+		for (int i = 0; i < Route53Emulator.MAX_ITEMS + 50; i++)
+		{
+			actions.add(new ZoneUpdateAction.Builder().withData("staging-" + i, zone, RecordType.A, "10.0.1.1").buildCreateAction());
+		}
+
+		for (List<ZoneUpdateAction> batch : ListUtil.split(actions, 100))
+		{
+			driver.updateZone(zone, "", batch);
+		}
+
+		List<ZoneResource> staging = driver.listSubtreeRecords(zone, "staging.example.com.");
+
+		assertEquals(new HashSet<String>(Arrays.asList("staging.example.com. A", "api.staging.example.com. A")), new HashSet<String>(names(staging)));
+		assertEquals(2, pages.get());
+	}
+}
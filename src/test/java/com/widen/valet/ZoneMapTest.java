@@ -0,0 +1,176 @@
+package com.widen.valet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class ZoneMapTest
+{
+	private static ZoneResource a(String name, String value)
+	{
+		return ZoneResource.create(name, RecordType.A, 300, Arrays.asList(value));
+	}
+
+	@Test
+	public void testVersionsAreIndependent()
+	{
+		List<ZoneResource> resources = new ArrayList<ZoneResource>();
+
+		for (int i = 0; i < 5000; i++)
+		{
+			resources.add(a("host-" + i + ".example.com.", "10.0." + i / 256 + "." + i % 256));
+		}
+
+		ZoneMap before = ZoneMap.of(resources);
+
+		ZoneMap after = before.with(a("host-1.example.com.", "10.9.9.9")).without("host-2.example.com", RecordType.A, null).with(a("new.example.com.", "10.8.8.8"));
+
+		assertEquals(5000, before.size());
+		assertEquals(5000, after.size());
+		assertEquals("10.0.0.1", before.get("host-1.example.com.", RecordType.A, null).getFirstResource());
+		assertEquals("10.9.9.9", after.get("HOST-1.example.com", RecordType.A, null).getFirstResource());
+		assertNull(after.get("host-2.example.com.", RecordType.A, null));
+		assertNull(after.get("host-1.example.com.", RecordType.AAAA, null));
+
+		assertSame(after, after.with(a("host-1.example.com.", "10.9.9.9")));
+		assertSame(after, after.without("missing.example.com.", RecordType.A, null));
+
+		ZoneDiff diff = before.diff(after);
+
+		assertEquals(Arrays.asList(resources.get(2)), diff.getRemoved());
+		assertEquals(Arrays.asList(a("new.example.com.", "10.8.8.8")), diff.getAdded());
+		assertEquals(Arrays.asList(resources.get(1)), diff.getChangedFrom());
+		assertEquals(4, diff.toUpdateActions().size());
+
+		assertTrue(after.diff(after.reload(after.toList())).isEmpty());
+		assertTrue(before.diff(after.reload(resources)).isEmpty());
+		assertEquals(new HashSet<ZoneResource>(resources), new HashSet<ZoneResource>(after.reload(resources).toList()));
+
+		// paginated listings can repeat a record set; the unlisted one still goes
+		ZoneMap x = ZoneMap.of(Arrays.asList(a("x.example.com.", "10.0.0.1")));
+		ZoneResource y = a("y.example.com.", "10.0.0.2");
+
+		ZoneMap reloaded = x.reload(Arrays.asList(y, y));
+
+		assertEquals(1, reloaded.size());
+		assertNull(reloaded.get("x.example.com.", RecordType.A, null));
+	}
+
+	@Test
+	public void testWeightedKeys()
+	{
+		ZoneResource east = ZoneResource.create("lb.example.com.", RecordType.A, 60, Arrays.asList("10.0.0.1"), "east", 1, null, null);
+		ZoneResource west = ZoneResource.create("lb.example.com.", RecordType.A, 60, Arrays.asList("10.0.0.1"), "west", 1, null, null);
+		ZoneResource heavier = ZoneResource.create("lb.example.com.", RecordType.A, 60, Arrays.asList("10.0.0.1"), "west", 5, null, null);
+
+		ZoneMap map = ZoneMap.of(Arrays.asList(east, west));
+
+		assertEquals(2, map.size());
+		assertSame(west, map.get("lb.example.com.", RecordType.A, "west"));
+
+		ZoneDiff diff = map.diff(map.with(heavier));
+
+		assertEquals(Arrays.asList(west), diff.getChangedFrom());
+		assertEquals(Arrays.asList(heavier), diff.getChangedTo());
+	}
+
+	@Test
+	public void testApply()
+	{
+		ZoneMap map = ZoneMap.of(Arrays.asList(a("www.example.com.", "10.0.0.1")));
+
+		ZoneResource www = map.get("www.example.com.", RecordType.A, null);
+
+		ZoneMap next = map.apply(Arrays.asList(
+				www.deleteAction(),
+				new ZoneUpdateAction.Builder().withData("www.example.com.", RecordType.A, Arrays.asList("10.0.0.2")).withTtl(300).buildCreateAction()));
+
+		assertEquals("10.0.0.2", next.get("www.example.com.", RecordType.A, null).getFirstResource());
+		assertEquals(Arrays.asList(www.deleteAction(), next.get("www.example.com.", RecordType.A, null).createAction()), map.diff(next).toUpdateActions());
+
+		try
+		{
+			next.apply(Arrays.asList(www.deleteAction()));
+			fail("deleted a record set whose values changed");
+		}
+		catch (IllegalArgumentException e)
+		{
+			assertTrue(e.getMessage().contains("www.example.com."));
+		}
+
+		try
+		{
+			map.apply(Arrays.asList(www.deleteAction(), www.createAction(), www.createAction()));
+			fail("created a record set twice");
+		}
+		catch (IllegalArgumentException e)
+		{
+			assertEquals("10.0.0.1", map.get("www.example.com.", RecordType.A, null).getFirstResource());
+		}
+
+		// a stale copy takes the same batches without complaint
+		assertEquals(0, next.applyLeniently(Arrays.asList(www.deleteAction())).size());
+		assertEquals("10.0.0.1", next.applyLeniently(Arrays.asList(www.createAction())).get("www.example.com.", RecordType.A, null).getFirstResource());
+	}
+
+	@Test
+	public void testMatchesHashMap()
+	{
+		Random random = new Random(42);
+
+		Map<String, ZoneResource> model = new HashMap<String, ZoneResource>();
+
+		List<ZoneMap> versions = new ArrayList<ZoneMap>();
+
+		ZoneMap map = ZoneMap.empty();
+
+		for (int i = 0; i < 20000; i++)
+		{
+			String name = "n" + random.nextInt(2000) + ".example.com.";
+
+			if (random.nextInt(3) == 0)
+			{
+				model.remove(name);
+				map = map.without(name, RecordType.A, null);
+			}
+			else
+			{
+				ZoneResource resource = a(name, "10.0.0." + random.nextInt(4));
+				model.put(name, resource);
+				map = map.with(resource);
+			}
+
+			if (i % 5000 == 0)
+			{
+				versions.add(map);
+			}
+		}
+
+		assertEquals(model.size(), map.size());
+		assertEquals(new HashSet<ZoneResource>(model.values()), new HashSet<ZoneResource>(map.toList()));
+
+		for (ZoneMap version : versions)
+		{
+			List<ZoneUpdateAction> actions = version.diff(map).toUpdateActions();
+
+			ZoneMap applied = version.apply(actions);
+
+			assertTrue(applied.diff(map).isEmpty());
+			assertEquals(map.size(), applied.size());
+			assertEquals(Collections.emptyList(), map.diff(applied).toUpdateActions());
+		}
+	}
+}
@@ -0,0 +1,63 @@
+package com.widen.valet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+public class ZoneResourceTest
+{
+	@Test
+	public void testAddressRecordsKeepTheirValues()
+	{
+		ZoneResource single = ZoneResource.create("www.example.com.", RecordType.A, 300, Arrays.asList("10.0.0.1"));
+		ZoneResource multi = ZoneResource.create("www.example.com.", RecordType.A, 300, Arrays.asList("10.0.0.1", "10.0.0.2"));
+		ZoneResource v6 = ZoneResource.create("www.example.com.", RecordType.AAAA, 300, Arrays.asList("2001:db8::1", "2001:db8::2"));
+
+		assertEquals(Arrays.asList("10.0.0.1"), single.getResourceRecords());
+		assertEquals("10.0.0.1", single.getFirstResource());
+		assertEquals(Arrays.asList("10.0.0.1", "10.0.0.2"), multi.getResourceRecords());
+		assertEquals(Arrays.asList("2001:db8::1", "2001:db8::2"), v6.getResourceRecords());
+		assertNull(single.getWrrSetIdentifier());
+		assertNull(single.getAliasZoneId());
+	}
+
+	@Test
+	public void testValuesThatDoNotRoundTripAreKeptAsText()
+	{
+		List<String> values = Arrays.asList("010.000.000.001");
+
+		assertEquals(values, ZoneResource.create("www.example.com.", RecordType.A, 300, values).getResourceRecords());
+		assertEquals(Arrays.asList("2001:0DB8::1"), ZoneResource.create("www.example.com.", RecordType.AAAA, 300, Arrays.asList("2001:0DB8::1")).getResourceRecords());
+	}
+
+	@Test
+	public void testWeightedAndAliasResources()
+	{
+		ZoneResource weighted = ZoneResource.create("www.example.com.", RecordType.A, 60, Arrays.asList("10.0.0.1"), "set-1", 10, null, null);
+		ZoneResource alias = ZoneResource.create("example.com.", RecordType.A, 0, Collections.<String>emptyList(), null, 0, "Z3DZXE0Q79N41H", "lb-1.elb.amazonaws.com.");
+
+		assertEquals("set-1", weighted.getWrrSetIdentifier());
+		assertEquals(10, weighted.getWrrWeight());
+		assertEquals(Arrays.asList("10.0.0.1"), weighted.getResourceRecords());
+
+		assertEquals("Z3DZXE0Q79N41H", alias.getAliasZoneId());
+		assertEquals("lb-1.elb.amazonaws.com.", alias.getAliasDnsName());
+		assertEquals(0, alias.getResourceRecords().size());
+	}
+
+	@Test
+	public void testEqualityIgnoresLayout()
+	{
+		ZoneResource compact = ZoneResource.create("www.example.com.", RecordType.A, 300, Arrays.asList("10.0.0.1"));
+		ZoneResource weighted = ZoneResource.create("www.example.com.", RecordType.A, 300, Arrays.asList("10.0.0.1"), "set-1", 10, null, null);
+
+		assertEquals(compact, weighted);
+		assertEquals(compact.hashCode(), weighted.hashCode());
+		assertEquals(compact.createAction(), ZoneResource.create("WWW.example.com", RecordType.A, 300, Arrays.asList("10.0.0.1")).createAction());
+	}
+}
@@ -0,0 +1,121 @@
+package com.widen.valet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+
+import com.widen.valet.emulator.InMemoryRoute53Pilot;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ZoneTableTest
+{
+	private Route53Driver driver;
+
+	private Zone zone;
+
+	@Before
+	public void createZone()
+	{
+		driver = new Route53Driver(new InMemoryRoute53Pilot());
+
+		zone = driver.zoneDetails(driver.createZone("example.com.", "").getZoneId());
+
+		List<ZoneUpdateAction> actions = new ArrayList<ZoneUpdateAction>();
+
+		actions.add(new ZoneUpdateAction.Builder().withData("www", zone, RecordType.A, "10.0.0.1").buildCreateAction());
+		actions.add(new ZoneUpdateAction.Builder().withData("cdn", zone, RecordType.A, "10.0.0.2", "10.0.0.3").buildCreateAction());
+		actions.add(new ZoneUpdateAction.Builder().withData("img.cdn", zone, RecordType.CNAME, "cdn.example.com.").buildCreateAction());
+		actions.add(new ZoneUpdateAction.Builder().withData("lb", zone, RecordType.A, "10.0.0.1").addRoundRobinData("set-1", 1).buildCreateAction());
+		actions.add(new ZoneUpdateAction.Builder().withData("lb", zone, RecordType.A, "10.0.0.4").addRoundRobinData("set-2", 3).buildCreateAction());
+		actions.add(new ZoneUpdateAction.Builder().withData("", zone, RecordType.MX, "10 mx.example.com.").buildCreateAction());
+
+		driver.updateZone(zone, "", actions);
+	}
+
+	@Test
+	public void testTableHoldsTheListing()
+	{
+		ZoneTable table = driver.loadZoneTable(zone);
+
+		List<ZoneResource> listed = driver.listZoneRecords(zone);
+
+		assertEquals(listed.size(), table.size());
+
+		List<ZoneResource> rows = new ArrayList<ZoneResource>();
+
+		for (int row = 0; row < table.size(); row++)
+		{
+			rows.add(table.getResource(row));
+		}
+
+		assertEquals(new HashSet<ZoneResource>(listed), new HashSet<ZoneResource>(rows));
+
+		int lb = table.findRow("LB.example.com", RecordType.A, "set-2");
+
+		assertEquals(3, table.getWrrWeight(lb));
+		assertEquals(Arrays.asList("10.0.0.4"), table.getResourceRecords(lb));
+		assertEquals(-1, table.findRow("lb.example.com.", RecordType.A, null));
+	}
+
+	@Test
+	public void testScans()
+	{
+		ZoneTable table = driver.loadZoneTable(zone);
+
+		assertEquals(2, table.selectSubdomainsOf("cdn.example.com").length);
+		assertEquals(table.size(), table.selectSubdomainsOf("example.com.").length);
+		assertEquals(1, table.selectType(RecordType.MX).length);
+		assertEquals(2, table.selectValue("10.0.0.1").length);
+		assertEquals(0, table.selectValue("10.9.9.9").length);
+
+		int[] weighted = table.select(new ZoneTable.RowFilter()
+		{
+			public boolean accept(ZoneTable table, int row)
+			{
+				return table.getWrrSetIdentifier(row) != null;
+			}
+		});
+
+		assertEquals(2, weighted.length);
+	}
+
+	@Test
+	public void testDiffRevertsChanges()
+	{
+		ZoneTable before = driver.loadZoneTable(zone);
+
+		ZoneResource www = before.getResource(before.findRow("www.example.com.", RecordType.A, null));
+		ZoneResource img = before.getResource(before.findRow("img.cdn.example.com.", RecordType.CNAME, null));
+
+		driver.updateZone(zone, "", Arrays.asList(
+				www.deleteAction(),
+				new ZoneUpdateAction.Builder().withData("www", zone, RecordType.A, "10.0.0.9").buildCreateAction(),
+				img.deleteAction(),
+				new ZoneUpdateAction.Builder().withData("ftp", zone, RecordType.A, "10.0.0.5").buildCreateAction()));
+
+		ZoneTable after = driver.loadZoneTable(zone);
+
+		ZoneTable.Diff diff = before.diff(after);
+
+		assertEquals(1, diff.getRemoved().length);
+		assertEquals("img.cdn.example.com.", before.getName(diff.getRemoved()[0]));
+		assertEquals(1, diff.getAdded().length);
+		assertEquals("ftp.example.com.", after.getName(diff.getAdded()[0]));
+		assertEquals(1, diff.getChangedFrom().length);
+		assertEquals(Arrays.asList("10.0.0.9"), after.getResourceRecords(diff.getChangedTo()[0]));
+
+		ZoneDiff resources = diff.toZoneDiff();
+
+		assertEquals("img.cdn.example.com.", resources.getRemoved().get(0).getName());
+		assertEquals("10.0.0.9", resources.getChangedTo().get(0).getFirstResource());
+
+		driver.updateZone(zone, "", after.diff(before).toUpdateActions());
+
+		assertTrue(before.diff(driver.loadZoneTable(zone)).isEmpty());
+	}
+}
@@ -0,0 +1,82 @@
+package com.widen.valet.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.widen.valet.Route53Driver;
+import com.widen.valet.Zone;
+import com.widen.valet.ZoneChangeStatus;
+import com.widen.valet.ZoneResource;
+import com.widen.valet.ZoneUpdateAction;
+import com.widen.valet.util.ListUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Request payload construction and response parsing in {@link Route53Driver} against a synthetic zone.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class CodecBenchmark
+{
+	@Param({ "100", "10000", "100000", "1000000" })
+	public int records;
+
+	private Route53Driver driver;
+
+	private Zone zone;
+
+	private List<List<ZoneUpdateAction>> batches;
+
+	@Setup
+	public void setup()
+	{
+		driver = new Route53Driver(new SyntheticZonePilot(records));
+
+		zone = driver.zoneDetails(SyntheticZone.ZONE_ID);
+
+		List<ZoneUpdateAction> actions = new ArrayList<ZoneUpdateAction>();
+
+		for (ZoneResource resource : driver.listZoneRecords(zone))
+		{
+			actions.add(resource.createAction());
+		}
+
+		batches = ListUtil.split(actions, 100);
+	}
+
+	/**
+	 * Builds and submits one ChangeResourceRecordSets payload per 100 records.
+	 */
+	@Benchmark
+	public void updateZonePayload(Blackhole bh)
+	{
+		for (List<ZoneUpdateAction> batch : batches)
+		{
+			ZoneChangeStatus status = driver.updateZone(zone, null, batch);
+
+			bh.consume(status);
+		}
+	}
+
+	@Benchmark
+	public List<ZoneResource> listZoneRecords()
+	{
+		return driver.listZoneRecords(zone);
+	}
+}
@@ -0,0 +1,116 @@
+package com.widen.valet.benchmark;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.widen.valet.RecordType;
+import com.widen.valet.Route53Driver;
+import com.widen.valet.Zone;
+import com.widen.valet.ZoneUpdateAction;
+import com.widen.valet.emulator.Route53Emulator;
+import com.widen.valet.emulator.Route53EmulatorServer;
+import com.widen.valet.internal.Route53PilotImpl;
+import org.apache.http.impl.client.DefaultHttpClient;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Full zone listing over HTTP against the emulator, with and without compressed responses.
+ *
+ * <p>The {@code wireBytes} counter reports response bytes sent per listing, after compression.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(1)
+public class CompressionBenchmark
+{
+	@Param({ "1000", "10000" })
+	public int records;
+
+	@Param({ "true", "false" })
+	public boolean compression;
+
+	private Route53EmulatorServer server;
+
+	private Route53Driver driver;
+
+	private Zone zone;
+
+	@AuxCounters(AuxCounters.Type.EVENTS)
+	@State(Scope.Thread)
+	public static class Counters
+	{
+		public long wireBytes;
+
+		public long listings;
+
+		@Setup(Level.Iteration)
+		public void reset()
+		{
+			wireBytes = 0;
+			listings = 0;
+		}
+	}
+
+	@Setup(Level.Trial)
+	public void setup()
+	{
+		Route53Emulator emulator = new Route53Emulator.Builder().build();
+
+		server = new Route53EmulatorServer(emulator, 0);
+		server.start();
+
+		Route53PilotImpl pilot = new Route53PilotImpl("access", "secret", new DefaultHttpClient(), server.getEndpoint());
+
+		pilot.setCompression(compression);
+
+		driver = new Route53Driver(pilot);
+
+		zone = driver.zoneDetails(emulator.createHostedZone(SyntheticZone.ZONE_NAME, ""));
+
+		List<ZoneUpdateAction> actions = new ArrayList<ZoneUpdateAction>();
+
+		for (int i = 0; i < records; i++)
+		{
+			actions.add(new ZoneUpdateAction.Builder().withData(SyntheticZone.recordName(i), RecordType.A, Arrays.asList("10.0." + (i / 250 % 250) + "." + (i % 250))).withTtl(300).buildCreateAction());
+		}
+
+		emulator.loadRecordSets(zone.getZoneId(), actions);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown()
+	{
+		server.stop();
+	}
+
+	@Benchmark
+	public int listZoneRecords(Counters counters)
+	{
+		long start = server.getBytesSent();
+
+		int size = driver.listZoneRecords(zone).size();
+
+		counters.wireBytes += server.getBytesSent() - start;
+		counters.listings++;
+
+		return size;
+	}
+}
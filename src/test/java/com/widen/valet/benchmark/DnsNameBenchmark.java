@@ -0,0 +1,132 @@
+package com.widen.valet.benchmark;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import com.widen.valet.DnsName;
+import com.widen.valet.RecordType;
+import org.apache.commons.lang.builder.EqualsBuilder;
+import org.apache.commons.lang.builder.HashCodeBuilder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Indexing a zone by (name, type) with String names and builder hashes versus interned {@link DnsName}s. Every name
+ * has an A and a TXT record, and every name string is a fresh copy, as it is after XML parsing.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class DnsNameBenchmark
+{
+	@State(Scope.Benchmark)
+	public static class Names
+	{
+		@Param({ "10000", "1000000" })
+		public int records;
+
+		String[] parsed;
+
+		@Setup
+		public void setup()
+		{
+			parsed = new String[records];
+
+			for (int i = 0; i < records; i++)
+			{
+				parsed[i] = new String(SyntheticZone.recordName(i / 2).toCharArray());
+			}
+		}
+	}
+
+	@Benchmark
+	public Map<Object, Integer> indexStringNames(Names state)
+	{
+		Map<Object, Integer> index = new HashMap<Object, Integer>();
+
+		for (int i = 0; i < state.parsed.length; i++)
+		{
+			index.put(new StringKey(state.parsed[i], i % 2 == 0 ? RecordType.A : RecordType.TXT), i);
+		}
+
+		return index;
+	}
+
+	@Benchmark
+	public Map<Object, Integer> indexDnsNames(Names state)
+	{
+		Map<Object, Integer> index = new HashMap<Object, Integer>();
+
+		for (int i = 0; i < state.parsed.length; i++)
+		{
+			index.put(new NameKey(DnsName.of(state.parsed[i]), i % 2 == 0 ? RecordType.A : RecordType.TXT), i);
+		}
+
+		return index;
+	}
+
+	/**
+	 * The record key the query service used before {@link DnsName}.
+	 */
+	private static final class StringKey
+	{
+		final String name;
+		final RecordType type;
+
+		StringKey(String name, RecordType type)
+		{
+			this.name = name.toLowerCase();
+			this.type = type;
+		}
+
+		@Override
+		public boolean equals(Object o)
+		{
+			StringKey rhs = (StringKey) o;
+			return new EqualsBuilder().append(name, rhs.name).append(type, rhs.type).isEquals();
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return new HashCodeBuilder().append(name).append(type).toHashCode();
+		}
+	}
+
+	private static final class NameKey
+	{
+		final DnsName name;
+		final RecordType type;
+
+		NameKey(DnsName name, RecordType type)
+		{
+			this.name = name;
+			this.type = type;
+		}
+
+		@Override
+		public boolean equals(Object o)
+		{
+			NameKey rhs = (NameKey) o;
+			return name.equals(rhs.name) && type == rhs.type;
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return name.hashCode() * 31 + type.ordinal();
+		}
+	}
+}
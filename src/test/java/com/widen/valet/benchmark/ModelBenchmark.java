@@ -0,0 +1,128 @@
+package com.widen.valet.benchmark;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import com.widen.valet.Route53Driver;
+import com.widen.valet.Zone;
+import com.widen.valet.ZoneResource;
+import com.widen.valet.ZoneUpdateAction;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * equals/hashCode/compareTo cost of {@link ZoneResource} and {@link ZoneUpdateAction} over whole zones.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class ModelBenchmark
+{
+	@Param({ "100", "10000", "100000", "1000000" })
+	public int records;
+
+	private List<ZoneResource> resources;
+
+	private List<ZoneResource> equalResources;
+
+	private List<ZoneUpdateAction> actions;
+
+	@Setup
+	public void setup()
+	{
+		Route53Driver driver = new Route53Driver(new SyntheticZonePilot(records));
+
+		Zone zone = driver.zoneDetails(SyntheticZone.ZONE_ID);
+
+		resources = driver.listZoneRecords(zone);
+
+		// second listing yields equal, but not identical, instances in the same order
+		equalResources = new ArrayList<ZoneResource>(driver.listZoneRecords(zone));
+		Collections.sort(equalResources, new ResourceOrder(resources));
+
+		actions = new ArrayList<ZoneUpdateAction>();
+
+		for (ZoneResource resource : resources)
+		{
+			actions.add(resource.createAction());
+		}
+
+		Collections.shuffle(actions, new Random(42));
+	}
+
+	@Benchmark
+	public int zoneResourceHashSet()
+	{
+		return new HashSet<ZoneResource>(resources).size();
+	}
+
+	@Benchmark
+	public int zoneResourceEquals()
+	{
+		int equal = 0;
+
+		for (int i = 0; i < resources.size(); i++)
+		{
+			if (resources.get(i).equals(equalResources.get(i)))
+			{
+				equal++;
+			}
+		}
+
+		return equal;
+	}
+
+	@Benchmark
+	public int zoneUpdateActionHashSet()
+	{
+		return new HashSet<ZoneUpdateAction>(actions).size();
+	}
+
+	@Benchmark
+	public List<ZoneUpdateAction> zoneUpdateActionSort()
+	{
+		List<ZoneUpdateAction> sorted = new ArrayList<ZoneUpdateAction>(actions);
+
+		Collections.sort(sorted);
+
+		return sorted;
+	}
+
+	private static class ResourceOrder implements Comparator<ZoneResource>
+	{
+		private final Map<ZoneResource, Integer> position = new HashMap<ZoneResource, Integer>();
+
+		ResourceOrder(List<ZoneResource> order)
+		{
+			for (int i = 0; i < order.size(); i++)
+			{
+				position.put(order.get(i), i);
+			}
+		}
+
+		@Override
+		public int compare(ZoneResource lhs, ZoneResource rhs)
+		{
+			return position.get(lhs).compareTo(position.get(rhs));
+		}
+	}
+}
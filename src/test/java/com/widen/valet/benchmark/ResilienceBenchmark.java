@@ -0,0 +1,172 @@
+package com.widen.valet.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import com.widen.valet.RecordType;
+import com.widen.valet.Route53Driver;
+import com.widen.valet.Zone;
+import com.widen.valet.ZoneChangeStatus;
+import com.widen.valet.ZoneResource;
+import com.widen.valet.ZoneUpdateAction;
+import com.widen.valet.emulator.InMemoryRoute53Pilot;
+import com.widen.valet.fault.FaultInjectingRoute53Pilot;
+import com.widen.valet.fault.FaultProfile;
+import com.widen.valet.fault.LatencyDistribution;
+import com.widen.valet.internal.PilotOperation;
+import com.widen.valet.util.ListUtil;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Completion time and change throughput of a multi-batch zone update, followed by a full listing, under different
+ * Route53 fault profiles.
+ *
+ * <p>The job retries failed calls with exponential backoff the way a bulk import would have to. Throughput mode
+ * reports jobs, changes and retries per second; average time mode reports job completion time.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.AverageTime })
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 1, time = 5)
+@Measurement(iterations = 3, time = 10)
+@Fork(1)
+public class ResilienceBenchmark
+{
+	@Param({ "none", "slow", "throttled", "flaky" })
+	public String profile;
+
+	@Param({ "1000" })
+	public int records;
+
+	private InMemoryRoute53Pilot backend;
+
+	private Route53Driver driver;
+
+	@AuxCounters(AuxCounters.Type.OPERATIONS)
+	@State(Scope.Thread)
+	public static class Counters
+	{
+		public long changes;
+
+		public long retries;
+	}
+
+	@Setup(Level.Iteration)
+	public void setup()
+	{
+		backend = new InMemoryRoute53Pilot();
+
+		FaultInjectingRoute53Pilot pilot = new FaultInjectingRoute53Pilot(backend, faultProfile(profile), new Random(42));
+
+		if ("flaky".equals(profile))
+		{
+			pilot.forOperation(PilotOperation.RESOURCE_RECORD_SET_GET, new FaultProfile.Builder()
+					.withLatency(LatencyDistribution.fixed(20, TimeUnit.MILLISECONDS))
+					.withConnectionResetRate(0.05)
+					.withTruncatedResponseRate(0.05)
+					.build());
+		}
+
+		driver = new Route53Driver(pilot);
+	}
+
+	static FaultProfile faultProfile(String name)
+	{
+		if ("slow".equals(name))
+		{
+			return new FaultProfile.Builder().withLatency(LatencyDistribution.logNormal(40, TimeUnit.MILLISECONDS, 0.5)).build();
+		}
+
+		if ("throttled".equals(name))
+		{
+			return new FaultProfile.Builder().withLatency(LatencyDistribution.fixed(20, TimeUnit.MILLISECONDS)).withThrottlingRate(0.2).build();
+		}
+
+		if ("flaky".equals(name))
+		{
+			return new FaultProfile.Builder()
+					.withLatency(LatencyDistribution.fixed(20, TimeUnit.MILLISECONDS))
+					.withPriorRequestNotCompleteRate(0.05)
+					.withConnectionResetRate(0.05)
+					.build();
+		}
+
+		return FaultProfile.NONE;
+	}
+
+	@Benchmark
+	public int multiBatchUpdate(Counters counters)
+	{
+		Zone zone = new Route53Driver(backend).zoneDetails(backend.getEmulator().createHostedZone("bench.example.com.", ""));
+
+		List<ZoneUpdateAction> actions = new ArrayList<ZoneUpdateAction>();
+
+		for (int i = 0; i < records; i++)
+		{
+			actions.add(new ZoneUpdateAction.Builder().withData("host" + i, zone, RecordType.A, "10.0.0.1").buildCreateAction());
+		}
+
+		for (List<ZoneUpdateAction> batch : ListUtil.split(actions, 100))
+		{
+			ZoneChangeStatus status = null;
+
+			for (int attempt = 0; status == null; attempt++)
+			{
+				try
+				{
+					status = driver.updateZone(zone, "resilience benchmark", batch);
+				}
+				catch (RuntimeException e)
+				{
+					counters.retries++;
+					backoff(attempt);
+				}
+			}
+
+			counters.changes += batch.size();
+		}
+
+		List<ZoneResource> listing = null;
+
+		for (int attempt = 0; listing == null; attempt++)
+		{
+			try
+			{
+				listing = driver.listZoneRecords(zone);
+			}
+			catch (RuntimeException e)
+			{
+				counters.retries++;
+				backoff(attempt);
+			}
+		}
+
+		return listing.size();
+	}
+
+	private void backoff(int attempt)
+	{
+		try
+		{
+			Thread.sleep(Math.min(1000, 25L << Math.min(attempt, 6)));
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+	}
+}
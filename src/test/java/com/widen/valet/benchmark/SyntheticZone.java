@@ -0,0 +1,127 @@
+package com.widen.valet.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Generates Route53 XML responses for a synthetic hosted zone of a given size.
+ *
+ * <p>The record mix loosely follows production zones: mostly single-value A records, with CNAME, multi-value MX
+ * and weighted round-robin A sets mixed in.
+ */
+public class SyntheticZone
+{
+	public static final String ZONE_ID = "ZBENCHMARK";
+
+	public static final String ZONE_NAME = "bench.example.com.";
+
+	public static final int PAGE_SIZE = 100;
+
+	private static final String NAMESPACE = "https://route53.amazonaws.com/doc/2011-05-05/";
+
+	public static String recordName(int index)
+	{
+		return String.format("host%07d.%s", index, ZONE_NAME);
+	}
+
+	/**
+	 * @return
+	 * 		ListResourceRecordSets response pages, each holding at most {@link #PAGE_SIZE} record sets
+	 */
+	public static List<String> listingPages(int records)
+	{
+		List<String> pages = new ArrayList<String>();
+
+		for (int start = 0; start < records || pages.isEmpty(); start += PAGE_SIZE)
+		{
+			int end = Math.min(start + PAGE_SIZE, records);
+
+			StringBuilder sb = new StringBuilder(PAGE_SIZE * 256);
+
+			sb.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+			sb.append("<ListResourceRecordSetsResponse xmlns=\"").append(NAMESPACE).append("\">");
+			sb.append("<ResourceRecordSets>");
+
+			for (int i = start; i < end; i++)
+			{
+				appendRecordSet(sb, i);
+			}
+
+			sb.append("</ResourceRecordSets>");
+			sb.append("<IsTruncated>").append(end < records).append("</IsTruncated>");
+
+			if (end < records)
+			{
+				sb.append("<NextRecordName>").append(recordName(end)).append("</NextRecordName>");
+			}
+
+			sb.append("<MaxItems>").append(PAGE_SIZE).append("</MaxItems>");
+			sb.append("</ListResourceRecordSetsResponse>");
+
+			pages.add(sb.toString());
+		}
+
+		return pages;
+	}
+
+	private static void appendRecordSet(StringBuilder sb, int index)
+	{
+		sb.append("<ResourceRecordSet>");
+		sb.append("<Name>").append(recordName(index)).append("</Name>");
+
+		switch (index % 20)
+		{
+			case 0:
+				sb.append("<Type>CNAME</Type><TTL>300</TTL><ResourceRecords>");
+				appendValue(sb, "lb-" + (index % 97) + ".elb.example.net.");
+				break;
+
+			case 1:
+				sb.append("<Type>MX</Type><TTL>3600</TTL><ResourceRecords>");
+				appendValue(sb, "10 mx1." + ZONE_NAME);
+				appendValue(sb, "20 mx2." + ZONE_NAME);
+				break;
+
+			case 2:
+				sb.append("<Type>A</Type><SetIdentifier>set-").append(index).append("</SetIdentifier><Weight>10</Weight><TTL>60</TTL><ResourceRecords>");
+				appendValue(sb, address(index));
+				break;
+
+			default:
+				sb.append("<Type>A</Type><TTL>600</TTL><ResourceRecords>");
+				appendValue(sb, address(index));
+		}
+
+		sb.append("</ResourceRecords>");
+		sb.append("</ResourceRecordSet>");
+	}
+
+	private static void appendValue(StringBuilder sb, String value)
+	{
+		sb.append("<ResourceRecord><Value>").append(value).append("</Value></ResourceRecord>");
+	}
+
+	private static String address(int index)
+	{
+		return String.format("10.%d.%d.%d", (index >> 16) & 0xff, (index >> 8) & 0xff, index & 0xff);
+	}
+
+	public static String hostedZoneResponse()
+	{
+		return "<?xml version=\"1.0\" encoding=\"UTF-8\"?>"
+				+ "<GetHostedZoneResponse xmlns=\"" + NAMESPACE + "\">"
+				+ "<HostedZone><Id>/hostedzone/" + ZONE_ID + "</Id><Name>" + ZONE_NAME + "</Name>"
+				+ "<CallerReference>benchmark</CallerReference><Config><Comment>Synthetic zone</Comment></Config></HostedZone>"
+				+ "<DelegationSet><NameServers><NameServer>ns-1.awsdns-01.org</NameServer></NameServers></DelegationSet>"
+				+ "</GetHostedZoneResponse>";
+	}
+
+	public static String changeResponse(String status)
+	{
+		return "<?xml version=\"1.0\" encoding=\"UTF-8\"?>"
+				+ "<ChangeResourceRecordSetsResponse xmlns=\"" + NAMESPACE + "\">"
+				+ "<ChangeInfo><Id>/change/CBENCHMARK</Id><Status>" + status + "</Status>"
+				+ "<SubmittedAt>2011-02-23T14:35:42.005Z</SubmittedAt></ChangeInfo>"
+				+ "</ChangeResourceRecordSetsResponse>";
+	}
+}
@@ -0,0 +1,79 @@
+package com.widen.valet.benchmark;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.widen.valet.internal.Route53Pilot;
+
+/**
+ * Serves pre-generated {@link SyntheticZone} responses, so benchmarks measure the driver and not response generation.
+ *
+ * <p>Listing pages are followed using the 'name' query parameter sent by the driver.
+ */
+public class SyntheticZonePilot implements Route53Pilot
+{
+	private final List<String> pages;
+
+	private final Map<String, Integer> pageAfterName = new HashMap<String, Integer>();
+
+	private final String hostedZone = SyntheticZone.hostedZoneResponse();
+
+	private final String pendingChange = SyntheticZone.changeResponse("PENDING");
+
+	private final String syncedChange = SyntheticZone.changeResponse("INSYNC");
+
+	public SyntheticZonePilot(int records)
+	{
+		pages = SyntheticZone.listingPages(records);
+
+		for (int page = 1; page < pages.size(); page++)
+		{
+			int lastRecordOfPreviousPage = page * SyntheticZone.PAGE_SIZE - 1;
+
+			pageAfterName.put(SyntheticZone.recordName(lastRecordOfPreviousPage), page);
+		}
+	}
+
+	public String executeResourceRecordSetGet(String zone, Map<String, String> query)
+	{
+		String name = query.get("name");
+
+		if (name == null)
+		{
+			return pages.get(0);
+		}
+
+		return pages.get(pageAfterName.get(name));
+	}
+
+	public String executeResourceRecordSetsPost(String zone, String payload)
+	{
+		return pendingChange;
+	}
+
+	public String executeHostedZoneGet()
+	{
+		return hostedZone;
+	}
+
+	public String executeHostedZoneGet(String zone)
+	{
+		return hostedZone;
+	}
+
+	public String executeHostedZonePost(String payload)
+	{
+		throw new UnsupportedOperationException();
+	}
+
+	public String executeHostedZoneDelete(String zone)
+	{
+		throw new UnsupportedOperationException();
+	}
+
+	public String executeChangeInfoGet(String changeId)
+	{
+		return syncedChange;
+	}
+}
@@ -0,0 +1,72 @@
+package com.widen.valet.benchmark;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.widen.valet.internal.DateUtil;
+import com.widen.valet.util.ListUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * {@link ListUtil#split} and {@link DateUtil#fromZulu}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class UtilBenchmark
+{
+	@State(Scope.Benchmark)
+	public static class Records
+	{
+		@Param({ "100", "10000", "100000", "1000000" })
+		public int records;
+
+		List<Integer> list;
+
+		@Setup
+		public void setup()
+		{
+			list = new ArrayList<Integer>(records);
+
+			for (int i = 0; i < records; i++)
+			{
+				list.add(i);
+			}
+		}
+	}
+
+	@Benchmark
+	public List<List<Integer>> listSplit(Records state)
+	{
+		return ListUtil.split(state.list, 100);
+	}
+
+	@Benchmark
+	public Date fromZuluWithMillis()
+	{
+		return DateUtil.fromZulu("2011-02-23T14:35:42.005Z");
+	}
+
+	/**
+	 * Falls through to the second format after the first one fails.
+	 */
+	@Benchmark
+	public Date fromZuluWithSeconds()
+	{
+		return DateUtil.fromZulu("2011-02-23T14:35:42Z");
+	}
+}
@@ -0,0 +1,88 @@
+package com.widen.valet.emulator;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import com.widen.valet.RecordType;
+import com.widen.valet.Route53Driver;
+import com.widen.valet.Zone;
+import com.widen.valet.ZoneResource;
+import com.widen.valet.ZoneUpdateAction;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class InMemoryRoute53PilotTest
+{
+	@Test
+	public void testUpdatesAreVisibleToListing()
+	{
+		Route53Driver driver = new Route53Driver(new InMemoryRoute53Pilot());
+
+		Zone zone = driver.zoneDetails(driver.createZone("example.com.", "").getZoneId());
+
+		ZoneUpdateAction create = new ZoneUpdateAction.Builder().withData("www", zone, RecordType.A, "10.0.0.1").buildCreateAction();
+
+		driver.waitForSync(driver.updateZone(zone, "", create));
+
+		List<ZoneResource> resources = driver.listZoneRecords(zone);
+
+		assertEquals(3, resources.size());
+
+		ZoneResource www = null;
+
+		for (ZoneResource resource : resources)
+		{
+			if (resource.getRecordType() == RecordType.A)
+			{
+				www = resource;
+			}
+		}
+
+		assertEquals("www.example.com.", www.getName());
+
+		driver.waitForSync(driver.updateZone(zone, "", www.deleteAction()));
+
+		assertEquals(2, driver.listZoneRecords(zone).size());
+	}
+
+	@Test
+	public void testLoadedZoneIsPagedCompletely()
+	{
+		InMemoryRoute53Pilot pilot = new InMemoryRoute53Pilot();
+
+		Route53Driver driver = new Route53Driver(pilot);
+
+		String zoneId = pilot.getEmulator().createHostedZone("example.com.", "");
+
+		Zone zone = driver.zoneDetails(zoneId);
+
+		List<ZoneUpdateAction> actions = new ArrayList<ZoneUpdateAction>();
+
+		for (int i = 0; i < 1000; i++)
+		{
+			actions.add(new ZoneUpdateAction.Builder().withData("host" + i, zone, RecordType.A, "10.0.0.1").withTtl(60).buildCreateAction());
+			actions.add(new ZoneUpdateAction.Builder().withData("host" + i, zone, RecordType.TXT, "\"v=" + i + "\"").withTtl(60).buildCreateAction());
+		}
+
+		pilot.getEmulator().loadRecordSets(zoneId, actions);
+
+		assertEquals(2002, pilot.getEmulator().recordSetCount(zoneId));
+
+		Set<String> names = new HashSet<String>();
+
+		List<ZoneResource> resources = driver.listZoneRecords(zone);
+
+		for (ZoneResource resource : resources)
+		{
+			names.add(resource.getName());
+		}
+
+		assertEquals(2002, resources.size());
+		assertEquals(1001, names.size());
+		assertTrue(names.contains("host999.example.com."));
+	}
+}
@@ -0,0 +1,216 @@
+package com.widen.valet.emulator;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import com.widen.valet.RecordType;
+import com.widen.valet.Route53Driver;
+import com.widen.valet.Zone;
+import com.widen.valet.ZoneMap;
+import com.widen.valet.ZoneUpdateAction;
+import com.widen.valet.util.ListUtil;
+import com.widen.valet.util.NameQueryService;
+import com.widen.valet.util.NameQueryServiceImpl;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.xbill.DNS.DClass;
+import org.xbill.DNS.Flags;
+import org.xbill.DNS.Message;
+import org.xbill.DNS.Name;
+import org.xbill.DNS.Rcode;
+import org.xbill.DNS.Record;
+import org.xbill.DNS.Section;
+import org.xbill.DNS.SimpleResolver;
+import org.xbill.DNS.Type;
+
+public class Route53DnsServerTest
+{
+	private Route53Driver driver;
+
+	private Zone com;
+
+	private Route53DnsServer server;
+
+	@Before
+	public void startServer()
+	{
+		driver = new Route53Driver(new InMemoryRoute53Pilot());
+
+		com = driver.zoneDetails(driver.createZone("example.com.", "").getZoneId());
+		Zone org = driver.zoneDetails(driver.createZone("example.org.", "").getZoneId());
+
+		driver.updateZone(com, "", Arrays.asList(
+				new ZoneUpdateAction.Builder().withData("www", com, RecordType.A, "10.0.0.1").withTtl(300).buildCreateAction(),
+				new ZoneUpdateAction.Builder().withData("*.apps", com, RecordType.A, "10.0.0.2").buildCreateAction(),
+				new ZoneUpdateAction.Builder().withData("web", com, RecordType.CNAME, "www.example.com.").buildCreateAction(),
+				new ZoneUpdateAction.Builder().withData("lb", com, RecordType.A, "10.0.1.1").addRoundRobinData("east", 1).buildCreateAction(),
+				new ZoneUpdateAction.Builder().withData("lb", com, RecordType.A, "10.0.1.2").addRoundRobinData("west", 1).buildCreateAction()));
+
+		driver.updateZone(org, "", Arrays.asList(
+				new ZoneUpdateAction.Builder().withData("site", org, RecordType.A).addAliasData(com.getExistentZoneId(), "www.example.com.").buildCreateAction()));
+
+		server = new Route53DnsServer(0);
+
+		server.mirror(driver, com);
+		server.mirror(driver, org);
+
+		server.start();
+	}
+
+	@After
+	public void stopServer()
+	{
+		server.stop();
+	}
+
+	@Test
+	public void testAnswersOverTcp()
+	{
+		NameQueryService dns = new NameQueryServiceImpl("127.0.0.1", server.getPort());
+
+		NameQueryService.LookupRecord www = dns.lookup("www.example.com.", RecordType.A);
+
+		assertTrue(www.exists);
+		assertEquals(Arrays.asList("10.0.0.1"), www.values);
+		assertEquals(300, www.ttl);
+
+		assertEquals(Arrays.asList("10.0.0.1"), dns.lookup("site.example.org.", RecordType.A).values);
+		assertEquals(2, dns.lookup("lb.example.com.", RecordType.A).values.size());
+		assertFalse(dns.lookup("missing.example.com.", RecordType.A).exists);
+	}
+
+	@Test
+	public void testAnswersOverUdp() throws Exception
+	{
+		Message wildcard = query("db.apps.example.com.", Type.A);
+
+		assertEquals(Rcode.NOERROR, wildcard.getRcode());
+		assertTrue(wildcard.getHeader().getFlag(Flags.AA));
+
+		Record[] answer = wildcard.getSectionArray(Section.ANSWER);
+
+		assertEquals(1, answer.length);
+		assertEquals(Name.fromString("db.apps.example.com."), answer[0].getName());
+		assertEquals("10.0.0.2", answer[0].rdataToString());
+
+		Message cname = query("web.example.com.", Type.A);
+
+		assertEquals(2, cname.getSectionArray(Section.ANSWER).length);
+		assertEquals(Type.CNAME, cname.getSectionArray(Section.ANSWER)[0].getType());
+
+		Message nxdomain = query("missing.example.com.", Type.A);
+
+		assertEquals(Rcode.NXDOMAIN, nxdomain.getRcode());
+		assertEquals(Type.SOA, nxdomain.getSectionArray(Section.AUTHORITY)[0].getType());
+
+		Message noData = query("www.example.com.", Type.AAAA);
+
+		assertEquals(Rcode.NOERROR, noData.getRcode());
+		assertEquals(0, noData.getSectionArray(Section.ANSWER).length);
+
+		assertEquals(Rcode.REFUSED, query("www.example.net.", Type.A).getRcode());
+	}
+
+	@Test
+	public void testLookupAll()
+	{
+		List<ZoneUpdateAction> hosts = new ArrayList<ZoneUpdateAction>();
+
+		for (int i = 0; i < 200; i++)
+		{
+			hosts.add(new ZoneUpdateAction.Builder().withData("host-" + i, com, RecordType.A, "10.1.0." + i).buildCreateAction());
+		}
+
+		for (List<ZoneUpdateAction> batch : ListUtil.split(hosts, 100))
+		{
+			driver.updateZone(com, "", batch);
+		}
+
+		server.mirror(driver, com);
+
+		List<NameQueryService.Query> queries = new ArrayList<NameQueryService.Query>();
+
+		for (int i = 0; i < 200; i++)
+		{
+			queries.add(new NameQueryService.Query("host-" + i + ".example.com.", RecordType.A));
+		}
+
+		queries.add(new NameQueryService.Query("web.example.com.", RecordType.A));
+		queries.add(new NameQueryService.Query("missing.example.com.", RecordType.A));
+		queries.add(new NameQueryService.Query("host-7.example.com.", RecordType.A));
+
+		long before = server.getQueryCount();
+
+		Map<NameQueryService.Query, NameQueryService.LookupRecord> records = new NameQueryServiceImpl("127.0.0.1", server.getPort(), 8).lookupAll(queries);
+
+		assertEquals(202, records.size());
+		assertEquals(queries.subList(0, 202), new ArrayList<NameQueryService.Query>(records.keySet()));
+		assertEquals(202, server.getQueryCount() - before);
+
+		for (int i = 0; i < 200; i++)
+		{
+			assertEquals(Arrays.asList("10.1.0." + i), records.get(queries.get(i)).values);
+		}
+
+		assertEquals(Arrays.asList("10.0.0.1"), records.get(queries.get(200)).values);
+		assertFalse(records.get(queries.get(201)).exists);
+	}
+
+	@Test
+	public void testRefreshSwapsAnswers() throws Exception
+	{
+		driver.updateZone(com, "", Arrays.asList(
+				ZoneMap.of(driver.listZoneRecords(com)).get("www.example.com.", RecordType.A, null).deleteAction(),
+				new ZoneUpdateAction.Builder().withData("www", com, RecordType.A, "10.0.0.9").buildCreateAction()));
+
+		assertEquals("10.0.0.1", query("www.example.com.", Type.A).getSectionArray(Section.ANSWER)[0].rdataToString());
+
+		server.mirror(driver, com);
+
+		assertEquals("10.0.0.9", query("www.example.com.", Type.A).getSectionArray(Section.ANSWER)[0].rdataToString());
+		assertEquals("10.0.0.9", query("site.example.org.", Type.A).getSectionArray(Section.ANSWER)[0].rdataToString());
+
+		driver.addZoneChangeListener(server);
+
+		driver.updateZone(com, "", new ZoneUpdateAction.Builder().withData("new", com, RecordType.A, "10.0.0.10").buildCreateAction());
+
+		assertEquals("10.0.0.10", query("new.example.com.", Type.A).getSectionArray(Section.ANSWER)[0].rdataToString());
+
+		server.removeZone(com.getExistentZoneId());
+
+		assertEquals(Rcode.REFUSED, query("www.example.com.", Type.A).getRcode());
+	}
+
+	@Test
+	public void testStaleMirrorTakesChanges() throws Exception
+	{
+		// changed behind the server's back, so its mirror of www is stale
+		driver.updateZone(com, "", Arrays.asList(
+				ZoneMap.of(driver.listZoneRecords(com)).get("www.example.com.", RecordType.A, null).deleteAction(),
+				new ZoneUpdateAction.Builder().withData("www", com, RecordType.A, "10.0.0.9").buildCreateAction()));
+
+		driver.addZoneChangeListener(server);
+
+		driver.updateZone(com, "", Arrays.asList(
+				ZoneMap.of(driver.listZoneRecords(com)).get("www.example.com.", RecordType.A, null).deleteAction(),
+				new ZoneUpdateAction.Builder().withData("www", com, RecordType.A, "10.0.0.11").buildCreateAction()));
+
+		assertEquals("10.0.0.11", query("www.example.com.", Type.A).getSectionArray(Section.ANSWER)[0].rdataToString());
+	}
+
+	private Message query(String name, int type) throws Exception
+	{
+		SimpleResolver resolver = new SimpleResolver("127.0.0.1");
+
+		resolver.setPort(server.getPort());
+
+		return resolver.send(Message.newQuery(Record.newRecord(Name.fromString(name), type, DClass.IN)));
+	}
+}
@@ -0,0 +1,393 @@
+package com.widen.valet.emulator;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.widen.valet.Deadline;
+import com.widen.valet.DeadlineExceededException;
+import com.widen.valet.RecordType;
+import com.widen.valet.Route53Driver;
+import com.widen.valet.ValetException;
+import com.widen.valet.WarmUpReport;
+import com.widen.valet.Zone;
+import com.widen.valet.ZoneChangeStatus;
+import com.widen.valet.ZoneResource;
+import com.widen.valet.ZoneUpdateAction;
+import com.widen.valet.internal.PilotOperation;
+import com.widen.valet.internal.ResponseReader;
+import com.widen.valet.internal.Route53PilotImpl;
+import com.widen.valet.util.ListUtil;
+import org.apache.http.impl.client.DefaultHttpClient;
+import org.junit.After;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class Route53EmulatorTest
+{
+	private Route53EmulatorServer server;
+
+	private Route53Driver start(Route53Emulator emulator)
+	{
+		server = new Route53EmulatorServer(emulator, 0);
+		server.start();
+
+		return new Route53Driver(new Route53PilotImpl("access", "secret", new DefaultHttpClient(), server.getEndpoint()));
+	}
+
+	@After
+	public void stop()
+	{
+		if (server != null)
+		{
+			server.stop();
+		}
+	}
+
+	@Test
+	public void testCreateUpdateAndListZone()
+	{
+		Route53Driver driver = start(new Route53Emulator.Builder().build());
+
+		ZoneChangeStatus created = driver.createZone("example.com.", "emulated");
+
+		assertTrue(created.isInSync());
+
+		Zone zone = driver.zoneDetails(created.getZoneId());
+
+		assertEquals("example.com.", zone.getName());
+		assertEquals(4, zone.getNameServers().size());
+
+		List<ZoneUpdateAction> actions = new ArrayList<ZoneUpdateAction>();
+
+		for (int i = 0; i < 250; i++)
+		{
+			actions.add(new ZoneUpdateAction.Builder().withData("host" + i, zone, RecordType.A, "10.0.0." + (i % 250)).buildCreateAction());
+		}
+
+		for (List<ZoneUpdateAction> batch : ListUtil.split(actions, 100))
+		{
+			driver.waitForSync(driver.updateZone(zone, "load", batch));
+		}
+
+		List<ZoneResource> resources = driver.listZoneRecords(zone);
+
+		assertEquals(252, resources.size());
+
+		try
+		{
+			driver.updateZone(zone, "duplicate", actions.get(0));
+			fail("duplicate create accepted");
+		}
+		catch (ValetException e)
+		{
+			assertTrue(e.getMessage().startsWith("InvalidChangeBatch"));
+		}
+
+		try
+		{
+			driver.deleteZone(zone, "not empty");
+			fail("non-empty zone deleted");
+		}
+		catch (ValetException e)
+		{
+			assertTrue(e.getMessage().startsWith("HostedZoneNotEmpty"));
+		}
+	}
+
+	@Test
+	public void testRejectedBatchIsNotApplied()
+	{
+		Route53Driver driver = start(new Route53Emulator.Builder().build());
+
+		Zone zone = driver.zoneDetails(driver.createZone("example.com.", "").getZoneId());
+
+		ZoneUpdateAction create = new ZoneUpdateAction.Builder().withData("www", zone, RecordType.A, "10.0.0.1").buildCreateAction();
+		ZoneUpdateAction missingDelete = new ZoneUpdateAction.Builder().withData("ftp", zone, RecordType.A, "10.0.0.2").buildDeleteAction();
+
+		try
+		{
+			driver.updateZone(zone, "", create, missingDelete);
+			fail("delete of missing record accepted");
+		}
+		catch (ValetException e)
+		{
+			assertTrue(e.getMessage().startsWith("InvalidChangeBatch"));
+		}
+
+		assertEquals(2, driver.listZoneRecords(zone).size());
+	}
+
+	@Test
+	public void testChangeBatchLimit()
+	{
+		Route53Emulator emulator = new Route53Emulator.Builder().build();
+
+		Route53Driver driver = start(emulator);
+
+		Zone zone = driver.zoneDetails(driver.createZone("example.com.", "").getZoneId());
+
+		StringBuilder body = new StringBuilder("<ChangeResourceRecordSetsRequest><ChangeBatch><Changes>");
+
+		for (int i = 0; i < 101; i++)
+		{
+			body.append("<Change><Action>CREATE</Action><ResourceRecordSet><Name>h").append(i).append(".example.com.</Name><Type>A</Type>");
+			body.append("<TTL>60</TTL><ResourceRecords><ResourceRecord><Value>10.0.0.1</Value></ResourceRecord></ResourceRecords></ResourceRecordSet></Change>");
+		}
+
+		body.append("</Changes></ChangeBatch></ChangeResourceRecordSetsRequest>");
+
+		Route53Emulator.Response response = emulator.handle("POST", "hostedzone/" + zone.getZoneId() + "/rrset", Collections.<String, String>emptyMap(), body.toString());
+
+		assertEquals(400, response.status);
+		assertTrue(response.body.contains("InvalidChangeBatch"));
+	}
+
+	@Test
+	public void testPendingUntilInsyncDelay()
+	{
+		Route53Driver driver = start(new Route53Emulator.Builder().withInsyncDelay(1, TimeUnit.HOURS).build());
+
+		ZoneChangeStatus created = driver.createZone("example.com.", "");
+
+		assertTrue(created.isPending());
+		assertTrue(driver.queryChangeStatus(created).isPending());
+	}
+
+	@Test
+	public void testThrottling()
+	{
+		Route53Driver driver = start(new Route53Emulator.Builder().withRequestsPerSecond(1).build());
+
+		driver.listZones();
+
+		try
+		{
+			driver.listZones();
+			fail("second request in the same second not throttled");
+		}
+		catch (ValetException e)
+		{
+			assertTrue(e.getMessage().startsWith("Throttling"));
+		}
+	}
+
+	@Test
+	public void testPartiallyReadStreamReleasesConnection()
+	{
+		Route53Emulator emulator = new Route53Emulator.Builder().build();
+
+		server = new Route53EmulatorServer(emulator, 0);
+		server.start();
+
+		String zoneId = emulator.createHostedZone("example.com.", "");
+
+		Route53PilotImpl pilot = new Route53PilotImpl("access", "secret", new DefaultHttpClient(), server.getEndpoint());
+
+		ResponseReader<Integer> firstByte = new ResponseReader<Integer>()
+		{
+			public Integer read(InputStream body) throws IOException
+			{
+				return body.read();
+			}
+		};
+
+		for (int i = 0; i < 3; i++)
+		{
+			assertEquals('<', pilot.execute(PilotOperation.RESOURCE_RECORD_SET_GET, zoneId, Collections.<String, String>emptyMap(), null, firstByte, Deadline.NONE).intValue());
+		}
+
+		assertTrue(pilot.executeHostedZoneGet(zoneId).contains("example.com."));
+	}
+
+	@Test
+	public void testCompressedListingUsesLessBandwidth()
+	{
+		Route53Emulator emulator = new Route53Emulator.Builder().build();
+
+		server = new Route53EmulatorServer(emulator, 0);
+		server.start();
+
+		Route53PilotImpl pilot = new Route53PilotImpl("access", "secret", new DefaultHttpClient(), server.getEndpoint());
+
+		Route53Driver driver = new Route53Driver(pilot);
+
+		Zone zone = driver.zoneDetails(emulator.createHostedZone("example.com.", ""));
+
+		List<ZoneUpdateAction> actions = new ArrayList<ZoneUpdateAction>();
+
+		for (int i = 0; i < 500; i++)
+		{
+			actions.add(new ZoneUpdateAction.Builder().withData("host" + i, zone, RecordType.A, "10.0.0.1").buildCreateAction());
+		}
+
+		emulator.loadRecordSets(zone.getZoneId(), actions);
+
+		long start = server.getBytesSent();
+
+		assertEquals(502, driver.listZoneRecords(zone).size());
+
+		long compressed = server.getBytesSent() - start;
+
+		pilot.setCompression(false);
+
+		start = server.getBytesSent();
+
+		assertEquals(502, driver.listZoneRecords(zone).size());
+
+		long identity = server.getBytesSent() - start;
+
+		assertTrue(String.format("compressed %s, identity %s", compressed, identity), compressed * 5 < identity);
+	}
+
+	@Test
+	public void testContentEncodingNegotiation()
+	{
+		assertEquals("gzip", Route53EmulatorServer.contentEncoding("gzip, deflate"));
+		assertEquals("deflate", Route53EmulatorServer.contentEncoding("Deflate"));
+		assertEquals(null, Route53EmulatorServer.contentEncoding(null));
+	}
+
+	@Test
+	public void testWarmUp()
+	{
+		Route53Driver driver = start(new Route53Emulator.Builder().build());
+
+		WarmUpReport report = driver.warmUp();
+
+		assertTrue(report.getTotalMillis() >= report.getFirstCallMillis());
+		assertEquals(0, driver.listZones().size());
+	}
+
+	@Test
+	public void testWarmUpSendsOneRequestPerConnectionAtOnce()
+	{
+		final CyclicBarrier together = new CyclicBarrier(3);
+
+		// each request waits for the other two, so they only finish if all three are in flight
+		Route53Driver driver = new Route53Driver(new InMemoryRoute53Pilot()
+		{
+			@Override
+			public String executeHostedZoneGet(String zone)
+			{
+				try
+				{
+					together.await(2, TimeUnit.SECONDS);
+				}
+				catch (Exception e)
+				{
+					throw new RuntimeException(e);
+				}
+
+				return super.executeHostedZoneGet(zone);
+			}
+		});
+
+		WarmUpReport report = driver.warmUp(3);
+
+		assertEquals(3, report.getConnections());
+	}
+
+	@Test
+	public void testEagerInitWaitsForWarmUpBeforeFirstCall()
+	{
+		System.setProperty(Route53Driver.EAGER_INIT_PROPERTY, "true");
+
+		try
+		{
+			Route53Driver driver = start(new Route53Emulator.Builder().build());
+
+			// DefaultHttpClient allows one connection at a time, so overlapping the warm-up would fail here
+			driver.createZone("example.com.", "");
+
+			assertEquals(1, driver.listZones().size());
+		}
+		finally
+		{
+			System.clearProperty(Route53Driver.EAGER_INIT_PROPERTY);
+		}
+	}
+
+	@Test
+	public void testCallThatGivesUpOnWarmUpLeavesItForLaterCalls() throws InterruptedException
+	{
+		final CountDownLatch stalled = new CountDownLatch(1);
+		final AtomicInteger calls = new AtomicInteger();
+
+		// the first call, the warm-up's, stalls until released
+		final Route53Driver driver = new Route53Driver(new InMemoryRoute53Pilot()
+		{
+			@Override
+			public String executeHostedZoneGet(String zone)
+			{
+				if (calls.incrementAndGet() == 1)
+				{
+					try
+					{
+						stalled.await();
+					}
+					catch (InterruptedException e)
+					{
+						Thread.currentThread().interrupt();
+					}
+				}
+
+				return super.executeHostedZoneGet(zone);
+			}
+		});
+
+		driver.warmUpAsync();
+
+		try
+		{
+			driver.listZones(Deadline.after(50, TimeUnit.MILLISECONDS));
+			fail("call ran before warm-up finished");
+		}
+		catch (DeadlineExceededException e)
+		{
+			// expected
+		}
+
+		Runnable listZones = new Runnable()
+		{
+			public void run()
+			{
+				driver.listZones();
+			}
+		};
+
+		// an interrupted caller stops waiting and goes ahead on its own
+		Thread interrupted = new Thread(listZones);
+		interrupted.start();
+
+		Thread.sleep(100);
+
+		interrupted.interrupt();
+		interrupted.join(2000);
+
+		assertEquals(2, calls.get());
+
+		Thread later = new Thread(listZones);
+		later.start();
+
+		later.join(200);
+
+		assertTrue(later.isAlive());
+		assertEquals(2, calls.get());
+
+		stalled.countDown();
+
+		later.join(2000);
+
+		assertEquals(3, calls.get());
+	}
+}
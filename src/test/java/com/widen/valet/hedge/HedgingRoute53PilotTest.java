@@ -0,0 +1,193 @@
+package com.widen.valet.hedge;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.widen.valet.Deadline;
+import com.widen.valet.DeadlineExceededException;
+import com.widen.valet.Route53Driver;
+import com.widen.valet.Zone;
+import com.widen.valet.emulator.InMemoryRoute53Pilot;
+import com.widen.valet.fault.FaultInjectingRoute53Pilot;
+import com.widen.valet.fault.FaultProfile;
+import com.widen.valet.fault.LatencyDistribution;
+import com.widen.valet.internal.PilotOperation;
+import com.widen.valet.internal.RateLimiter;
+import com.widen.valet.internal.ResponseReader;
+import com.widen.valet.internal.StreamingRoute53Pilot;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class HedgingRoute53PilotTest
+{
+	/**
+	 * Streams from the emulator and records the deadline of every call.
+	 */
+	private static class DeadlineRecordingPilot extends InMemoryRoute53Pilot implements StreamingRoute53Pilot
+	{
+		final List<Deadline> deadlines = new CopyOnWriteArrayList<Deadline>();
+
+		public <T> T execute(PilotOperation operation, String target, Map<String, String> query, String payload, ResponseReader<T> reader, Deadline deadline)
+		{
+			deadlines.add(deadline);
+
+			try
+			{
+				return reader.read(new ByteArrayInputStream(operation.execute(this, target, query, payload).getBytes("UTF-8")));
+			}
+			catch (IOException e)
+			{
+				throw new RuntimeException(e);
+			}
+		}
+	}
+
+	/**
+	 * Fast except for every twentieth call, which stalls for two seconds.
+	 */
+	private static LatencyDistribution periodicStall()
+	{
+		final AtomicInteger calls = new AtomicInteger();
+
+		return new LatencyDistribution()
+		{
+			@Override
+			public long nextNanos(Random random)
+			{
+				return calls.incrementAndGet() % 20 == 0 ? TimeUnit.SECONDS.toNanos(2) : TimeUnit.MILLISECONDS.toNanos(2);
+			}
+		};
+	}
+
+	@Test
+	public void testSlowReadIsAnsweredByHedge()
+	{
+		InMemoryRoute53Pilot backend = new InMemoryRoute53Pilot();
+
+		String zoneId = backend.getEmulator().createHostedZone("example.com.", "");
+
+		FaultInjectingRoute53Pilot slow = new FaultInjectingRoute53Pilot(backend, new FaultProfile.Builder().withLatency(periodicStall()).build());
+
+		HedgingRoute53Pilot hedging = new HedgingRoute53Pilot(slow, new HedgePolicy.Builder()
+				.withInitialDelay(100, TimeUnit.MILLISECONDS, 5)
+				.withMinDelay(50, TimeUnit.MILLISECONDS)
+				.build());
+
+		Route53Driver driver = new Route53Driver(hedging);
+
+		long worst = 0;
+
+		for (int i = 0; i < 40; i++)
+		{
+			long start = System.nanoTime();
+
+			Zone zone = driver.zoneDetails(zoneId);
+
+			worst = Math.max(worst, System.nanoTime() - start);
+
+			assertEquals("example.com.", zone.getName());
+		}
+
+		// both stalls must be hedged; a pause on a loaded machine may add hedges that lose
+		assertEquals(40, hedging.getHedgeableCount());
+		assertTrue("hedges " + hedging.getHedgeCount(), hedging.getHedgeCount() >= 2 && hedging.getHedgeCount() <= 10);
+		assertTrue("hedge wins " + hedging.getHedgeWinCount(), hedging.getHedgeWinCount() >= 2 && hedging.getHedgeWinCount() <= hedging.getHedgeCount());
+		assertTrue("worst call " + TimeUnit.NANOSECONDS.toMillis(worst) + " ms", worst < TimeUnit.SECONDS.toNanos(1));
+	}
+
+	@Test
+	public void testHedgesAreCappedAndWritesNeverHedged()
+	{
+		InMemoryRoute53Pilot backend = new InMemoryRoute53Pilot();
+
+		String zoneId = backend.getEmulator().createHostedZone("example.com.", "");
+
+		FaultInjectingRoute53Pilot slow = new FaultInjectingRoute53Pilot(backend, new FaultProfile.Builder().withLatency(LatencyDistribution.fixed(30, TimeUnit.MILLISECONDS)).build());
+
+		HedgingRoute53Pilot hedging = new HedgingRoute53Pilot(slow, new HedgePolicy.Builder()
+				.withInitialDelay(1, TimeUnit.MILLISECONDS, 1000)
+				.withMaxHedgeRatio(0.25)
+				.build());
+
+		Route53Driver driver = new Route53Driver(hedging);
+
+		for (int i = 0; i < 20; i++)
+		{
+			driver.zoneDetails(zoneId);
+		}
+
+		driver.createZone("other.com.", "");
+
+		assertEquals(21, hedging.getHedgeableCount());
+		assertEquals(5, hedging.getHedgeCount());
+	}
+
+	@Test
+	public void testHedgesOnlyUseSpareRateBudget()
+	{
+		InMemoryRoute53Pilot backend = new InMemoryRoute53Pilot();
+
+		String zoneId = backend.getEmulator().createHostedZone("example.com.", "");
+
+		FaultInjectingRoute53Pilot slow = new FaultInjectingRoute53Pilot(backend, new FaultProfile.Builder().withLatency(LatencyDistribution.fixed(20, TimeUnit.MILLISECONDS)).build());
+
+		HedgingRoute53Pilot hedging = new HedgingRoute53Pilot(slow, new HedgePolicy.Builder()
+				.withInitialDelay(1, TimeUnit.MILLISECONDS, 1000)
+				.withMaxHedgeRatio(1)
+				.withRateLimiter(new RateLimiter(1))
+				.build());
+
+		Route53Driver driver = new Route53Driver(hedging);
+
+		driver.zoneDetails(zoneId);
+
+		assertEquals(0, hedging.getHedgeCount());
+	}
+
+	@Test
+	public void testDeadlineReachesEveryAttemptAndTheTokenWait()
+	{
+		DeadlineRecordingPilot backend = new DeadlineRecordingPilot();
+
+		RateLimiter rateLimiter = new RateLimiter(1);
+
+		HedgingRoute53Pilot hedging = new HedgingRoute53Pilot(backend, new HedgePolicy.Builder().withRateLimiter(rateLimiter).build());
+
+		Route53Driver driver = new Route53Driver(hedging);
+
+		Deadline deadline = Deadline.after(5, TimeUnit.SECONDS);
+
+		driver.listZones(deadline);
+
+		assertEquals(1, backend.deadlines.size());
+		assertTrue(backend.deadlines.get(0) == deadline);
+
+		// the only token is gone; the next arrives in a second, after this deadline
+		long start = System.nanoTime();
+
+		try
+		{
+			driver.listZones(Deadline.after(100, TimeUnit.MILLISECONDS));
+			fail("call ran without a token");
+		}
+		catch (DeadlineExceededException e)
+		{
+			assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(900));
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testWritesCannotBeHedged()
+	{
+		new HedgePolicy.Builder().withOperations(PilotOperation.RESOURCE_RECORD_SETS_POST);
+	}
+}
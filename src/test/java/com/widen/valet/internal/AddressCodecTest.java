@@ -0,0 +1,58 @@
+package com.widen.valet.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class AddressCodecTest
+{
+	@Test
+	public void testIpv4RoundTrip()
+	{
+		for (String address : new String[] { "0.0.0.0", "10.0.0.1", "192.168.100.255", "255.255.255.255" })
+		{
+			long parsed = AddressCodec.parseIpv4(address);
+
+			assertTrue(address, parsed >= 0);
+			assertEquals(address, AddressCodec.formatIpv4((int) parsed));
+		}
+	}
+
+	@Test
+	public void testIpv4RejectsNonCanonicalText()
+	{
+		for (String value : new String[] { "010.0.0.1", "10.0.0", "10.0.0.1.", "10.0.0.256", "1.2.3.4.5", "10..0.1", "host.example.com." })
+		{
+			assertEquals(value, -1, AddressCodec.parseIpv4(value));
+		}
+	}
+
+	@Test
+	public void testIpv6RoundTrip()
+	{
+		long[] out = new long[2];
+
+		for (String address : new String[] { "::", "::1", "2001:db8::1", "2001:db8:0:1:1:1:1:1", "fe80::", "2001:db8::1:0:0:1", "1:2:3:4:5:6:7:8" })
+		{
+			assertTrue(address, AddressCodec.parseIpv6(address, out, 0));
+			assertEquals(address, AddressCodec.formatIpv6(out[0], out[1]));
+		}
+
+		assertTrue(AddressCodec.parseIpv6("2001:db8::ff00:42:8329", out, 0));
+		assertEquals(0x20010db800000000L, out[0]);
+		assertEquals(0x0000ff0000428329L, out[1]);
+	}
+
+	@Test
+	public void testIpv6RejectsNonCanonicalText()
+	{
+		long[] out = new long[2];
+
+		for (String value : new String[] { "2001:DB8::1", "2001:0db8::1", "2001:db8:0:0:0:0:0:1", "2001:db8::1::1", "::ffff:10.0.0.1", "1:2:3:4:5:6:7", "1:", "12345::" })
+		{
+			assertFalse(value, AddressCodec.parseIpv6(value, out, 0));
+		}
+	}
+}
@@ -0,0 +1,66 @@
+package com.widen.valet.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+
+import org.apache.commons.lang.StringUtils;
+import org.junit.Test;
+
+public class BufferPoolTest
+{
+	@Test
+	public void releasedBuffersAreReused()
+	{
+		BufferPool pool = new BufferPool(16, 64);
+
+		BufferPool.Buffer first = pool.acquire();
+		first.release();
+
+		BufferPool.Buffer second = pool.acquire();
+
+		assertSame(first, second);
+		assertEquals(0, second.length());
+		assertEquals(2, pool.getAcquireCount());
+		assertEquals(1, pool.getHitCount());
+		assertEquals(0.5, pool.getHitRate(), 0.0001);
+	}
+
+	@Test
+	public void nestedAcquisitionsGetDistinctBuffers()
+	{
+		BufferPool pool = new BufferPool(16, 64);
+
+		BufferPool.Buffer request = pool.acquire();
+		BufferPool.Buffer response = pool.acquire();
+
+		assertNotSame(request, response);
+
+		response.release();
+		request.release();
+
+		assertNotSame(pool.acquire(), pool.acquire());
+		assertEquals(2, pool.getHitCount());
+	}
+
+	@Test
+	public void buffersGrowAndOversizedOnesAreDropped() throws Exception
+	{
+		BufferPool pool = new BufferPool(16, 64);
+
+		String text = "caf\u00e9 \u2603 " + StringUtils.repeat("x", 200);
+
+		BufferPool.Buffer buffer = pool.acquire().encodeUtf8(text);
+
+		assertEquals(text.getBytes("UTF-8").length, buffer.length());
+		assertEquals(text, pool.acquire().readFully(new ByteArrayInputStream(buffer.array(), 0, buffer.length())).toUtf8String());
+		assertTrue(pool.getGrowCount() > 1);
+
+		buffer.release();
+
+		assertNotSame(buffer, pool.acquire());
+	}
+}
@@ -0,0 +1,66 @@
+package com.widen.valet.internal;
+
+import static org.junit.Assert.assertEquals;
+
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPost;
+import org.junit.Test;
+
+public class SignatureV4SignerTest
+{
+	// 2015-08-30T12:36:00Z
+	private static final long VECTOR_TIME = 1440938160000L;
+
+	private final SignatureV4Signer signer = new SignatureV4Signer("AKIDEXAMPLE", "wJalrXUtnFEMI/K7MDENG+bPxRfiCYEXAMPLEKEY", "us-east-1", "service");
+
+	@Test
+	public void signsAwsGetVanillaVector()
+	{
+		HttpGet get = new HttpGet("https://example.amazonaws.com/");
+
+		signer.sign(get, null, 0, VECTOR_TIME);
+
+		assertEquals("20150830T123600Z", get.getFirstHeader("X-Amz-Date").getValue());
+		assertEquals("example.amazonaws.com", get.getFirstHeader("Host").getValue());
+		assertEquals("AWS4-HMAC-SHA256 Credential=AKIDEXAMPLE/20150830/us-east-1/service/aws4_request, SignedHeaders=host;x-amz-date, Signature=5fa00fa31553b73ebf1942676e86291e8372ff2a2260956d9b8aae1d763fbf31", get.getFirstHeader("Authorization").getValue());
+	}
+
+	@Test
+	public void signsAwsGetVanillaQueryOrderVector()
+	{
+		HttpGet get = new HttpGet("https://example.amazonaws.com/?Param2=value2&Param1=value1");
+
+		signer.sign(get, null, 0, VECTOR_TIME);
+
+		assertEquals("AWS4-HMAC-SHA256 Credential=AKIDEXAMPLE/20150830/us-east-1/service/aws4_request, SignedHeaders=host;x-amz-date, Signature=b97d918cfa904a5beff61c982a1b6f458b799221646efd99d3219ec94cdf2500", get.getFirstHeader("Authorization").getValue());
+	}
+
+	@Test
+	public void repeatedSigningIsStable()
+	{
+		HttpPost first = new HttpPost("https://route53.amazonaws.com/2011-05-05/hostedzone");
+		HttpPost second = new HttpPost("https://route53.amazonaws.com/2011-05-05/hostedzone");
+
+		byte[] payload = "<CreateHostedZoneRequest/>".getBytes();
+
+		signer.sign(first, payload, payload.length, VECTOR_TIME);
+		signer.sign(second, payload, payload.length, VECTOR_TIME + 999);
+
+		assertEquals(first.getFirstHeader("Authorization").getValue(), second.getFirstHeader("Authorization").getValue());
+	}
+
+	@Test
+	public void formatsTimestampsWithoutCalendar()
+	{
+		assertEquals("19700101T000000Z", new SignatureV4Signer.Timestamp(0).amzDate);
+		assertEquals("20000229T235959Z", new SignatureV4Signer.Timestamp(951868799).amzDate);
+		assertEquals("20161231T235959Z", new SignatureV4Signer.Timestamp(1483228799).amzDate);
+		assertEquals("20170101", new SignatureV4Signer.Timestamp(1483228800).dateStamp);
+	}
+
+	@Test
+	public void canonicalQueryIsSortedAndRfc3986Encoded()
+	{
+		assertEquals("maxitems=100&name=a%20b.example.com.&type=A", SignatureV4Signer.canonicalQuery("type=A&name=a+b.example.com.&maxitems=100"));
+	}
+}
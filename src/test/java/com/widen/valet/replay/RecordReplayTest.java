@@ -0,0 +1,120 @@
+package com.widen.valet.replay;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import com.widen.valet.RecordType;
+import com.widen.valet.Route53Driver;
+import com.widen.valet.Zone;
+import com.widen.valet.ZoneChangeStatus;
+import com.widen.valet.ZoneResource;
+import com.widen.valet.ZoneUpdateAction;
+import com.widen.valet.emulator.InMemoryRoute53Pilot;
+import com.widen.valet.internal.PilotOperation;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class RecordReplayTest
+{
+	@Test
+	public void testReplayReproducesRecordedSession() throws IOException
+	{
+		File file = File.createTempFile("valet", ".rec");
+
+		try
+		{
+			RecordingRoute53Pilot recorder = new RecordingRoute53Pilot(new InMemoryRoute53Pilot(), file);
+
+			Route53Driver driver = new Route53Driver(recorder);
+
+			ZoneChangeStatus created = driver.createZone("example.com.", "");
+
+			Zone zone = driver.zoneDetails(created.getZoneId());
+
+			driver.waitForSync(driver.updateZone(zone, "", new ZoneUpdateAction.Builder().withData("www", zone, RecordType.A, "10.0.0.1").buildCreateAction()));
+
+			List<ZoneResource> recorded = driver.listZoneRecords(zone);
+
+			recorder.close();
+
+			List<PilotRecording.Entry> entries = PilotRecording.read(file);
+
+			assertEquals(PilotOperation.HOSTED_ZONE_GET, entries.get(0).operation);
+			assertTrue(entries.get(entries.size() - 1).durationNanos > 0);
+
+			Route53Driver replay = new Route53Driver(new ReplayingRoute53Pilot(file, 0));
+
+			Zone replayedZone = replay.zoneDetails(created.getZoneId());
+
+			assertEquals("example.com.", replayedZone.getName());
+			assertEquals(recorded.size(), replay.listZoneRecords(replayedZone).size());
+			assertTrue(replay.updateZone(replayedZone, "", new ZoneUpdateAction.Builder().withData("www", replayedZone, RecordType.A, "10.0.0.1").buildCreateAction()).isInSync());
+		}
+		finally
+		{
+			file.delete();
+		}
+	}
+
+	@Test
+	public void testSessionsAppend() throws IOException
+	{
+		File file = File.createTempFile("valet", ".rec");
+
+		try
+		{
+			for (int session = 0; session < 2; session++)
+			{
+				RecordingRoute53Pilot recorder = new RecordingRoute53Pilot(new InMemoryRoute53Pilot(), file);
+				new Route53Driver(recorder).listZones();
+				recorder.close();
+			}
+
+			assertEquals(2, PilotRecording.read(file).size());
+		}
+		finally
+		{
+			file.delete();
+		}
+	}
+
+	@Test
+	public void testOrdinalFormatIsRejected() throws IOException
+	{
+		File file = File.createTempFile("valet", ".rec");
+
+		try
+		{
+			// a version 1 session, which stored operations by ordinal
+			DataOutputStream out = new DataOutputStream(new GZIPOutputStream(new FileOutputStream(file)));
+			out.writeByte('S');
+			out.writeInt(0x56414c54);
+			out.writeByte(1);
+			out.writeLong(System.currentTimeMillis());
+			out.writeByte('C');
+			out.writeByte(PilotOperation.HOSTED_ZONE_GET.ordinal());
+			out.close();
+
+			try
+			{
+				PilotRecording.read(file);
+				fail("read a version 1 recording");
+			}
+			catch (IOException e)
+			{
+				assertTrue(e.getMessage(), e.getMessage().contains("version 1"));
+			}
+		}
+		finally
+		{
+			file.delete();
+		}
+	}
+}
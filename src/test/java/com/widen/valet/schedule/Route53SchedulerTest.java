@@ -0,0 +1,311 @@
+package com.widen.valet.schedule;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import com.widen.valet.Deadline;
+import com.widen.valet.DeadlineExceededException;
+import com.widen.valet.Route53Driver;
+import com.widen.valet.emulator.InMemoryRoute53Pilot;
+import com.widen.valet.internal.RateLimiter;
+import org.junit.After;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class Route53SchedulerTest
+{
+	private final InMemoryRoute53Pilot backend = new InMemoryRoute53Pilot();
+
+	private final String zoneId = backend.getEmulator().createHostedZone("example.com.", "");
+
+	private Route53Scheduler scheduler;
+
+	private final List<Thread> workers = new ArrayList<Thread>();
+
+	@After
+	public void stop() throws InterruptedException
+	{
+		scheduler.shutdown();
+
+		for (Thread worker : workers)
+		{
+			worker.join();
+		}
+	}
+
+	private void flood(String tenant, Priority priority, int threads)
+	{
+		final Route53Driver driver = new Route53Driver(scheduler.pilotFor(tenant, priority));
+
+		for (int i = 0; i < threads; i++)
+		{
+			Thread worker = new Thread(new Runnable()
+			{
+				public void run()
+				{
+					try
+					{
+						while (true)
+						{
+							driver.zoneDetails(zoneId);
+						}
+					}
+					catch (IllegalStateException e)
+					{
+						// scheduler shut down
+					}
+				}
+			});
+			worker.setDaemon(true);
+			worker.start();
+
+			workers.add(worker);
+		}
+	}
+
+	/**
+	 * Run {@code listZones} on a worker thread; the returned reference receives the failure, if any.
+	 */
+	private AtomicReference<RuntimeException> listZonesAsync(String tenant, final Deadline deadline)
+	{
+		final Route53Driver driver = new Route53Driver(scheduler.pilotFor(tenant, Priority.BULK));
+		final AtomicReference<RuntimeException> failure = new AtomicReference<RuntimeException>();
+
+		Thread worker = new Thread(new Runnable()
+		{
+			public void run()
+			{
+				try
+				{
+					driver.listZones(deadline);
+				}
+				catch (RuntimeException e)
+				{
+					failure.set(e);
+				}
+			}
+		});
+		worker.setDaemon(true);
+		worker.start();
+
+		workers.add(worker);
+
+		return failure;
+	}
+
+	private void awaitQueued(int count) throws InterruptedException
+	{
+		long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(2);
+
+		while (scheduler.getQueuedCount() != count)
+		{
+			assertTrue("queued " + scheduler.getQueuedCount() + ", expected " + count, System.nanoTime() < end);
+
+			Thread.sleep(5);
+		}
+	}
+
+	/**
+	 * Hands out tokens only when the test releases them.
+	 */
+	private static class GatedRateLimiter extends RateLimiter
+	{
+		final Semaphore permits = new Semaphore(0);
+
+		/**
+		 * Cancelled by the next acquire, after its token is taken and before the dispatcher picks a ticket.
+		 */
+		final AtomicReference<Deadline> cancelOnAcquire = new AtomicReference<Deadline>();
+
+		GatedRateLimiter()
+		{
+			super(1);
+		}
+
+		@Override
+		public void acquire() throws InterruptedException
+		{
+			permits.acquire();
+
+			Deadline deadline = cancelOnAcquire.getAndSet(null);
+
+			if (deadline != null)
+			{
+				deadline.cancel();
+			}
+		}
+
+		@Override
+		public void release()
+		{
+			permits.release();
+		}
+	}
+
+	@Test
+	public void testInteractiveCallJumpsAheadOfBulkBacklog() throws InterruptedException
+	{
+		scheduler = new Route53Scheduler(backend, 10);
+
+		flood("import", Priority.BULK, 8);
+
+		Thread.sleep(500);
+
+		Route53Driver deploy = new Route53Driver(scheduler.pilotFor("deploy", Priority.INTERACTIVE));
+
+		long start = System.nanoTime();
+
+		deploy.zoneDetails(zoneId);
+
+		long waited = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+		assertTrue("interactive call waited " + waited + " ms", waited < 300);
+		assertEquals(1, scheduler.getDispatchedCount("deploy"));
+		assertTrue(scheduler.getDispatchedCount("import") > 0);
+	}
+
+	@Test
+	public void testTenantsShareRateByWeight() throws InterruptedException
+	{
+		scheduler = new Route53Scheduler(backend, 40);
+
+		scheduler.setWeight("heavy", 3);
+
+		flood("heavy", Priority.BULK, 4);
+		flood("light", Priority.BULK, 4);
+
+		// let the initial burst drain so both tenants are backlogged
+		Thread.sleep(1500);
+
+		long heavy = scheduler.getDispatchedCount("heavy");
+		long light = scheduler.getDispatchedCount("light");
+
+		Thread.sleep(2000);
+
+		heavy = scheduler.getDispatchedCount("heavy") - heavy;
+		light = scheduler.getDispatchedCount("light") - light;
+
+		double ratio = (double) heavy / light;
+
+		assertTrue("heavy:light ratio " + heavy + ":" + light, ratio > 2.4 && ratio < 3.6);
+	}
+
+	@Test
+	public void testQueueWaitIsBoundedByDeadline() throws InterruptedException
+	{
+		scheduler = new Route53Scheduler(backend, 1);
+
+		flood("deploy", Priority.INTERACTIVE, 4);
+
+		Thread.sleep(200);
+
+		Route53Driver importer = new Route53Driver(scheduler.pilotFor("import", Priority.BULK));
+
+		try
+		{
+			importer.listZones(Deadline.after(300, TimeUnit.MILLISECONDS));
+			fail("bulk call ran ahead of interactive backlog");
+		}
+		catch (DeadlineExceededException e)
+		{
+			assertEquals(0, scheduler.getDispatchedCount("import"));
+		}
+	}
+
+	@Test
+	public void testCancelledDeadlineLeavesQueue() throws InterruptedException
+	{
+		scheduler = new Route53Scheduler(backend, new GatedRateLimiter());
+
+		Deadline deadline = Deadline.cancellable();
+
+		AtomicReference<RuntimeException> failure = listZonesAsync("import", deadline);
+
+		awaitQueued(1);
+
+		deadline.cancel();
+
+		workers.get(0).join(2000);
+
+		assertFalse("cancelled call still waiting", workers.get(0).isAlive());
+		assertTrue(String.valueOf(failure.get()), failure.get() instanceof DeadlineExceededException);
+		assertEquals(0, scheduler.getQueuedCount());
+	}
+
+	@Test
+	public void testTimedOutCallsDoNotCountAgainstTenant() throws InterruptedException
+	{
+		GatedRateLimiter gate = new GatedRateLimiter();
+
+		scheduler = new Route53Scheduler(backend, gate);
+
+		// deploy's calls cost twice import's, so import goes first unless charged for the calls below
+		scheduler.setWeight("deploy", 0.5);
+
+		Route53Driver importer = new Route53Driver(scheduler.pilotFor("import", Priority.BULK));
+
+		for (int i = 0; i < 5; i++)
+		{
+			try
+			{
+				importer.listZones(Deadline.after(20, TimeUnit.MILLISECONDS));
+				fail("call ran without a token");
+			}
+			catch (DeadlineExceededException e)
+			{
+				// expected
+			}
+		}
+
+		awaitQueued(0);
+
+		listZonesAsync("deploy", Deadline.after(5, TimeUnit.SECONDS));
+		awaitQueued(1);
+
+		listZonesAsync("import", Deadline.after(5, TimeUnit.SECONDS));
+		awaitQueued(2);
+
+		gate.permits.release();
+
+		awaitQueued(1);
+
+		assertEquals(1, scheduler.getDispatchedCount("import"));
+		assertEquals(0, scheduler.getDispatchedCount("deploy"));
+
+		gate.permits.release();
+	}
+
+	@Test
+	public void testTokenOfAbandonedCallPassesToNextCall() throws InterruptedException
+	{
+		GatedRateLimiter gate = new GatedRateLimiter();
+
+		scheduler = new Route53Scheduler(backend, gate);
+
+		Deadline cancelled = Deadline.cancellable();
+
+		AtomicReference<RuntimeException> failure = listZonesAsync("import", cancelled);
+
+		awaitQueued(1);
+
+		// the only token is taken for this call, which is then cancelled
+		gate.cancelOnAcquire.set(cancelled);
+		gate.permits.release();
+
+		workers.get(0).join(2000);
+
+		assertTrue(String.valueOf(failure.get()), failure.get() instanceof DeadlineExceededException);
+
+		// runs on the token the cancelled call left behind
+		new Route53Driver(scheduler.pilotFor("deploy", Priority.BULK)).listZones(Deadline.after(2, TimeUnit.SECONDS));
+
+		assertEquals(1, scheduler.getDispatchedCount("deploy"));
+	}
+}
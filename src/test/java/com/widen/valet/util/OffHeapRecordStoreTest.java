@@ -0,0 +1,119 @@
+package com.widen.valet.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import com.widen.valet.RecordType;
+import com.widen.valet.Route53Driver;
+import com.widen.valet.Zone;
+import com.widen.valet.ZoneUpdateAction;
+import com.widen.valet.emulator.InMemoryRoute53Pilot;
+import org.junit.Test;
+
+public class OffHeapRecordStoreTest
+{
+	@Test
+	public void testKeys()
+	{
+		OffHeapRecordStore store = new OffHeapRecordStore();
+
+		store.put("WWW.example.com", RecordType.A, null, 300, Arrays.asList("10.0.0.1", "10.0.0.2"));
+		store.put("www.example.com.", RecordType.A, "east", 60, Arrays.asList("10.0.1.1"));
+		store.put("www.example.com.", RecordType.AAAA, null, 300, Arrays.asList("::1"));
+
+		assertEquals(3, store.size());
+
+		NameQueryService.LookupRecord record = store.get("www.Example.com.", RecordType.A, null);
+
+		assertEquals("www.Example.com.", record.name);
+		assertEquals(Arrays.asList("10.0.0.1", "10.0.0.2"), record.values);
+		assertEquals(300, record.ttl);
+		assertTrue(record.exists);
+
+		assertEquals(Arrays.asList("10.0.1.1"), store.get("www.example.com", RecordType.A, "east").values);
+		assertNull(store.get("www.example.com", RecordType.A, "west"));
+		assertNull(store.get("www.example.com", RecordType.MX, null));
+
+		store.put("www.example.com", RecordType.A, null, 30, Collections.<String>emptyList());
+
+		assertEquals(3, store.size());
+		assertEquals(Collections.<String>emptyList(), store.get("www.example.com", RecordType.A, null).values);
+		assertTrue(store.getGarbageBytes() > 0);
+	}
+
+	@Test
+	public void testGrowRemoveAndCompact()
+	{
+		OffHeapRecordStore store = new OffHeapRecordStore(16);
+
+		int count = 20000;
+
+		for (int i = 0; i < count; i++)
+		{
+			store.put("host-" + i + ".example.com", RecordType.TXT, null, i, Arrays.asList("\"value " + i + "\""));
+		}
+
+		assertEquals(count, store.size());
+
+		for (int i = 0; i < count; i += 2)
+		{
+			assertTrue(store.remove("host-" + i + ".example.com", RecordType.TXT, null));
+		}
+
+		assertFalse(store.remove("host-0.example.com", RecordType.TXT, null));
+
+		store.compact();
+
+		assertEquals(0, store.getGarbageBytes());
+		assertEquals(count / 2, store.size());
+
+		for (int i = 0; i < count; i++)
+		{
+			NameQueryService.LookupRecord record = store.get("host-" + i + ".example.com", RecordType.TXT, null);
+
+			if (i % 2 == 0)
+			{
+				assertNull(record);
+			}
+			else
+			{
+				assertEquals(i, record.ttl);
+				assertEquals("\"value " + i + "\"", record.getFirstValue());
+			}
+		}
+
+		store.clear();
+
+		assertEquals(0, store.size());
+		assertNull(store.get("host-1.example.com", RecordType.TXT, null));
+	}
+
+	@Test
+	public void testQueryServiceUsesStore()
+	{
+		Route53Driver driver = new Route53Driver(new InMemoryRoute53Pilot());
+
+		Zone zone = driver.zoneDetails(driver.createZone("example.com.", "").getZoneId());
+
+		driver.waitForSync(driver.updateZone(zone, "", new ZoneUpdateAction.Builder().withData("www", zone, RecordType.A, "10.0.0.1").buildCreateAction()));
+
+		OffHeapRecordStore store = new OffHeapRecordStore();
+
+		NameQueryService offHeap = new NameQueryByRoute53APIService(driver, zone, store);
+		NameQueryService onHeap = new NameQueryByRoute53APIService(driver, zone);
+
+		assertEquals(3, store.size());
+
+		NameQueryService.LookupRecord record = offHeap.lookup("www.example.com", RecordType.A);
+
+		assertEquals(onHeap.lookup("www.example.com", RecordType.A).values, record.values);
+		assertEquals("www.example.com", record.name);
+		assertEquals(Arrays.asList("10.0.0.1"), record.values);
+		assertFalse(offHeap.lookup("ftp.example.com", RecordType.A).exists);
+	}
+}
@@ -0,0 +1,137 @@
+package com.widen.valet.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import com.widen.valet.RecordType;
+import com.widen.valet.Route53Driver;
+import com.widen.valet.Zone;
+import com.widen.valet.ZoneUpdateAction;
+import com.widen.valet.emulator.InMemoryRoute53Pilot;
+import org.junit.Before;
+import org.junit.Test;
+
+public class OfflineResolverTest
+{
+	private Route53Driver driver;
+
+	private Zone com;
+
+	private Zone org;
+
+	private OfflineResolver resolver;
+
+	@Before
+	public void mirrorZones()
+	{
+		driver = new Route53Driver(new InMemoryRoute53Pilot());
+
+		com = driver.zoneDetails(driver.createZone("example.com.", "").getZoneId());
+		org = driver.zoneDetails(driver.createZone("example.org.", "").getZoneId());
+
+		driver.updateZone(com, "", Arrays.asList(
+				new ZoneUpdateAction.Builder().withData("www", com, RecordType.A, "10.0.0.1").withTtl(300).buildCreateAction(),
+				new ZoneUpdateAction.Builder().withData("*.apps", com, RecordType.A, "10.0.0.2").buildCreateAction(),
+				new ZoneUpdateAction.Builder().withData("api.apps", com, RecordType.TXT, "\"v1\"").buildCreateAction(),
+				new ZoneUpdateAction.Builder().withData("db.internal", com, RecordType.A, "10.0.0.3").buildCreateAction(),
+				new ZoneUpdateAction.Builder().withData("web", com, RecordType.CNAME, "site.example.org.").withTtl(60).buildCreateAction(),
+				new ZoneUpdateAction.Builder().withData("loop", com, RecordType.CNAME, "loop.example.com.").buildCreateAction(),
+				new ZoneUpdateAction.Builder().withData("cdn", com, RecordType.CNAME, "d111.cloudfront.net.").buildCreateAction(),
+				new ZoneUpdateAction.Builder().withData("sub", com, RecordType.NS, "ns1.example.net.").buildCreateAction(),
+				new ZoneUpdateAction.Builder().withData("lb", com, RecordType.A, "10.0.1.1").addRoundRobinData("east", 1).buildCreateAction(),
+				new ZoneUpdateAction.Builder().withData("lb", com, RecordType.A, "10.0.1.2").addRoundRobinData("west", 1).buildCreateAction()));
+
+		driver.updateZone(org, "", Arrays.asList(
+				new ZoneUpdateAction.Builder().withData("site", org, RecordType.A).addAliasData(com.getExistentZoneId(), "www.example.com.").buildCreateAction()));
+
+		resolver = new OfflineResolver();
+
+		resolver.mirror(driver, com);
+		resolver.mirror(driver, org);
+	}
+
+	@Test
+	public void testExactAndWildcard()
+	{
+		NameQueryService.LookupRecord www = resolver.lookup("WWW.example.com", RecordType.A);
+
+		assertEquals("WWW.example.com", www.name);
+		assertEquals(Arrays.asList("10.0.0.1"), www.values);
+		assertEquals(300, www.ttl);
+
+		assertEquals(Arrays.asList("10.0.0.2"), resolver.lookup("anything.apps.example.com", RecordType.A).values);
+		assertEquals(Arrays.asList("10.0.0.2"), resolver.lookup("a.b.apps.example.com", RecordType.A).values);
+
+		// an existing name is not synthesized, and an empty non-terminal is not a wildcard match
+		assertEquals(OfflineResolver.Status.NO_DATA, resolver.resolve("api.apps.example.com", RecordType.A).getStatus());
+		assertEquals(OfflineResolver.Status.NO_DATA, resolver.resolve("internal.example.com", RecordType.A).getStatus());
+		assertEquals(OfflineResolver.Status.NXDOMAIN, resolver.resolve("missing.example.com", RecordType.A).getStatus());
+
+		assertEquals(Arrays.asList("10.0.1.1", "10.0.1.2"), resolver.lookup("lb.example.com", RecordType.A).values);
+	}
+
+	@Test
+	public void testChainsAcrossZones()
+	{
+		OfflineResolver.Resolution web = resolver.resolve("web.example.com", RecordType.A);
+
+		assertEquals(OfflineResolver.Status.ANSWER, web.getStatus());
+		assertEquals(Arrays.asList("web.example.com.", "site.example.org.", "www.example.com."), web.getChain());
+		assertEquals(Arrays.asList("10.0.0.1"), web.getValues());
+		assertEquals(60, web.getTtl());
+
+		assertEquals(Arrays.asList("site.example.org."), resolver.lookup("web.example.com", RecordType.CNAME).values);
+
+		assertEquals(OfflineResolver.Status.CHAIN_TOO_LONG, resolver.resolve("loop.example.com", RecordType.A).getStatus());
+		assertEquals(OfflineResolver.Status.NOT_MIRRORED, resolver.resolve("cdn.example.com", RecordType.A).getStatus());
+		assertEquals(OfflineResolver.Status.NOT_MIRRORED, resolver.resolve("host.sub.example.com", RecordType.A).getStatus());
+		assertEquals(OfflineResolver.Status.NOT_MIRRORED, resolver.resolve("www.example.net", RecordType.A).getStatus());
+		assertFalse(resolver.lookup("cdn.example.com", RecordType.A).exists);
+	}
+
+	@Test
+	public void testFollowsDriverUpdates()
+	{
+		driver.addZoneChangeListener(resolver);
+
+		driver.updateZone(com, "", Arrays.asList(
+				new ZoneUpdateAction.Builder().withData("www", com, RecordType.A, "10.0.0.1").withTtl(300).buildDeleteAction(),
+				new ZoneUpdateAction.Builder().withData("www", com, RecordType.A, "10.0.0.9").buildCreateAction(),
+				new ZoneUpdateAction.Builder().withData("new.apps", com, RecordType.A, "10.0.0.8").buildCreateAction()));
+
+		assertEquals(Arrays.asList("10.0.0.9"), resolver.lookup("web.example.com", RecordType.A).values);
+		assertEquals(Arrays.asList("10.0.0.8"), resolver.lookup("new.apps.example.com", RecordType.A).values);
+		assertEquals(Arrays.asList("10.0.0.2"), resolver.lookup("old.apps.example.com", RecordType.A).values);
+	}
+
+	@Test
+	public void testLookupAllAnswersDistinctQueriesInOrder()
+	{
+		NameQueryService.Query web = new NameQueryService.Query("web.example.com", RecordType.A);
+		NameQueryService.Query missing = new NameQueryService.Query("missing.example.com", RecordType.A);
+
+		Map<NameQueryService.Query, NameQueryService.LookupRecord> records = resolver.lookupAll(Arrays.asList(web, missing, web));
+
+		assertEquals(Arrays.asList(web, missing), new ArrayList<NameQueryService.Query>(records.keySet()));
+		assertEquals(Arrays.asList("10.0.0.1"), records.get(web).values);
+		assertFalse(records.get(missing).exists);
+	}
+
+	@Test
+	public void testIgnoresUpdatesOfOtherZones()
+	{
+		Zone net = driver.zoneDetails(driver.createZone("example.net.", "").getZoneId());
+
+		List<ZoneUpdateAction> actions = Arrays.asList(new ZoneUpdateAction.Builder().withData("www", net, RecordType.A, "10.0.0.7").buildCreateAction());
+
+		// the driver logs listener failures, so call the listener directly
+		resolver.zoneChanged(net, actions, driver.updateZone(net, "", actions));
+
+		assertEquals(OfflineResolver.Status.NOT_MIRRORED, resolver.resolve("www.example.net", RecordType.A).getStatus());
+	}
+}